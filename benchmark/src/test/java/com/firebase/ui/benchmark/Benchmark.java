@@ -0,0 +1,241 @@
+package com.firebase.ui.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Runs {@link Workload}s and reports their throughput, latency percentiles and allocation rate.
+ * <p>
+ * Every operation is timed individually. Allocations are counted per thread, so work done on
+ * other threads is not included. Results are printed and appended to {@code
+ * <reportDir>/results.csv} when the {@code benchmark.reportDir} system property is set.
+ * <p>
+ * Snapshots are Mockito mocks, whose calls also take time and allocate, so the numbers are meant
+ * to be compared between revisions rather than read as on-device costs.
+ */
+public final class Benchmark {
+
+    private static final int[] DEFAULT_SIZES = {1000, 10000, 100000};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private static final String CSV_HEADER =
+            "benchmark,size,ops_per_second,p50_ns,p90_ns,p99_ns,max_ns,bytes_per_op\n";
+
+    /**
+     * The JVM's {@code com.sun.management.ThreadMXBean}, looked up reflectively as the management
+     * APIs are not part of the Android SDK tests are compiled against. Null if unavailable.
+     */
+    private static final Object THREAD_BEAN;
+    private static final Method GET_ALLOCATED_BYTES;
+
+    static {
+        Object bean = null;
+        Method getAllocatedBytes = null;
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean")
+                    .invoke(null);
+            Method isEnabled = beanClass.getMethod("isThreadAllocatedMemoryEnabled");
+            if (beanClass.isInstance(bean) && (boolean) isEnabled.invoke(bean)) {
+                getAllocatedBytes = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+            } else {
+                bean = null;
+            }
+        } catch (ReflectiveOperationException e) {
+            bean = null;
+        }
+        THREAD_BEAN = bean;
+        GET_ALLOCATED_BYTES = getAllocatedBytes;
+    }
+
+    private Benchmark() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * @return the array sizes to benchmark, 1k, 10k and 100k items unless the {@code
+     * benchmark.sizes} system property lists others.
+     */
+    public static int[] getSizes() {
+        String sizes = System.getProperty("benchmark.sizes");
+        if (sizes == null || sizes.isEmpty()) return DEFAULT_SIZES.clone();
+
+        String[] values = sizes.split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Integer.parseInt(values[i].trim());
+        }
+        return result;
+    }
+
+    /**
+     * Run a workload at each of the {@link #getSizes()} and report the results.
+     */
+    public static void runAll(String name, Workload workload) {
+        for (int size : getSizes()) {
+            run(name, size, workload);
+        }
+    }
+
+    /**
+     * Run a workload for a number of warmup rounds and then {@link #ROUNDS} measured rounds, and
+     * report the results.
+     */
+    public static Result run(String name, int size, Workload workload) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            workload.setUp(size);
+            for (int op = 0; op < workload.getOperationCount(); op++) {
+                workload.run(op);
+            }
+            workload.tearDown();
+        }
+
+        long[] samples = new long[0];
+        int count = 0;
+        long totalTime = 0;
+        long allocated = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            workload.setUp(size);
+            int operations = workload.getOperationCount();
+            if (samples.length < count + operations) {
+                samples = Arrays.copyOf(samples, count + operations);
+            }
+
+            long allocatedBefore = getAllocatedBytes();
+            long roundStart = System.nanoTime();
+            for (int op = 0; op < operations; op++) {
+                long start = System.nanoTime();
+                workload.run(op);
+                samples[count++] = System.nanoTime() - start;
+            }
+            totalTime += System.nanoTime() - roundStart;
+            allocated += getAllocatedBytes() - allocatedBefore;
+
+            workload.tearDown();
+        }
+
+        Arrays.sort(samples, 0, count);
+        Result result = new Result(name,
+                size,
+                count * 1e9 / totalTime,
+                percentile(samples, count, 0.5),
+                percentile(samples, count, 0.9),
+                percentile(samples, count, 0.99),
+                count == 0 ? 0 : samples[count - 1],
+                THREAD_BEAN == null ? -1 : allocated / Math.max(count, 1));
+        report(result);
+        return result;
+    }
+
+    private static long percentile(long[] sorted, int count, double percentile) {
+        if (count == 0) return 0;
+        return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+    }
+
+    /**
+     * @return the number of bytes allocated so far by the current thread, or 0 if the JVM can't
+     * tell.
+     */
+    private static long getAllocatedBytes() {
+        if (THREAD_BEAN == null) return 0;
+        try {
+            return (long) GET_ALLOCATED_BYTES.invoke(THREAD_BEAN, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void report(Result result) {
+        System.out.println(result);
+
+        String reportDir = System.getProperty("benchmark.reportDir");
+        if (reportDir == null) return;
+
+        File dir = new File(reportDir);
+        File file = new File(dir, "results.csv");
+        boolean isNew = !file.exists();
+        if (isNew && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Could not create " + dir);
+        }
+
+        try (Writer writer = new FileWriter(file, true)) {
+            if (isNew) writer.write(CSV_HEADER);
+            writer.write(result.toCsv());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write " + file, e);
+        }
+    }
+
+    /**
+     * The measurements of one workload at one size.
+     */
+    public static final class Result {
+        private final String mName;
+        private final int mSize;
+        private final double mThroughput;
+        private final long mP50;
+        private final long mP90;
+        private final long mP99;
+        private final long mMax;
+        private final long mBytesPerOperation;
+
+        Result(String name,
+               int size,
+               double throughput,
+               long p50,
+               long p90,
+               long p99,
+               long max,
+               long bytesPerOperation) {
+            mName = name;
+            mSize = size;
+            mThroughput = throughput;
+            mP50 = p50;
+            mP90 = p90;
+            mP99 = p99;
+            mMax = max;
+            mBytesPerOperation = bytesPerOperation;
+        }
+
+        /**
+         * @return the number of operations applied per second.
+         */
+        public double getThroughput() {
+            return mThroughput;
+        }
+
+        /**
+         * @return the 99th percentile of the time it took to apply an operation, in nanoseconds.
+         */
+        public long getP99() {
+            return mP99;
+        }
+
+        /**
+         * @return the average number of bytes allocated per operation, or -1 if unknown.
+         */
+        public long getBytesPerOperation() {
+            return mBytesPerOperation;
+        }
+
+        String toCsv() {
+            return String.format(Locale.US, "%s,%d,%.0f,%d,%d,%d,%d,%d\n",
+                    mName, mSize, mThroughput, mP50, mP90, mP99, mMax, mBytesPerOperation);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%-44s %,7d items: %,11.0f ops/s | p50 %,9d ns | p90 %,9d ns | "
+                            + "p99 %,10d ns | max %,11d ns | %,7d B/op",
+                    mName, mSize, mThroughput, mP50, mP90, mP99, mMax, mBytesPerOperation);
+        }
+    }
+}
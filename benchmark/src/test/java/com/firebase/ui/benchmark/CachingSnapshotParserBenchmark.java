@@ -0,0 +1,70 @@
+package com.firebase.ui.benchmark;
+
+import com.firebase.ui.common.CacheConfig;
+import com.firebase.ui.database.CachingSnapshotParser;
+import com.firebase.ui.testing.DatabaseSnapshots;
+import com.firebase.ui.testing.Item;
+import com.google.firebase.database.DataSnapshot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of parsing snapshots through a {@link CachingSnapshotParser} while scrolling
+ * through a list twice, with the default cache and with a cache sized to the list.
+ * <p>
+ * With the default cache every parse misses once the list outgrows it, with a cache sized to the
+ * list the second pass only hits.
+ */
+public class CachingSnapshotParserBenchmark {
+
+    private static final int PASSES = 2;
+
+    @Test
+    public void benchmarkScrollDefaultCache() {
+        Benchmark.runAll("CachingSnapshotParser scroll", new ScrollWorkload(false));
+    }
+
+    @Test
+    public void benchmarkScrollSizedToArray() {
+        Benchmark.runAll("CachingSnapshotParser scroll, sized to array",
+                new ScrollWorkload(true));
+    }
+
+    private static final class ScrollWorkload extends Workload {
+        private final boolean mSizedToArray;
+
+        private CachingSnapshotParser<Item> mParser;
+        private List<DataSnapshot> mSnapshots;
+
+        public ScrollWorkload(boolean sizedToArray) {
+            mSizedToArray = sizedToArray;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mParser = new CachingSnapshotParser<>(DatabaseSnapshots.PARSER);
+            if (mSizedToArray) {
+                mParser.setConfig(new CacheConfig.Builder<Item>().setSizedToArray(true).build());
+                mParser.ensureCapacity(size);
+            }
+
+            mSnapshots = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                mSnapshots.add(DatabaseSnapshots.snapshot(DatabaseSnapshots.key(i)));
+            }
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mSnapshots.size() * PASSES;
+        }
+
+        @Override
+        protected void run(int operation) {
+            mParser.parseSnapshot(mSnapshots.get(operation % mSnapshots.size()));
+        }
+    }
+}
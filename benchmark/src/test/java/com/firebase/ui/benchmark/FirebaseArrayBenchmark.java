@@ -0,0 +1,121 @@
+package com.firebase.ui.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.firebase.ui.common.ChangeEventBatch;
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.database.BatchedChangeEventListener;
+import com.firebase.ui.database.FirebaseArray;
+import com.firebase.ui.testing.ChildEvent;
+import com.firebase.ui.testing.ChildEventGenerator;
+import com.firebase.ui.testing.DatabaseSnapshots;
+import com.firebase.ui.testing.FakeDatabaseQuery;
+import com.firebase.ui.testing.Item;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Measures how fast a {@link FirebaseArray} applies child events: the initial load of a query,
+ * and random-position churn on a loaded query with and without batching. Every event is followed
+ * by a value event, as the database does.
+ */
+public class FirebaseArrayBenchmark {
+
+    private static final int CHURN_EVENTS = 2000;
+
+    @Test
+    public void benchmarkLoad() {
+        Benchmark.runAll("FirebaseArray load", new ArrayWorkload(false, false));
+    }
+
+    @Test
+    public void benchmarkChurn() {
+        Benchmark.runAll("FirebaseArray churn", new ArrayWorkload(true, false));
+    }
+
+    @Test
+    public void benchmarkChurnBatched() {
+        Benchmark.runAll("FirebaseArray churn, batched", new ArrayWorkload(true, true));
+    }
+
+    private static final class ArrayWorkload extends Workload {
+        private final boolean mChurn;
+        private final boolean mBatching;
+
+        private FirebaseArray<Item> mArray;
+        private List<ChildEvent> mEvents;
+
+        public ArrayWorkload(boolean churn, boolean batching) {
+            mChurn = churn;
+            mBatching = batching;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mArray = new FirebaseArray<>(
+                    new FakeDatabaseQuery().getQuery(), DatabaseSnapshots.PARSER);
+            mArray.setBatchingEnabled(mBatching);
+            mArray.addChangeEventListener(new CountingListener());
+
+            ChildEventGenerator generator = new ChildEventGenerator(size);
+            List<ChildEvent> load = generator.load(size);
+            if (mChurn) {
+                for (ChildEvent event : load) {
+                    DatabaseSnapshots.deliver(mArray, event);
+                }
+                mArray.onDataChange(null);
+                mEvents = generator.churn(CHURN_EVENTS);
+            } else {
+                mEvents = load;
+            }
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mEvents.size();
+        }
+
+        @Override
+        protected void run(int operation) {
+            DatabaseSnapshots.deliver(mArray, mEvents.get(operation));
+            mArray.onDataChange(null);
+        }
+
+        @Override
+        protected void tearDown() {
+            mArray.removeAllListeners();
+        }
+    }
+
+    /**
+     * Counts the events it receives, so that delivering them can't be optimized away.
+     */
+    static final class CountingListener implements BatchedChangeEventListener {
+        int mEvents;
+
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DataSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mEvents++;
+        }
+
+        @Override
+        public void onChildChangeBatch(@NonNull ChangeEventBatch<DataSnapshot> batch) {
+            mEvents += batch.getEvents().size();
+        }
+
+        @Override
+        public void onDataChanged() {
+        }
+
+        @Override
+        public void onError(DatabaseError error) {
+        }
+    }
+}
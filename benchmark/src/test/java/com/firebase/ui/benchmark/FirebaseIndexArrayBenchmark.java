@@ -0,0 +1,104 @@
+package com.firebase.ui.benchmark;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.database.FirebaseIndexArray;
+import com.firebase.ui.testing.ChildEvent;
+import com.firebase.ui.testing.ChildEventGenerator;
+import com.firebase.ui.testing.DatabaseSnapshots;
+import com.firebase.ui.testing.FakeDatabaseQuery;
+import com.firebase.ui.testing.FakeDatabaseReference;
+import com.firebase.ui.testing.Item;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Measures how fast a {@link FirebaseIndexArray} joins keys to their data: the initial load of a
+ * key query, where each key is followed by its data, and random-position churn of the keys and
+ * their data on a loaded array.
+ * <p>
+ * Events go through a {@link FakeDatabaseQuery} and a {@link FakeDatabaseReference}, whose own
+ * bookkeeping is included in the measurements.
+ */
+public class FirebaseIndexArrayBenchmark {
+
+    private static final int CHURN_EVENTS = 2000;
+
+    @Test
+    public void benchmarkLoad() {
+        Benchmark.runAll("FirebaseIndexArray load", new IndexArrayWorkload(false));
+    }
+
+    @Test
+    public void benchmarkChurn() {
+        Benchmark.runAll("FirebaseIndexArray churn", new IndexArrayWorkload(true));
+    }
+
+    private static final class IndexArrayWorkload extends Workload {
+        private final boolean mChurn;
+
+        private FirebaseIndexArray<Item> mArray;
+        private FakeDatabaseQuery mKeys;
+        private FakeDatabaseReference mData;
+        private List<ChildEvent> mEvents;
+
+        public IndexArrayWorkload(boolean churn) {
+            mChurn = churn;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mKeys = new FakeDatabaseQuery();
+            mData = new FakeDatabaseReference();
+            mArray = new FirebaseIndexArray<>(mKeys.getQuery(),
+                    mData.getReference(),
+                    DatabaseSnapshots.PARSER);
+            mArray.addChangeEventListener(new FirebaseArrayBenchmark.CountingListener());
+
+            ChildEventGenerator generator = new ChildEventGenerator(size);
+            List<ChildEvent> load = generator.load(size);
+            if (mChurn) {
+                for (ChildEvent event : load) {
+                    apply(event);
+                }
+                mEvents = generator.churn(CHURN_EVENTS);
+            } else {
+                mEvents = load;
+            }
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mEvents.size();
+        }
+
+        @Override
+        protected void run(int operation) {
+            apply(mEvents.get(operation));
+        }
+
+        @Override
+        protected void tearDown() {
+            mArray.removeAllListeners();
+        }
+
+        /**
+         * Apply a key event, or a change of the key's data if the key changed, and deliver the
+         * data of added keys.
+         */
+        private void apply(ChildEvent event) {
+            String key = event.getSnapshot().getKey();
+            if (event.getType() == ChangeEventType.CHANGED) {
+                mData.emit(DatabaseSnapshots.data(key));
+                return;
+            }
+
+            if (event.getType() == ChangeEventType.ADDED) {
+                // The data arrives as soon as the array starts listening to the key
+                mData.emit(DatabaseSnapshots.data(key));
+            }
+            mKeys.emit(event);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.firebase.ui.benchmark;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.TreeList;
+import com.firebase.ui.firestore.ChangeEventListener;
+import com.firebase.ui.firestore.FirestoreArray;
+import com.firebase.ui.testing.FakeFirestoreQuery;
+import com.firebase.ui.testing.FirestoreSnapshots;
+import com.firebase.ui.testing.Item;
+import com.firebase.ui.testing.QuerySnapshotGenerator;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.QueryListenOptions;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how fast a {@link FirestoreArray} applies query snapshots: the initial load of a query
+ * in pages, and random-position churn of one change per snapshot on a loaded query, with the
+ * default {@link ArrayList} backing list, a {@link TreeList}, and in batching mode.
+ */
+public class FirestoreArrayBenchmark {
+
+    private static final int CHURN_SNAPSHOTS = 2000;
+    private static final int LOAD_PAGE_SIZE = 100;
+
+    @Test
+    public void benchmarkLoad() {
+        Benchmark.runAll("FirestoreArray load", new ArrayWorkload(false, false, false));
+    }
+
+    @Test
+    public void benchmarkChurn() {
+        Benchmark.runAll("FirestoreArray churn", new ArrayWorkload(true, false, false));
+    }
+
+    @Test
+    public void benchmarkChurnTreeList() {
+        Benchmark.runAll("FirestoreArray churn, TreeList", new ArrayWorkload(true, true, false));
+    }
+
+    @Test
+    public void benchmarkChurnBatched() {
+        Benchmark.runAll("FirestoreArray churn, batched", new ArrayWorkload(true, false, true));
+    }
+
+    private static final class ArrayWorkload extends Workload {
+        private final boolean mChurn;
+        private final boolean mTreeList;
+        private final boolean mBatching;
+
+        private FirestoreArray<Item> mArray;
+        private List<QuerySnapshot> mSnapshots;
+
+        public ArrayWorkload(boolean churn, boolean treeList, boolean batching) {
+            mChurn = churn;
+            mTreeList = treeList;
+            mBatching = batching;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            List<DocumentSnapshot> backing = mTreeList
+                    ? new TreeList<DocumentSnapshot>()
+                    : new ArrayList<DocumentSnapshot>();
+            mArray = new FirestoreArray<>(new FakeFirestoreQuery().getQuery(),
+                    new QueryListenOptions(),
+                    FirestoreSnapshots.PARSER,
+                    backing);
+            mArray.setBatchingEnabled(mBatching);
+            mArray.addChangeEventListener(new CountingListener());
+
+            QuerySnapshotGenerator generator = new QuerySnapshotGenerator(size);
+            if (mChurn) {
+                // Deliver the initial load as a single snapshot
+                mArray.onEvent(generator.load(size, size).get(0), null);
+                mSnapshots = generator.churn(CHURN_SNAPSHOTS);
+            } else {
+                mSnapshots = generator.load(size, LOAD_PAGE_SIZE);
+            }
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mSnapshots.size();
+        }
+
+        @Override
+        protected void run(int operation) {
+            mArray.onEvent(mSnapshots.get(operation), null);
+        }
+
+        @Override
+        protected void tearDown() {
+            mArray.removeAllListeners();
+        }
+    }
+
+    /**
+     * Counts the events it receives, so that delivering them can't be optimized away.
+     */
+    static final class CountingListener implements ChangeEventListener {
+        int mEvents;
+
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mEvents++;
+        }
+
+        @Override
+        public void onDataChanged() {
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+        }
+    }
+}
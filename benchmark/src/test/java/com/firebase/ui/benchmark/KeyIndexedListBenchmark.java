@@ -0,0 +1,183 @@
+package com.firebase.ui.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.firebase.ui.common.KeyIndexedList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the cost of applying child events to a {@link KeyIndexedList} against the linear key
+ * scan over an {@link ArrayList} that {@code FirebaseArray} used previously: mixed adds after a
+ * previous child key, changes, removals and moves at random positions of a loaded list.
+ */
+public class KeyIndexedListBenchmark {
+
+    private static final int EVENTS = 2000;
+
+    @Test
+    public void benchmarkLinearScan() {
+        Benchmark.runAll("KeyIndexedList baseline, linear scan", new EventWorkload(false));
+    }
+
+    @Test
+    public void benchmarkKeyIndexedList() {
+        Benchmark.runAll("KeyIndexedList", new EventWorkload(true));
+    }
+
+    private static final class EventWorkload extends Workload {
+        private static final int ADD = 0;
+        private static final int CHANGE = 1;
+        private static final int MOVE = 2;
+        private static final int READD = 3;
+
+        private final boolean mIndexed;
+
+        private Events mEvents;
+        private String[] mKeys;
+        private String[] mPreviousKeys;
+
+        public EventWorkload(boolean indexed) {
+            mIndexed = indexed;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mEvents = mIndexed ? new TreeEvents() : new LinearScanEvents();
+
+            List<String> keys = new ArrayList<>(size + EVENTS);
+            for (int i = 0; i < size; i++) {
+                String key = "child" + i;
+                keys.add(key);
+                mEvents.append(key);
+            }
+
+            Random random = new Random(size);
+            mKeys = new String[EVENTS];
+            mPreviousKeys = new String[EVENTS];
+            for (int i = 0; i < EVENTS; i++) {
+                String key = keys.get(random.nextInt(keys.size()));
+                switch (i % 4) {
+                    case ADD:
+                        mKeys[i] = "added" + i;
+                        mPreviousKeys[i] = key;
+                        keys.add(mKeys[i]);
+                        break;
+                    case MOVE:
+                        mKeys[i] = key;
+                        mPreviousKeys[i] = keys.get(random.nextInt(keys.size()));
+                        break;
+                    default:
+                        mKeys[i] = key;
+                        break;
+                }
+            }
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return EVENTS;
+        }
+
+        @Override
+        protected void run(int operation) {
+            String key = mKeys[operation];
+            switch (operation % 4) {
+                case ADD:
+                    mEvents.addAfter(key, mPreviousKeys[operation]);
+                    break;
+                case CHANGE:
+                    mEvents.change(key);
+                    break;
+                case MOVE:
+                    mEvents.move(key, mPreviousKeys[operation]);
+                    break;
+                case READD:
+                    // Remove and re-add so the key set stays the same
+                    mEvents.remove(key);
+                    mEvents.addAfter(key, null);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Mirrors the list operations performed by {@code FirebaseArray} for each child event.
+     */
+    private abstract static class Events {
+        protected abstract List<String> list();
+
+        protected abstract int indexOf(String key);
+
+        void append(String key) {
+            list().add(key);
+        }
+
+        void addAfter(String key, String previousKey) {
+            int index = previousKey == null ? 0 : indexOf(previousKey) + 1;
+            list().add(index, key);
+        }
+
+        void change(String key) {
+            int index = indexOf(key);
+            list().set(index, key);
+        }
+
+        void remove(String key) {
+            list().remove(indexOf(key));
+        }
+
+        void move(String key, String previousKey) {
+            if (key.equals(previousKey)) return;
+
+            list().remove(indexOf(key));
+            addAfter(key, previousKey);
+        }
+    }
+
+    private static final class LinearScanEvents extends Events {
+        private final List<String> mList = new ArrayList<>();
+
+        @Override
+        protected List<String> list() {
+            return mList;
+        }
+
+        @Override
+        protected int indexOf(String key) {
+            int index = 0;
+            for (String existing : mList) {
+                if (existing.equals(key)) {
+                    return index;
+                } else {
+                    index++;
+                }
+            }
+            throw new IllegalArgumentException("Key not found");
+        }
+    }
+
+    private static final class TreeEvents extends Events {
+        private final KeyIndexedList<String> mList = new KeyIndexedList<String>() {
+            @NonNull
+            @Override
+            public String getKey(String element) {
+                return element;
+            }
+        };
+
+        @Override
+        protected List<String> list() {
+            return mList;
+        }
+
+        @Override
+        protected int indexOf(String key) {
+            return mList.indexOfKey(key);
+        }
+    }
+}
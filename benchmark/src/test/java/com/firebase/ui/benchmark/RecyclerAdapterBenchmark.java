@@ -0,0 +1,223 @@
+package com.firebase.ui.benchmark;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+import com.firebase.ui.database.FirebaseArray;
+import com.firebase.ui.database.FirebaseRecyclerAdapter;
+import com.firebase.ui.database.FirebaseRecyclerOptions;
+import com.firebase.ui.firestore.FirestoreArray;
+import com.firebase.ui.firestore.FirestoreRecyclerAdapter;
+import com.firebase.ui.firestore.FirestoreRecyclerOptions;
+import com.firebase.ui.testing.ChildEvent;
+import com.firebase.ui.testing.ChildEventGenerator;
+import com.firebase.ui.testing.DatabaseSnapshots;
+import com.firebase.ui.testing.FakeDatabaseQuery;
+import com.firebase.ui.testing.FakeFirestoreQuery;
+import com.firebase.ui.testing.FirestoreSnapshots;
+import com.firebase.ui.testing.Item;
+import com.firebase.ui.testing.QuerySnapshotGenerator;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QueryListenOptions;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Measures how fast the recycler adapters turn random-position churn into adapter notifications:
+ * one notification per event, batched notifications, and background diffing. Diffing runs on the
+ * calling thread, so its cost is included.
+ * <p>
+ * Runs with Robolectric, as notifying a {@link RecyclerView.Adapter} needs the Android framework.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RecyclerAdapterBenchmark {
+
+    private static final int CHURN_EVENTS = 2000;
+
+    /**
+     * Diffing walks the whole list for every change, so fewer changes are measured.
+     */
+    private static final int DIFF_CHURN_EVENTS = 100;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void benchmarkFirebaseRecyclerAdapter() {
+        Benchmark.runAll("FirebaseRecyclerAdapter churn",
+                new DatabaseAdapterWorkload(Mode.DEFAULT));
+    }
+
+    @Test
+    public void benchmarkFirebaseRecyclerAdapterBatched() {
+        Benchmark.runAll("FirebaseRecyclerAdapter churn, batched",
+                new DatabaseAdapterWorkload(Mode.BATCHED));
+    }
+
+    @Test
+    public void benchmarkFirebaseRecyclerAdapterDiffed() {
+        Benchmark.runAll("FirebaseRecyclerAdapter churn, diffed",
+                new DatabaseAdapterWorkload(Mode.DIFFED));
+    }
+
+    @Test
+    public void benchmarkFirestoreRecyclerAdapter() {
+        Benchmark.runAll("FirestoreRecyclerAdapter churn",
+                new FirestoreAdapterWorkload(Mode.DEFAULT));
+    }
+
+    @Test
+    public void benchmarkFirestoreRecyclerAdapterBatched() {
+        Benchmark.runAll("FirestoreRecyclerAdapter churn, batched",
+                new FirestoreAdapterWorkload(Mode.BATCHED));
+    }
+
+    @Test
+    public void benchmarkFirestoreRecyclerAdapterDiffed() {
+        Benchmark.runAll("FirestoreRecyclerAdapter churn, diffed",
+                new FirestoreAdapterWorkload(Mode.DIFFED));
+    }
+
+    private enum Mode {
+        DEFAULT, BATCHED, DIFFED;
+
+        int getEventCount() {
+            return this == DIFFED ? DIFF_CHURN_EVENTS : CHURN_EVENTS;
+        }
+    }
+
+    private static final class DatabaseAdapterWorkload extends Workload {
+        private final Mode mMode;
+
+        private FirebaseArray<Item> mArray;
+        private FirebaseRecyclerAdapter<Item, RecyclerView.ViewHolder> mAdapter;
+        private List<ChildEvent> mEvents;
+
+        public DatabaseAdapterWorkload(Mode mode) {
+            mMode = mode;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mArray = new FirebaseArray<>(
+                    new FakeDatabaseQuery().getQuery(), DatabaseSnapshots.PARSER);
+
+            FirebaseRecyclerOptions.Builder<Item> builder =
+                    new FirebaseRecyclerOptions.Builder<Item>()
+                            .setSnapshotArray(mArray)
+                            .setBatchingEnabled(mMode == Mode.BATCHED);
+            if (mMode == Mode.DIFFED) builder.setBackgroundDiffing(DIRECT_EXECUTOR);
+
+            mAdapter = new FirebaseRecyclerAdapter<Item, RecyclerView.ViewHolder>(
+                    builder.build()) {
+                @Override
+                public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                protected void onBindViewHolder(RecyclerView.ViewHolder holder,
+                                                int position,
+                                                Item model) {
+                }
+            };
+            mAdapter.startListening();
+
+            ChildEventGenerator generator = new ChildEventGenerator(size);
+            for (ChildEvent event : generator.load(size)) {
+                DatabaseSnapshots.deliver(mArray, event);
+            }
+            mArray.onDataChange(null);
+            mEvents = generator.churn(mMode.getEventCount());
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mEvents.size();
+        }
+
+        @Override
+        protected void run(int operation) {
+            DatabaseSnapshots.deliver(mArray, mEvents.get(operation));
+            mArray.onDataChange(null);
+        }
+
+        @Override
+        protected void tearDown() {
+            mAdapter.stopListening();
+        }
+    }
+
+    private static final class FirestoreAdapterWorkload extends Workload {
+        private final Mode mMode;
+
+        private FirestoreArray<Item> mArray;
+        private FirestoreRecyclerAdapter<Item, RecyclerView.ViewHolder> mAdapter;
+        private List<QuerySnapshot> mSnapshots;
+
+        public FirestoreAdapterWorkload(Mode mode) {
+            mMode = mode;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mArray = new FirestoreArray<>(new FakeFirestoreQuery().getQuery(),
+                    new QueryListenOptions(),
+                    FirestoreSnapshots.PARSER,
+                    new ArrayList<DocumentSnapshot>());
+
+            FirestoreRecyclerOptions.Builder<Item> builder =
+                    new FirestoreRecyclerOptions.Builder<Item>()
+                            .setSnapshotArray(mArray)
+                            .setBatchingEnabled(mMode == Mode.BATCHED);
+            if (mMode == Mode.DIFFED) builder.setBackgroundDiffing(DIRECT_EXECUTOR);
+
+            mAdapter = new FirestoreRecyclerAdapter<Item, RecyclerView.ViewHolder>(
+                    builder.build()) {
+                @Override
+                public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                protected void onBindViewHolder(RecyclerView.ViewHolder holder,
+                                                int position,
+                                                Item model) {
+                }
+            };
+            mAdapter.startListening();
+
+            QuerySnapshotGenerator generator = new QuerySnapshotGenerator(size);
+            mArray.onEvent(generator.load(size, size).get(0), null);
+            mSnapshots = generator.churn(mMode.getEventCount());
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mSnapshots.size();
+        }
+
+        @Override
+        protected void run(int operation) {
+            mArray.onEvent(mSnapshots.get(operation), null);
+        }
+
+        @Override
+        protected void tearDown() {
+            mAdapter.stopListening();
+        }
+    }
+}
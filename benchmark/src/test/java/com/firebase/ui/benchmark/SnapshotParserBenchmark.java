@@ -0,0 +1,174 @@
+package com.firebase.ui.benchmark;
+
+import com.firebase.ui.database.ClassSnapshotParser;
+import com.firebase.ui.database.SnapshotParser;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing snapshots with the reflection based {@link ClassSnapshotParser} against the
+ * parser generated for {@link Bean} by the FirebaseUI annotation processor.
+ * <p>
+ * Mocked snapshots can't be mapped to a class, so the snapshots come from a local write to a real
+ * database that is never connected. Runs with Robolectric, as the database needs the Android
+ * framework.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SnapshotParserBenchmark {
+
+    private static final String APP_NAME = "benchmark";
+    private static final long TIMEOUT_MILLIS = 60 * 1000;
+
+    /**
+     * Written snapshots by size, as a local write of 100,000 children takes a while.
+     */
+    private static final Map<Integer, List<DataSnapshot>> SNAPSHOTS = new HashMap<>();
+
+    @Test
+    public void benchmarkClassSnapshotParser() {
+        Benchmark.runAll("ClassSnapshotParser",
+                new ParseWorkload(new ClassSnapshotParser<>(Bean.class)));
+    }
+
+    @Test
+    public void benchmarkGeneratedParser() {
+        Benchmark.runAll("Generated parser", new ParseWorkload(new Bean_DatabaseSnapshotParser()));
+    }
+
+    private static final class ParseWorkload extends Workload {
+        private final SnapshotParser<Bean> mParser;
+
+        private List<DataSnapshot> mSnapshots;
+
+        public ParseWorkload(SnapshotParser<Bean> parser) {
+            mParser = parser;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mSnapshots = getSnapshots(size);
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return mSnapshots.size();
+        }
+
+        @Override
+        protected void run(int operation) {
+            mParser.parseSnapshot(mSnapshots.get(operation));
+        }
+    }
+
+    /**
+     * @return snapshots of the given number of beans, whose parsed values were checked to be the
+     * same with both parsers.
+     */
+    private static List<DataSnapshot> getSnapshots(int size) {
+        List<DataSnapshot> snapshots = SNAPSHOTS.get(size);
+        if (snapshots == null) {
+            snapshots = write(size);
+            check(snapshots);
+            SNAPSHOTS.put(size, snapshots);
+        }
+        return snapshots;
+    }
+
+    private static List<DataSnapshot> write(int size) {
+        DatabaseReference ref = FirebaseDatabase.getInstance(getApp())
+                .getReference()
+                .child("benchmarks")
+                .child("parsers")
+                .child(String.valueOf(size));
+
+        Map<String, Object> beans = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            beans.put(String.format(Locale.US, "bean%06d", i), new Bean(i));
+        }
+        ref.setValue(beans);
+
+        final List<DataSnapshot> snapshots = new ArrayList<>(size);
+        final CountDownLatch latch = new CountDownLatch(1);
+        ref.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    snapshots.add(child);
+                }
+                latch.countDown();
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                throw error.toException();
+            }
+        });
+
+        // Events are posted to the main looper, which only runs when told to
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        try {
+            while (!latch.await(10, TimeUnit.MILLISECONDS)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Timed out waiting for snapshots");
+                }
+                ShadowLooper.runUiThreadTasks();
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (snapshots.size() != size) {
+            throw new IllegalStateException(
+                    "Expected " + size + " snapshots, got " + snapshots.size());
+        }
+        return snapshots;
+    }
+
+    private static void check(List<DataSnapshot> snapshots) {
+        SnapshotParser<Bean> reflective = new ClassSnapshotParser<>(Bean.class);
+        SnapshotParser<Bean> generated = new Bean_DatabaseSnapshotParser();
+        for (DataSnapshot snapshot : snapshots) {
+            Bean expected = reflective.parseSnapshot(snapshot);
+            Bean actual = generated.parseSnapshot(snapshot);
+            if (expected.getNumber() != actual.getNumber()
+                    || !expected.getText().equals(actual.getText())
+                    || expected.isBool() != actual.isBool()) {
+                throw new IllegalStateException("Parsers disagree on " + snapshot.getKey());
+            }
+        }
+    }
+
+    private static FirebaseApp getApp() {
+        try {
+            return FirebaseApp.getInstance(APP_NAME);
+        } catch (IllegalStateException e) {
+            return FirebaseApp.initializeApp(RuntimeEnvironment.application,
+                    new FirebaseOptions.Builder()
+                            .setApplicationId("fir-ui-benchmarks")
+                            .setDatabaseUrl("https://fir-ui-benchmarks.firebaseio.com/")
+                            .build(),
+                    APP_NAME);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.firebase.ui.benchmark;
+
+import com.firebase.ui.common.TreeList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the cost of random-position churn on a {@link TreeList} against an {@link ArrayList},
+ * the default backing list of {@code FirestoreArray}: mixed inserts, removals and moves at random
+ * positions of a loaded list. The tree is also measured while taking a version every 100
+ * operations, as in background mode.
+ */
+public class TreeListBenchmark {
+
+    private static final int OPERATIONS = 20000;
+    private static final int VERSION_INTERVAL = 100;
+
+    @Test
+    public void benchmarkArrayList() {
+        Benchmark.runAll("TreeList baseline, ArrayList", new ChurnWorkload(false, false));
+    }
+
+    @Test
+    public void benchmarkTreeList() {
+        Benchmark.runAll("TreeList", new ChurnWorkload(true, false));
+    }
+
+    @Test
+    public void benchmarkTreeListWithVersions() {
+        Benchmark.runAll("TreeList with versions", new ChurnWorkload(true, true));
+    }
+
+    private static final class ChurnWorkload extends Workload {
+        private static final int ADD = 0;
+        private static final int REMOVE = 1;
+
+        private final boolean mTree;
+        private final boolean mTakeVersions;
+
+        private List<Integer> mList;
+        private int[] mPositions;
+        private int[] mTargets;
+
+        public ChurnWorkload(boolean tree, boolean takeVersions) {
+            mTree = tree;
+            mTakeVersions = takeVersions;
+        }
+
+        @Override
+        protected void setUp(int size) {
+            mList = mTree ? new TreeList<Integer>() : new ArrayList<Integer>(size + OPERATIONS);
+            for (int i = 0; i < size; i++) {
+                mList.add(i);
+            }
+
+            Random random = new Random(size);
+            mPositions = new int[OPERATIONS];
+            mTargets = new int[OPERATIONS];
+            int listSize = size;
+            for (int i = 0; i < OPERATIONS; i++) {
+                switch (i % 3) {
+                    case ADD:
+                        mPositions[i] = random.nextInt(listSize + 1);
+                        listSize++;
+                        break;
+                    case REMOVE:
+                        mPositions[i] = random.nextInt(listSize);
+                        listSize--;
+                        break;
+                    default:
+                        mPositions[i] = random.nextInt(listSize);
+                        mTargets[i] = random.nextInt(listSize);
+                        break;
+                }
+            }
+        }
+
+        @Override
+        protected int getOperationCount() {
+            return OPERATIONS;
+        }
+
+        @Override
+        protected void run(int operation) {
+            int position = mPositions[operation];
+            switch (operation % 3) {
+                case ADD:
+                    mList.add(position, operation);
+                    break;
+                case REMOVE:
+                    mList.remove(position);
+                    break;
+                default:
+                    // A move, as applied by FirestoreArray for a modified document
+                    Integer moved = mList.remove(position);
+                    mList.add(mTargets[operation], moved);
+                    break;
+            }
+
+            if (mTakeVersions && operation % VERSION_INTERVAL == 0) {
+                ((TreeList<Integer>) mList).snapshot();
+            }
+        }
+    }
+}
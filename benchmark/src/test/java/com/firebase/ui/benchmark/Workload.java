@@ -0,0 +1,29 @@
+package com.firebase.ui.benchmark;
+
+/**
+ * A sequence of operations measured by {@link Benchmark}. Each round starts from a fresh state
+ * built by {@link #setUp(int)}, whose cost is not measured.
+ */
+public abstract class Workload {
+
+    /**
+     * Build the state for a new round, e.g. an array already holding {@code size} snapshots and
+     * the events to apply to it.
+     */
+    protected abstract void setUp(int size);
+
+    /**
+     * @return the number of operations in the round that was last set up.
+     */
+    protected abstract int getOperationCount();
+
+    /**
+     * Apply the operation at the given position in the round.
+     */
+    protected abstract void run(int operation);
+
+    /**
+     * Release the state of the round, e.g. by detaching listeners.
+     */
+    protected void tearDown() {}
+}
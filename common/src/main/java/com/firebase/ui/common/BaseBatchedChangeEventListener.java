@@ -0,0 +1,25 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A {@link BaseChangeEventListener} that can receive child events in batches.
+ * <p>
+ * When the observed {@link BaseObservableSnapshotArray} is in batching mode, child events are
+ * buffered and delivered to this listener through {@link #onChildChangeBatch(ChangeEventBatch)}
+ * instead of {@link #onChildChanged(ChangeEventType, Object, int, int)}. Otherwise, this listener
+ * behaves exactly like a {@link BaseChangeEventListener}.
+ *
+ * @see BaseObservableSnapshotArray#setBatchingEnabled(boolean)
+ */
+public interface BaseBatchedChangeEventListener<S, E> extends BaseChangeEventListener<S, E> {
+
+    /**
+     * Callback for a batch of child events. The batch is delivered right before {@link
+     * #onDataChanged()} and contains every child event since the previous batch, in order.
+     *
+     * @param batch the buffered child events.
+     */
+    void onChildChangeBatch(@NonNull ChangeEventBatch<S> batch);
+
+}
@@ -1,20 +1,61 @@
 package com.firebase.ui.common;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.RestrictTo;
-import android.util.LruCache;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.util.LruCache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of {@link BaseSnapshotParser} that caches results, so parsing a snapshot
  * repeatedly is not expensive.
+ * <p>
+ * By default at most {@link #DEFAULT_MAX_SIZE} objects are cached. The cache can instead be
+ * bounded by total weight with a {@link CacheWeigher}, or grow with the array it belongs to, see
+ * {@link #setConfig(CacheConfig)}.
+ * <p>
+ * Snapshots can also be parsed ahead of time on a background thread with {@link #prefetch(Object,
+ * Executor)}, in which case the wrapped parser must be safe to call from any thread.
+ * <p>
+ * The parser also hands out stable 64-bit item IDs derived from snapshot IDs, see {@link
+ * #getStableId(Object)}.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public abstract class BaseCachingSnapshotParser<S, T> implements BaseSnapshotParser<S, T> {
 
-    private static final int MAX_CACHE_SIZE = 100;
+    /**
+     * The default maximum number of cached objects.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100;
 
-    private final LruCache<String, T> mObjectCache = new LruCache<>(MAX_CACHE_SIZE);
     private final BaseSnapshotParser<S, T> mParser;
 
+    /**
+     * Snapshots being parsed in the background, by ID. A result is only cached if its snapshot is
+     * still the one registered here, so invalidated or superseded snapshots are dropped.
+     */
+    private final Map<String, S> mPrefetching = new HashMap<>();
+
+    /**
+     * Stable IDs of the snapshots seen so far, by ID, so that each is only hashed once.
+     */
+    private final Map<String, Long> mStableIds = new HashMap<>();
+
+    private ObjectCache mObjectCache = new ObjectCache(DEFAULT_MAX_SIZE);
+    private CacheWeigher<T> mWeigher;
+    private int mMinSize = DEFAULT_MAX_SIZE;
+    private boolean mSizedToArray;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    private volatile MetricsListener mMetrics;
+
     public BaseCachingSnapshotParser(BaseSnapshotParser<S, T> parser) {
         mParser = parser;
     }
@@ -26,28 +67,222 @@ public abstract class BaseCachingSnapshotParser<S, T> implements BaseSnapshotPar
 
     @Override
     public T parseSnapshot(S snapshot) {
+        MetricsListener metrics = mMetrics;
         String id = getId(snapshot);
-        T result = mObjectCache.get(id);
-        if (result == null) {
-            T object = mParser.parseSnapshot(snapshot);
-            mObjectCache.put(id, object);
-            result = object;
+        T cached;
+        synchronized (this) {
+            cached = mObjectCache.get(id);
+            if (cached != null) {
+                mHitCount++;
+            } else {
+                mMissCount++;
+            }
+        }
+        if (metrics != null) metrics.onCacheLookup(cached != null);
+        if (cached != null) return cached;
+
+        T result = parse(snapshot, metrics);
+        if (result != null) {
+            synchronized (this) {
+                // Any background parse of this snapshot is now redundant
+                mPrefetching.remove(id);
+                mObjectCache.put(id, result);
+            }
         }
         return result;
     }
 
     /**
-     * Clear all data in the cache.
+     * Parse a snapshot on the given {@link Executor} and cache the result, unless the snapshot is
+     * already cached or being parsed. The result is dropped if the snapshot is invalidated or the
+     * cache is cleared in the meantime.
+     */
+    public void prefetch(@NonNull final S snapshot, @NonNull Executor executor) {
+        final String id = getId(snapshot);
+        synchronized (this) {
+            if (mPrefetching.get(id) == snapshot || mObjectCache.get(id) != null) return;
+            mPrefetching.put(id, snapshot);
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!isPrefetching(id, snapshot)) return;
+
+                T result;
+                try {
+                    result = parse(snapshot, mMetrics);
+                } catch (RuntimeException e) {
+                    // Leave it to the main thread to parse the snapshot and surface the error
+                    // where it can be handled.
+                    result = null;
+                }
+
+                synchronized (BaseCachingSnapshotParser.this) {
+                    if (!isPrefetching(id, snapshot)) return;
+                    mPrefetching.remove(id);
+                    if (result != null && mObjectCache.get(id) == null) {
+                        mObjectCache.put(id, result);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return a 64-bit ID for the snapshot's item, for {@code RecyclerView.Adapter#getItemId(int)}.
+     * It only depends on {@link #getId(Object)}, so it survives changes and moves, and is computed
+     * once per snapshot ID. Collisions between the IDs of an array are vanishingly unlikely.
+     */
+    public synchronized long getStableId(S snapshot) {
+        String id = getId(snapshot);
+        Long stableId = mStableIds.get(id);
+        if (stableId == null) {
+            stableId = hash(id);
+            mStableIds.put(id, stableId);
+        }
+        return stableId;
+    }
+
+    /**
+     * Clear all data in the cache. Statistics are kept, and a cache sized to its array shrinks
+     * back to its configured size.
      */
-    public void clear() {
-        mObjectCache.evictAll();
+    public synchronized void clear() {
+        // Replace rather than evict so that clearing is not counted as evictions
+        mObjectCache = new ObjectCache(mMinSize);
+        mPrefetching.clear();
+        mStableIds.clear();
     }
 
     /**
      * Invalidate the cache for a certain document.
      */
-    public void invalidate(S snapshot) {
-        mObjectCache.remove(getId(snapshot));
+    public synchronized void invalidate(S snapshot) {
+        String id = getId(snapshot);
+        mObjectCache.remove(id);
+        mPrefetching.remove(id);
+    }
+
+    /**
+     * Forget everything about a snapshot that left the array, including its stable ID.
+     */
+    public synchronized void remove(S snapshot) {
+        invalidate(snapshot);
+        mStableIds.remove(getId(snapshot));
+    }
+
+    /**
+     * @return true if the cache can hold {@code count} objects. Always true for a cache bounded
+     * by weight, as the weight of objects that have not been parsed yet is unknown.
+     */
+    public synchronized boolean canHold(int count) {
+        return mWeigher != null || mSizedToArray || count <= mObjectCache.maxSize();
+    }
+
+    /**
+     * Apply a new {@link CacheConfig}, keeping as many of the currently cached objects as fit.
+     */
+    public synchronized void setConfig(@NonNull CacheConfig<T> config) {
+        mMinSize = config.getMaxSize();
+        mWeigher = config.getWeigher();
+        mSizedToArray = config.isSizedToArray() && mWeigher == null;
+        resize(mMinSize);
+    }
+
+    /**
+     * Called by the owning array when it grows. If the cache is sized to the array it makes room
+     * for at least {@code arraySize} objects, growing geometrically so that loading a long list
+     * only copies the cache a logarithmic number of times.
+     */
+    public synchronized void ensureCapacity(int arraySize) {
+        int maxSize = mObjectCache.maxSize();
+        if (mSizedToArray && arraySize > maxSize) {
+            resize(Math.max(arraySize, maxSize + (maxSize >> 1)));
+        }
+    }
+
+    /**
+     * Report cache lookups and parse times to the given listener. Pass null to stop reporting.
+     */
+    public void setMetricsListener(@Nullable MetricsListener metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * @return a snapshot of the cache's hit, miss and eviction counts and its current size.
+     */
+    @NonNull
+    public synchronized CacheStats getStats() {
+        return new CacheStats(
+                mHitCount, mMissCount, mEvictionCount, mObjectCache.size(), mObjectCache.maxSize());
+    }
+
+    private T parse(S snapshot, MetricsListener metrics) {
+        if (metrics == null) return mParser.parseSnapshot(snapshot);
+
+        metrics.onOperationStarted(MetricsListener.Operation.PARSE);
+        long start = System.nanoTime();
+        try {
+            return mParser.parseSnapshot(snapshot);
+        } finally {
+            metrics.onOperationFinished(
+                    MetricsListener.Operation.PARSE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the ID's characters, followed by MurmurHash3's finalizer so that IDs
+     * which only differ in their last characters, like push IDs, spread over all 64 bits. Never
+     * returns -1, which RecyclerView reserves for items without an ID.
+     */
+    @VisibleForTesting
+    static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == -1 ? 0 : hash;
     }
 
+    private synchronized boolean isPrefetching(String id, S snapshot) {
+        return mPrefetching.get(id) == snapshot;
+    }
+
+    private void resize(int maxSize) {
+        ObjectCache old = mObjectCache;
+        mObjectCache = new ObjectCache(maxSize);
+
+        // The snapshot is ordered from least to most recently used, so re-inserting it keeps the
+        // access order and evicts the oldest entries first if the cache shrinks.
+        for (Map.Entry<String, T> entry : old.snapshot().entrySet()) {
+            mObjectCache.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private final class ObjectCache extends LruCache<String, T> {
+        public ObjectCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(@NonNull String id, @NonNull T object) {
+            return mWeigher == null ? 1 : mWeigher.weigh(id, object);
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted,
+                                    @NonNull String id,
+                                    @NonNull T oldValue,
+                                    @Nullable T newValue) {
+            if (evicted) mEvictionCount++;
+        }
+    }
 }
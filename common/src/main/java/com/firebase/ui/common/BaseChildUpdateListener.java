@@ -0,0 +1,29 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A {@link BaseChangeEventListener} that is told what a changed child looked like before the
+ * change.
+ * <p>
+ * When the observed {@link BaseObservableSnapshotArray} knows the previous snapshot of a changed
+ * child, this listener receives the change through {@link #onChildUpdated(Object, Object, int,
+ * int)} instead of {@link #onChildChanged(ChangeEventType, Object, int, int)}. Otherwise, this
+ * listener behaves exactly like a {@link BaseChangeEventListener}.
+ *
+ * @see BaseFieldDiffer
+ */
+public interface BaseChildUpdateListener<S, E> extends BaseChangeEventListener<S, E> {
+
+    /**
+     * Callback for a {@link ChangeEventType#CHANGED} child event.
+     *
+     * @param oldSnapshot the snapshot of the child before the change.
+     * @param newSnapshot the snapshot of the child after the change.
+     * @param newIndex    the index of the child.
+     * @param oldIndex    the index of the child as reported by the array, see {@link
+     *                    #onChildChanged(ChangeEventType, Object, int, int)}.
+     */
+    void onChildUpdated(@NonNull S oldSnapshot, @NonNull S newSnapshot, int newIndex, int oldIndex);
+
+}
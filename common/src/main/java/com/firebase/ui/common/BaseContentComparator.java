@@ -0,0 +1,20 @@
+package com.firebase.ui.common;
+
+/**
+ * Decides whether two snapshots of the same item have the same content, so that an adapter can
+ * skip rebinding items that did not change.
+ *
+ * @param <S> the snapshot class.
+ */
+public interface BaseContentComparator<S> {
+
+    /**
+     * Called with two snapshots that share the same key or ID.
+     *
+     * @param oldSnapshot the snapshot that is currently displayed.
+     * @param newSnapshot the snapshot that is about to be displayed.
+     * @return true if both snapshots would be displayed identically, false otherwise.
+     */
+    boolean areContentsTheSame(S oldSnapshot, S newSnapshot);
+
+}
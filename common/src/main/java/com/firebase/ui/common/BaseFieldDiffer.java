@@ -0,0 +1,27 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import java.util.Set;
+
+/**
+ * Finds the fields that differ between two snapshots of the same item, so that an adapter can
+ * pass them to {@code notifyItemChanged(int, Object)} as a payload and rebind only the views that
+ * show them.
+ *
+ * @param <S> the snapshot class.
+ */
+public interface BaseFieldDiffer<S> {
+
+    /**
+     * Called with two snapshots that share the same key or ID.
+     *
+     * @param oldSnapshot the snapshot that is currently displayed.
+     * @param newSnapshot the snapshot that is about to be displayed.
+     * @return the paths of the fields that were added, removed or changed, along with the paths
+     * of all their parents, or an empty set if the change can't be narrowed down to fields.
+     */
+    @NonNull
+    Set<String> getChangedFields(@NonNull S oldSnapshot, @NonNull S newSnapshot);
+
+}
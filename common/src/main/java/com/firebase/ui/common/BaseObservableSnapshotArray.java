@@ -1,11 +1,21 @@
 package com.firebase.ui.common;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+import android.support.annotation.VisibleForTesting;
 
 import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Exposes a collection of {@link S} items in a database as a {@link List} of {@link T} objects. To
@@ -19,6 +29,12 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEventListener<S, E>, T>
         extends AbstractList<T> {
 
+    /**
+     * Maximum number of mutations applied in background mode before a version is published, even
+     * if more mutations are queued.
+     */
+    private static final int MAX_UPDATES_PER_VERSION = 500;
+
     private final List<L> mListeners = new CopyOnWriteArrayList<>();
     private final BaseCachingSnapshotParser<S, T> mCachingParser;
 
@@ -28,6 +44,51 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      */
     private boolean mHasDataChanged = false;
 
+    /**
+     * True if child events should be buffered for {@link BaseBatchedChangeEventListener}s.
+     */
+    private volatile boolean mBatchingEnabled = false;
+    private final List<ChangeEvent<S>> mPendingEvents = new ArrayList<>();
+
+    /**
+     * Executor on which snapshots are parsed ahead of time, null if they are parsed on demand.
+     */
+    private Executor mPrefetchExecutor;
+
+    /**
+     * Dispatcher that defers mutations to the next frame, null if they are applied immediately.
+     */
+    private FrameDispatcher mDispatcher;
+    /**
+     * Incremented when the array is reset, so that mutations queued before are dropped.
+     */
+    private volatile int mGeneration;
+    private boolean mApplyingMutation;
+    private boolean mDataChangedPending;
+
+    /**
+     * In background mode, mutations are applied to {@link #getSnapshots()} on {@link
+     * #mUpdateExecutor} and readers on the main thread see {@link #mPublishedSnapshots}, an
+     * immutable copy published after each batch of mutations together with the notifications the
+     * batch recorded.
+     */
+    private Executor mUpdateExecutor;
+    private Executor mMainExecutor;
+    private volatile List<S> mPublishedSnapshots = Collections.emptyList();
+    private final AtomicInteger mQueuedUpdates = new AtomicInteger();
+    // Only accessed on the update thread
+    private List<Runnable> mUnpublishedNotifications = new ArrayList<>();
+    private int mUnpublishedUpdates;
+    private int mUpdateGeneration;
+
+    /**
+     * Listener metrics are reported to, null if they are not recorded. {@link #mReceivedNanos} is
+     * the time the database callback that caused the mutation being applied was received, 0 if
+     * unknown.
+     */
+    private MetricsListener mMetrics;
+    private long mReceivedNanos;
+
     /**
      * Create an BaseObservableSnapshotArray with a custom {@link BaseSnapshotParser}.
      *
@@ -47,11 +108,50 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
 
     @Override
     public int size() {
-        return getSnapshots().size();
+        return getVisibleSnapshots().size();
     }
 
     public S getSnapshot(int index) {
-        return getSnapshots().get(index);
+        return getVisibleSnapshots().get(index);
+    }
+
+    /**
+     * @return an immutable copy of the snapshots currently in the array.
+     */
+    @NonNull
+    public List<S> copySnapshots() {
+        if (mUpdateExecutor != null) return mPublishedSnapshots;
+        return copy(getSnapshots());
+    }
+
+    /**
+     * @return an immutable copy of the given snapshots, taken in O(1) if they are in a {@link
+     * TreeList} or {@link KeyIndexedList}.
+     */
+    private List<S> copy(List<S> snapshots) {
+        if (snapshots instanceof TreeList) {
+            return ((TreeList<S>) snapshots).snapshot();
+        } else if (snapshots instanceof KeyIndexedList) {
+            return ((KeyIndexedList<S>) snapshots).snapshot();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(snapshots));
+    }
+
+    /**
+     * @return the snapshots seen by readers of the array: the last published version in
+     * background mode, the snapshots themselves otherwise.
+     */
+    private List<S> getVisibleSnapshots() {
+        return mUpdateExecutor == null ? getSnapshots() : mPublishedSnapshots;
+    }
+
+    /**
+     * Get the caching parser used to convert snapshots in this array to model objects.
+     */
+    @NonNull
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public BaseCachingSnapshotParser<S, T> getCachingParser() {
+        return mCachingParser;
     }
 
     /**
@@ -60,6 +160,9 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      * attachment, a {@link BaseChangeEventListener#onDataChanged()} event if one has occurred, and
      * then receive all future child events.
      * <p>
+     * In batching mode, a {@link BaseBatchedChangeEventListener} receives the existing items as a
+     * single {@link ChangeEventBatch} instead.
+     * <p>
      * If this is the first listener, {@link #onCreate()} will be called.
      */
     @CallSuper
@@ -67,11 +170,24 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         Preconditions.checkNotNull(listener);
         boolean wasListening = isListening();
 
+        // The new listener is caught up to the current state below, so it must not receive
+        // events that have already been applied.
+        dispatchPendingChanges();
         mListeners.add(listener);
 
         // Catch up new listener to existing state
-        for (int i = 0; i < size(); i++) {
-            listener.onChildChanged(ChangeEventType.ADDED, getSnapshot(i), i, -1);
+        if (isBatching(listener)) {
+            if (!isEmpty()) {
+                List<ChangeEvent<S>> events = new ArrayList<>(size());
+                for (int i = 0; i < size(); i++) {
+                    events.add(new ChangeEvent<>(ChangeEventType.ADDED, getSnapshot(i), i, -1));
+                }
+                asBatchedListener(listener).onChildChangeBatch(new ChangeEventBatch<>(events));
+            }
+        } else {
+            for (int i = 0; i < size(); i++) {
+                listener.onChildChanged(ChangeEventType.ADDED, getSnapshot(i), i, -1);
+            }
         }
         if (mHasDataChanged) {
             listener.onDataChanged();
@@ -123,11 +239,333 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      */
     @CallSuper
     protected void onDestroy() {
+        mGeneration++;
+        mDataChangedPending = false;
         mHasDataChanged = false;
-        getSnapshots().clear();
+        mPendingEvents.clear();
+        mPublishedSnapshots = Collections.emptyList();
+        resetState(new Runnable() {
+            @Override
+            public void run() {
+                getSnapshots().clear();
+            }
+        });
         mCachingParser.clear();
     }
 
+    /**
+     * Parse snapshots on the given {@link Executor} ahead of time, so that {@link #get(int)} does
+     * not have to parse them on the main thread. Added and changed snapshots are parsed as they
+     * arrive while the whole array fits in the cache, other snapshots can be requested with
+     * {@link #prefetch(int)}. Pass null to parse snapshots on demand only.
+     * <p>
+     * The {@link BaseSnapshotParser} used by this array must be safe to call from any thread.
+     */
+    public void setPrefetchExecutor(@Nullable Executor executor) {
+        mPrefetchExecutor = executor;
+    }
+
+    /**
+     * @return the {@link Executor} snapshots are parsed on ahead of time, if any.
+     * @see #setPrefetchExecutor(Executor)
+     */
+    @Nullable
+    public Executor getPrefetchExecutor() {
+        return mPrefetchExecutor;
+    }
+
+    /**
+     * Parse the snapshot at the given index in the background, if a prefetch executor is set and
+     * the snapshot is not cached yet.
+     *
+     * @see #setPrefetchExecutor(Executor)
+     */
+    public void prefetch(int index) {
+        if (mPrefetchExecutor != null) {
+            mCachingParser.prefetch(getSnapshot(index), mPrefetchExecutor);
+        }
+    }
+
+    /**
+     * Apply mutations, and notify listeners of them, at the start of the next frame instead of
+     * as soon as database events arrive. Data changed events of all the mutations applied in a
+     * frame are merged into one. Pass null to apply mutations immediately.
+     *
+     * @throws IllegalStateException if the array is listening.
+     * @see FrameDispatcher
+     */
+    public void setDispatcher(@Nullable FrameDispatcher dispatcher) {
+        if (isListening()) {
+            throw new IllegalStateException(
+                    "The dispatcher cannot be changed while the array is listening.");
+        }
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * @return the {@link FrameDispatcher} mutations are deferred to, if any.
+     * @see #setDispatcher(FrameDispatcher)
+     */
+    @Nullable
+    public FrameDispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    /**
+     * Report the array's metrics, and those of its parser, to the given listener. Pass null to
+     * stop recording metrics, which is the default and costs nothing.
+     *
+     * @throws IllegalStateException if the array is listening.
+     * @see TraceMetricsListener
+     */
+    public void setMetricsListener(@Nullable MetricsListener metrics) {
+        if (isListening()) {
+            throw new IllegalStateException(
+                    "The metrics listener cannot be changed while the array is listening.");
+        }
+        mMetrics = metrics;
+        mCachingParser.setMetricsListener(metrics);
+    }
+
+    /**
+     * @return the {@link MetricsListener} metrics are reported to, if any.
+     * @see #setMetricsListener(MetricsListener)
+     */
+    @Nullable
+    public MetricsListener getMetricsListener() {
+        return mMetrics;
+    }
+
+    /**
+     * Apply mutations on the given {@link Executor} instead of the main thread. Each batch of
+     * mutations is published to the main thread as an immutable list once the executor has no more
+     * mutations queued, so readers always see a consistent version of the array without locking.
+     * Listeners are notified of a batch's events when it is published, if a dispatcher is set, in
+     * the next frame. Pass null to apply mutations on the main thread.
+     * <p>
+     * The executor may run other work, mutations are still applied one at a time in order. The
+     * {@link BaseSnapshotParser} used by this array is still only called on the main thread, or on
+     * the prefetch executor.
+     *
+     * @throws IllegalStateException if the array is listening.
+     * @see #setDispatcher(FrameDispatcher)
+     */
+    public void setUpdateExecutor(@Nullable Executor executor) {
+        if (isListening()) {
+            throw new IllegalStateException(
+                    "The update executor cannot be changed while the array is listening.");
+        }
+        if (executor == null) {
+            mUpdateExecutor = null;
+        } else {
+            mUpdateExecutor = new SerialExecutor(executor);
+            if (mMainExecutor == null) {
+                final Handler handler = new Handler(Looper.getMainLooper());
+                mMainExecutor = new Executor() {
+                    @Override
+                    public void execute(@NonNull Runnable command) {
+                        handler.post(command);
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * Set the executor versions are published on in background mode, instead of the main thread.
+     */
+    @VisibleForTesting
+    void setMainExecutor(@NonNull Executor executor) {
+        mMainExecutor = executor;
+    }
+
+    /**
+     * @return true if mutations are applied in the background.
+     * @see #setUpdateExecutor(Executor)
+     */
+    public boolean isUpdatingInBackground() {
+        return mUpdateExecutor != null;
+    }
+
+    /**
+     * Apply a mutation of the array, triggered by a database event, through the dispatcher if
+     * one is set, or on the update executor in background mode. Mutations queued while the array
+     * is listening are dropped if it stops.
+     * <p>
+     * In background mode, the mutation must only touch state that is also mutated through this
+     * method or {@link #resetState(Runnable)}.
+     */
+    protected final void dispatch(@NonNull Runnable mutation) {
+        final Runnable task = mMetrics == null ? mutation : withReceivedTime(mutation);
+        final int generation = mGeneration;
+        if (mUpdateExecutor != null) {
+            mQueuedUpdates.incrementAndGet();
+            mUpdateExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (generation == mGeneration) {
+                            mUpdateGeneration = generation;
+                            task.run();
+                            mUnpublishedUpdates++;
+                        }
+                    } finally {
+                        onUpdateApplied();
+                    }
+                }
+            });
+        } else if (mDispatcher == null) {
+            task.run();
+        } else {
+            mDispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation == mGeneration) applyMutation(task);
+                }
+            });
+        }
+    }
+
+    /**
+     * Wrap a mutation so that the notifications it triggers know when its database callback was
+     * received.
+     */
+    private Runnable withReceivedTime(final Runnable mutation) {
+        final long received = System.nanoTime();
+        return new Runnable() {
+            @Override
+            public void run() {
+                long previous = mReceivedNanos;
+                mReceivedNanos = received;
+                try {
+                    mutation.run();
+                } finally {
+                    mReceivedNanos = previous;
+                }
+            }
+        };
+    }
+
+    /**
+     * Record a child event received from the database, if metrics are recorded.
+     */
+    protected final void onEventReceived(@NonNull ChangeEventType type) {
+        if (mMetrics != null) mMetrics.onEventReceived(type);
+    }
+
+    /**
+     * Start timing an operation, if metrics are recorded.
+     *
+     * @return the start time to pass to {@link #finishOperation(MetricsListener.Operation, long)}.
+     */
+    protected final long startOperation(@NonNull MetricsListener.Operation operation) {
+        if (mMetrics == null) return 0;
+        mMetrics.onOperationStarted(operation);
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish timing an operation started with {@link #startOperation(MetricsListener.Operation)}.
+     */
+    protected final void finishOperation(@NonNull MetricsListener.Operation operation,
+                                         long startNanos) {
+        if (mMetrics != null) {
+            mMetrics.onOperationFinished(operation, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Clear state used by mutations, e.g. in {@link #onDestroy()}. In background mode the state is
+     * cleared on the update executor after the mutations already queued, otherwise immediately.
+     */
+    protected final void resetState(@NonNull final Runnable reset) {
+        if (mUpdateExecutor == null) {
+            reset.run();
+            return;
+        }
+
+        final int generation = mGeneration;
+        mQueuedUpdates.incrementAndGet();
+        mUpdateExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mUpdateGeneration = generation;
+                    mUnpublishedNotifications.clear();
+                    mUnpublishedUpdates = 0;
+                    reset.run();
+                } finally {
+                    onUpdateApplied();
+                }
+            }
+        });
+    }
+
+    private void applyMutation(Runnable mutation) {
+        boolean wasApplying = mApplyingMutation;
+        mApplyingMutation = true;
+        try {
+            mutation.run();
+        } finally {
+            mApplyingMutation = wasApplying;
+        }
+    }
+
+    /**
+     * Called on the update thread after each mutation, publishes a version once no more mutations
+     * are queued, or every {@link #MAX_UPDATES_PER_VERSION} mutations under a steady stream.
+     */
+    private void onUpdateApplied() {
+        boolean drained = mQueuedUpdates.decrementAndGet() == 0;
+        if (mUnpublishedUpdates == 0
+                || !drained && mUnpublishedUpdates < MAX_UPDATES_PER_VERSION) {
+            return;
+        }
+
+        final List<S> version = copy(getSnapshots());
+        final List<Runnable> notifications = mUnpublishedNotifications;
+        final int generation = mUpdateGeneration;
+        mUnpublishedNotifications = new ArrayList<>();
+        mUnpublishedUpdates = 0;
+
+        final Runnable publish = new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) return;
+
+                mPublishedSnapshots = version;
+                for (Runnable notification : notifications) {
+                    notification.run();
+                }
+            }
+        };
+        if (mDispatcher == null) {
+            mMainExecutor.execute(publish);
+        } else {
+            // Merge the data changed events of versions published in the same frame
+            mMainExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mDispatcher.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            applyMutation(publish);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * @return statistics of the cache of parsed objects.
+     * @see CacheConfig
+     */
+    @NonNull
+    public CacheStats getCacheStats() {
+        return mCachingParser.getStats();
+    }
+
     /**
      * @return true if the array is listening for change events from the Firebase database, false
      * otherwise
@@ -143,20 +581,171 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         return mListeners.contains(listener);
     }
 
+    /**
+     * Enable or disable batching mode.
+     * <p>
+     * In batching mode, child events for listeners implementing {@link
+     * BaseBatchedChangeEventListener} are buffered and delivered as a single {@link
+     * ChangeEventBatch} right before the next {@link BaseChangeEventListener#onDataChanged()}.
+     * Other listeners keep receiving every child event as it happens.
+     * <p>
+     * Disabling batching delivers any buffered events immediately.
+     */
+    public void setBatchingEnabled(boolean enabled) {
+        if (!enabled) dispatchPendingChanges();
+        mBatchingEnabled = enabled;
+    }
+
+    /**
+     * @return true if the array is in batching mode, false otherwise.
+     * @see #setBatchingEnabled(boolean)
+     */
+    public boolean isBatchingEnabled() {
+        return mBatchingEnabled;
+    }
+
+    /**
+     * @return true if every listener receives child events in batches, so that none of them
+     * observes the array between two child events of a batch.
+     * @see #setBatchingEnabled(boolean)
+     */
+    protected final boolean isEveryListenerBatching() {
+        if (!mBatchingEnabled) return false;
+        for (L listener : mListeners) {
+            if (!isBatching(listener)) return false;
+        }
+        return true;
+    }
+
     protected final void notifyOnChildChanged(ChangeEventType type,
                                               S snapshot,
                                               int newIndex,
                                               int oldIndex) {
-        if (type == ChangeEventType.CHANGED || type == ChangeEventType.REMOVED) {
-            mCachingParser.invalidate(snapshot);
-        }
+        notifyOnChildChanged(type, snapshot, newIndex, oldIndex, null);
+    }
 
-        for (L listener : mListeners) {
-            listener.onChildChanged(type, snapshot, newIndex, oldIndex);
+    /**
+     * Notify listeners of a {@link ChangeEventType#CHANGED} event for a child whose previous
+     * snapshot is known, so that {@link BaseChildUpdateListener}s can tell what changed.
+     */
+    protected final void notifyOnChildUpdated(@NonNull S oldSnapshot,
+                                              @NonNull S newSnapshot,
+                                              int newIndex,
+                                              int oldIndex) {
+        notifyOnChildChanged(ChangeEventType.CHANGED, newSnapshot, newIndex, oldIndex, oldSnapshot);
+    }
+
+    private void notifyOnChildChanged(final ChangeEventType type,
+                                      final S snapshot,
+                                      final int newIndex,
+                                      final int oldIndex,
+                                      final S oldSnapshot) {
+        final long received = mReceivedNanos;
+        if (mUpdateExecutor != null) {
+            mUnpublishedNotifications.add(new Runnable() {
+                @Override
+                public void run() {
+                    deliverChildChanged(type, snapshot, newIndex, oldIndex, oldSnapshot, received);
+                }
+            });
+        } else {
+            deliverChildChanged(type, snapshot, newIndex, oldIndex, oldSnapshot, received);
         }
     }
 
     protected final void notifyOnDataChanged() {
+        if (mUpdateExecutor != null) {
+            mUnpublishedNotifications.add(new Runnable() {
+                @Override
+                public void run() {
+                    deliverDataChanged();
+                }
+            });
+        } else {
+            deliverDataChanged();
+        }
+    }
+
+    protected final void notifyOnError(final E e) {
+        if (mUpdateExecutor != null) {
+            mUnpublishedNotifications.add(new Runnable() {
+                @Override
+                public void run() {
+                    deliverError(e);
+                }
+            });
+        } else {
+            deliverError(e);
+        }
+    }
+
+    private void deliverChildChanged(ChangeEventType type,
+                                     S snapshot,
+                                     int newIndex,
+                                     int oldIndex,
+                                     S oldSnapshot,
+                                     long receivedNanos) {
+        long start = startOperation(MetricsListener.Operation.FAN_OUT);
+        try {
+            if (type == ChangeEventType.CHANGED) {
+                mCachingParser.invalidate(snapshot);
+            } else if (type == ChangeEventType.REMOVED) {
+                mCachingParser.remove(snapshot);
+            } else if (type == ChangeEventType.ADDED) {
+                mCachingParser.ensureCapacity(size());
+            }
+
+            if (mPrefetchExecutor != null
+                    && (type == ChangeEventType.ADDED || type == ChangeEventType.CHANGED)
+                    && mCachingParser.canHold(size())) {
+                mCachingParser.prefetch(snapshot, mPrefetchExecutor);
+            }
+
+            boolean buffered = false;
+            for (L listener : mListeners) {
+                if (isBatching(listener)) {
+                    buffered = true;
+                } else if (oldSnapshot != null && listener instanceof BaseChildUpdateListener) {
+                    asUpdateListener(listener)
+                            .onChildUpdated(oldSnapshot, snapshot, newIndex, oldIndex);
+                } else {
+                    listener.onChildChanged(type, snapshot, newIndex, oldIndex);
+                }
+            }
+
+            if (buffered) {
+                mPendingEvents.add(
+                        new ChangeEvent<>(type, snapshot, newIndex, oldIndex, oldSnapshot));
+            }
+        } finally {
+            // Every started operation is finished, even if a listener throws
+            finishOperation(MetricsListener.Operation.FAN_OUT, start);
+        }
+
+        if (mMetrics != null && receivedNanos != 0) {
+            mMetrics.onEventDelivered(type, System.nanoTime() - receivedNanos);
+        }
+    }
+
+    private void deliverDataChanged() {
+        if (mApplyingMutation) {
+            // Notify once for every mutation applied in this frame
+            if (!mDataChangedPending) {
+                mDataChangedPending = true;
+                final int generation = mGeneration;
+                mDispatcher.runAfterFlush(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration || !mDataChangedPending) return;
+                        mDataChangedPending = false;
+                        deliverDataChanged();
+                    }
+                });
+            }
+            return;
+        }
+
+        dispatchPendingChanges();
         mHasDataChanged = true;
 
         for (L listener : mListeners) {
@@ -164,9 +753,74 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         }
     }
 
-    protected final void notifyOnError(E e) {
+    private void deliverError(E e) {
+        dispatchPendingChanges();
+
         for (L listener : mListeners) {
             listener.onError(e);
         }
     }
+
+    /**
+     * Deliver all buffered child events to the batching listeners.
+     */
+    private void dispatchPendingChanges() {
+        if (mPendingEvents.isEmpty()) return;
+
+        ChangeEventBatch<S> batch = new ChangeEventBatch<>(new ArrayList<>(mPendingEvents));
+        mPendingEvents.clear();
+
+        for (L listener : mListeners) {
+            if (isBatching(listener)) {
+                asBatchedListener(listener).onChildChangeBatch(batch);
+            }
+        }
+    }
+
+    private boolean isBatching(L listener) {
+        return mBatchingEnabled && listener instanceof BaseBatchedChangeEventListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BaseBatchedChangeEventListener<S, E> asBatchedListener(L listener) {
+        return (BaseBatchedChangeEventListener<S, E>) listener;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BaseChildUpdateListener<S, E> asUpdateListener(L listener) {
+        return (BaseChildUpdateListener<S, E>) listener;
+    }
+
+    /**
+     * Runs tasks one at a time in order on another executor.
+     */
+    private static final class SerialExecutor implements Executor {
+        private final Executor mExecutor;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private Runnable mActive;
+
+        public SerialExecutor(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull final Runnable task) {
+            mTasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if (mActive == null) scheduleNext();
+        }
+
+        private synchronized void scheduleNext() {
+            mActive = mTasks.poll();
+            if (mActive != null) mExecutor.execute(mActive);
+        }
+    }
 }
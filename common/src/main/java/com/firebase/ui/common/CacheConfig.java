@@ -0,0 +1,95 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Configuration for the cache of parsed model objects in a {@link BaseCachingSnapshotParser}.
+ *
+ * @param <T> the model object class.
+ * @see Builder
+ */
+public final class CacheConfig<T> {
+
+    private final int mMaxSize;
+    private final CacheWeigher<T> mWeigher;
+    private final boolean mSizedToArray;
+
+    private CacheConfig(int maxSize, @Nullable CacheWeigher<T> weigher, boolean sizedToArray) {
+        mMaxSize = maxSize;
+        mWeigher = weigher;
+        mSizedToArray = sizedToArray;
+    }
+
+    /**
+     * Get the maximum number of cached objects, or their maximum total weight if a {@link
+     * CacheWeigher} is set.
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Get the (optional) {@link CacheWeigher}.
+     */
+    @Nullable
+    public CacheWeigher<T> getWeigher() {
+        return mWeigher;
+    }
+
+    /**
+     * Returns true if the cache grows to hold an object for every item in the array.
+     */
+    public boolean isSizedToArray() {
+        return mSizedToArray;
+    }
+
+    /**
+     * Builder for {@link CacheConfig}.
+     *
+     * @param <T> the model object class.
+     */
+    public static final class Builder<T> {
+
+        private int mMaxSize = BaseCachingSnapshotParser.DEFAULT_MAX_SIZE;
+        private CacheWeigher<T> mWeigher;
+        private boolean mSizedToArray;
+
+        /**
+         * Set the maximum number of cached objects, or their maximum total weight if a {@link
+         * CacheWeigher} is set. Defaults to {@link BaseCachingSnapshotParser#DEFAULT_MAX_SIZE}.
+         */
+        public Builder<T> setMaxSize(int maxSize) {
+            if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive.");
+
+            mMaxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Weigh each cached object with a {@link CacheWeigher} and bound the cache by the total
+         * weight instead of the number of objects.
+         */
+        public Builder<T> setWeigher(@NonNull CacheWeigher<T> weigher) {
+            mWeigher = Preconditions.checkNotNull(weigher);
+            return this;
+        }
+
+        /**
+         * Grow the cache as the array grows, so that every item in the array can stay cached.
+         * The maximum size then acts as a lower bound. Only applies to entry-count sizing, it is
+         * ignored if a {@link CacheWeigher} is set.
+         */
+        public Builder<T> setSizedToArray(boolean sizedToArray) {
+            mSizedToArray = sizedToArray;
+            return this;
+        }
+
+        /**
+         * Build a {@link CacheConfig} from the provided arguments.
+         */
+        public CacheConfig<T> build() {
+            return new CacheConfig<>(mMaxSize, mWeigher, mSizedToArray);
+        }
+    }
+}
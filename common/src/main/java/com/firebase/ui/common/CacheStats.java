@@ -0,0 +1,75 @@
+package com.firebase.ui.common;
+
+import java.util.Locale;
+
+/**
+ * A point-in-time snapshot of the statistics of a {@link BaseCachingSnapshotParser}'s cache.
+ */
+public final class CacheStats {
+
+    private final long mHitCount;
+    private final long mMissCount;
+    private final long mEvictionCount;
+    private final int mSize;
+    private final int mMaxSize;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, int size, int maxSize) {
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mEvictionCount = evictionCount;
+        mSize = size;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @return the number of times a parsed object was found in the cache.
+     */
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of times a snapshot had to be parsed.
+     */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the number of objects evicted to keep the cache within its maximum size.
+     */
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * @return the ratio of hits to lookups, or 0 if there were no lookups.
+     */
+    public double getHitRate() {
+        long lookups = mHitCount + mMissCount;
+        return lookups == 0 ? 0 : (double) mHitCount / lookups;
+    }
+
+    /**
+     * @return the number of cached objects, or their total weight if a {@link CacheWeigher} is
+     * used.
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return the maximum size of the cache.
+     * @see #getSize()
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "CacheStats{hits=%d, misses=%d, evictions=%d, hitRate=%.2f, size=%d/%d}",
+                mHitCount, mMissCount, mEvictionCount, getHitRate(), mSize, mMaxSize);
+    }
+}
@@ -0,0 +1,19 @@
+package com.firebase.ui.common;
+
+/**
+ * Calculates the weight of a parsed model object, so that a {@link BaseCachingSnapshotParser}
+ * can bound its cache by an approximation of memory use rather than by number of entries.
+ *
+ * @param <T> the model object class.
+ */
+public interface CacheWeigher<T> {
+
+    /**
+     * @param id     the ID of the snapshot the object was parsed from.
+     * @param object the parsed object.
+     * @return the weight of the object, for example its approximate size in bytes. Must not be
+     * negative and must not change while the object is cached.
+     */
+    int weigh(String id, T object);
+
+}
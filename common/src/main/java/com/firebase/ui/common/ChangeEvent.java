@@ -0,0 +1,81 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.Nullable;
+
+/**
+ * A single child event in an {@link BaseObservableSnapshotArray}, as it would have been delivered
+ * to {@link BaseChangeEventListener#onChildChanged(ChangeEventType, Object, int, int)}.
+ *
+ * @param <S> the snapshot class.
+ */
+public final class ChangeEvent<S> {
+
+    private final ChangeEventType mType;
+    private final S mSnapshot;
+    private final int mNewIndex;
+    private final int mOldIndex;
+    private final S mOldSnapshot;
+
+    public ChangeEvent(ChangeEventType type, S snapshot, int newIndex, int oldIndex) {
+        this(type, snapshot, newIndex, oldIndex, null);
+    }
+
+    public ChangeEvent(ChangeEventType type,
+                       S snapshot,
+                       int newIndex,
+                       int oldIndex,
+                       @Nullable S oldSnapshot) {
+        mType = type;
+        mSnapshot = snapshot;
+        mNewIndex = newIndex;
+        mOldIndex = oldIndex;
+        mOldSnapshot = oldSnapshot;
+    }
+
+    /**
+     * @return the type of the event.
+     */
+    public ChangeEventType getType() {
+        return mType;
+    }
+
+    /**
+     * @return the snapshot of the changed child.
+     */
+    public S getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * @return the new index of the element, or -1 if it is no longer present.
+     */
+    public int getNewIndex() {
+        return mNewIndex;
+    }
+
+    /**
+     * @return the previous index of the element, or -1 if it was not previously tracked.
+     */
+    public int getOldIndex() {
+        return mOldIndex;
+    }
+
+    /**
+     * @return the snapshot of the child before a {@link ChangeEventType#CHANGED} event, or null if
+     * the array didn't know it.
+     * @see BaseChildUpdateListener
+     */
+    @Nullable
+    public S getOldSnapshot() {
+        return mOldSnapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "type=" + mType +
+                ", newIndex=" + mNewIndex +
+                ", oldIndex=" + mOldIndex +
+                '}';
+    }
+}
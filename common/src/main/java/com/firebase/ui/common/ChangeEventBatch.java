@@ -0,0 +1,135 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An ordered group of {@link ChangeEvent}s buffered by a {@link BaseObservableSnapshotArray} in
+ * batching mode.
+ *
+ * @param <S> the snapshot class.
+ * @see BaseObservableSnapshotArray#setBatchingEnabled(boolean)
+ */
+public final class ChangeEventBatch<S> {
+
+    private final List<ChangeEvent<S>> mEvents;
+
+    public ChangeEventBatch(@NonNull List<ChangeEvent<S>> events) {
+        mEvents = Collections.unmodifiableList(Preconditions.checkNotNull(events));
+    }
+
+    /**
+     * @return the events in this batch, in the order in which they were applied to the array.
+     */
+    @NonNull
+    public List<ChangeEvent<S>> getEvents() {
+        return mEvents;
+    }
+
+    /**
+     * Replay the events in this batch on a {@link ListUpdateCallback}, coalescing contiguous
+     * inserts, removals and changes into range updates.
+     */
+    public void dispatchUpdatesTo(@NonNull ListUpdateCallback callback) {
+        dispatchUpdatesTo(callback, null);
+    }
+
+    /**
+     * Replay the events in this batch on a {@link ListUpdateCallback}, like {@link
+     * #dispatchUpdatesTo(ListUpdateCallback)}. The changed fields of each change whose previous
+     * snapshot is known are passed as its payload, such changes are not coalesced.
+     *
+     * @param differ finds the changed fields, or null to dispatch changes without a payload.
+     */
+    public void dispatchUpdatesTo(@NonNull ListUpdateCallback callback,
+                                  @Nullable BaseFieldDiffer<S> differ) {
+        BatchingListUpdateCallback batching = new BatchingListUpdateCallback(callback);
+        for (ChangeEvent<S> event : mEvents) {
+            switch (event.getType()) {
+                case ADDED:
+                    batching.onInserted(event.getNewIndex(), 1);
+                    break;
+                case CHANGED:
+                    batching.onChanged(event.getNewIndex(), 1, getPayload(event, differ));
+                    break;
+                case REMOVED:
+                    // Some arrays report the removed position as the new index, others as the
+                    // old one. The other index is always -1.
+                    batching.onRemoved(Math.max(event.getNewIndex(), event.getOldIndex()), 1);
+                    break;
+                case MOVED:
+                    batching.onMoved(event.getOldIndex(), event.getNewIndex());
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+        batching.dispatchLastEvent();
+    }
+
+    /**
+     * Replay the events in this batch on a {@link RecyclerView.Adapter} as range notifications.
+     *
+     * @see #dispatchUpdatesTo(ListUpdateCallback)
+     */
+    public void dispatchUpdatesTo(@NonNull RecyclerView.Adapter adapter) {
+        dispatchUpdatesTo(adapter, null);
+    }
+
+    /**
+     * Replay the events in this batch on a {@link RecyclerView.Adapter} as range notifications,
+     * with the changed fields as the payload of changes.
+     *
+     * @see #dispatchUpdatesTo(ListUpdateCallback, BaseFieldDiffer)
+     */
+    public void dispatchUpdatesTo(@NonNull final RecyclerView.Adapter adapter,
+                                  @Nullable BaseFieldDiffer<S> differ) {
+        dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                adapter.notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                adapter.notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                adapter.notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                adapter.notifyItemRangeChanged(position, count, payload);
+            }
+        }, differ);
+    }
+
+    /**
+     * @return the changed fields of an event, or null if they are unknown.
+     */
+    @Nullable
+    private static <S> Set<String> getPayload(ChangeEvent<S> event,
+                                              @Nullable BaseFieldDiffer<S> differ) {
+        if (differ == null || event.getOldSnapshot() == null) return null;
+
+        Set<String> fields = differ.getChangedFields(event.getOldSnapshot(), event.getSnapshot());
+        return fields.isEmpty() ? null : fields;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEventBatch{" +
+                "events=" + mEvents +
+                '}';
+    }
+}
@@ -0,0 +1,167 @@
+package com.firebase.ui.common;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Queues array mutations posted on the main thread and runs them together at the start of the
+ * next frame, before layout, so that a burst of database events costs one layout pass instead of
+ * one per event. If no frame is drawn within the maximum latency, e.g. while the screen is off,
+ * the queue is run anyway.
+ * <p>
+ * A dispatcher can be shared by several arrays, their mutations are then applied in the same
+ * frame. Mutations posted while the queue is running are run immediately.
+ *
+ * @see BaseObservableSnapshotArray#setDispatcher(FrameDispatcher)
+ */
+public class FrameDispatcher implements Executor {
+
+    /**
+     * The default maximum time in milliseconds a mutation waits for a frame.
+     */
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 100;
+
+    /**
+     * Delay used instead of a frame callback before Jelly Bean.
+     */
+    private static final long FRAME_MILLIS = 16;
+
+    private final long mMaxLatencyMillis;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final List<Runnable> mMutations = new ArrayList<>();
+    private final List<Runnable> mFlushCallbacks = new ArrayList<>();
+    private boolean mScheduled;
+    private boolean mFlushing;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private Object mFrameCallback;
+
+    public FrameDispatcher() {
+        this(DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * @param maxLatencyMillis the maximum time in milliseconds a mutation waits for a frame.
+     */
+    public FrameDispatcher(long maxLatencyMillis) {
+        if (maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("maxLatencyMillis cannot be negative.");
+        }
+        mMaxLatencyMillis = maxLatencyMillis;
+    }
+
+    public long getMaxLatencyMillis() {
+        return mMaxLatencyMillis;
+    }
+
+    /**
+     * Queue a mutation until the next frame.
+     */
+    @Override
+    @MainThread
+    public void execute(@NonNull Runnable mutation) {
+        Preconditions.checkNotNull(mutation);
+        if (mFlushing) {
+            mutation.run();
+            return;
+        }
+
+        mMutations.add(mutation);
+        schedule();
+    }
+
+    /**
+     * Run a callback once every mutation of the current or next flush has run, e.g. to notify
+     * listeners a single time for all of them.
+     */
+    @MainThread
+    public void runAfterFlush(@NonNull Runnable callback) {
+        mFlushCallbacks.add(Preconditions.checkNotNull(callback));
+        if (!mFlushing) schedule();
+    }
+
+    /**
+     * Run all queued mutations now, followed by the flush callbacks.
+     */
+    @MainThread
+    public void flush() {
+        if (mFlushing) return;
+        unschedule();
+
+        mFlushing = true;
+        try {
+            for (int i = 0; i < mMutations.size(); i++) {
+                mMutations.get(i).run();
+            }
+            // Callbacks can register more callbacks, e.g. when a listener mutates another array
+            for (int i = 0; i < mFlushCallbacks.size(); i++) {
+                mFlushCallbacks.get(i).run();
+            }
+        } finally {
+            mMutations.clear();
+            mFlushCallbacks.clear();
+            mFlushing = false;
+        }
+    }
+
+    /**
+     * @return true if mutations are waiting for the next frame.
+     */
+    public boolean hasPendingMutations() {
+        return !mMutations.isEmpty();
+    }
+
+    private void schedule() {
+        if (mScheduled) return;
+        mScheduled = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().postFrameCallback(getFrameCallback());
+            mHandler.postDelayed(mFlushRunnable, mMaxLatencyMillis);
+        } else {
+            mHandler.postDelayed(mFlushRunnable, Math.min(FRAME_MILLIS, mMaxLatencyMillis));
+        }
+    }
+
+    private void unschedule() {
+        if (!mScheduled) return;
+        mScheduled = false;
+
+        mHandler.removeCallbacks(mFlushRunnable);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().removeFrameCallback(getFrameCallback());
+        }
+    }
+
+    /**
+     * The frame callback is created lazily, and held as an {@link Object}, so that {@link
+     * Choreographer} is never loaded before Jelly Bean.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback getFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    flush();
+                }
+            };
+        }
+        return (Choreographer.FrameCallback) mFrameCallback;
+    }
+}
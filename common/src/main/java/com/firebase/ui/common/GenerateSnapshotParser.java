@@ -0,0 +1,26 @@
+package com.firebase.ui.common;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class for which the FirebaseUI annotation processor generates snapshot parsers
+ * that read properties straight from a snapshot's data instead of going through the reflection
+ * based mapper used by {@code ClassSnapshotParser}.
+ * <p>
+ * For a class {@code Chat}, a {@code Chat_DatabaseSnapshotParser} is generated if FirebaseUI
+ * Database is on the classpath and a {@code Chat_FirestoreSnapshotParser} if FirebaseUI
+ * Firestore is. Both are placed in the same package as the model class.
+ * <p>
+ * The class needs a non-private no-argument constructor. Properties are public fields and public
+ * setters, named the same way the Firebase SDKs name them, including {@code @PropertyName} and
+ * {@code @Exclude}. Supported property types are {@link String}, {@code boolean}, {@code int},
+ * {@code long}, {@code float}, {@code double} and their boxed types, enums, lists and string-keyed
+ * maps of raw values, and other classes annotated with {@code GenerateSnapshotParser}.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateSnapshotParser {
+}
@@ -0,0 +1,394 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A {@link java.util.List} of uniquely keyed elements backed by a randomized balanced tree
+ * (an implicit treap).
+ * <p>
+ * Positional access, insertion and removal as well as looking up the index of an element by its
+ * key all run in O(log N) expected time, as opposed to the O(N) shifting and scanning of an {@link
+ * java.util.ArrayList}.
+ * <p>
+ * Elements can also be marked, for example to track which keys have their data loaded. The number
+ * of marked elements before a given key is found in O(log N) as well, see {@link
+ * #markedIndexOfKey(String)}.
+ * <p>
+ * Like a {@link TreeList}, the tree is persistent: {@link #snapshot()} returns an immutable
+ * version of the list in O(1), and later mutations copy only the nodes on their path once they
+ * are shared with a version.
+ *
+ * @param <E> the element type.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public abstract class KeyIndexedList<E> extends AbstractList<E> {
+
+    private final Map<String, Node<E>> mNodes = new HashMap<>();
+    private final Random mRandom = new Random();
+
+    private Node<E> mRoot;
+
+    /**
+     * Owner of the nodes that only this list references and can mutate in place, replaced each
+     * time a version is taken.
+     */
+    private Object mOwner = new Object();
+
+    /**
+     * Results of the last {@link #split(Node, int)}, kept in fields to avoid allocating a pair
+     * for every operation.
+     */
+    private Node<E> mSplitLeft;
+    private Node<E> mSplitRight;
+    private E mReplaced;
+
+    /**
+     * Get a unique key for an element, should not depend on the element's position.
+     */
+    @NonNull
+    public abstract String getKey(E element);
+
+    /**
+     * @return an immutable version of the list in its current state. Versions expose the elements
+     * only, not their keys or marks.
+     */
+    @NonNull
+    public List<E> snapshot() {
+        mOwner = new Object();
+        return new Version<>(mRoot);
+    }
+
+    /**
+     * @return the index of the element with the given key, or -1 if there is no such element.
+     */
+    public int indexOfKey(String key) {
+        Node<E> node = mNodes.get(key);
+        if (node == null) return -1;
+
+        int index = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                index += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of marked elements before the element with the given key, i.e. its
+     * index among the marked elements if it is marked itself, or -1 if there is no such element.
+     */
+    public int markedIndexOfKey(String key) {
+        Node<E> node = mNodes.get(key);
+        if (node == null) return -1;
+
+        int index = markedCount(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                Node<E> parent = node.parent;
+                index += markedCount(parent.left) + (parent.marked ? 1 : 0);
+            }
+            node = node.parent;
+        }
+        return index;
+    }
+
+    /**
+     * Mark or unmark the element with the given key.
+     *
+     * @throws IllegalArgumentException if there is no such element.
+     */
+    public void setMarked(String key, boolean marked) {
+        Node<E> node = mNodes.get(key);
+        if (node == null) throw new IllegalArgumentException("Key not found: " + key);
+        if (node.marked == marked) return;
+
+        node.marked = marked;
+        for (; node != null; node = node.parent) {
+            node.markedCount = markedCount(node.left) + markedCount(node.right)
+                    + (node.marked ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return true if the element with the given key is marked, false if it isn't or there is no
+     * such element.
+     */
+    public boolean isMarked(String key) {
+        Node<E> node = mNodes.get(key);
+        return node != null && node.marked;
+    }
+
+    /**
+     * @return the number of marked elements in the list.
+     */
+    public int markedCount() {
+        return markedCount(mRoot);
+    }
+
+    /**
+     * @return true if an element with the given key is in the list, false otherwise.
+     */
+    public boolean containsKey(String key) {
+        return mNodes.containsKey(key);
+    }
+
+    @Override
+    public E get(int index) {
+        return nodeAt(index).value;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        String oldKey = getKey(get(index));
+        String newKey = getKey(element);
+        if (!oldKey.equals(newKey)) checkNoDuplicate(newKey);
+
+        setRoot(set(mRoot, index, element));
+        if (!oldKey.equals(newKey)) mNodes.put(newKey, mNodes.remove(oldKey));
+
+        E old = mReplaced;
+        mReplaced = null;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkPositionIndex(index);
+        String key = getKey(element);
+        checkNoDuplicate(key);
+
+        Node<E> node = new Node<>(element, mRandom.nextInt(), mOwner);
+        mNodes.put(key, node);
+
+        split(mRoot, index);
+        Node<E> right = mSplitRight;
+        setRoot(merge(merge(mSplitLeft, node), right));
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        checkElementIndex(index);
+
+        split(mRoot, index);
+        Node<E> left = mSplitLeft;
+        split(mSplitRight, 1);
+        Node<E> removed = mSplitLeft;
+        setRoot(merge(left, mSplitRight));
+
+        mNodes.remove(getKey(removed.value));
+        removed.parent = null;
+        modCount++;
+        return removed.value;
+    }
+
+    @Override
+    public void clear() {
+        mRoot = null;
+        mNodes.clear();
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size(mRoot);
+    }
+
+    private Node<E> nodeAt(int index) {
+        checkElementIndex(index);
+        return nodeAt(mRoot, index);
+    }
+
+    private Node<E> set(Node<E> node, int index, E element) {
+        node = editable(node);
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            node.left = set(node.left, index, element);
+        } else if (index == leftSize) {
+            mReplaced = node.value;
+            node.value = element;
+        } else {
+            node.right = set(node.right, index - leftSize - 1, element);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Split the subtree rooted at {@code node} into its first {@code count} elements ({@link
+     * #mSplitLeft}) and the rest ({@link #mSplitRight}).
+     */
+    private void split(Node<E> node, int count) {
+        if (node == null) {
+            mSplitLeft = null;
+            mSplitRight = null;
+            return;
+        }
+
+        node = editable(node);
+        int leftSize = size(node.left);
+        if (count <= leftSize) {
+            split(node.left, count);
+            node.left = mSplitRight;
+            mSplitRight = node;
+        } else {
+            split(node.right, count - leftSize - 1);
+            node.right = mSplitLeft;
+            mSplitLeft = node;
+        }
+        update(node);
+    }
+
+    /**
+     * Merge two subtrees where every element of {@code left} comes before every element of
+     * {@code right}.
+     */
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left = editable(left);
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right = editable(right);
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    /**
+     * @return the node itself if only this list references it, or a copy that replaces it in the
+     * list otherwise. The caller must link the copy to its parent.
+     */
+    private Node<E> editable(Node<E> node) {
+        if (node.owner == mOwner) return node;
+
+        Node<E> copy = node.copy(mOwner);
+        mNodes.put(getKey(copy.value), copy);
+        if (copy.left != null) copy.left.parent = copy;
+        if (copy.right != null) copy.right.parent = copy;
+        return copy;
+    }
+
+    private void setRoot(Node<E> root) {
+        mRoot = root;
+        if (root != null) root.parent = null;
+    }
+
+    private void checkNoDuplicate(String key) {
+        if (mNodes.containsKey(key)) {
+            throw new IllegalArgumentException("Duplicate key: " + key);
+        }
+    }
+
+    private void checkElementIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private void checkPositionIndex(int index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private static <E> Node<E> nodeAt(Node<E> node, int index) {
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int markedCount(Node<?> node) {
+        return node == null ? 0 : node.markedCount;
+    }
+
+    private static <E> void update(Node<E> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        node.markedCount = markedCount(node.left) + markedCount(node.right)
+                + (node.marked ? 1 : 0);
+        if (node.left != null) node.left.parent = node;
+        if (node.right != null) node.right.parent = node;
+    }
+
+    /**
+     * An immutable version of a {@link KeyIndexedList}. It only reads the elements, sizes and
+     * children of its nodes, which the list no longer mutates once they are shared. Parents and
+     * marks are only used by the list itself.
+     */
+    private static final class Version<E> extends AbstractList<E> {
+        private final Node<E> mRoot;
+
+        public Version(Node<E> root) {
+            mRoot = root;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return nodeAt(mRoot, index).value;
+        }
+
+        @Override
+        public int size() {
+            return KeyIndexedList.size(mRoot);
+        }
+    }
+
+    private static final class Node<E> {
+        final int priority;
+        final Object owner;
+        E value;
+        int size = 1;
+        boolean marked;
+        int markedCount;
+
+        Node<E> left;
+        Node<E> right;
+        Node<E> parent;
+
+        Node(E value, int priority, Object owner) {
+            this.value = value;
+            this.priority = priority;
+            this.owner = owner;
+        }
+
+        Node<E> copy(Object owner) {
+            Node<E> copy = new Node<>(value, priority, owner);
+            copy.size = size;
+            copy.marked = marked;
+            copy.markedCount = markedCount;
+            copy.left = left;
+            copy.right = right;
+            copy.parent = parent;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * A {@link MetricsListener} that keeps running totals: event counts per type, the number, total
+ * and maximum duration of each operation, cache hits and misses, and the delivery latency of
+ * child events. Read them at any time, e.g. to log them when a screen is closed.
+ * <p>
+ * A counter can be shared by several arrays to get totals for a whole screen.
+ */
+public class MetricsCounter implements MetricsListener {
+
+    private static final int TYPE_COUNT = ChangeEventType.values().length;
+    private static final int OPERATION_COUNT = Operation.values().length;
+
+    private final long[] mEventCounts = new long[TYPE_COUNT];
+
+    private final long[] mOperationCounts = new long[OPERATION_COUNT];
+    private final long[] mOperationNanos = new long[OPERATION_COUNT];
+    private final long[] mOperationMaxNanos = new long[OPERATION_COUNT];
+
+    private long mCacheHits;
+    private long mCacheMisses;
+
+    private long mDeliveryCount;
+    private long mDeliveryNanos;
+    private long mDeliveryMaxNanos;
+
+    @Override
+    public synchronized void onEventReceived(ChangeEventType type) {
+        mEventCounts[type.ordinal()]++;
+    }
+
+    @Override
+    public void onOperationStarted(Operation operation) {
+        // Only finished operations are counted
+    }
+
+    @Override
+    public synchronized void onOperationFinished(Operation operation, long durationNanos) {
+        int i = operation.ordinal();
+        mOperationCounts[i]++;
+        mOperationNanos[i] += durationNanos;
+        mOperationMaxNanos[i] = Math.max(mOperationMaxNanos[i], durationNanos);
+    }
+
+    @Override
+    public synchronized void onCacheLookup(boolean hit) {
+        if (hit) {
+            mCacheHits++;
+        } else {
+            mCacheMisses++;
+        }
+    }
+
+    @Override
+    public synchronized void onEventDelivered(ChangeEventType type, long latencyNanos) {
+        mDeliveryCount++;
+        mDeliveryNanos += latencyNanos;
+        mDeliveryMaxNanos = Math.max(mDeliveryMaxNanos, latencyNanos);
+    }
+
+    /**
+     * @return the number of child events of the given type received from the database.
+     */
+    public synchronized long getEventCount(@NonNull ChangeEventType type) {
+        return mEventCounts[type.ordinal()];
+    }
+
+    /**
+     * @return the number of times the operation ran.
+     */
+    public synchronized long getOperationCount(@NonNull Operation operation) {
+        return mOperationCounts[operation.ordinal()];
+    }
+
+    /**
+     * @return the total time spent on the operation, in nanoseconds.
+     */
+    public synchronized long getOperationNanos(@NonNull Operation operation) {
+        return mOperationNanos[operation.ordinal()];
+    }
+
+    /**
+     * @return the longest time the operation took, in nanoseconds.
+     */
+    public synchronized long getOperationMaxNanos(@NonNull Operation operation) {
+        return mOperationMaxNanos[operation.ordinal()];
+    }
+
+    /**
+     * @return the ratio of cache hits to lookups, or 0 if there were no lookups.
+     */
+    public synchronized double getCacheHitRate() {
+        long lookups = mCacheHits + mCacheMisses;
+        return lookups == 0 ? 0 : (double) mCacheHits / lookups;
+    }
+
+    /**
+     * @return the number of child events delivered to the arrays' listeners.
+     */
+    public synchronized long getDeliveryCount() {
+        return mDeliveryCount;
+    }
+
+    /**
+     * @return the average time from a database callback to the array's listeners being notified,
+     * in nanoseconds, or 0 if no event was delivered.
+     */
+    public synchronized long getAverageDeliveryNanos() {
+        return mDeliveryCount == 0 ? 0 : mDeliveryNanos / mDeliveryCount;
+    }
+
+    /**
+     * @return the longest time from a database callback to the array's listeners being notified,
+     * in nanoseconds.
+     */
+    public synchronized long getMaxDeliveryNanos() {
+        return mDeliveryMaxNanos;
+    }
+
+    /**
+     * Set all counters back to zero.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            mEventCounts[i] = 0;
+        }
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            mOperationCounts[i] = 0;
+            mOperationNanos[i] = 0;
+            mOperationMaxNanos[i] = 0;
+        }
+        mCacheHits = 0;
+        mCacheMisses = 0;
+        mDeliveryCount = 0;
+        mDeliveryNanos = 0;
+        mDeliveryMaxNanos = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("MetricsCounter{events=[");
+        for (ChangeEventType type : ChangeEventType.values()) {
+            if (type.ordinal() > 0) builder.append(", ");
+            builder.append(type).append('=').append(mEventCounts[type.ordinal()]);
+        }
+        builder.append(']');
+        for (Operation operation : Operation.values()) {
+            int i = operation.ordinal();
+            builder.append(String.format(Locale.US, ", %s=%d in %.2fms (max %.2fms)",
+                    operation, mOperationCounts[i], mOperationNanos[i] / 1e6,
+                    mOperationMaxNanos[i] / 1e6));
+        }
+        builder.append(String.format(Locale.US,
+                ", cacheHitRate=%.2f, delivered=%d in %.2fms avg (max %.2fms)}",
+                getCacheHitRate(), mDeliveryCount, getAverageDeliveryNanos() / 1e6,
+                mDeliveryMaxNanos / 1e6));
+        return builder.toString();
+    }
+}
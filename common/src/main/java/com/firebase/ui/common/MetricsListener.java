@@ -0,0 +1,74 @@
+package com.firebase.ui.common;
+
+/**
+ * Receives performance metrics of a {@link BaseObservableSnapshotArray} and its {@link
+ * BaseCachingSnapshotParser}: the database events the array receives, the time spent on its hot
+ * paths and how long it takes for an event to reach the array's listeners, such as an adapter.
+ * <p>
+ * Callbacks are made on the thread doing the work, which is the main thread unless the array
+ * updates or prefetches in the background, so implementations must be thread-safe. They are
+ * also made on hot paths and must be cheap.
+ *
+ * @see BaseObservableSnapshotArray#setMetricsListener(MetricsListener)
+ * @see MetricsCounter
+ * @see TraceMetricsListener
+ */
+public interface MetricsListener {
+
+    /**
+     * A timed operation of an array.
+     */
+    enum Operation {
+        /**
+         * Finding the index of a snapshot in the array by key.
+         */
+        INDEX_LOOKUP,
+
+        /**
+         * Parsing a snapshot into a model object, on a cache miss or ahead of time.
+         */
+        PARSE,
+
+        /**
+         * Notifying the array's listeners of a child event.
+         */
+        FAN_OUT
+    }
+
+    /**
+     * Called when the array receives a child event from the database.
+     */
+    void onEventReceived(ChangeEventType type);
+
+    /**
+     * Called when an operation starts. Every call is followed by a call to {@link
+     * #onOperationFinished(Operation, long)} for the same operation on the same thread, operations
+     * may nest.
+     */
+    void onOperationStarted(Operation operation);
+
+    /**
+     * Called when an operation finishes.
+     *
+     * @param durationNanos the time the operation took, in nanoseconds.
+     */
+    void onOperationFinished(Operation operation, long durationNanos);
+
+    /**
+     * Called when the parser looks up a parsed object in its cache.
+     *
+     * @param hit true if the object was cached.
+     */
+    void onCacheLookup(boolean hit);
+
+    /**
+     * Called once the array's listeners have been notified of a child event. Buffered events of
+     * batching listeners are delivered later, with the next data changed event.
+     *
+     * @param latencyNanos the time between the database callback that caused the event and the
+     *                     end of the notification, in nanoseconds. It includes the time the event
+     *                     waited for a frame or for the update executor.
+     */
+    void onEventDelivered(ChangeEventType type, long latencyNanos);
+
+}
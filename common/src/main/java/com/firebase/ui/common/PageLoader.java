@@ -0,0 +1,52 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A {@link RecyclerView.OnScrollListener} that reports the visible range to a {@link Pageable}
+ * array, which then loads and drops pages as needed.
+ * <p>
+ * Only layout managers extending {@link LinearLayoutManager} (including {@code
+ * GridLayoutManager}) report their visible range, other layout managers are ignored.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class PageLoader extends RecyclerView.OnScrollListener {
+
+    private final Pageable mSnapshots;
+
+    private int mFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastVisible = RecyclerView.NO_POSITION;
+
+    public PageLoader(@NonNull Pageable snapshots) {
+        mSnapshots = Preconditions.checkNotNull(snapshots);
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) return;
+
+        LinearLayoutManager manager = (LinearLayoutManager) layoutManager;
+        int first = manager.findFirstVisibleItemPosition();
+        int last = manager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION
+                || first == mFirstVisible && last == mLastVisible) {
+            return;
+        }
+
+        mFirstVisible = first;
+        mLastVisible = last;
+        mSnapshots.setVisibleRange(first, last);
+    }
+
+    /**
+     * Forget the last visible range, e.g. when the list is detached or its data is reset.
+     */
+    public void reset() {
+        mFirstVisible = RecyclerView.NO_POSITION;
+        mLastVisible = RecyclerView.NO_POSITION;
+    }
+}
@@ -0,0 +1,49 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+/**
+ * An array that loads its query one page at a time as the visible range nears either end of the
+ * loaded items, and drops pages far from the visible range.
+ *
+ * @see PagingConfig
+ */
+public interface Pageable {
+
+    /**
+     * Report the range of items currently on screen. Pages are loaded or dropped, and live
+     * listeners attached or removed, based on this range.
+     *
+     * @param first the position of the first visible item.
+     * @param last  the position of the last visible item.
+     */
+    void setVisibleRange(int first, int last);
+
+    /**
+     * Load the page after the last loaded item, unless a page is already loading.
+     */
+    void loadNextPage();
+
+    /**
+     * Load the page before the first loaded item, unless a page is already loading.
+     */
+    void loadPreviousPage();
+
+    /**
+     * @return true if there may be items after the last loaded item.
+     */
+    boolean hasNextPage();
+
+    /**
+     * @return true if there are items before the first loaded item.
+     */
+    boolean hasPreviousPage();
+
+    /**
+     * @return true if a page is being loaded.
+     */
+    boolean isLoading();
+
+    @NonNull
+    PagingConfig getPagingConfig();
+}
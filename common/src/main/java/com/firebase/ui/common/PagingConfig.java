@@ -0,0 +1,123 @@
+package com.firebase.ui.common;
+
+/**
+ * Configuration for arrays that load a query one page at a time, see {@link Pageable}.
+ *
+ * @see Builder
+ */
+public final class PagingConfig {
+
+    /**
+     * The default number of items per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * The default number of pages kept in memory.
+     */
+    public static final int DEFAULT_MAX_PAGES = 5;
+
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final int mPrefetchDistance;
+    private final boolean mLiveUpdates;
+
+    private PagingConfig(int pageSize, int maxPages, int prefetchDistance, boolean liveUpdates) {
+        mPageSize = pageSize;
+        mMaxPages = maxPages;
+        mPrefetchDistance = prefetchDistance;
+        mLiveUpdates = liveUpdates;
+    }
+
+    /**
+     * Get the number of items loaded per page.
+     */
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Get the maximum number of pages kept in memory. Pages furthest from the visible range are
+     * dropped past this number, and loaded again when they are scrolled back to.
+     */
+    public int getMaxPages() {
+        return mMaxPages;
+    }
+
+    /**
+     * Get how close to either end of the loaded items the visible range gets before the next
+     * page is loaded.
+     */
+    public int getPrefetchDistance() {
+        return mPrefetchDistance;
+    }
+
+    /**
+     * Returns true if visible pages keep listening for changes, false if pages are loaded once.
+     */
+    public boolean isLiveUpdates() {
+        return mLiveUpdates;
+    }
+
+    /**
+     * Builder for {@link PagingConfig}.
+     */
+    public static final class Builder {
+
+        private int mPageSize = DEFAULT_PAGE_SIZE;
+        private int mMaxPages = DEFAULT_MAX_PAGES;
+        private int mPrefetchDistance = -1;
+        private boolean mLiveUpdates;
+
+        /**
+         * Set the number of items loaded per page. Defaults to {@link #DEFAULT_PAGE_SIZE}.
+         */
+        public Builder setPageSize(int pageSize) {
+            if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive.");
+
+            mPageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of pages kept in memory, at least 2. Defaults to {@link
+         * #DEFAULT_MAX_PAGES}.
+         */
+        public Builder setMaxPages(int maxPages) {
+            if (maxPages < 2) throw new IllegalArgumentException("maxPages must be at least 2.");
+
+            mMaxPages = maxPages;
+            return this;
+        }
+
+        /**
+         * Set how close to either end of the loaded items the visible range gets before the next
+         * page is loaded. Defaults to half a page.
+         */
+        public Builder setPrefetchDistance(int prefetchDistance) {
+            if (prefetchDistance < 0) {
+                throw new IllegalArgumentException("prefetchDistance cannot be negative.");
+            }
+
+            mPrefetchDistance = prefetchDistance;
+            return this;
+        }
+
+        /**
+         * Keep listening for changes to the pages in the visible range, instead of only loading
+         * each page once. Listeners are removed as pages scroll out of view.
+         */
+        public Builder setLiveUpdates(boolean liveUpdates) {
+            mLiveUpdates = liveUpdates;
+            return this;
+        }
+
+        /**
+         * Build a {@link PagingConfig} from the provided arguments.
+         */
+        public PagingConfig build() {
+            int prefetchDistance = mPrefetchDistance == -1 ? mPageSize / 2 : mPrefetchDistance;
+            return new PagingConfig(mPageSize, mMaxPages, prefetchDistance, mLiveUpdates);
+        }
+    }
+}
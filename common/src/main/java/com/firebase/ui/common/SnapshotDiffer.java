@@ -0,0 +1,186 @@
+package com.firebase.ui.common;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the list of snapshots displayed by a {@link RecyclerView.Adapter} and updates it by
+ * computing a {@link DiffUtil.DiffResult} on a background {@link Executor}.
+ * <p>
+ * Items are identified by {@link BaseCachingSnapshotParser#getId(Object)} and compared with a
+ * {@link BaseContentComparator}, so only items that really changed are rebound. With a {@link
+ * BaseFieldDiffer}, their changed fields are passed to the adapter as payloads.
+ *
+ * @param <S> the snapshot class.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class SnapshotDiffer<S> {
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Executor mExecutor;
+    private final BaseCachingSnapshotParser<S, ?> mParser;
+    private final BaseContentComparator<S> mComparator;
+    private final RecyclerView.Adapter mAdapter;
+    private volatile BaseFieldDiffer<S> mFieldDiffer;
+
+    private List<S> mCurrentList = Collections.emptyList();
+
+    /**
+     * Incremented for each submitted list so that results of outdated diffs can be dropped.
+     */
+    private int mGeneration;
+
+    public SnapshotDiffer(@NonNull Executor executor,
+                          @NonNull BaseCachingSnapshotParser<S, ?> parser,
+                          @NonNull BaseContentComparator<S> comparator,
+                          @NonNull RecyclerView.Adapter adapter) {
+        mExecutor = Preconditions.checkNotNull(executor);
+        mParser = Preconditions.checkNotNull(parser);
+        mComparator = Preconditions.checkNotNull(comparator);
+        mAdapter = Preconditions.checkNotNull(adapter);
+    }
+
+    /**
+     * Set the differ used to find the changed fields of changed items. It is called on the
+     * background executor.
+     *
+     * @param differ the differ, or null to notify changes without a payload.
+     */
+    public void setFieldDiffer(@Nullable BaseFieldDiffer<S> differ) {
+        mFieldDiffer = differ;
+    }
+
+    /**
+     * @return the list of snapshots the adapter is currently displaying.
+     */
+    @NonNull
+    @MainThread
+    public List<S> getCurrentList() {
+        return mCurrentList;
+    }
+
+    /**
+     * Diff a new list of snapshots against the current list in the background and dispatch the
+     * resulting updates to the adapter on the main thread. The list must not be modified after it
+     * has been submitted.
+     *
+     * @see BaseObservableSnapshotArray#copySnapshots()
+     */
+    @MainThread
+    public void submitList(@NonNull final List<S> newList) {
+        final int generation = ++mGeneration;
+        final List<S> oldList = mCurrentList;
+
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            // Nothing to diff, all items were either added or removed
+            mCurrentList = newList;
+            if (!oldList.isEmpty()) {
+                mAdapter.notifyItemRangeRemoved(0, oldList.size());
+            } else if (!newList.isEmpty()) {
+                mAdapter.notifyItemRangeInserted(0, newList.size());
+            }
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Set<String> changedIds = new HashSet<>();
+                final DiffUtil.DiffResult result =
+                        DiffUtil.calculateDiff(new SnapshotCallback(oldList, newList, changedIds));
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            applyDiff(newList, changedIds, result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop the current list without notifying the adapter and cancel any diff in progress.
+     */
+    @MainThread
+    public void clear() {
+        mGeneration++;
+        mCurrentList = Collections.emptyList();
+    }
+
+    private void applyDiff(List<S> newList, Set<String> changedIds, DiffUtil.DiffResult result) {
+        // Models for changed items may have been parsed from the old snapshot while the diff
+        // was computed, so they must not be served from the cache anymore.
+        for (S snapshot : newList) {
+            if (changedIds.contains(mParser.getId(snapshot))) {
+                mParser.invalidate(snapshot);
+            }
+        }
+
+        mCurrentList = newList;
+        result.dispatchUpdatesTo(mAdapter);
+    }
+
+    private final class SnapshotCallback extends DiffUtil.Callback {
+        private final List<S> mOldList;
+        private final List<S> mNewList;
+        private final Set<String> mChangedIds;
+
+        public SnapshotCallback(List<S> oldList, List<S> newList, Set<String> changedIds) {
+            mOldList = oldList;
+            mNewList = newList;
+            mChangedIds = changedIds;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mParser.getId(mOldList.get(oldItemPosition))
+                    .equals(mParser.getId(mNewList.get(newItemPosition)));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            S newSnapshot = mNewList.get(newItemPosition);
+            boolean same = mComparator.areContentsTheSame(
+                    mOldList.get(oldItemPosition), newSnapshot);
+            if (!same) mChangedIds.add(mParser.getId(newSnapshot));
+            return same;
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            BaseFieldDiffer<S> differ = mFieldDiffer;
+            if (differ == null) return null;
+
+            Set<String> fields = differ.getChangedFields(
+                    mOldList.get(oldItemPosition), mNewList.get(newItemPosition));
+            return fields.isEmpty() ? null : fields;
+        }
+    }
+}
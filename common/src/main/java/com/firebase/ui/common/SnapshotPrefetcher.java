@@ -0,0 +1,80 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A {@link RecyclerView.OnScrollListener} that asks a {@link BaseObservableSnapshotArray} to parse
+ * the snapshots just beyond the visible range, in the direction of scrolling, on its prefetch
+ * executor. Rows entering the screen, or bound early by RecyclerView's own item prefetching, then
+ * find their model objects already in the cache.
+ * <p>
+ * Only layout managers extending {@link LinearLayoutManager} (including {@code
+ * GridLayoutManager}) report their visible range, other layout managers are ignored.
+ *
+ * @see BaseObservableSnapshotArray#setPrefetchExecutor(java.util.concurrent.Executor)
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class SnapshotPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * The default number of items to parse ahead of the visible range.
+     */
+    public static final int DEFAULT_DISTANCE = 10;
+
+    private final BaseObservableSnapshotArray<?, ?, ?, ?> mSnapshots;
+    private final int mDistance;
+
+    private int mFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastVisible = RecyclerView.NO_POSITION;
+
+    public SnapshotPrefetcher(@NonNull BaseObservableSnapshotArray<?, ?, ?, ?> snapshots) {
+        this(snapshots, DEFAULT_DISTANCE);
+    }
+
+    public SnapshotPrefetcher(@NonNull BaseObservableSnapshotArray<?, ?, ?, ?> snapshots,
+                              int distance) {
+        mSnapshots = Preconditions.checkNotNull(snapshots);
+        mDistance = distance;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) return;
+
+        LinearLayoutManager manager = (LinearLayoutManager) layoutManager;
+        int first = manager.findFirstVisibleItemPosition();
+        int last = manager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION
+                || first == mFirstVisible && last == mLastVisible) {
+            return;
+        }
+
+        // Scrolling direction is inferred from positions, which also covers reversed layouts
+        boolean backward = mFirstVisible != RecyclerView.NO_POSITION && first < mFirstVisible;
+        mFirstVisible = first;
+        mLastVisible = last;
+
+        int size = mSnapshots.size();
+        if (backward) {
+            for (int i = first - 1; i >= Math.max(0, first - mDistance); i--) {
+                mSnapshots.prefetch(i);
+            }
+        } else {
+            for (int i = last + 1; i <= Math.min(size - 1, last + mDistance); i++) {
+                mSnapshots.prefetch(i);
+            }
+        }
+    }
+
+    /**
+     * Forget the last visible range, e.g. when the list is detached or its data is reset.
+     */
+    public void reset() {
+        mFirstVisible = RecyclerView.NO_POSITION;
+        mLastVisible = RecyclerView.NO_POSITION;
+    }
+}
@@ -0,0 +1,63 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.Nullable;
+import android.support.v4.os.TraceCompat;
+
+/**
+ * A {@link MetricsListener} that wraps each operation in an {@code android.os.Trace} section, so
+ * that FirebaseUI's work on the main thread shows up in systrace and Perfetto traces. Sections are
+ * named {@code FirebaseUI:INDEX_LOOKUP}, {@code FirebaseUI:PARSE} and {@code FirebaseUI:FAN_OUT}.
+ * <p>
+ * Sections are only recorded on Jelly Bean MR2 and above, while an app is being traced. Other
+ * metrics can be passed on to another listener, e.g. a {@link MetricsCounter}.
+ */
+public class TraceMetricsListener implements MetricsListener {
+
+    private static final String[] SECTION_NAMES = new String[Operation.values().length];
+
+    static {
+        for (Operation operation : Operation.values()) {
+            SECTION_NAMES[operation.ordinal()] = "FirebaseUI:" + operation.name();
+        }
+    }
+
+    private final MetricsListener mDelegate;
+
+    public TraceMetricsListener() {
+        this(null);
+    }
+
+    /**
+     * @param delegate a listener to pass all metrics on to, if any.
+     */
+    public TraceMetricsListener(@Nullable MetricsListener delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void onEventReceived(ChangeEventType type) {
+        if (mDelegate != null) mDelegate.onEventReceived(type);
+    }
+
+    @Override
+    public void onOperationStarted(Operation operation) {
+        TraceCompat.beginSection(SECTION_NAMES[operation.ordinal()]);
+        if (mDelegate != null) mDelegate.onOperationStarted(operation);
+    }
+
+    @Override
+    public void onOperationFinished(Operation operation, long durationNanos) {
+        if (mDelegate != null) mDelegate.onOperationFinished(operation, durationNanos);
+        TraceCompat.endSection();
+    }
+
+    @Override
+    public void onCacheLookup(boolean hit) {
+        if (mDelegate != null) mDelegate.onCacheLookup(hit);
+    }
+
+    @Override
+    public void onEventDelivered(ChangeEventType type, long latencyNanos) {
+        if (mDelegate != null) mDelegate.onEventDelivered(type, latencyNanos);
+    }
+}
@@ -0,0 +1,315 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A {@link List} backed by a persistent randomized balanced tree (an implicit treap), to be used as
+ * the backing list of a snapshot array whose items are often inserted, removed or moved in the
+ * middle of the list, such as a large leaderboard.
+ * <p>
+ * Positional access, insertion, removal and {@link #move(int, int)} all run in O(log N) expected
+ * time, as opposed to the O(N) shifting of an {@link java.util.ArrayList}.
+ * <p>
+ * {@link #snapshot()} returns an immutable version of the list in O(1). Versions share their
+ * structure with the list, which copies only the O(log N) nodes on the path of a mutation once they
+ * are shared, so a version is never affected by later mutations and can safely be read from
+ * another thread.
+ *
+ * @param <E> the element type.
+ */
+public class TreeList<E> extends AbstractList<E> {
+
+    private final Random mRandom = new Random();
+
+    private Node<E> mRoot;
+
+    /**
+     * Owner of the nodes that only this list references and can mutate in place, replaced each
+     * time a version is taken.
+     */
+    private Object mOwner = new Object();
+
+    /**
+     * Results of the last {@link #split(Node, int)}, kept in fields to avoid allocating a pair
+     * for every operation.
+     */
+    private Node<E> mSplitLeft;
+    private Node<E> mSplitRight;
+    private E mReplaced;
+
+    /**
+     * @return an immutable version of the list in its current state.
+     */
+    @NonNull
+    public List<E> snapshot() {
+        mOwner = new Object();
+        return new Version<>(mRoot);
+    }
+
+    /**
+     * Move the element at {@code fromIndex} so that it ends up at {@code toIndex}.
+     */
+    public void move(int fromIndex, int toIndex) {
+        checkElementIndex(fromIndex);
+        checkElementIndex(toIndex);
+        if (fromIndex == toIndex) return;
+
+        add(toIndex, remove(fromIndex));
+    }
+
+    @Override
+    public E get(int index) {
+        checkElementIndex(index);
+        return nodeAt(mRoot, index).value;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkElementIndex(index);
+        mRoot = set(mRoot, index, element);
+
+        E old = mReplaced;
+        mReplaced = null;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkPositionIndex(index);
+
+        Node<E> node = new Node<>(element, mRandom.nextInt(), mOwner);
+        split(mRoot, index);
+        Node<E> right = mSplitRight;
+        mRoot = merge(merge(mSplitLeft, node), right);
+        clearSplit();
+        modCount++;
+    }
+
+    /**
+     * Adding to an empty list builds the tree in O(N) instead of inserting elements one by one.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        if (!isEmpty()) return super.addAll(elements);
+        if (elements.isEmpty()) return false;
+
+        mRoot = build(elements);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public E remove(int index) {
+        checkElementIndex(index);
+
+        split(mRoot, index);
+        Node<E> left = mSplitLeft;
+        split(mSplitRight, 1);
+        E removed = mSplitLeft.value;
+        mRoot = merge(left, mSplitRight);
+        clearSplit();
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        mRoot = null;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size(mRoot);
+    }
+
+    private Node<E> set(Node<E> node, int index, E element) {
+        node = editable(node);
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            node.left = set(node.left, index, element);
+        } else if (index == leftSize) {
+            mReplaced = node.value;
+            node.value = element;
+        } else {
+            node.right = set(node.right, index - leftSize - 1, element);
+        }
+        return node;
+    }
+
+    /**
+     * Split the subtree rooted at {@code node} into its first {@code count} elements ({@link
+     * #mSplitLeft}) and the rest ({@link #mSplitRight}).
+     */
+    private void split(Node<E> node, int count) {
+        if (node == null || count == 0) {
+            mSplitLeft = null;
+            mSplitRight = node;
+            return;
+        } else if (count >= node.size) {
+            mSplitLeft = node;
+            mSplitRight = null;
+            return;
+        }
+
+        node = editable(node);
+        int leftSize = size(node.left);
+        if (count <= leftSize) {
+            split(node.left, count);
+            node.left = mSplitRight;
+            mSplitRight = node;
+        } else {
+            split(node.right, count - leftSize - 1);
+            node.right = mSplitLeft;
+            mSplitLeft = node;
+        }
+        update(node);
+    }
+
+    /**
+     * Merge two subtrees where every element of {@code left} comes before every element of
+     * {@code right}.
+     */
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left = editable(left);
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right = editable(right);
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    /**
+     * Build a treap of the given elements in order, keeping the right spine of the tree on a
+     * stack as each element is appended.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E> build(Collection<? extends E> elements) {
+        Node<E>[] spine = new Node[elements.size()];
+        int top = 0;
+        for (E element : elements) {
+            Node<E> node = new Node<>(element, mRandom.nextInt(), mOwner);
+            Node<E> last = null;
+            while (top > 0 && spine[top - 1].priority < node.priority) {
+                last = spine[--top];
+            }
+            node.left = last;
+            if (top > 0) spine[top - 1].right = node;
+            spine[top++] = node;
+        }
+
+        Node<E> root = spine[0];
+        updateAll(root);
+        return root;
+    }
+
+    private Node<E> editable(Node<E> node) {
+        return node.owner == mOwner ? node : node.copy(mOwner);
+    }
+
+    private void clearSplit() {
+        mSplitLeft = null;
+        mSplitRight = null;
+    }
+
+    private void checkElementIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private void checkPositionIndex(int index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private static <E> Node<E> nodeAt(Node<E> node, int index) {
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node<?> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static void updateAll(Node<?> node) {
+        if (node.left != null) updateAll(node.left);
+        if (node.right != null) updateAll(node.right);
+        update(node);
+    }
+
+    /**
+     * An immutable version of a {@link TreeList}.
+     */
+    private static final class Version<E> extends AbstractList<E> {
+        private final Node<E> mRoot;
+
+        public Version(Node<E> root) {
+            mRoot = root;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return nodeAt(mRoot, index).value;
+        }
+
+        @Override
+        public int size() {
+            return TreeList.size(mRoot);
+        }
+    }
+
+    private static final class Node<E> {
+        final int priority;
+        final Object owner;
+        E value;
+        int size = 1;
+
+        Node<E> left;
+        Node<E> right;
+
+        Node(E value, int priority, Object owner) {
+            this.value = value;
+            this.priority = priority;
+            this.owner = owner;
+        }
+
+        Node<E> copy(Object owner) {
+            Node<E> copy = new Node<>(value, priority, owner);
+            copy.size = size;
+            copy.left = left;
+            copy.right = right;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.firebase.ui.common;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BaseCachingSnapshotParserTest {
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private final Executor mExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+    };
+
+    private BaseCachingSnapshotParser<String, String> mParser;
+
+    @Before
+    public void setUp() {
+        mParser = new BaseCachingSnapshotParser<String, String>(
+                new BaseSnapshotParser<String, String>() {
+                    @Override
+                    public String parseSnapshot(String snapshot) {
+                        // A new instance every time, so cache hits can be told apart
+                        return new String(snapshot);
+                    }
+                }) {
+            @Override
+            public String getId(String snapshot) {
+                return snapshot;
+            }
+        };
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        String first = mParser.parseSnapshot("a");
+        assertSame(first, mParser.parseSnapshot("a"));
+        mParser.parseSnapshot("b");
+
+        CacheStats stats = mParser.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+        assertEquals(BaseCachingSnapshotParser.DEFAULT_MAX_SIZE, stats.getMaxSize());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        mParser.setConfig(new CacheConfig.Builder<String>().setMaxSize(2).build());
+
+        String a = mParser.parseSnapshot("a");
+        mParser.parseSnapshot("b");
+        mParser.parseSnapshot("a");
+        mParser.parseSnapshot("c");
+
+        assertSame(a, mParser.parseSnapshot("a"));
+        assertEquals(1, mParser.getStats().getEvictionCount());
+        mParser.parseSnapshot("b");
+        assertEquals(4, mParser.getStats().getMissCount());
+    }
+
+    @Test
+    public void testWeigher() {
+        mParser.setConfig(new CacheConfig.Builder<String>()
+                .setMaxSize(10)
+                .setWeigher(new CacheWeigher<String>() {
+                    @Override
+                    public int weigh(String id, String object) {
+                        return object.length();
+                    }
+                })
+                .build());
+
+        mParser.parseSnapshot("aaaa");
+        mParser.parseSnapshot("bbbb");
+        assertEquals(8, mParser.getStats().getSize());
+
+        mParser.parseSnapshot("cccc");
+        assertEquals(8, mParser.getStats().getSize());
+        assertEquals(1, mParser.getStats().getEvictionCount());
+    }
+
+    @Test
+    public void testSizedToArrayGrowsAndKeepsEntries() {
+        mParser.setConfig(new CacheConfig.Builder<String>()
+                .setMaxSize(2)
+                .setSizedToArray(true)
+                .build());
+
+        String a = mParser.parseSnapshot("a");
+        mParser.parseSnapshot("b");
+        mParser.ensureCapacity(3);
+        mParser.parseSnapshot("c");
+
+        assertSame(a, mParser.parseSnapshot("a"));
+        assertEquals(0, mParser.getStats().getEvictionCount());
+        assertEquals(3, mParser.getStats().getMaxSize());
+    }
+
+    @Test
+    public void testEnsureCapacityIgnoredUnlessSizedToArray() {
+        mParser.setConfig(new CacheConfig.Builder<String>().setMaxSize(2).build());
+        mParser.ensureCapacity(50);
+
+        assertEquals(2, mParser.getStats().getMaxSize());
+    }
+
+    @Test
+    public void testClearShrinksAndIsNotCountedAsEviction() {
+        mParser.setConfig(new CacheConfig.Builder<String>()
+                .setMaxSize(2)
+                .setSizedToArray(true)
+                .build());
+        mParser.ensureCapacity(10);
+        String a = mParser.parseSnapshot("a");
+
+        mParser.clear();
+
+        assertNotSame(a, mParser.parseSnapshot("a"));
+        assertEquals(0, mParser.getStats().getEvictionCount());
+        assertEquals(2, mParser.getStats().getMaxSize());
+    }
+
+    @Test
+    public void testArrayGrowsCache() {
+        TestSnapshotArray array = new TestSnapshotArray();
+        array.getCachingParser().setConfig(new CacheConfig.Builder<String>()
+                .setMaxSize(2)
+                .setSizedToArray(true)
+                .build());
+
+        for (int i = 0; i < 5; i++) {
+            array.addSnapshot(i, String.valueOf(i));
+        }
+
+        assertTrue(array.getCacheStats().getMaxSize() >= 5);
+    }
+
+    @Test
+    public void testPrefetchedObjectIsCached() {
+        mParser.prefetch("a", mExecutor);
+        mParser.prefetch("a", mExecutor);
+        assertEquals(1, mTasks.size());
+
+        runTasks();
+        mParser.parseSnapshot("a");
+
+        assertEquals(1, mParser.getStats().getHitCount());
+        assertEquals(0, mParser.getStats().getMissCount());
+    }
+
+    @Test
+    public void testInvalidatedPrefetchIsDropped() {
+        mParser.prefetch("a", mExecutor);
+        mParser.invalidate("a");
+        runTasks();
+
+        assertEquals(0, mParser.getStats().getSize());
+    }
+
+    @Test
+    public void testPrefetchAfterParseIsDropped() {
+        mParser.prefetch("a", mExecutor);
+        String parsed = mParser.parseSnapshot("a");
+        runTasks();
+
+        assertSame(parsed, mParser.parseSnapshot("a"));
+    }
+
+    @Test
+    public void testArrayPrefetchesAddedSnapshots() {
+        TestSnapshotArray array = new TestSnapshotArray();
+        array.setPrefetchExecutor(mExecutor);
+
+        array.addSnapshot(0, "a");
+        array.addSnapshot(1, "b");
+        runTasks();
+        array.get(0);
+        array.get(1);
+
+        assertEquals(2, array.getCacheStats().getHitCount());
+        assertEquals(0, array.getCacheStats().getMissCount());
+    }
+
+    @Test
+    public void testStableIdIsStable() {
+        long id = mParser.getStableId("a");
+
+        assertEquals(id, mParser.getStableId("a"));
+        assertEquals(id, BaseCachingSnapshotParser.hash("a"));
+        assertNotEquals(id, mParser.getStableId("b"));
+    }
+
+    @Test
+    public void testStableIdsDoNotCollide() {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            long id = BaseCachingSnapshotParser.hash("key" + i);
+            assertNotEquals(-1, id);
+            assertTrue(ids.add(id));
+        }
+    }
+
+    @Test
+    public void testRemoveForgetsStableId() {
+        mParser.getStableId("a");
+        mParser.parseSnapshot("a");
+        mParser.remove("a");
+
+        assertEquals(0, mParser.getStats().getSize());
+        assertEquals(BaseCachingSnapshotParser.hash("a"), mParser.getStableId("a"));
+    }
+
+    private void runTasks() {
+        for (Runnable task : mTasks) {
+            task.run();
+        }
+        mTasks.clear();
+    }
+}
@@ -0,0 +1,277 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BaseObservableSnapshotArrayTest {
+
+    private TestSnapshotArray mArray;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() {
+        mArray = new TestSnapshotArray();
+        mListener = new RecordingListener();
+    }
+
+    @Test
+    public void testEventsAreDeliveredImmediatelyByDefault() {
+        mArray.addChangeEventListener(mListener);
+        mArray.addSnapshot(0, "a");
+        mArray.dataChanged();
+
+        assertEquals(Arrays.asList("ADDED a 0 -1", "data"), mListener.events);
+    }
+
+    @Test
+    public void testBatchingCoalescesContiguousEvents() {
+        mArray.setBatchingEnabled(true);
+        mArray.addChangeEventListener(mListener);
+
+        for (int i = 0; i < 500; i++) {
+            mArray.addSnapshot(i, "item" + i);
+        }
+        mArray.removeAt(10);
+        mArray.removeAt(10);
+        mArray.change(0);
+        mArray.change(1);
+        mArray.dataChanged();
+
+        assertEquals(Arrays.asList(
+                "inserted 0 500",
+                "removed 10 2",
+                "changed 0 2",
+                "data"), mListener.events);
+    }
+
+    @Test
+    public void testBatchingDoesNotAffectPlainListeners() {
+        mArray.setBatchingEnabled(true);
+        final RecordingListener plain = new RecordingListener();
+        mArray.addChangeEventListener(new BaseChangeEventListener<String, Exception>() {
+            @Override
+            public void onChildChanged(ChangeEventType type,
+                                       String snapshot,
+                                       int newIndex,
+                                       int oldIndex) {
+                plain.onChildChanged(type, snapshot, newIndex, oldIndex);
+            }
+
+            @Override
+            public void onDataChanged() {
+                plain.onDataChanged();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                plain.onError(e);
+            }
+        });
+
+        mArray.addSnapshot(0, "a");
+        mArray.addSnapshot(1, "b");
+
+        assertEquals(Arrays.asList("ADDED a 0 -1", "ADDED b 1 -1"), plain.events);
+    }
+
+    @Test
+    public void testNewBatchingListenerIsCaughtUpWithOneBatch() {
+        mArray.setBatchingEnabled(true);
+        mArray.addSnapshot(0, "a");
+        mArray.addSnapshot(1, "b");
+        mArray.dataChanged();
+
+        mArray.addChangeEventListener(mListener);
+
+        assertEquals(Arrays.asList("inserted 0 2", "data"), mListener.events);
+    }
+
+    @Test
+    public void testDisablingBatchingFlushesPendingEvents() {
+        mArray.setBatchingEnabled(true);
+        mArray.addChangeEventListener(mListener);
+        mArray.addSnapshot(0, "a");
+        mArray.move(0, 0);
+
+        mArray.setBatchingEnabled(false);
+        mArray.addSnapshot(1, "b");
+
+        assertEquals(Arrays.asList("inserted 0 1", "moved 0 0", "ADDED b 1 -1"),
+                mListener.events);
+    }
+
+    @Test
+    public void testDispatcherDefersMutationsToFlush() {
+        FrameDispatcher dispatcher = new FrameDispatcher();
+        mArray.setDispatcher(dispatcher);
+        mArray.setBatchingEnabled(true);
+        mArray.addChangeEventListener(mListener);
+
+        mArray.dispatchAdd(0, "a");
+        mArray.dispatchDataChanged();
+        mArray.dispatchAdd(1, "b");
+        mArray.dispatchDataChanged();
+        assertEquals(0, mArray.size());
+        assertTrue(mListener.events.isEmpty());
+
+        dispatcher.flush();
+        assertEquals(Arrays.asList("a", "b"), mArray);
+        assertEquals(Arrays.asList("inserted 0 2", "data"), mListener.events);
+    }
+
+    @Test
+    public void testDispatcherDropsMutationsOfStoppedArray() {
+        FrameDispatcher dispatcher = new FrameDispatcher();
+        mArray.setDispatcher(dispatcher);
+        mArray.addChangeEventListener(mListener);
+
+        mArray.dispatchAdd(0, "a");
+        mArray.removeChangeEventListener(mListener);
+        dispatcher.flush();
+
+        assertEquals(0, mArray.size());
+        assertTrue(mListener.events.isEmpty());
+    }
+
+    @Test
+    public void testBackgroundUpdatesArePublishedAfterBatch() {
+        QueueExecutor updates = new QueueExecutor();
+        QueueExecutor main = new QueueExecutor();
+        mArray.setUpdateExecutor(updates);
+        mArray.setMainExecutor(main);
+        mArray.addChangeEventListener(mListener);
+
+        mArray.dispatchAdd(0, "a");
+        mArray.dispatchAdd(1, "b");
+        mArray.dispatchDataChanged();
+        updates.runAll();
+        assertEquals(0, mArray.size());
+        assertTrue(mListener.events.isEmpty());
+
+        main.runAll();
+        assertEquals(Arrays.asList("a", "b"), mArray);
+        assertEquals(Arrays.asList("a", "b"), mArray.copySnapshots());
+        assertEquals(Arrays.asList("ADDED a 0 -1", "ADDED b 1 -1", "data"), mListener.events);
+    }
+
+    @Test
+    public void testBackgroundUpdatesOfStoppedArrayAreNotPublished() {
+        QueueExecutor updates = new QueueExecutor();
+        QueueExecutor main = new QueueExecutor();
+        mArray.setUpdateExecutor(updates);
+        mArray.setMainExecutor(main);
+        mArray.addChangeEventListener(mListener);
+
+        mArray.dispatchAdd(0, "a");
+        updates.runAll();
+        mArray.dispatchAdd(1, "b");
+        mArray.removeChangeEventListener(mListener);
+        updates.runAll();
+        main.runAll();
+
+        assertEquals(0, mArray.size());
+        assertTrue(mListener.events.isEmpty());
+
+        // Restarting begins from an empty array
+        mArray.addChangeEventListener(mListener);
+        mArray.dispatchAdd(0, "c");
+        updates.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("c"), mArray);
+    }
+
+    @Test
+    public void testUpdateListenerReceivesOldSnapshot() {
+        UpdateRecordingListener updateListener = new UpdateRecordingListener();
+        mArray.addChangeEventListener(mListener);
+        mArray.addChangeEventListener(updateListener);
+        mArray.addSnapshot(0, "a");
+
+        mArray.update(0, "b");
+        mArray.change(0);
+
+        assertEquals(Arrays.asList("ADDED a 0 -1", "CHANGED b 0 -1", "CHANGED b 0 -1"),
+                mListener.events);
+        assertEquals(Arrays.asList("ADDED a 0 -1", "UPDATED a b 0 -1", "CHANGED b 0 -1"),
+                updateListener.events);
+    }
+
+    @Test
+    public void testBatchedUpdatesCarryChangedFields() {
+        UpdateRecordingListener updateListener = new UpdateRecordingListener();
+        mArray.setBatchingEnabled(true);
+        mArray.addChangeEventListener(updateListener);
+        mArray.addSnapshot(0, "a");
+        mArray.addSnapshot(1, "b");
+        mArray.dataChanged();
+        updateListener.events.clear();
+
+        mArray.update(0, "c");
+        mArray.change(1);
+        mArray.dataChanged();
+
+        assertEquals(Arrays.asList("changed 0 1 [c]", "changed 1 1 null", "data"),
+                updateListener.events);
+    }
+
+    /**
+     * Records updates, and the payloads of changes in batches. The only changed field of a string
+     * is its new value.
+     */
+    private static class UpdateRecordingListener extends RecordingListener
+            implements BaseChildUpdateListener<String, Exception> {
+
+        private final BaseFieldDiffer<String> mDiffer = new BaseFieldDiffer<String>() {
+            @NonNull
+            @Override
+            public Set<String> getChangedFields(@NonNull String oldSnapshot,
+                                                @NonNull String newSnapshot) {
+                return Collections.singleton(newSnapshot);
+            }
+        };
+
+        @Override
+        public void onChildUpdated(@NonNull String oldSnapshot,
+                                   @NonNull String newSnapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            events.add("UPDATED " + oldSnapshot + " " + newSnapshot + " " + newIndex + " "
+                    + oldIndex);
+        }
+
+        @Override
+        public void onChildChangeBatch(@NonNull ChangeEventBatch<String> batch) {
+            batch.dispatchUpdatesTo(new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    events.add("inserted " + position + " " + count);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    events.add("removed " + position + " " + count);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    events.add("moved " + fromPosition + " " + toPosition);
+                }
+
+                @Override
+                public void onChanged(int position, int count, Object payload) {
+                    events.add("changed " + position + " " + count + " " + payload);
+                }
+            }, mDiffer);
+        }
+    }
+}
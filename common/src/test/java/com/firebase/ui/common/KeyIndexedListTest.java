@@ -0,0 +1,241 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyIndexedListTest {
+
+    private KeyIndexedList<String> mList;
+
+    @Before
+    public void setUp() {
+        mList = new KeyIndexedList<String>() {
+            @NonNull
+            @Override
+            public String getKey(String element) {
+                return element;
+            }
+        };
+    }
+
+    @Test
+    public void testAddAndGet() {
+        mList.add("b");
+        mList.add(0, "a");
+        mList.add("c");
+
+        assertEquals(3, mList.size());
+        assertEquals("a", mList.get(0));
+        assertEquals("b", mList.get(1));
+        assertEquals("c", mList.get(2));
+    }
+
+    @Test
+    public void testIndexOfKey() {
+        mList.add("a");
+        mList.add("b");
+        mList.add("c");
+
+        assertEquals(0, mList.indexOfKey("a"));
+        assertEquals(2, mList.indexOfKey("c"));
+        assertEquals(-1, mList.indexOfKey("d"));
+
+        mList.remove(0);
+        assertEquals(1, mList.indexOfKey("c"));
+        assertFalse(mList.containsKey("a"));
+    }
+
+    @Test
+    public void testSetWithNewKey() {
+        mList.add("a");
+        mList.add("b");
+
+        mList.set(0, "z");
+
+        assertEquals(0, mList.indexOfKey("z"));
+        assertEquals(-1, mList.indexOfKey("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateKeyThrows() {
+        mList.add("a");
+        mList.add("a");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBoundsThrows() {
+        mList.add("a");
+        mList.get(1);
+    }
+
+    @Test
+    public void testClear() {
+        mList.add("a");
+        mList.add("b");
+        mList.clear();
+
+        assertTrue(mList.isEmpty());
+        assertFalse(mList.containsKey("a"));
+    }
+
+    @Test
+    public void testMatchesArrayListUnderRandomOperations() {
+        Random random = new Random(42);
+        List<String> expected = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                String key = "key" + i;
+                expected.add(index, key);
+                mList.add(index, key);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), mList.remove(index));
+            } else {
+                // Move
+                int from = random.nextInt(expected.size());
+                String key = expected.remove(from);
+                mList.remove(mList.indexOfKey(key));
+                int to = random.nextInt(expected.size() + 1);
+                expected.add(to, key);
+                mList.add(to, key);
+            }
+        }
+
+        assertEquals(expected, mList);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, mList.indexOfKey(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void testMarkedIndexOfKey() {
+        mList.addAll(Arrays.asList("a", "b", "c", "d"));
+        mList.setMarked("b", true);
+        mList.setMarked("d", true);
+
+        assertEquals(0, mList.markedIndexOfKey("a"));
+        assertEquals(0, mList.markedIndexOfKey("b"));
+        assertEquals(1, mList.markedIndexOfKey("c"));
+        assertEquals(1, mList.markedIndexOfKey("d"));
+        assertEquals(-1, mList.markedIndexOfKey("z"));
+        assertEquals(2, mList.markedCount());
+
+        mList.remove(1);
+        assertEquals(0, mList.markedIndexOfKey("d"));
+        assertFalse(mList.isMarked("b"));
+        assertTrue(mList.isMarked("d"));
+    }
+
+    @Test
+    public void testMarksSurviveRandomOperations() {
+        Random random = new Random(7);
+        List<String> expected = new ArrayList<>();
+        Set<String> marked = new HashSet<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                String key = "key" + i;
+                expected.add(index, key);
+                mList.add(index, key);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                marked.remove(expected.remove(index));
+                mList.remove(index);
+            } else {
+                String key = expected.get(random.nextInt(expected.size()));
+                boolean mark = random.nextBoolean();
+                if (mark) {
+                    marked.add(key);
+                } else {
+                    marked.remove(key);
+                }
+                mList.setMarked(key, mark);
+            }
+        }
+
+        int markedBefore = 0;
+        for (String key : expected) {
+            assertEquals(markedBefore, mList.markedIndexOfKey(key));
+            assertEquals(marked.contains(key), mList.isMarked(key));
+            if (marked.contains(key)) markedBefore++;
+        }
+        assertEquals(marked.size(), mList.markedCount());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterMutations() {
+        mList.addAll(Arrays.asList("a", "b", "c"));
+        List<String> first = mList.snapshot();
+
+        mList.set(0, "z");
+        mList.remove(2);
+        List<String> second = mList.snapshot();
+        mList.add(1, "y");
+        mList.clear();
+
+        assertEquals(Arrays.asList("a", "b", "c"), first);
+        assertEquals(Arrays.asList("z", "b"), second);
+        assertEquals(Collections.emptyList(), mList);
+    }
+
+    @Test
+    public void testKeysAndMarksSurviveSnapshots() {
+        Random random = new Random(11);
+        List<String> expected = new ArrayList<>();
+        Set<String> marked = new HashSet<>();
+        List<List<String>> expectedVersions = new ArrayList<>();
+        List<List<String>> versions = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                String key = "key" + i;
+                expected.add(index, key);
+                mList.add(index, key);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                marked.remove(expected.remove(index));
+                mList.remove(index);
+            } else {
+                String key = expected.get(random.nextInt(expected.size()));
+                marked.add(key);
+                mList.setMarked(key, true);
+            }
+
+            if (i % 100 == 0) {
+                expectedVersions.add(new ArrayList<>(expected));
+                versions.add(mList.snapshot());
+            }
+        }
+
+        assertEquals(expected, mList);
+        assertEquals(expectedVersions, versions);
+        int markedBefore = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            String key = expected.get(i);
+            assertEquals(i, mList.indexOfKey(key));
+            assertEquals(markedBefore, mList.markedIndexOfKey(key));
+            if (marked.contains(key)) markedBefore++;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.firebase.ui.common;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsCounterTest {
+
+    private static final BaseChangeEventListener<String, Exception> NOOP_LISTENER =
+            new BaseChangeEventListener<String, Exception>() {
+                @Override
+                public void onChildChanged(ChangeEventType type,
+                                           String snapshot,
+                                           int newIndex,
+                                           int oldIndex) {
+                }
+
+                @Override
+                public void onDataChanged() {
+                }
+
+                @Override
+                public void onError(Exception e) {
+                }
+            };
+
+    private TestSnapshotArray mArray;
+    private MetricsCounter mCounter;
+
+    @Before
+    public void setUp() {
+        mArray = new TestSnapshotArray();
+        mCounter = new MetricsCounter();
+        mArray.setMetricsListener(mCounter);
+    }
+
+    @Test
+    public void testCountsEventsAndDeliveries() {
+        mArray.addChangeEventListener(NOOP_LISTENER);
+        mArray.dispatchAdd(0, "a");
+        mArray.dispatchAdd(1, "b");
+        mArray.removeAt(0);
+
+        assertEquals(2, mCounter.getEventCount(ChangeEventType.ADDED));
+        assertEquals(0, mCounter.getEventCount(ChangeEventType.REMOVED));
+        assertEquals(3, mCounter.getOperationCount(MetricsListener.Operation.FAN_OUT));
+        // The removal did not come from a database callback, so its latency is unknown
+        assertEquals(2, mCounter.getDeliveryCount());
+        assertTrue(mCounter.getMaxDeliveryNanos() >= mCounter.getAverageDeliveryNanos());
+    }
+
+    @Test
+    public void testCountsParsesAndCacheHits() {
+        mArray.addChangeEventListener(NOOP_LISTENER);
+        mArray.dispatchAdd(0, "a");
+        mArray.get(0);
+        mArray.get(0);
+        mArray.get(0);
+
+        assertEquals(1, mCounter.getOperationCount(MetricsListener.Operation.PARSE));
+        assertEquals(2.0 / 3, mCounter.getCacheHitRate(), 0.001);
+    }
+
+    @Test
+    public void testReset() {
+        mArray.addChangeEventListener(NOOP_LISTENER);
+        mArray.dispatchAdd(0, "a");
+        mCounter.reset();
+
+        assertEquals(0, mCounter.getEventCount(ChangeEventType.ADDED));
+        assertEquals(0, mCounter.getOperationCount(MetricsListener.Operation.FAN_OUT));
+        assertEquals(0, mCounter.getDeliveryCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCannotBeChangedWhileListening() {
+        mArray.addChangeEventListener(NOOP_LISTENER);
+        mArray.setMetricsListener(null);
+    }
+
+    @Test
+    public void testTraceListenerPassesMetricsOn() {
+        final List<String> calls = new ArrayList<>();
+        MetricsListener trace = new TraceMetricsListener(new MetricsCounter() {
+            @Override
+            public void onOperationStarted(Operation operation) {
+                calls.add("start " + operation);
+            }
+
+            @Override
+            public synchronized void onOperationFinished(Operation operation, long nanos) {
+                calls.add("finish " + operation);
+            }
+        });
+
+        TestSnapshotArray array = new TestSnapshotArray();
+        array.setMetricsListener(trace);
+        array.addChangeEventListener(NOOP_LISTENER);
+        array.dispatchAdd(0, "a");
+
+        assertEquals(2, calls.size());
+        assertEquals("start FAN_OUT", calls.get(0));
+        assertEquals("finish FAN_OUT", calls.get(1));
+    }
+}
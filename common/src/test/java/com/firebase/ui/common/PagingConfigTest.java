@@ -0,0 +1,38 @@
+package com.firebase.ui.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PagingConfigTest {
+
+    @Test
+    public void testDefaults() {
+        PagingConfig config = new PagingConfig.Builder().build();
+        assertEquals(PagingConfig.DEFAULT_PAGE_SIZE, config.getPageSize());
+        assertEquals(PagingConfig.DEFAULT_MAX_PAGES, config.getMaxPages());
+        assertEquals(PagingConfig.DEFAULT_PAGE_SIZE / 2, config.getPrefetchDistance());
+        assertFalse(config.isLiveUpdates());
+    }
+
+    @Test
+    public void testPrefetchDistanceFollowsPageSize() {
+        PagingConfig config = new PagingConfig.Builder().setPageSize(50).build();
+        assertEquals(25, config.getPrefetchDistance());
+
+        config = new PagingConfig.Builder()
+                .setPageSize(50)
+                .setPrefetchDistance(5)
+                .setLiveUpdates(true)
+                .build();
+        assertEquals(5, config.getPrefetchDistance());
+        assertTrue(config.isLiveUpdates());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSinglePageIsRejected() {
+        new PagingConfig.Builder().setMaxPages(1);
+    }
+}
@@ -0,0 +1,31 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that queues tasks until {@link #runAll()} is called, to control when background work
+ * happens in tests.
+ */
+public class QueueExecutor implements Executor {
+
+    private final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        mTasks.add(command);
+    }
+
+    /**
+     * Run queued tasks, including those queued while running, until none remain.
+     */
+    public void runAll() {
+        Runnable task;
+        while ((task = mTasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
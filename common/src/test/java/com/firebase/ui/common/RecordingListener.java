@@ -0,0 +1,55 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listener that records every callback it receives as a string, for easy comparison in tests.
+ */
+public class RecordingListener implements BaseBatchedChangeEventListener<String, Exception> {
+
+    public final List<String> events = new ArrayList<>();
+
+    @Override
+    public void onChildChanged(ChangeEventType type, String snapshot, int newIndex, int oldIndex) {
+        events.add(type + " " + snapshot + " " + newIndex + " " + oldIndex);
+    }
+
+    @Override
+    public void onChildChangeBatch(@NonNull ChangeEventBatch<String> batch) {
+        batch.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                events.add("inserted " + position + " " + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                events.add("removed " + position + " " + count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                events.add("moved " + fromPosition + " " + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                events.add("changed " + position + " " + count);
+            }
+        });
+    }
+
+    @Override
+    public void onDataChanged() {
+        events.add("data");
+    }
+
+    @Override
+    public void onError(Exception e) {
+        events.add("error");
+    }
+}
@@ -0,0 +1,165 @@
+package com.firebase.ui.common;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Diffs on a direct executor, while results posted to the main thread wait for {@link
+ * ShadowLooper#runUiThreadTasks()}. Snapshots are strings made of an ID and a content, e.g.
+ * {@code "a:1"}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SnapshotDifferTest {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<String> mNotifications = new ArrayList<>();
+    private int mParseCount;
+
+    private BaseCachingSnapshotParser<String, String> mParser;
+    private SnapshotDiffer<String> mDiffer;
+
+    @Before
+    public void setUp() {
+        ShadowLooper.pauseMainLooper();
+
+        mParser = new BaseCachingSnapshotParser<String, String>(
+                new BaseSnapshotParser<String, String>() {
+                    @Override
+                    public String parseSnapshot(String snapshot) {
+                        mParseCount++;
+                        return snapshot;
+                    }
+                }) {
+            @Override
+            public String getId(String snapshot) {
+                return snapshot.substring(0, snapshot.indexOf(':'));
+            }
+        };
+
+        RecyclerView.Adapter adapter = new RecyclerView.Adapter() {
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            }
+
+            @Override
+            public int getItemCount() {
+                return mDiffer.getCurrentList().size();
+            }
+        };
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                record("changed", positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                record("inserted", positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                record("removed", positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                record("moved", fromPosition, toPosition);
+            }
+        });
+
+        mDiffer = new SnapshotDiffer<>(DIRECT_EXECUTOR, mParser,
+                new BaseContentComparator<String>() {
+                    @Override
+                    public boolean areContentsTheSame(String oldSnapshot, String newSnapshot) {
+                        return oldSnapshot.equals(newSnapshot);
+                    }
+                }, adapter);
+
+        mDiffer.submitList(Arrays.asList("a:1", "b:1"));
+        mNotifications.clear();
+    }
+
+    @Test
+    public void testAdapterSeesNewListOnlyOnceDispatched() {
+        List<String> oldList = mDiffer.getCurrentList();
+        List<String> newList = Arrays.asList("a:1", "b:2", "c:1");
+        mDiffer.submitList(newList);
+
+        // Diffed, but not dispatched yet
+        assertSame(oldList, mDiffer.getCurrentList());
+        assertTrue(mNotifications.isEmpty());
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertSame(newList, mDiffer.getCurrentList());
+        // The adapter already reports the new list when it is notified
+        assertEquals(Arrays.asList("inserted 2 1 (3)", "changed 1 1 (3)"), mNotifications);
+    }
+
+    @Test
+    public void testStaleGenerationIsDropped() {
+        mDiffer.submitList(Arrays.asList("a:1", "b:2"));
+        List<String> newest = Arrays.asList("b:1", "c:1");
+        mDiffer.submitList(newest);
+
+        ShadowLooper.runUiThreadTasks();
+
+        // Only the diff of the newest list against the displayed one was dispatched
+        assertSame(newest, mDiffer.getCurrentList());
+        assertEquals(Arrays.asList("inserted 2 1 (2)", "removed 0 1 (2)"), mNotifications);
+    }
+
+    @Test
+    public void testChangedIdsAreInvalidatedWhenApplied() {
+        // Models parsed from the displayed snapshots
+        mParser.parseSnapshot("a:1");
+        mParser.parseSnapshot("b:1");
+        assertEquals(2, mParseCount);
+
+        mDiffer.submitList(Arrays.asList("a:1", "b:2"));
+
+        // Until the diff is applied, the displayed model is still served from the cache
+        assertEquals("b:1", mParser.parseSnapshot("b:2"));
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals("b:2", mParser.parseSnapshot("b:2"));
+        assertEquals("a:1", mParser.parseSnapshot("a:1"));
+        // Only the changed item was parsed again
+        assertEquals(3, mParseCount);
+    }
+
+    private void record(String type, int first, int second) {
+        mNotifications.add(type + " " + first + " " + second
+                + " (" + mDiffer.getCurrentList().size() + ")");
+    }
+}
@@ -0,0 +1,87 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory {@link BaseObservableSnapshotArray} where each snapshot is a plain string key.
+ */
+public class TestSnapshotArray
+        extends BaseObservableSnapshotArray<String, Exception, BaseChangeEventListener<String, Exception>, String> {
+
+    private final List<String> mSnapshots = new ArrayList<>();
+
+    public TestSnapshotArray() {
+        super(new BaseCachingSnapshotParser<String, String>(new BaseSnapshotParser<String, String>() {
+            @Override
+            public String parseSnapshot(String snapshot) {
+                return snapshot;
+            }
+        }) {
+            @Override
+            public String getId(String snapshot) {
+                return snapshot;
+            }
+        });
+    }
+
+    public void addSnapshot(int index, String snapshot) {
+        mSnapshots.add(index, snapshot);
+        notifyOnChildChanged(ChangeEventType.ADDED, snapshot, index, -1);
+    }
+
+    public void change(int index) {
+        String snapshot = mSnapshots.get(index);
+        notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1);
+    }
+
+    public void update(int index, String snapshot) {
+        String oldSnapshot = mSnapshots.set(index, snapshot);
+        notifyOnChildUpdated(oldSnapshot, snapshot, index, -1);
+    }
+
+    public void removeAt(int index) {
+        String snapshot = mSnapshots.remove(index);
+        notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
+    }
+
+    public void move(int oldIndex, int newIndex) {
+        String snapshot = mSnapshots.remove(oldIndex);
+        mSnapshots.add(newIndex, snapshot);
+        notifyOnChildChanged(ChangeEventType.MOVED, snapshot, newIndex, oldIndex);
+    }
+
+    public void dataChanged() {
+        notifyOnDataChanged();
+    }
+
+    /**
+     * Add a snapshot through the dispatcher, like a database event would.
+     */
+    public void dispatchAdd(final int index, final String snapshot) {
+        onEventReceived(ChangeEventType.ADDED);
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                addSnapshot(index, snapshot);
+            }
+        });
+    }
+
+    public void dispatchDataChanged() {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                dataChanged();
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    protected List<String> getSnapshots() {
+        return mSnapshots;
+    }
+}
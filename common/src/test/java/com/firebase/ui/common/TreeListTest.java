@@ -0,0 +1,115 @@
+package com.firebase.ui.common;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TreeListTest {
+
+    private TreeList<String> mList;
+
+    @Before
+    public void setUp() {
+        mList = new TreeList<>();
+    }
+
+    @Test
+    public void testAddSetAndRemove() {
+        mList.add("b");
+        mList.add(0, "a");
+        mList.add("c");
+        assertEquals(Arrays.asList("a", "b", "c"), mList);
+
+        assertEquals("b", mList.set(1, "z"));
+        assertEquals("a", mList.remove(0));
+        assertEquals(Arrays.asList("z", "c"), mList);
+    }
+
+    @Test
+    public void testMove() {
+        mList.addAll(Arrays.asList("a", "b", "c", "d"));
+
+        mList.move(0, 3);
+        assertEquals(Arrays.asList("b", "c", "d", "a"), mList);
+        mList.move(2, 1);
+        assertEquals(Arrays.asList("b", "d", "c", "a"), mList);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBoundsThrows() {
+        mList.add("a");
+        mList.get(1);
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterMutations() {
+        mList.addAll(Arrays.asList("a", "b", "c"));
+        List<String> first = mList.snapshot();
+
+        mList.set(0, "z");
+        mList.remove(2);
+        List<String> second = mList.snapshot();
+        mList.add(1, "y");
+        mList.clear();
+
+        assertEquals(Arrays.asList("a", "b", "c"), first);
+        assertEquals(Arrays.asList("z", "b"), second);
+        assertEquals(Collections.emptyList(), mList);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable() {
+        mList.add("a");
+        mList.snapshot().add("b");
+    }
+
+    @Test
+    public void testMatchesArrayListUnderRandomOperations() {
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        TreeList<Integer> list = new TreeList<>();
+        List<List<Integer>> expectedVersions = new ArrayList<>();
+        List<List<Integer>> versions = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int op = expected.isEmpty() ? 0 : random.nextInt(5);
+            switch (op) {
+                case 0:
+                case 1:
+                    int index = random.nextInt(expected.size() + 1);
+                    expected.add(index, i);
+                    list.add(index, i);
+                    break;
+                case 2:
+                    index = random.nextInt(expected.size());
+                    assertEquals(expected.remove(index), list.remove(index));
+                    break;
+                case 3:
+                    index = random.nextInt(expected.size());
+                    assertEquals(expected.set(index, i), list.set(index, i));
+                    break;
+                default:
+                    int from = random.nextInt(expected.size());
+                    int to = random.nextInt(expected.size());
+                    expected.add(to, expected.remove(from));
+                    list.move(from, to);
+                    break;
+            }
+
+            if (i % 500 == 0) {
+                expectedVersions.add(new ArrayList<>(expected));
+                versions.add(list.snapshot());
+            }
+        }
+
+        assertEquals(expected, list);
+        assertEquals(expectedVersions, versions);
+    }
+}
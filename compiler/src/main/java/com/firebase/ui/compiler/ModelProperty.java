@@ -0,0 +1,51 @@
+package com.firebase.ui.compiler;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A property of a model class, written either through a public setter or a public field.
+ */
+final class ModelProperty {
+
+    private final String mName;
+    private final Element mElement;
+    private final TypeMirror mType;
+
+    ModelProperty(String name, Element element, TypeMirror type) {
+        mName = name;
+        mElement = element;
+        mType = type;
+    }
+
+    /**
+     * @return the name of the property in the snapshot's data.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the setter or field the property is written to.
+     */
+    public Element getElement() {
+        return mElement;
+    }
+
+    public TypeMirror getType() {
+        return mType;
+    }
+
+    /**
+     * @return a statement assigning {@code value} to the property of {@code model}.
+     */
+    public String assign(String model, String value) {
+        String member = mElement.getSimpleName().toString();
+        if (mElement instanceof ExecutableElement) {
+            return model + "." + member + "(" + value + ");";
+        } else {
+            return model + "." + member + " = " + value + ";";
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.firebase.ui.compiler;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A FirebaseUI module a snapshot parser can be generated for.
+ */
+enum ParserTarget {
+    DATABASE("com.firebase.ui.database.SnapshotParser",
+            "com.google.firebase.database.DataSnapshot",
+            "getValue",
+            "com.google.firebase.database",
+            "DatabaseSnapshotParser"),
+
+    FIRESTORE("com.firebase.ui.firestore.SnapshotParser",
+            "com.google.firebase.firestore.DocumentSnapshot",
+            "getData",
+            "com.google.firebase.firestore",
+            "FirestoreSnapshotParser",
+            "java.util.Date",
+            "com.google.firebase.firestore.Blob",
+            "com.google.firebase.firestore.DocumentReference",
+            "com.google.firebase.firestore.GeoPoint");
+
+    private final String mParserInterface;
+    private final String mSnapshotClass;
+    private final String mDataMethod;
+    private final String mSdkPackage;
+    private final String mSuffix;
+    private final List<String> mValueClasses;
+
+    ParserTarget(String parserInterface,
+                 String snapshotClass,
+                 String dataMethod,
+                 String sdkPackage,
+                 String suffix,
+                 String... valueClasses) {
+        mParserInterface = parserInterface;
+        mSnapshotClass = snapshotClass;
+        mDataMethod = dataMethod;
+        mSdkPackage = sdkPackage;
+        mSuffix = suffix;
+        mValueClasses = Arrays.asList(valueClasses);
+    }
+
+    /**
+     * @return the qualified name of the {@code SnapshotParser} interface to implement.
+     */
+    public String getParserInterface() {
+        return mParserInterface;
+    }
+
+    /**
+     * @return the qualified name of the SDK's snapshot class.
+     */
+    public String getSnapshotClass() {
+        return mSnapshotClass;
+    }
+
+    /**
+     * @return the snapshot method returning its data as maps, lists and raw values.
+     */
+    public String getDataMethod() {
+        return mDataMethod;
+    }
+
+    /**
+     * @return the qualified name of the SDK annotation with the given simple name, e.g. {@code
+     * PropertyName}.
+     */
+    public String getSdkAnnotation(String simpleName) {
+        return mSdkPackage + "." + simpleName;
+    }
+
+    /**
+     * @return the suffix of generated parser class names.
+     */
+    public String getSuffix() {
+        return mSuffix;
+    }
+
+    /**
+     * @return qualified names of SDK value classes that are stored in snapshot data as is.
+     */
+    public List<String> getValueClasses() {
+        return mValueClasses;
+    }
+}
@@ -0,0 +1,508 @@
+package com.firebase.ui.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code SnapshotParser} for each class annotated with {@code GenerateSnapshotParser},
+ * for every FirebaseUI module found on the classpath. Generated parsers read properties straight
+ * from the maps returned by {@code DataSnapshot#getValue()} and {@code DocumentSnapshot#getData()}
+ * and convert values the same way the SDKs' reflection based mappers do.
+ */
+public class SnapshotParserProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.firebase.ui.common.GenerateSnapshotParser";
+
+    private static final String INDENT = "    ";
+
+    private Elements mElements;
+    private Types mTypes;
+    private Messager mMessager;
+
+    /**
+     * Errors reported so far, so that a property that can't be parsed by any target is only
+     * reported once.
+     */
+    private final Set<String> mErrors = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null) return false;
+
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mMessager = processingEnv.getMessager();
+
+        Set<? extends Element> models = roundEnv.getElementsAnnotatedWith(annotation);
+        if (models.isEmpty()) return true;
+
+        Set<ParserTarget> targets = EnumSet.noneOf(ParserTarget.class);
+        for (ParserTarget target : ParserTarget.values()) {
+            if (mElements.getTypeElement(target.getParserInterface()) != null) {
+                targets.add(target);
+            }
+        }
+        if (targets.isEmpty()) {
+            mMessager.printMessage(Diagnostic.Kind.WARNING,
+                    "Neither FirebaseUI Database nor FirebaseUI Firestore is on the classpath, "
+                            + "no snapshot parsers will be generated.");
+            return true;
+        }
+
+        for (Element element : models) {
+            if (!isValidModel(element)) continue;
+
+            TypeElement model = (TypeElement) element;
+            for (ParserTarget target : targets) {
+                List<ModelProperty> properties = collectProperties(model, target);
+                if (properties != null) writeParser(model, target, properties);
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidModel(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return error(element, "Only classes can be annotated with @GenerateSnapshotParser.");
+        }
+
+        TypeElement model = (TypeElement) element;
+        Set<Modifier> modifiers = model.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT)) {
+            return error(model, "Abstract classes can't be instantiated by a snapshot parser.");
+        }
+        if (!model.getTypeParameters().isEmpty()) {
+            return error(model, "Generic classes are not supported, use ClassSnapshotParser.");
+        }
+        for (Element e = model; e.getKind() == ElementKind.CLASS; e = e.getEnclosingElement()) {
+            boolean nested = e.getEnclosingElement().getKind() != ElementKind.PACKAGE;
+            if (e.getModifiers().contains(Modifier.PRIVATE)
+                    || nested && !e.getModifiers().contains(Modifier.STATIC)) {
+                return error(model, "Nested model classes must be static and not private.");
+            }
+        }
+
+        for (Element member : model.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return error(model, "Model classes need a non-private no-argument constructor.");
+    }
+
+    /**
+     * Collect the properties of a model class, most derived class first. Setters take precedence
+     * over fields with the same property name.
+     *
+     * @return the properties, or null if any of them can't be parsed.
+     */
+    private List<ModelProperty> collectProperties(TypeElement model, ParserTarget target) {
+        DeclaredType modelType = (DeclaredType) model.asType();
+        Map<String, ModelProperty> properties = new LinkedHashMap<>();
+        boolean valid = true;
+
+        for (TypeElement type = model; type != null; type = getSuperclass(type)) {
+            List<Element> members = new ArrayList<>();
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD) members.add(member);
+            }
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.FIELD) members.add(member);
+            }
+
+            for (Element member : members) {
+                Set<Modifier> modifiers = member.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                    continue;
+                }
+
+                String baseName;
+                TypeMirror propertyType;
+                if (member.getKind() == ElementKind.METHOD) {
+                    String name = member.getSimpleName().toString();
+                    ExecutableElement method = (ExecutableElement) member;
+                    if (!name.startsWith("set") || name.length() == 3
+                            || method.getParameters().size() != 1) {
+                        continue;
+                    }
+                    baseName = name.substring(3);
+                    propertyType = ((ExecutableType) mTypes.asMemberOf(modelType, method))
+                            .getParameterTypes().get(0);
+                } else {
+                    if (modifiers.contains(Modifier.TRANSIENT)
+                            || modifiers.contains(Modifier.FINAL)) {
+                        continue;
+                    }
+                    String name = member.getSimpleName().toString();
+                    baseName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                    propertyType = mTypes.asMemberOf(modelType, member);
+                }
+
+                ExecutableElement getter = findGetter(type, baseName);
+                if (hasAnnotation(member, target.getSdkAnnotation("Exclude"))
+                        || getter != null
+                        && hasAnnotation(getter, target.getSdkAnnotation("Exclude"))) {
+                    continue;
+                }
+
+                String name = getPropertyName(member, target);
+                if (name == null && getter != null) name = getPropertyName(getter, target);
+                if (name == null) {
+                    name = member.getKind() == ElementKind.METHOD
+                            ? serializedName(baseName) : member.getSimpleName().toString();
+                }
+                if (properties.containsKey(name)) continue;
+
+                if (convert(propertyType, target, "value", name) == null) {
+                    valid = error(member, "Unsupported type " + propertyType + " for property '"
+                            + name + "'. Use ClassSnapshotParser for this class, or annotate the "
+                            + "property's class with @GenerateSnapshotParser.");
+                }
+                properties.put(name, new ModelProperty(name, member, propertyType));
+            }
+        }
+
+        return valid ? new ArrayList<>(properties.values()) : null;
+    }
+
+    /**
+     * @return an expression converting the raw value {@code value} to {@code type}, or null if
+     * the type is not supported.
+     */
+    private String convert(TypeMirror type, ParserTarget target, String value, String property) {
+        String args = "(" + value + ", \"" + property + "\")";
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "asBoolean" + args;
+            case INT:
+                return "asInt" + args;
+            case LONG:
+                return "asLong" + args;
+            case DOUBLE:
+                return "asDouble" + args;
+            case FLOAT:
+                return "(float) asDouble" + args;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        TypeElement element = (TypeElement) mTypes.asElement(type);
+        String name = element.getQualifiedName().toString();
+        switch (name) {
+            case "java.lang.Boolean":
+                return "asBoolean" + args;
+            case "java.lang.Integer":
+                return "asInt" + args;
+            case "java.lang.Long":
+                return "asLong" + args;
+            case "java.lang.Double":
+                return "asDouble" + args;
+            case "java.lang.Float":
+                return "(float) asDouble" + args;
+            case "java.lang.Object":
+                return value;
+            case "java.util.List":
+            case "java.util.Map":
+                if (!isRawValue(type, target)) return null;
+                return "(" + type + ") asInstance(" + name + ".class, " + value + ", \""
+                        + property + "\")";
+            default:
+                break;
+        }
+
+        if (element.getKind() == ElementKind.ENUM) {
+            return "asEnum(" + name + ".class, " + value + ", \"" + property + "\")";
+        } else if (hasAnnotation(element, ANNOTATION)) {
+            return getParserName(element, target) + ".fromValue(" + value + ")";
+        } else if (name.equals("java.lang.String") || target.getValueClasses().contains(name)) {
+            return "asInstance(" + name + ".class, " + value + ", \"" + property + "\")";
+        }
+        return null;
+    }
+
+    /**
+     * @return true if values of the given type are stored in snapshot data as is, so that they
+     * can be assigned without conversion.
+     */
+    private boolean isRawValue(TypeMirror type, ParserTarget target) {
+        if (type.getKind() == TypeKind.WILDCARD) {
+            WildcardType wildcard = (WildcardType) type;
+            return wildcard.getExtendsBound() == null && wildcard.getSuperBound() == null;
+        }
+        if (type.getKind() != TypeKind.DECLARED) return false;
+
+        List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+        String name = ((TypeElement) mTypes.asElement(type)).getQualifiedName().toString();
+        switch (name) {
+            case "java.lang.Object":
+            case "java.lang.String":
+            case "java.lang.Boolean":
+            case "java.lang.Long":
+            case "java.lang.Double":
+                return true;
+            case "java.util.List":
+                return arguments.isEmpty() || isRawValue(arguments.get(0), target);
+            case "java.util.Map":
+                return arguments.isEmpty()
+                        || arguments.get(0).toString().equals("java.lang.String")
+                        && isRawValue(arguments.get(1), target);
+            default:
+                return target.getValueClasses().contains(name);
+        }
+    }
+
+    private void writeParser(TypeElement model, ParserTarget target, List<ModelProperty> props) {
+        PackageElement pkg = mElements.getPackageOf(model);
+        String packageName = pkg.getQualifiedName().toString();
+        String modelName = model.getQualifiedName().toString();
+        String parserName = getParserSimpleName(model, target);
+
+        StringBuilder out = new StringBuilder();
+        if (!pkg.isUnnamed()) out.append("package ").append(packageName).append(";\n\n");
+
+        line(out, 0, "/**");
+        line(out, 0, " * Parses {@link " + modelName + "} objects without reflection.");
+        line(out, 0, " * <p>");
+        line(out, 0, " * Generated by the FirebaseUI annotation processor, do not edit.");
+        line(out, 0, " */");
+        line(out, 0, "public final class " + parserName
+                + " implements " + target.getParserInterface() + "<" + modelName + "> {");
+        out.append('\n');
+        line(out, 1, "@Override");
+        line(out, 1, "public " + modelName + " parseSnapshot("
+                + target.getSnapshotClass() + " snapshot) {");
+        line(out, 2, "return fromValue(snapshot." + target.getDataMethod() + "());");
+        line(out, 1, "}");
+        out.append('\n');
+        line(out, 1, "/**");
+        line(out, 1, " * Create a {@link " + model.getSimpleName()
+                + "} from a map of raw snapshot values, or return null if the value is null.");
+        line(out, 1, " */");
+        line(out, 1, "@SuppressWarnings(\"unchecked\")");
+        line(out, 1, "public static " + modelName + " fromValue(Object value) {");
+        line(out, 2, "if (value == null) return null;");
+        line(out, 2, "if (!(value instanceof java.util.Map)) {");
+        line(out, 3, "throw new IllegalArgumentException(\"Can't convert value of type \"");
+        line(out, 5, "+ value.getClass().getName() + \" to " + modelName + "\");");
+        line(out, 2, "}");
+        line(out, 2, "java.util.Map<String, Object> map = (java.util.Map<String, Object>) value;");
+        out.append('\n');
+        line(out, 2, modelName + " model = new " + modelName + "();");
+        if (!props.isEmpty()) line(out, 2, "Object property;");
+        for (ModelProperty prop : props) {
+            out.append('\n');
+            line(out, 2, "property = map.get(\"" + prop.getName() + "\");");
+            line(out, 2, "if (property != null) {");
+            line(out, 3, prop.assign("model",
+                    convert(prop.getType(), target, "property", prop.getName())));
+            line(out, 2, "}");
+        }
+        out.append('\n');
+        line(out, 2, "return model;");
+        line(out, 1, "}");
+        out.append(HELPERS);
+        line(out, 0, "}");
+
+        String qualifiedName = pkg.isUnnamed() ? parserName : packageName + "." + parserName;
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(qualifiedName, model)
+                .openWriter()) {
+            writer.write(out.toString());
+        } catch (IOException e) {
+            error(model, "Failed to write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    private String getParserName(TypeElement model, ParserTarget target) {
+        PackageElement pkg = mElements.getPackageOf(model);
+        String simpleName = getParserSimpleName(model, target);
+        return pkg.isUnnamed() ? simpleName : pkg.getQualifiedName() + "." + simpleName;
+    }
+
+    /**
+     * @return the parser's name, e.g. {@code Outer_Chat_DatabaseSnapshotParser} for a nested
+     * class {@code Outer.Chat}.
+     */
+    private static String getParserSimpleName(TypeElement model, ParserTarget target) {
+        StringBuilder name = new StringBuilder(target.getSuffix());
+        for (Element e = model; e.getKind() == ElementKind.CLASS; e = e.getEnclosingElement()) {
+            name.insert(0, e.getSimpleName() + "_");
+        }
+        return name.toString();
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+
+        TypeElement element = (TypeElement) mTypes.asElement(superclass);
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private static ExecutableElement findGetter(TypeElement type, String baseName) {
+        for (Element member : type.getEnclosedElements()) {
+            String name = member.getSimpleName().toString();
+            if (member.getKind() == ElementKind.METHOD
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && (name.equals("get" + baseName) || name.equals("is" + baseName))) {
+                return (ExecutableElement) member;
+            }
+        }
+        return null;
+    }
+
+    private static String getPropertyName(Element element, ParserTarget target) {
+        AnnotationMirror annotation =
+                getAnnotation(element, target.getSdkAnnotation("PropertyName"));
+        if (annotation == null) return null;
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return (String) entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        return getAnnotation(element, annotation) != null;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotation)) return mirror;
+        }
+        return null;
+    }
+
+    /**
+     * Convert a setter's name without the "set" prefix to a property name, the same way the
+     * Firebase SDKs do: leading upper case characters are converted to lower case.
+     */
+    private static String serializedName(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private boolean error(Element element, String message) {
+        if (mErrors.add(element.getEnclosingElement() + "#" + element + ": " + message)) {
+            mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+        }
+        return false;
+    }
+
+    private static void line(StringBuilder out, int indent, String line) {
+        for (int i = 0; i < indent; i++) out.append(INDENT);
+        out.append(line).append('\n');
+    }
+
+    /**
+     * Conversions shared by all generated parsers. Numbers are converted as long as they fit the
+     * target type, mirroring the SDK mappers.
+     */
+    private static final String HELPERS = "\n"
+            + "    private static boolean asBoolean(Object value, String property) {\n"
+            + "        if (value instanceof Boolean) return (Boolean) value;\n"
+            + "        throw conversionError(value, boolean.class, property);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static int asInt(Object value, String property) {\n"
+            + "        if (value instanceof Number) {\n"
+            + "            double number = ((Number) value).doubleValue();\n"
+            + "            if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {\n"
+            + "                return ((Number) value).intValue();\n"
+            + "            }\n"
+            + "        }\n"
+            + "        throw conversionError(value, int.class, property);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static long asLong(Object value, String property) {\n"
+            + "        if (value instanceof Number) {\n"
+            + "            double number = ((Number) value).doubleValue();\n"
+            + "            if (number >= Long.MIN_VALUE && number <= Long.MAX_VALUE) {\n"
+            + "                return ((Number) value).longValue();\n"
+            + "            }\n"
+            + "        }\n"
+            + "        throw conversionError(value, long.class, property);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static double asDouble(Object value, String property) {\n"
+            + "        if (value instanceof Number) return ((Number) value).doubleValue();\n"
+            + "        throw conversionError(value, double.class, property);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static <E extends Enum<E>> E asEnum(Class<E> type,\n"
+            + "                                                Object value,\n"
+            + "                                                String property) {\n"
+            + "        String name = asInstance(String.class, value, property);\n"
+            + "        try {\n"
+            + "            return Enum.valueOf(type, name);\n"
+            + "        } catch (IllegalArgumentException e) {\n"
+            + "            throw conversionError(value, type, property);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    private static <T> T asInstance(Class<T> type,\n"
+            + "                                    Object value,\n"
+            + "                                    String property) {\n"
+            + "        if (type.isInstance(value)) return type.cast(value);\n"
+            + "        throw conversionError(value, type, property);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static IllegalArgumentException conversionError(Object value,\n"
+            + "                                                            Class<?> type,\n"
+            + "                                                            String property) {\n"
+            + "        return new IllegalArgumentException(\"Failed to convert value of type \"\n"
+            + "                + value.getClass().getName() + \" to \" + type.getSimpleName()\n"
+            + "                + \" for property '\" + property + \"'\");\n"
+            + "    }\n";
+}
@@ -0,0 +1,234 @@
+package com.firebase.ui.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compiles model classes with the processor against minimal stand-ins for the FirebaseUI and
+ * Firebase classes, then runs the generated parsers.
+ */
+public class SnapshotParserProcessorTest {
+
+    private static final String[] SUPPORT_SOURCES = {
+            "package com.firebase.ui.common;\n"
+                    + "public @interface GenerateSnapshotParser {}",
+            "package com.google.firebase.database;\n"
+                    + "public class DataSnapshot {\n"
+                    + "    private final Object mValue;\n"
+                    + "    public DataSnapshot(Object value) { mValue = value; }\n"
+                    + "    public Object getValue() { return mValue; }\n"
+                    + "}",
+            "package com.google.firebase.database;\n"
+                    + "public @interface PropertyName { String value(); }",
+            "package com.google.firebase.database;\n"
+                    + "public @interface Exclude {}",
+            "package com.firebase.ui.database;\n"
+                    + "import com.google.firebase.database.DataSnapshot;\n"
+                    + "public interface SnapshotParser<T> { T parseSnapshot(DataSnapshot s); }",
+    };
+
+    private static final String CHAT = "package com.example;\n"
+            + "import com.firebase.ui.common.GenerateSnapshotParser;\n"
+            + "import com.google.firebase.database.Exclude;\n"
+            + "import com.google.firebase.database.PropertyName;\n"
+            + "@GenerateSnapshotParser\n"
+            + "public class Chat {\n"
+            + "    public enum Kind { TEXT, IMAGE }\n"
+            + "    @GenerateSnapshotParser\n"
+            + "    public static class Author { public String name; }\n"
+            + "    public String message;\n"
+            + "    public Kind kind;\n"
+            + "    public Author author;\n"
+            + "    public java.util.List<String> tags;\n"
+            + "    public transient String local;\n"
+            + "    public double score;\n"
+            + "    public int count;\n"
+            + "    public boolean read;\n"
+            + "    public String secret;\n"
+            + "    public void setCount(int count) { this.count = count; }\n"
+            + "    @PropertyName(\"is_read\") public void setRead(boolean read) { this.read = read; }\n"
+            + "    @Exclude public String getSecret() { return secret; }\n"
+            + "    public void setSecret(String secret) { this.secret = secret; }\n"
+            + "}";
+
+    private File mOutput;
+    private DiagnosticCollector<JavaFileObject> mDiagnostics;
+
+    @Before
+    public void setUp() throws Exception {
+        mOutput = File.createTempFile("processor", "");
+        assertTrue(mOutput.delete() && mOutput.mkdir());
+        mDiagnostics = new DiagnosticCollector<>();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mOutput);
+    }
+
+    @Test
+    public void testParsesProperties() throws Exception {
+        assertTrue(mDiagnostics.getDiagnostics().toString(), compile(CHAT));
+
+        Map<String, Object> author = new HashMap<>();
+        author.put("name", "Alice");
+        Map<String, Object> data = new HashMap<>();
+        data.put("message", "Hello");
+        data.put("kind", "IMAGE");
+        data.put("author", author);
+        data.put("tags", Arrays.asList("a", "b"));
+        data.put("local", "ignored");
+        data.put("score", 2L);
+        data.put("count", 3L);
+        data.put("is_read", true);
+        data.put("secret", "ignored");
+
+        Object chat = parse("com.example.Chat", data);
+
+        assertEquals("Hello", get(chat, "message"));
+        assertEquals("IMAGE", get(chat, "kind").toString());
+        assertEquals("Alice", get(get(chat, "author"), "name"));
+        assertEquals(Arrays.asList("a", "b"), get(chat, "tags"));
+        assertNull(get(chat, "local"));
+        assertEquals(2.0, get(chat, "score"));
+        assertEquals(3, get(chat, "count"));
+        assertEquals(true, get(chat, "read"));
+        assertNull(get(chat, "secret"));
+    }
+
+    @Test
+    public void testNullValueParsesToNull() throws Exception {
+        assertTrue(compile(CHAT));
+        assertNull(parse("com.example.Chat", null));
+    }
+
+    @Test
+    public void testConversionError() throws Exception {
+        assertTrue(compile(CHAT));
+
+        try {
+            parse("com.example.Chat", Collections.<String, Object>singletonMap("count", "three"));
+            fail();
+        } catch (InvocationTargetException e) {
+            assertEquals("Failed to convert value of type java.lang.String to int for property "
+                    + "'count'", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testUnsupportedTypeIsReported() throws Exception {
+        assertFalse(compile("package com.example;\n"
+                + "@com.firebase.ui.common.GenerateSnapshotParser\n"
+                + "public class Tags { public java.util.Set<String> tags; }"));
+        assertError("Unsupported type java.util.Set<java.lang.String> for property 'tags'");
+    }
+
+    @Test
+    public void testMissingConstructorIsReported() throws Exception {
+        assertFalse(compile("package com.example;\n"
+                + "@com.firebase.ui.common.GenerateSnapshotParser\n"
+                + "public class Point { public Point(int x) {} }"));
+        assertError("no-argument constructor");
+    }
+
+    private boolean compile(String model) {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (String source : SUPPORT_SOURCES) {
+            sources.add(new Source(source));
+        }
+        sources.add(new Source(model));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, mDiagnostics,
+                Arrays.asList("-d", mOutput.getPath(), "-s", mOutput.getPath()), null, sources);
+        task.setProcessors(Collections.singletonList(new SnapshotParserProcessor()));
+        return task.call();
+    }
+
+    private Object parse(String model, Object value) throws Exception {
+        ClassLoader loader = new URLClassLoader(new URL[]{mOutput.toURI().toURL()});
+        Class<?> snapshotClass = loader.loadClass("com.google.firebase.database.DataSnapshot");
+        Class<?> parserClass = loader.loadClass(model + "_DatabaseSnapshotParser");
+
+        Object snapshot = snapshotClass.getConstructor(Object.class).newInstance(value);
+        Object parser = parserClass.newInstance();
+        return parserClass.getMethod("parseSnapshot", snapshotClass).invoke(parser, snapshot);
+    }
+
+    private void assertError(String message) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : mDiagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR
+                    && diagnostic.getMessage(null).contains(message)) {
+                return;
+            }
+        }
+        fail("No error containing \"" + message + "\" in " + mDiagnostics.getDiagnostics());
+    }
+
+    private static Object get(Object object, String field) throws Exception {
+        Field f = object.getClass().getField(field);
+        return f.get(object);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) delete(child);
+        }
+        file.delete();
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+        private final String mSource;
+
+        Source(String source) {
+            super(URI.create("string:///" + getName(source).replace('.', '/') + ".java"),
+                    Kind.SOURCE);
+            mSource = source;
+        }
+
+        private static String getName(String source) {
+            String pkg = source.substring(8, source.indexOf(';'));
+            String[] words = source.substring(source.indexOf('\n')).split("[\\s{<]+");
+            for (int i = 0; i < words.length - 1; i++) {
+                if (words[i].equals("class") || words[i].equals("interface")
+                        || words[i].equals("@interface")) {
+                    return pkg + "." + words[i + 1];
+                }
+            }
+            throw new IllegalArgumentException("No type in " + source);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mSource;
+        }
+    }
+}
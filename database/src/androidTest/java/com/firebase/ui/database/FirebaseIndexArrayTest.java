@@ -25,11 +25,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 
 import static com.firebase.ui.database.TestUtils.getAppInstance;
 import static com.firebase.ui.database.TestUtils.isValuesEqual;
 import static com.firebase.ui.database.TestUtils.runAndWaitUntil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class FirebaseIndexArrayTest {
@@ -131,4 +136,125 @@ public class FirebaseIndexArrayTest {
             }
         });
     }
+
+    @Test
+    public void testKeyWithoutDataIsSkipped() throws Exception {
+        final String key = mKeyRef.push().getKey();
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                mKeyRef.child(key).setValue(true, 1.5);
+                TestUtils.pushValue(mKeyRef, mRef, 4, 4);
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(1, 2, 3, 4));
+            }
+        });
+
+        // Data showing up later is inserted at the key's position
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                mRef.child(key).setValue(5);
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(1, 5, 2, 3, 4));
+            }
+        });
+    }
+
+    @Test
+    public void testRemovedDataKeepsKeyPosition() throws Exception {
+        final String key = mArray.getSnapshot(1).getKey();
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                mRef.child(key).removeValue();
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(1, 3));
+            }
+        });
+
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                mRef.child(key).setValue(2);
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(1, 2, 3));
+            }
+        });
+    }
+
+    @Test
+    public void testDataArrivingOutOfOrder() throws Exception {
+        final String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = mKeyRef.push().getKey();
+        }
+
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < keys.length; i++) {
+                    mKeyRef.child(keys[i]).setValue(true, INITIAL_SIZE + i + 1);
+                }
+                for (int i = keys.length - 1; i >= 0; i--) {
+                    mRef.child(keys[i]).setValue(INITIAL_SIZE + i + 1);
+                }
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(1, 2, 3, 4, 5, 6));
+            }
+        });
+    }
+
+    @Test
+    public void testWindowLoadsOnlyVisibleKeys() throws Exception {
+        final FirebaseIndexArray<Integer> array =
+                new FirebaseIndexArray<>(mKeyRef, mRef, new ClassSnapshotParser<>(Integer.class));
+        array.setWindowingEnabled(true);
+        array.setWindow(0, 2);
+
+        ChangeEventListener listener = runAndWaitUntil(array, new Runnable() {
+            @Override
+            public void run() {
+                // The array loads as soon as it starts listening
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return array.size() == INITIAL_SIZE && array.isLoaded(1);
+            }
+        });
+        assertTrue(array.isLoaded(0));
+        assertFalse(array.isLoaded(2));
+        assertNull(array.get(2));
+
+        runAndWaitUntil(array, new Runnable() {
+            @Override
+            public void run() {
+                array.setWindow(1, 3);
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return !array.isLoaded(0) && array.isLoaded(2);
+            }
+        });
+        assertEquals(Arrays.asList(null, 2, 3), array);
+
+        array.removeChangeEventListener(listener);
+    }
 }
@@ -0,0 +1,114 @@
+package com.firebase.ui.database;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.firebase.ui.common.PagingConfig;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.firebase.ui.database.TestUtils.getAppInstance;
+import static com.firebase.ui.database.TestUtils.runAndWaitUntil;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class FirebasePagingArrayTest {
+    private static final int SIZE = 10;
+
+    private DatabaseReference mRef;
+    private FirebasePagingArray<Integer> mArray;
+    private ChangeEventListener mListener;
+
+    @Before
+    public void setUp() throws Exception {
+        FirebaseDatabase databaseInstance =
+                FirebaseDatabase.getInstance(getAppInstance(InstrumentationRegistry.getContext()));
+        mRef = databaseInstance.getReference().child("firebasepagingarray");
+
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 1; i <= SIZE; i++) {
+            values.put(String.format(Locale.US, "key%02d", i), i);
+        }
+        mRef.setValue(values);
+
+        PagingConfig config = new PagingConfig.Builder()
+                .setPageSize(3)
+                .setMaxPages(2)
+                .setPrefetchDistance(0)
+                .build();
+        mArray = new FirebasePagingArray<>(
+                mRef, null, true, config, new ClassSnapshotParser<>(Integer.class));
+        mListener = runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                // The last page loads as soon as the array starts listening
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(8, 9, 10));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mArray.removeChangeEventListener(mListener);
+        mRef.getRoot().removeValue();
+    }
+
+    @Test
+    public void testLoadsOlderPages() throws Exception {
+        assertTrue(mArray.hasPreviousPage());
+        assertFalse(mArray.hasNextPage());
+
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                mArray.loadPreviousPage();
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(5, 6, 7, 8, 9, 10));
+            }
+        });
+    }
+
+    @Test
+    public void testDropsFarPages() throws Exception {
+        scrollToTopUntil(5, 6, 7, 8, 9, 10);
+        // Only two pages stay in memory
+        scrollToTopUntil(2, 3, 4, 5, 6, 7);
+        scrollToTopUntil(1, 2, 3, 4);
+
+        assertFalse(mArray.hasPreviousPage());
+        assertTrue(mArray.hasNextPage());
+    }
+
+    private void scrollToTopUntil(final Integer... expected) throws Exception {
+        runAndWaitUntil(mArray, new Runnable() {
+            @Override
+            public void run() {
+                mArray.setVisibleRange(0, 0);
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mArray.equals(Arrays.asList(expected));
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.firebase.ui.database;
+
+import com.firebase.ui.common.BaseBatchedChangeEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+/**
+ * Listener for batched changes to {@link FirebaseArray}.
+ *
+ * @see ObservableSnapshotArray#setBatchingEnabled(boolean)
+ */
+public interface BatchedChangeEventListener extends ChangeEventListener,
+        BaseBatchedChangeEventListener<DataSnapshot, DatabaseError> {}
@@ -0,0 +1,12 @@
+package com.firebase.ui.database;
+
+import com.firebase.ui.common.BaseContentComparator;
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Compares the content of two {@link DataSnapshot}s with the same key.
+ *
+ * @see FirebaseRecyclerOptions.Builder#setBackgroundDiffing(java.util.concurrent.Executor,
+ * ContentComparator)
+ */
+public interface ContentComparator extends BaseContentComparator<DataSnapshot> {}
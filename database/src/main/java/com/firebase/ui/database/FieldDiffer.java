@@ -0,0 +1,11 @@
+package com.firebase.ui.database;
+
+import com.firebase.ui.common.BaseFieldDiffer;
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Finds the changed fields of two {@link DataSnapshot}s with the same key.
+ *
+ * @see FirebaseRecyclerOptions.Builder#setChangePayloads(FieldDiffer)
+ */
+public interface FieldDiffer extends BaseFieldDiffer<DataSnapshot> {}
@@ -6,7 +6,7 @@ import android.support.annotation.RestrictTo;
 import com.google.firebase.database.DatabaseReference;
 
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
-interface FirebaseAdapter<T> extends ChangeEventListener, LifecycleObserver {
+interface FirebaseAdapter<T> extends BatchedChangeEventListener, LifecycleObserver {
     /**
      * If you need to do some setup before the adapter starts listening for change events in the
      * database, do so it here and then call {@code super.startListening()}.
@@ -17,13 +17,14 @@ package com.firebase.ui.database;
 import android.support.annotation.NonNull;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.KeyIndexedList;
+import com.firebase.ui.common.MetricsListener;
 import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,7 +33,13 @@ import java.util.List;
 public class FirebaseArray<T> extends ObservableSnapshotArray<T>
         implements ChildEventListener, ValueEventListener {
     private Query mQuery;
-    private List<DataSnapshot> mSnapshots = new ArrayList<>();
+    private KeyIndexedList<DataSnapshot> mSnapshots = new KeyIndexedList<DataSnapshot>() {
+        @NonNull
+        @Override
+        public String getKey(DataSnapshot snapshot) {
+            return snapshot.getKey();
+        }
+    };
 
     /**
      * Create a new FirebaseArray with a custom {@link SnapshotParser}.
@@ -66,63 +73,95 @@ public class FirebaseArray<T> extends ObservableSnapshotArray<T>
     }
 
     @Override
-    public void onChildAdded(DataSnapshot snapshot, String previousChildKey) {
-        int index = 0;
-        if (previousChildKey != null) {
-            index = getIndexForKey(previousChildKey) + 1;
-        }
-
-        mSnapshots.add(index, snapshot);
-        notifyOnChildChanged(ChangeEventType.ADDED, snapshot, index, -1);
+    public void onChildAdded(final DataSnapshot snapshot, final String previousChildKey) {
+        onEventReceived(ChangeEventType.ADDED);
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                int index = 0;
+                if (previousChildKey != null) {
+                    index = getIndexForKey(previousChildKey) + 1;
+                }
+
+                mSnapshots.add(index, snapshot);
+                notifyOnChildChanged(ChangeEventType.ADDED, snapshot, index, -1);
+            }
+        });
     }
 
     @Override
-    public void onChildChanged(DataSnapshot snapshot, String previousChildKey) {
-        int index = getIndexForKey(snapshot.getKey());
-
-        mSnapshots.set(index, snapshot);
-        notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1);
+    public void onChildChanged(final DataSnapshot snapshot, String previousChildKey) {
+        onEventReceived(ChangeEventType.CHANGED);
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                int index = getIndexForKey(snapshot.getKey());
+
+                DataSnapshot oldSnapshot = mSnapshots.set(index, snapshot);
+                notifyOnChildUpdated(oldSnapshot, snapshot, index, -1);
+            }
+        });
     }
 
     @Override
-    public void onChildRemoved(DataSnapshot snapshot) {
-        int index = getIndexForKey(snapshot.getKey());
-
-        mSnapshots.remove(index);
-        notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
+    public void onChildRemoved(final DataSnapshot snapshot) {
+        onEventReceived(ChangeEventType.REMOVED);
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                int index = getIndexForKey(snapshot.getKey());
+
+                mSnapshots.remove(index);
+                notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
+            }
+        });
     }
 
     @Override
-    public void onChildMoved(DataSnapshot snapshot, String previousChildKey) {
-        int oldIndex = getIndexForKey(snapshot.getKey());
-        mSnapshots.remove(oldIndex);
-
-        int newIndex = previousChildKey == null ? 0 : getIndexForKey(previousChildKey) + 1;
-        mSnapshots.add(newIndex, snapshot);
-
-        notifyOnChildChanged(ChangeEventType.MOVED, snapshot, newIndex, oldIndex);
+    public void onChildMoved(final DataSnapshot snapshot, final String previousChildKey) {
+        onEventReceived(ChangeEventType.MOVED);
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                int oldIndex = getIndexForKey(snapshot.getKey());
+                mSnapshots.remove(oldIndex);
+
+                int newIndex = previousChildKey == null ? 0 : getIndexForKey(previousChildKey) + 1;
+                mSnapshots.add(newIndex, snapshot);
+
+                notifyOnChildChanged(ChangeEventType.MOVED, snapshot, newIndex, oldIndex);
+            }
+        });
     }
 
     @Override
     public void onDataChange(DataSnapshot dataSnapshot) {
-        notifyOnDataChanged();
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                notifyOnDataChanged();
+            }
+        });
     }
 
     @Override
-    public void onCancelled(DatabaseError error) {
-        notifyOnError(error);
+    public void onCancelled(final DatabaseError error) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                notifyOnError(error);
+            }
+        });
     }
 
     private int getIndexForKey(String key) {
-        int index = 0;
-        for (DataSnapshot snapshot : mSnapshots) {
-            if (snapshot.getKey().equals(key)) {
-                return index;
-            } else {
-                index++;
-            }
+        long start = startOperation(MetricsListener.Operation.INDEX_LOOKUP);
+        int index = mSnapshots.indexOfKey(key);
+        finishOperation(MetricsListener.Operation.INDEX_LOOKUP, start);
+        if (index == -1) {
+            throw new IllegalArgumentException("Key not found");
         }
-        throw new IllegalArgumentException("Key not found");
+        return index;
     }
 
     @NonNull
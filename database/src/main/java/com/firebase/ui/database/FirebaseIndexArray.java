@@ -15,37 +15,68 @@
 package com.firebase.ui.database;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.FrameDispatcher;
+import com.firebase.ui.common.KeyIndexedList;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         implements ChangeEventListener {
     private static final String TAG = "FirebaseIndexArray";
 
+    /**
+     * Number of keys whose data is listened to in windowed mode until {@link #setWindow(int, int)}
+     * is first called.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+
     private DatabaseReference mDataRef;
     private Map<DatabaseReference, ValueEventListener> mRefs = new HashMap<>();
 
     private FirebaseArray<String> mKeySnapshots;
-    private List<DataSnapshot> mDataSnapshots = new ArrayList<>();
 
     /**
-     * When keys are added in {@link FirebaseArray}, we need to fetch the data async. This list
-     * contains keys that exist in the backing {@link FirebaseArray}, but their data hasn't been
-     * downloaded yet in this array.
+     * Mirrors the order of {@link #mKeySnapshots}. A key is marked once its data is present in
+     * {@link #mDataSnapshots}, so the number of marked keys before a key is the position of its
+     * data.
      */
-    private List<String> mKeysWithPendingUpdate = new ArrayList<>();
+    private final KeyIndexedList<String> mKeys = new KeyIndexedList<String>() {
+        @NonNull
+        @Override
+        public String getKey(String key) {
+            return key;
+        }
+    };
+    private final KeyIndexedList<DataSnapshot> mDataSnapshots = new KeyIndexedList<DataSnapshot>() {
+        @NonNull
+        @Override
+        public String getKey(DataSnapshot snapshot) {
+            return snapshot.getKey();
+        }
+    };
+
+    /**
+     * When keys are added in {@link FirebaseArray}, we need to fetch the data async. This map
+     * tracks where each key of the backing {@link FirebaseArray} is in that lifecycle, and
+     * {@link #mPendingKeyCount} how many keys haven't received their first data update yet.
+     */
+    private final Map<String, KeyState> mKeyStates = new HashMap<>();
+    private int mPendingKeyCount;
     /**
      * Moves or deletions don't need to fetch new data so they can be performed instantly once the
      * backing {@link FirebaseArray} is done updating. This will be true if the backing {@link
@@ -53,6 +84,31 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
      */
     private boolean mHasPendingMoveOrDelete;
 
+    /**
+     * In windowed mode every key has an item, and only keys in [{@link #mWindowStart}, {@link
+     * #mWindowEnd}) have their data listened to.
+     */
+    private boolean mWindowingEnabled;
+    private int mWindowStart;
+    private int mWindowEnd = DEFAULT_WINDOW_SIZE;
+    private final List<DataSnapshot> mWindowedSnapshots = new AbstractList<DataSnapshot>() {
+        @Override
+        public DataSnapshot get(int index) {
+            String key = mKeys.get(index);
+            if (mKeys.isMarked(key)) {
+                return mDataSnapshots.get(getDataIndex(key));
+            } else {
+                // Placeholder until the data is loaded
+                return mKeySnapshots.getSnapshot(index);
+            }
+        }
+
+        @Override
+        public int size() {
+            return mKeys.size();
+        }
+    };
+
     /**
      * Create a new FirebaseIndexArray with a custom {@link SnapshotParser}.
      *
@@ -78,6 +134,91 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         });
     }
 
+    /**
+     * Enable or disable windowed mode. In windowed mode, the array has one item per key of the
+     * key query and data is only listened to for keys inside the window set with {@link
+     * #setWindow(int, int)}. Keys whose data isn't loaded are represented by their key snapshot,
+     * see {@link #isLoaded(int)}.
+     * <p>
+     * This avoids keeping a listener attached to the data of every key in a long list.
+     *
+     * @throws IllegalStateException if the array is listening, or updated in the background.
+     */
+    public void setWindowingEnabled(boolean enabled) {
+        if (isListening()) {
+            throw new IllegalStateException(
+                    "Windowing cannot be changed while the array is listening.");
+        }
+        if (enabled && isUpdatingInBackground()) {
+            throw new IllegalStateException(
+                    "Windowing is not supported when updating in the background.");
+        }
+        mWindowingEnabled = enabled;
+    }
+
+    /**
+     * @return true if the array is in windowed mode.
+     * @see #setWindowingEnabled(boolean)
+     */
+    public boolean isWindowingEnabled() {
+        return mWindowingEnabled;
+    }
+
+    /**
+     * Set the range of key positions whose data is listened to in windowed mode. Listeners of keys
+     * leaving the window are detached and their items turn back into placeholders.
+     *
+     * @param start the first position in the window, inclusive.
+     * @param end   the last position in the window, exclusive.
+     */
+    public void setWindow(int start, int end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid window [" + start + ", " + end + ")");
+        }
+        mWindowStart = start;
+        mWindowEnd = end;
+        if (isListening()) updateWindow();
+    }
+
+    /**
+     * Detach the keys that are no longer inside the window and attach the ones that entered it,
+     * either because the window was set or because keys were added, moved or removed around it.
+     */
+    private void updateWindow() {
+        if (!mWindowingEnabled) return;
+
+        for (DatabaseReference ref : new ArrayList<>(mRefs.keySet())) {
+            String key = ref.getKey();
+            if (!isInWindow(mKeys.indexOfKey(key))) detach(key);
+        }
+        for (int i = mWindowStart; i < Math.min(mWindowEnd, mKeys.size()); i++) {
+            String key = mKeys.get(i);
+            if (getState(key) == KeyState.DETACHED) attach(key);
+        }
+    }
+
+    /**
+     * @return false if the item at the given index is a placeholder for a key whose data isn't
+     * loaded in windowed mode, true otherwise.
+     */
+    public boolean isLoaded(int index) {
+        return !mWindowingEnabled || mKeys.isMarked(mKeys.get(index));
+    }
+
+    /**
+     * @return the parsed data at the given index, or null if it is a placeholder.
+     * @see #isLoaded(int)
+     */
+    @Override
+    public T get(int index) {
+        return isLoaded(index) ? super.get(index) : null;
+    }
+
+    @Override
+    public void prefetch(int index) {
+        if (isLoaded(index)) super.prefetch(index);
+    }
+
     @Override
     protected void onCreate() {
         super.onCreate();
@@ -89,14 +230,64 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         super.onDestroy();
         mKeySnapshots.removeChangeEventListener(this);
 
-        for (DatabaseReference ref : mRefs.keySet()) {
-            ref.removeEventListener(mRefs.get(ref));
+        resetState(new Runnable() {
+            @Override
+            public void run() {
+                for (DatabaseReference ref : mRefs.keySet()) {
+                    ref.removeEventListener(mRefs.get(ref));
+                }
+                mRefs.clear();
+                mKeys.clear();
+                mDataSnapshots.clear();
+                mKeyStates.clear();
+                mPendingKeyCount = 0;
+            }
+        });
+    }
+
+    /**
+     * Also defers the mutations of the backing key array, so that keys and their data are
+     * updated in the same frame.
+     */
+    @Override
+    public void setDispatcher(@Nullable FrameDispatcher dispatcher) {
+        super.setDispatcher(dispatcher);
+        mKeySnapshots.setDispatcher(dispatcher);
+    }
+
+    /**
+     * Only the joined data is maintained in the background, the backing key array is updated on
+     * the main thread and forwards its events to the update executor.
+     *
+     * @throws IllegalStateException if the array is in windowed mode.
+     */
+    @Override
+    public void setUpdateExecutor(@Nullable Executor executor) {
+        if (executor != null && mWindowingEnabled) {
+            throw new IllegalStateException(
+                    "Windowing is not supported when updating in the background.");
         }
-        mRefs.clear();
+        super.setUpdateExecutor(executor);
     }
 
     @Override
-    public void onChildChanged(ChangeEventType type, DataSnapshot snapshot, int newIndex, int oldIndex) {
+    public void onChildChanged(final ChangeEventType type,
+                               final DataSnapshot snapshot,
+                               final int newIndex,
+                               final int oldIndex) {
+        onEventReceived(type);
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                onKeyChanged(type, snapshot, newIndex, oldIndex);
+            }
+        });
+    }
+
+    private void onKeyChanged(ChangeEventType type,
+                              DataSnapshot snapshot,
+                              int newIndex,
+                              int oldIndex) {
         switch (type) {
             case ADDED:
                 onKeyAdded(snapshot, newIndex);
@@ -116,7 +307,17 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
 
     @Override
     public void onDataChanged() {
-        if (mHasPendingMoveOrDelete || mKeySnapshots.isEmpty()) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                onKeysChanged();
+            }
+        });
+    }
+
+    private void onKeysChanged() {
+        if (mHasPendingMoveOrDelete || mKeys.isEmpty()
+                || (mWindowingEnabled && mPendingKeyCount == 0)) {
             notifyOnDataChanged();
             mHasPendingMoveOrDelete = false;
         }
@@ -130,67 +331,91 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
     @NonNull
     @Override
     protected List<DataSnapshot> getSnapshots() {
-        return mDataSnapshots;
+        return mWindowingEnabled ? mWindowedSnapshots : mDataSnapshots;
     }
 
-    private int returnOrFindIndexForKey(int index, String key) {
-        int realIndex;
-        if (isKeyAtIndex(key, index)) {
-            // To optimize this query, if the expected item position is accurate, we simply return
-            // it instead of searching for it in our keys all over again. This ensures developers
-            // correctly indexing their data (i.e. no null values) don't take a performance hit.
-            realIndex = index;
-        } else {
-            int dataCount = size();
-            int dataIndex = 0;
-            int keyIndex = 0;
-
-            while (dataIndex < dataCount && keyIndex < mKeySnapshots.size()) {
-                String superKey = mKeySnapshots.get(keyIndex);
-                if (key.equals(superKey)) {
-                    break;
-                } else if (mDataSnapshots.get(dataIndex).getKey().equals(superKey)) {
-                    // Only increment the data index if we aren't passing over a null value snapshot.
-                    dataIndex++;
-                }
-                keyIndex++;
-            }
+    /**
+     * @return the index of the given key's data, or of where its data belongs if it has none.
+     */
+    private int getDataIndex(String key) {
+        return mKeys.markedIndexOfKey(key);
+    }
 
-            realIndex = dataIndex;
-        }
-        return realIndex;
+    private boolean isInWindow(int index) {
+        return !mWindowingEnabled || (index >= mWindowStart && index < mWindowEnd);
+    }
+
+    private void attach(String key) {
+        DatabaseReference ref = mDataRef.child(key);
+        setState(key, KeyState.PENDING);
+        mRefs.put(ref, ref.addValueEventListener(new DataRefListener()));
     }
 
     /**
-     * Determines if a DataSnapshot with the given key is present at the given index.
+     * Stop listening to a key's data and turn its item back into a placeholder. Only used in
+     * windowed mode.
      */
-    private boolean isKeyAtIndex(String key, int index) {
-        return index >= 0 && index < size() && mDataSnapshots.get(index).getKey().equals(key);
+    private void detach(String key) {
+        if (getState(key) == KeyState.DETACHED) return;
+
+        DatabaseReference ref = mDataRef.child(key);
+        ValueEventListener listener = mRefs.remove(ref);
+        if (listener != null) ref.removeEventListener(listener);
+        setState(key, KeyState.DETACHED);
+
+        if (mKeys.isMarked(key)) {
+            mDataSnapshots.remove(mDataSnapshots.indexOfKey(key));
+            mKeys.setMarked(key, false);
+            int index = mKeys.indexOfKey(key);
+            notifyOnChildChanged(ChangeEventType.CHANGED, getSnapshot(index), index, -1);
+        }
     }
 
     private void onKeyAdded(DataSnapshot data, int newIndex) {
         String key = data.getKey();
-        DatabaseReference ref = mDataRef.child(key);
+        mKeys.add(newIndex, key);
 
-        mKeysWithPendingUpdate.add(key);
-        // Start listening
-        mRefs.put(ref, ref.addValueEventListener(new DataRefListener(newIndex)));
+        if (mWindowingEnabled) {
+            notifyOnChildChanged(ChangeEventType.ADDED, data, newIndex, -1);
+        }
+        if (isInWindow(newIndex)) {
+            // Start listening
+            attach(key);
+        } else {
+            setState(key, KeyState.DETACHED);
+        }
+        // The key shifted the keys after it, possibly out of the window
+        updateWindow();
     }
 
     private void onKeyMoved(DataSnapshot data, int index, int oldIndex) {
         String key = data.getKey();
-
-        // We can't use `returnOrFindIndexForKey(...)` for `oldIndex` or it might find the updated
-        // index instead of the old one. Unfortunately, this does mean move events will be
-        // incorrectly ignored if our list is a subset of the key list e.g. a key has null data.
-        if (isKeyAtIndex(key, oldIndex)) {
-            DataSnapshot snapshot = mDataSnapshots.remove(oldIndex);
-            int realIndex = returnOrFindIndexForKey(index, key);
+        boolean hasData = mKeys.isMarked(key);
+
+        mKeys.remove(mKeys.indexOfKey(key));
+        mKeys.add(index, key);
+        if (mWindowingEnabled) {
+            mKeys.setMarked(key, hasData);
+            if (hasData) {
+                // Keep the data in key order
+                DataSnapshot snapshot = mDataSnapshots.remove(mDataSnapshots.indexOfKey(key));
+                mDataSnapshots.add(getDataIndex(key), snapshot);
+            }
             mHasPendingMoveOrDelete = true;
-
-            mDataSnapshots.add(realIndex, snapshot);
-            notifyOnChildChanged(ChangeEventType.MOVED, snapshot, realIndex, oldIndex);
+            notifyOnChildChanged(ChangeEventType.MOVED, getSnapshot(index), index, oldIndex);
+            updateWindow();
+            return;
         }
+        if (!hasData) return;
+
+        mKeys.setMarked(key, true);
+        int oldDataIndex = mDataSnapshots.indexOfKey(key);
+        DataSnapshot snapshot = mDataSnapshots.remove(oldDataIndex);
+        int dataIndex = getDataIndex(key);
+        mHasPendingMoveOrDelete = true;
+
+        mDataSnapshots.add(dataIndex, snapshot);
+        notifyOnChildChanged(ChangeEventType.MOVED, snapshot, dataIndex, oldDataIndex);
     }
 
     private void onKeyRemoved(DataSnapshot data, int index) {
@@ -198,11 +423,45 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         ValueEventListener listener = mRefs.remove(mDataRef.getRef().child(key));
         if (listener != null) mDataRef.child(key).removeEventListener(listener);
 
-        int realIndex = returnOrFindIndexForKey(index, key);
-        if (isKeyAtIndex(key, realIndex)) {
-            DataSnapshot snapshot = mDataSnapshots.remove(realIndex);
+        DataSnapshot snapshot = data;
+        if (mKeys.isMarked(key)) {
+            int dataIndex = mDataSnapshots.indexOfKey(key);
+            snapshot = mDataSnapshots.remove(dataIndex);
+            if (!mWindowingEnabled) {
+                mHasPendingMoveOrDelete = true;
+                notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, dataIndex, -1);
+            }
+        }
+        mKeys.remove(mKeys.indexOfKey(key));
+        if (mWindowingEnabled) {
             mHasPendingMoveOrDelete = true;
-            notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, realIndex, -1);
+            notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
+        }
+
+        boolean wasPending = getState(key) == KeyState.PENDING;
+        setState(key, KeyState.REMOVED);
+        if (wasPending && mPendingKeyCount == 0) {
+            // The removed key was the last one holding back the data changed event
+            mHasPendingMoveOrDelete = true;
+        }
+        // The keys after it shifted, possibly into the window
+        updateWindow();
+    }
+
+    private KeyState getState(String key) {
+        KeyState state = mKeyStates.get(key);
+        return state == null ? KeyState.REMOVED : state;
+    }
+
+    private void setState(String key, KeyState state) {
+        KeyState oldState = getState(key);
+        if (oldState == KeyState.PENDING) mPendingKeyCount--;
+        if (state == KeyState.PENDING) mPendingKeyCount++;
+
+        if (state == KeyState.REMOVED) {
+            mKeyStates.remove(key);
+        } else {
+            mKeyStates.put(key, state);
         }
     }
 
@@ -210,31 +469,52 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
      * A ValueEventListener attached to the joined child data.
      */
     private final class DataRefListener implements ValueEventListener {
-        /** Cached index to skip searching for the current index on each update */
-        private int currentIndex;
-
-        public DataRefListener(int index) {
-            currentIndex = index;
+        @Override
+        public void onDataChange(final DataSnapshot snapshot) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    applyDataChange(snapshot);
+                }
+            });
         }
 
         @Override
-        public void onDataChange(DataSnapshot snapshot) {
-            String key = snapshot.getKey();
-            int index = currentIndex = returnOrFindIndexForKey(currentIndex, key);
+        public void onCancelled(final DatabaseError error) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    notifyOnError(error);
+                }
+            });
+        }
 
-            if (snapshot.getValue() != null) {
-                if (isKeyAtIndex(key, index)) {
+        private void applyDataChange(DataSnapshot snapshot) {
+            String key = snapshot.getKey();
+            // The key may have been removed or left the window while this update was in flight
+            KeyState state = getState(key);
+            if (state == KeyState.REMOVED || state == KeyState.DETACHED) return;
+
+            if (mWindowingEnabled) {
+                onWindowedDataChange(key, snapshot);
+            } else if (snapshot.getValue() != null) {
+                if (mKeys.isMarked(key)) {
                     // We already know about this data, just update it
-                    mDataSnapshots.set(index, snapshot);
-                    notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1);
+                    int index = mDataSnapshots.indexOfKey(key);
+                    DataSnapshot oldSnapshot = mDataSnapshots.set(index, snapshot);
+                    notifyOnChildUpdated(oldSnapshot, snapshot, index, -1);
                 } else {
                     // We don't already know about this data, add it
+                    int index = getDataIndex(key);
+                    mKeys.setMarked(key, true);
                     mDataSnapshots.add(index, snapshot);
                     notifyOnChildChanged(ChangeEventType.ADDED, snapshot, index, -1);
                 }
             } else {
-                if (isKeyAtIndex(key, index)) {
+                if (mKeys.isMarked(key)) {
                     // This data has disappeared, remove it
+                    int index = mDataSnapshots.indexOfKey(key);
+                    mKeys.setMarked(key, false);
                     mDataSnapshots.remove(index);
                     notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
                 } else {
@@ -243,18 +523,52 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
                 }
             }
 
-            // In theory, we would only want to pop the queue if this listener was just added
-            // i.e. `snapshot.value != null && isKeyAtIndex(...)`. However, if the developer makes a
-            // mistake and `snapshot.value == null`, we will never pop the queue and
-            // `notifyOnDataChanged()` will never be called. Thus, we pop the queue anytime
-            // an update is received.
-            mKeysWithPendingUpdate.remove(key);
-            if (mKeysWithPendingUpdate.isEmpty()) notifyOnDataChanged();
+            // The first update completes a key's load whether or not it has data, otherwise a
+            // key with missing data would hold back `notifyOnDataChanged()` forever.
+            setState(key, snapshot.getValue() == null ? KeyState.ABSENT : KeyState.LOADED);
+            if (mPendingKeyCount == 0) notifyOnDataChanged();
         }
 
-        @Override
-        public void onCancelled(DatabaseError error) {
-            notifyOnError(error);
+        /**
+         * In windowed mode the key keeps its item whether or not it has data, so data arriving or
+         * disappearing changes the item instead of adding or removing it.
+         */
+        private void onWindowedDataChange(String key, DataSnapshot snapshot) {
+            boolean hadData = mKeys.isMarked(key);
+            DataSnapshot oldSnapshot = null;
+            if (hadData) oldSnapshot = mDataSnapshots.remove(mDataSnapshots.indexOfKey(key));
+
+            if (snapshot.getValue() != null) {
+                mKeys.setMarked(key, true);
+                mDataSnapshots.add(getDataIndex(key), snapshot);
+            } else {
+                mKeys.setMarked(key, false);
+                if (!hadData) return;
+            }
+
+            int index = mKeys.indexOfKey(key);
+            if (oldSnapshot != null && snapshot.getValue() != null) {
+                notifyOnChildUpdated(oldSnapshot, snapshot, index, -1);
+            } else {
+                // A placeholder was filled in or emptied
+                notifyOnChildChanged(ChangeEventType.CHANGED, getSnapshot(index), index, -1);
+            }
         }
     }
+
+    /**
+     * Lifecycle of a key in the index query.
+     */
+    private enum KeyState {
+        /** The key was added and its data hasn't been received yet. */
+        PENDING,
+        /** The key's data exists and is in the array. */
+        LOADED,
+        /** The key has no data, so it has no item in the array. */
+        ABSENT,
+        /** In windowed mode, the key is outside the window and its data isn't listened to. */
+        DETACHED,
+        /** The key is no longer in the index query, late data updates are ignored. */
+        REMOVED
+    }
 }
@@ -3,12 +3,14 @@ package com.firebase.ui.database;
 import android.arch.lifecycle.Lifecycle;
 import android.arch.lifecycle.LifecycleOwner;
 import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 
+import com.firebase.ui.common.ChangeEventBatch;
 import com.firebase.ui.common.ChangeEventType;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
@@ -68,6 +70,11 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
         notifyDataSetChanged();
     }
 
+    @Override
+    public void onChildChangeBatch(@NonNull ChangeEventBatch<DataSnapshot> batch) {
+        notifyDataSetChanged();
+    }
+
     @Override
     public void onDataChanged() {
     }
@@ -100,7 +107,7 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
     @Override
     public long getItemId(int i) {
         // http://stackoverflow.com/questions/5100071/whats-the-purpose-of-item-ids-in-android-listview-adapter
-        return mSnapshots.getSnapshot(i).getKey().hashCode();
+        return mSnapshots.getCachingParser().getStableId(mSnapshots.getSnapshot(i));
     }
 
     @Override
@@ -0,0 +1,54 @@
+package com.firebase.ui.database;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.firebase.ui.common.PageLoader;
+
+/**
+ * A {@link FirebaseRecyclerAdapter} that loads a {@link FirebasePagingArray} one page at a time as
+ * the list is scrolled towards either end of the loaded children.
+ *
+ * @param <T>  The Java class that maps to the type of objects stored in the Firebase location.
+ * @param <VH> The {@link RecyclerView.ViewHolder} class that contains the Views in the layout that
+ *             is shown for each object.
+ * @see FirebaseRecyclerOptions.Builder#setPagedQuery(com.google.firebase.database.Query, String,
+ * boolean, com.firebase.ui.common.PagingConfig, SnapshotParser)
+ */
+public abstract class FirebasePagingAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends FirebaseRecyclerAdapter<T, VH> {
+
+    private final PageLoader mPageLoader;
+
+    /**
+     * Initialize a {@link RecyclerView.Adapter} that pages through a Firebase location. The
+     * options must use {@code setPagedQuery} or a {@link FirebasePagingArray}.
+     */
+    public FirebasePagingAdapter(FirebaseRecyclerOptions<T> options) {
+        super(options);
+        if (!(options.getSnapshots() instanceof FirebasePagingArray)) {
+            throw new IllegalArgumentException(
+                    "FirebasePagingAdapter requires a FirebasePagingArray, see setPagedQuery.");
+        }
+        mPageLoader = new PageLoader((FirebasePagingArray<T>) options.getSnapshots());
+    }
+
+    /**
+     * @return the paging array, to load pages or check whether more are available.
+     */
+    public FirebasePagingArray<T> getPagingArray() {
+        return (FirebasePagingArray<T>) getSnapshots();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(mPageLoader);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mPageLoader);
+        mPageLoader.reset();
+    }
+}
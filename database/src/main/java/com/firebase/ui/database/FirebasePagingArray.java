@@ -0,0 +1,493 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.Pageable;
+import com.firebase.ui.common.PagingConfig;
+import com.firebase.ui.common.Preconditions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Exposes a Firebase location as an observable list of objects, loaded one page at a time with
+ * {@code startAt()}/{@code endAt()} cursors and {@code limitToFirst()}/{@code limitToLast()}
+ * windows. Pages can be loaded in both directions, so a list can start at the end of the
+ * location, e.g. the latest messages of a chat, and load older items as it is scrolled back.
+ * <p>
+ * Only {@link PagingConfig#getMaxPages()} pages are kept in memory: once a page is loaded at one
+ * end, the page at the other end is dropped, and loaded again if it is scrolled back to. With
+ * {@link PagingConfig#isLiveUpdates()}, the pages in the visible range listen for changes to the
+ * children between their first and last child. The last page of the location also receives the
+ * children added after it.
+ *
+ * @see #setVisibleRange(int, int)
+ */
+public class FirebasePagingArray<T> extends ObservableSnapshotArray<T> implements Pageable {
+    private final Query mQuery;
+    private final String mOrderByChild;
+    private final boolean mStartAtEnd;
+    private final PagingConfig mConfig;
+
+    private final List<DataSnapshot> mSnapshots = new ArrayList<>();
+
+    /**
+     * Pages in memory, in order. Their children are concatenated in {@link #mSnapshots}.
+     */
+    private final List<Page> mPages = new ArrayList<>();
+
+    private Page mLoadingPage;
+    private boolean mReachedStart;
+    private boolean mReachedEnd;
+
+    private int mFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastVisible = RecyclerView.NO_POSITION;
+
+    /**
+     * Create a new FirebasePagingArray.
+     *
+     * @param query        the Firebase location to page through. Must not be ordered or
+     *                     limited, the array orders it itself.
+     * @param orderByChild the child to order by, or null to order by key.
+     * @param startAtEnd   true to load the last page first, false to load the first page first.
+     * @param config       page size, number of pages in memory and live updates.
+     * @see ObservableSnapshotArray#ObservableSnapshotArray(SnapshotParser)
+     */
+    public FirebasePagingArray(@NonNull Query query,
+                               @Nullable String orderByChild,
+                               boolean startAtEnd,
+                               @NonNull PagingConfig config,
+                               SnapshotParser<T> parser) {
+        super(parser);
+        Preconditions.checkNotNull(query);
+        mQuery = orderByChild == null ? query.orderByKey() : query.orderByChild(orderByChild);
+        mOrderByChild = orderByChild;
+        mStartAtEnd = startAtEnd;
+        mConfig = Preconditions.checkNotNull(config);
+    }
+
+    @NonNull
+    @Override
+    protected List<DataSnapshot> getSnapshots() {
+        return mSnapshots;
+    }
+
+    @NonNull
+    @Override
+    public PagingConfig getPagingConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Not supported, pages are loaded and trimmed on the main thread.
+     *
+     * @throws IllegalStateException if the executor is not null.
+     */
+    @Override
+    public void setUpdateExecutor(@Nullable Executor executor) {
+        if (executor != null) {
+            throw new IllegalStateException(
+                    "Background updates are not supported by paging arrays.");
+        }
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        int pageSize = mConfig.getPageSize();
+        Query query = mStartAtEnd ? mQuery.limitToLast(pageSize) : mQuery.limitToFirst(pageSize);
+        load(new Page(), query, !mStartAtEnd, null);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (Page page : mPages) {
+            page.stopListening();
+        }
+        mPages.clear();
+        mSnapshots.clear();
+        mLoadingPage = null;
+        mReachedStart = false;
+        mReachedEnd = false;
+        mFirstVisible = RecyclerView.NO_POSITION;
+        mLastVisible = RecyclerView.NO_POSITION;
+    }
+
+    @Override
+    public void setVisibleRange(int first, int last) {
+        mFirstVisible = first;
+        mLastVisible = last;
+        if (!isListening()) return;
+
+        updateListeners();
+        loadIfNeeded();
+    }
+
+    /**
+     * Load the page of newer children, after the last loaded child.
+     */
+    @Override
+    public void loadNextPage() {
+        if (!isListening() || isLoading() || !hasNextPage()) return;
+
+        DataSnapshot last = mSnapshots.get(mSnapshots.size() - 1);
+        // Cursors are inclusive, so ask for one more child than needed
+        load(new Page(),
+                startAt(mQuery, last).limitToFirst(mConfig.getPageSize() + 1),
+                true,
+                last.getKey());
+    }
+
+    /**
+     * Load the page of older children, before the first loaded child.
+     */
+    @Override
+    public void loadPreviousPage() {
+        if (!isListening() || isLoading() || !hasPreviousPage()) return;
+
+        DataSnapshot first = mSnapshots.get(0);
+        load(new Page(),
+                endAt(mQuery, first).limitToLast(mConfig.getPageSize() + 1),
+                false,
+                first.getKey());
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        return !mSnapshots.isEmpty() && !mReachedEnd;
+    }
+
+    @Override
+    public boolean hasPreviousPage() {
+        return !mSnapshots.isEmpty() && !mReachedStart;
+    }
+
+    @Override
+    public boolean isLoading() {
+        return mLoadingPage != null;
+    }
+
+    /**
+     * @param cursorKey the key of the loaded child the query starts or ends at, null if none.
+     */
+    private void load(final Page page,
+                      Query query,
+                      final boolean isNext,
+                      @Nullable final String cursorKey) {
+        mLoadingPage = page;
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(final DataSnapshot snapshot) {
+                dispatch(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The array may have stopped listening since
+                        if (mLoadingPage != page) return;
+                        mLoadingPage = null;
+
+                        onPageLoaded(page, snapshot, isNext, cursorKey);
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(final DatabaseError error) {
+                dispatch(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mLoadingPage != page) return;
+                        mLoadingPage = null;
+
+                        notifyOnError(error);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(Page page,
+                              DataSnapshot result,
+                              boolean isNext,
+                              @Nullable String cursorKey) {
+        boolean isFirstPage = mPages.isEmpty();
+
+        List<DataSnapshot> children = new ArrayList<>();
+        for (DataSnapshot child : result.getChildren()) {
+            // Skip the child the cursor started at, it is already loaded
+            if (!child.getKey().equals(cursorKey)) children.add(child);
+        }
+
+        boolean reachedLimit = children.size() < mConfig.getPageSize();
+        if (isFirstPage) {
+            mReachedStart = !mStartAtEnd || reachedLimit;
+            mReachedEnd = mStartAtEnd || reachedLimit;
+        } else if (isNext) {
+            mReachedEnd = reachedLimit;
+        } else {
+            mReachedStart = reachedLimit;
+        }
+
+        if (!children.isEmpty() || isFirstPage) {
+            page.setChildren(children);
+
+            int index;
+            if (isNext) {
+                index = mSnapshots.size();
+                mPages.add(page);
+            } else {
+                index = 0;
+                mPages.add(0, page);
+                shiftVisibleRange(children.size());
+            }
+            for (int i = 0; i < children.size(); i++) {
+                mSnapshots.add(index + i, children.get(i));
+                notifyOnChildChanged(ChangeEventType.ADDED, children.get(i), index + i, -1);
+            }
+
+            // Make room by dropping the page furthest from the one just loaded
+            while (mPages.size() > mConfig.getMaxPages()) {
+                if (isNext) {
+                    shiftVisibleRange(-removePage(0));
+                    mReachedStart = false;
+                } else {
+                    removePage(mPages.size() - 1);
+                    mReachedEnd = false;
+                }
+            }
+        }
+
+        notifyOnDataChanged();
+        updateListeners();
+        loadIfNeeded();
+    }
+
+    /**
+     * Drop a page and its children from memory.
+     *
+     * @return the number of children removed.
+     */
+    private int removePage(int position) {
+        Page page = mPages.remove(position);
+        page.stopListening();
+
+        int start = position == 0 ? 0 : mSnapshots.size() - page.mSize;
+        for (int i = start + page.mSize - 1; i >= start; i--) {
+            DataSnapshot snapshot = mSnapshots.remove(i);
+            notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, i, -1);
+        }
+        return page.mSize;
+    }
+
+    /**
+     * Keep the last reported visible range in line with the children it points to, since pages
+     * added or removed before it move them before the next scroll event.
+     */
+    private void shiftVisibleRange(int offset) {
+        if (mFirstVisible == RecyclerView.NO_POSITION) return;
+        mFirstVisible = Math.max(0, mFirstVisible + offset);
+        mLastVisible = Math.max(0, mLastVisible + offset);
+    }
+
+    private void loadIfNeeded() {
+        if (mLastVisible == RecyclerView.NO_POSITION) return;
+
+        int distance = mConfig.getPrefetchDistance();
+        if (mStartAtEnd) {
+            // The list was opened at its end, so older children are the likelier next page
+            if (mFirstVisible <= distance) {
+                loadPreviousPage();
+            } else if (mLastVisible >= mSnapshots.size() - 1 - distance) {
+                loadNextPage();
+            }
+        } else {
+            if (mLastVisible >= mSnapshots.size() - 1 - distance) {
+                loadNextPage();
+            } else if (mFirstVisible <= distance) {
+                loadPreviousPage();
+            }
+        }
+    }
+
+    /**
+     * Listen to the pages overlapping the visible range, and stop listening to the others.
+     */
+    private void updateListeners() {
+        if (!mConfig.isLiveUpdates()) return;
+
+        int start = 0;
+        for (Page page : mPages) {
+            int end = start + page.mSize;
+            boolean visible = mFirstVisible != RecyclerView.NO_POSITION
+                    && start <= mLastVisible && (end > mFirstVisible || page.mSize == 0);
+            if (visible) {
+                page.startListening();
+            } else {
+                page.stopListening();
+            }
+            start = end;
+        }
+    }
+
+    private int getOffset(Page page) {
+        int offset = 0;
+        for (Page other : mPages) {
+            if (other == page) return offset;
+            offset += other.mSize;
+        }
+        throw new IllegalStateException("Page is not in memory.");
+    }
+
+    private Query startAt(Query query, DataSnapshot snapshot) {
+        return bound(query, snapshot, true);
+    }
+
+    private Query endAt(Query query, DataSnapshot snapshot) {
+        return bound(query, snapshot, false);
+    }
+
+    /**
+     * Bound the query at the given child, inclusive, by the value the query is ordered by.
+     */
+    private Query bound(Query query, DataSnapshot snapshot, boolean start) {
+        String key = snapshot.getKey();
+        if (mOrderByChild == null) {
+            return start ? query.startAt(key) : query.endAt(key);
+        }
+
+        Object value = snapshot.child(mOrderByChild).getValue();
+        if (value instanceof Boolean) {
+            boolean bool = (Boolean) value;
+            return start ? query.startAt(bool, key) : query.endAt(bool, key);
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return start ? query.startAt(number, key) : query.endAt(number, key);
+        } else if (value == null || value instanceof String) {
+            String string = (String) value;
+            return start ? query.startAt(string, key) : query.endAt(string, key);
+        } else {
+            throw new IllegalStateException("Cannot page by '" + mOrderByChild + "' of " + key
+                    + ", only boolean, number and string values can be used as cursors.");
+        }
+    }
+
+    /**
+     * A page of children, between its first and last child.
+     */
+    private final class Page implements ValueEventListener {
+        int mSize;
+        DataSnapshot mFirst;
+        DataSnapshot mLast;
+
+        /** The query listened to, null if the page isn't listening. */
+        Query mListenQuery;
+
+        void setChildren(List<DataSnapshot> children) {
+            mSize = children.size();
+            if (!children.isEmpty()) {
+                mFirst = children.get(0);
+                mLast = children.get(children.size() - 1);
+            }
+        }
+
+        void startListening() {
+            if (mListenQuery != null) return;
+            mListenQuery = getListenQuery();
+            mListenQuery.addValueEventListener(this);
+        }
+
+        void stopListening() {
+            if (mListenQuery == null) return;
+            mListenQuery.removeEventListener(this);
+            mListenQuery = null;
+        }
+
+        private Query getListenQuery() {
+            int pageSize = mConfig.getPageSize();
+            if (mFirst == null) {
+                // Only an empty location has an empty page
+                return mStartAtEnd ? mQuery.limitToLast(pageSize) : mQuery.limitToFirst(pageSize);
+            }
+
+            Query query = startAt(mQuery, mFirst);
+            boolean isLastPage = mPages.indexOf(this) == mPages.size() - 1;
+            // The last page of the location also picks up children added after it
+            return isLastPage && mReachedEnd ? query : endAt(query, mLast);
+        }
+
+        @Override
+        public void onDataChange(final DataSnapshot snapshot) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    applyDataChange(snapshot);
+                }
+            });
+        }
+
+        private void applyDataChange(DataSnapshot snapshot) {
+            // The listener may have been removed while this event was in flight
+            if (mListenQuery == null) return;
+
+            List<DataSnapshot> children = new ArrayList<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                children.add(child);
+            }
+            replaceChildren(children, getOffset(this));
+            notifyOnDataChanged();
+        }
+
+        @Override
+        public void onCancelled(final DatabaseError error) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    // The listener may have been removed while this event was in flight
+                    if (mListenQuery == null) return;
+                    notifyOnError(error);
+                }
+            });
+        }
+
+        private void replaceChildren(List<DataSnapshot> children, int offset) {
+            boolean sameKeys = children.size() == mSize;
+            for (int i = 0; sameKeys && i < mSize; i++) {
+                String key = mSnapshots.get(offset + i).getKey();
+                sameKeys = children.get(i).getKey().equals(key);
+            }
+
+            if (sameKeys) {
+                for (int i = 0; i < mSize; i++) {
+                    DataSnapshot child = children.get(i);
+                    DataSnapshot old = mSnapshots.set(offset + i, child);
+                    if (!isValueEqual(old, child)) {
+                        notifyOnChildUpdated(old, child, offset + i, -1);
+                    }
+                }
+            } else {
+                for (int i = offset + mSize - 1; i >= offset; i--) {
+                    notifyOnChildChanged(ChangeEventType.REMOVED, mSnapshots.remove(i), i, -1);
+                }
+                for (int i = 0; i < children.size(); i++) {
+                    mSnapshots.add(offset + i, children.get(i));
+                    notifyOnChildChanged(ChangeEventType.ADDED, children.get(i), offset + i, -1);
+                }
+                mSize = children.size();
+                // Keep listening to the same range, the bounds only change once it is reloaded
+            }
+        }
+
+        private boolean isValueEqual(DataSnapshot a, DataSnapshot b) {
+            Object value = a.getValue(true);
+            return value == null ? b.getValue(true) == null : value.equals(b.getValue(true));
+        }
+    }
+}
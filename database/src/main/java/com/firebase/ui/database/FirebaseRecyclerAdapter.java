@@ -3,14 +3,23 @@ package com.firebase.ui.database;
 import android.arch.lifecycle.Lifecycle;
 import android.arch.lifecycle.LifecycleOwner;
 import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
+import com.firebase.ui.common.BaseChildUpdateListener;
+import com.firebase.ui.common.ChangeEventBatch;
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.SnapshotDiffer;
+import com.firebase.ui.common.SnapshotPrefetcher;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * This class is a generic way of backing a {@link RecyclerView} with a Firebase location. It
  * handles all of the child events at the given Firebase location and marshals received data into
@@ -24,17 +33,106 @@ import com.google.firebase.database.DatabaseReference;
  *             is shown for each object.
  */
 public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHolder>
-        extends RecyclerView.Adapter<VH> implements FirebaseAdapter<T> {
+        extends RecyclerView.Adapter<VH>
+        implements FirebaseAdapter<T>, BaseChildUpdateListener<DataSnapshot, DatabaseError> {
     private static final String TAG = "FirebaseRecyclerAdapter";
 
     private final ObservableSnapshotArray<T> mSnapshots;
 
+    /**
+     * Parses rows ahead of the visible range, null if snapshots are parsed on demand.
+     */
+    private final SnapshotPrefetcher mPrefetcher;
+
+    /**
+     * Moves the window of joined data along with the visible range, null if every key's data is
+     * listened to.
+     */
+    private final JoinWindowUpdater mWindowUpdater;
+
+    /**
+     * Finds the changed fields passed as payloads of changed items, null if changed items are
+     * fully rebound.
+     */
+    private final FieldDiffer mFieldDiffer;
+
+    /**
+     * In batching mode, the snapshots RecyclerView was last notified of. The array changes as
+     * events arrive, but their notifications are delivered in a batch with the next data changed
+     * event, so rows are counted and bound from this copy until then. Null otherwise.
+     */
+    private List<DataSnapshot> mBatchedSnapshots;
+
+    /**
+     * Computes list updates in the background, null if updates are applied as they arrive.
+     */
+    private final SnapshotDiffer<DataSnapshot> mDiffer;
+    private final ChangeEventListener mDiffListener = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DataSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            // Updates are computed from the whole list once the data has changed
+        }
+
+        @Override
+        public void onDataChanged() {
+            mDiffer.submitList(mSnapshots.copySnapshots());
+        }
+
+        @Override
+        public void onError(DatabaseError error) {
+        }
+    };
+
     /**
      * Initialize a {@link RecyclerView.Adapter} that listens to a Firebase query. See
      * {@link FirebaseRecyclerOptions} for configuration options.
      */
     public FirebaseRecyclerAdapter(FirebaseRecyclerOptions<T> options) {
         mSnapshots = options.getSnapshots();
+        if (options.isBatchingEnabled()) {
+            mSnapshots.setBatchingEnabled(true);
+        }
+        if (options.getFrameDispatcher() != null) {
+            mSnapshots.setDispatcher(options.getFrameDispatcher());
+        }
+        if (options.getUpdateExecutor() != null) {
+            mSnapshots.setUpdateExecutor(options.getUpdateExecutor());
+        }
+        if (options.getMetricsListener() != null) {
+            mSnapshots.setMetricsListener(options.getMetricsListener());
+        }
+        if (options.hasStableIds()) {
+            setHasStableIds(true);
+        }
+        if (options.getCacheConfig() != null) {
+            mSnapshots.getCachingParser().setConfig(options.getCacheConfig());
+        }
+        if (options.getParseExecutor() != null) {
+            mSnapshots.setPrefetchExecutor(options.getParseExecutor());
+            mPrefetcher = new SnapshotPrefetcher(mSnapshots);
+        } else {
+            mPrefetcher = null;
+        }
+        if (options.getJoinWindowMargin() != FirebaseRecyclerOptions.NO_JOIN_WINDOW) {
+            FirebaseIndexArray<T> array = (FirebaseIndexArray<T>) mSnapshots;
+            array.setWindowingEnabled(true);
+            mWindowUpdater = new JoinWindowUpdater(array, options.getJoinWindowMargin());
+        } else {
+            mWindowUpdater = null;
+        }
+        mFieldDiffer = options.getFieldDiffer();
+        if (options.getDiffExecutor() != null) {
+            mDiffer = new SnapshotDiffer<>(options.getDiffExecutor(),
+                    mSnapshots.getCachingParser(),
+                    options.getContentComparator(),
+                    this);
+            mDiffer.setFieldDiffer(mFieldDiffer);
+        } else {
+            mDiffer = null;
+        }
 
         if (options.getOwner() != null) {
             options.getOwner().getLifecycle().addObserver(this);
@@ -45,7 +143,12 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
     @OnLifecycleEvent(Lifecycle.Event.ON_START)
     public void startListening() {
         if (!mSnapshots.isListening(this)) {
+            if (mDiffer != null) mSnapshots.addChangeEventListener(mDiffListener);
             mSnapshots.addChangeEventListener(this);
+            // No batch is delivered for an empty array, start counting from its current state
+            if (mDiffer == null && mSnapshots.isBatchingEnabled() && mBatchedSnapshots == null) {
+                mBatchedSnapshots = mSnapshots.copySnapshots();
+            }
         }
     }
 
@@ -53,6 +156,11 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
     @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
     public void stopListening() {
         mSnapshots.removeChangeEventListener(this);
+        if (mDiffer != null) {
+            mSnapshots.removeChangeEventListener(mDiffListener);
+            mDiffer.clear();
+        }
+        mBatchedSnapshots = null;
         notifyDataSetChanged();
     }
 
@@ -61,11 +169,34 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
         source.getLifecycle().removeObserver(this);
     }
 
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (mPrefetcher != null) recyclerView.addOnScrollListener(mPrefetcher);
+        if (mWindowUpdater != null) recyclerView.addOnScrollListener(mWindowUpdater);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (mPrefetcher != null) {
+            recyclerView.removeOnScrollListener(mPrefetcher);
+            mPrefetcher.reset();
+        }
+        if (mWindowUpdater != null) {
+            recyclerView.removeOnScrollListener(mWindowUpdater);
+            mWindowUpdater.reset();
+        }
+    }
+
     @Override
     public void onChildChanged(ChangeEventType type,
                                DataSnapshot snapshot,
                                int newIndex,
                                int oldIndex) {
+        if (mDiffer != null) return;
+        mBatchedSnapshots = null;
+
         switch (type) {
             case ADDED:
                 notifyItemInserted(newIndex);
@@ -84,6 +215,37 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
         }
     }
 
+    @Override
+    public void onChildUpdated(@NonNull DataSnapshot oldSnapshot,
+                               @NonNull DataSnapshot newSnapshot,
+                               int newIndex,
+                               int oldIndex) {
+        if (mDiffer != null) return;
+        mBatchedSnapshots = null;
+
+        notifyItemChanged(newIndex, getChangedFields(oldSnapshot, newSnapshot));
+    }
+
+    @Override
+    public void onChildChangeBatch(@NonNull ChangeEventBatch<DataSnapshot> batch) {
+        if (mDiffer != null) return;
+
+        // The array matches the batch until the next event is applied
+        mBatchedSnapshots = mSnapshots.copySnapshots();
+        batch.dispatchUpdatesTo(this, mFieldDiffer);
+    }
+
+    /**
+     * @return the changed fields of an item, or null if it should be fully rebound.
+     */
+    @Nullable
+    private Set<String> getChangedFields(DataSnapshot oldSnapshot, DataSnapshot newSnapshot) {
+        if (mFieldDiffer == null) return null;
+
+        Set<String> fields = mFieldDiffer.getChangedFields(oldSnapshot, newSnapshot);
+        return fields.isEmpty() ? null : fields;
+    }
+
     @Override
     public void onDataChanged() {
     }
@@ -100,22 +262,74 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
 
     @Override
     public T getItem(int position) {
+        if (mDiffer != null || mBatchedSnapshots != null) {
+            return mSnapshots.getCachingParser().parseSnapshot(getSnapshot(position));
+        }
         return mSnapshots.get(position);
     }
 
     @Override
     public DatabaseReference getRef(int position) {
-        return mSnapshots.getSnapshot(position).getRef();
+        return getSnapshot(position).getRef();
     }
 
     @Override
     public int getItemCount() {
+        if (mDiffer != null) return mDiffer.getCurrentList().size();
+        if (mBatchedSnapshots != null) return mBatchedSnapshots.size();
         return mSnapshots.isListening(this) ? mSnapshots.size() : 0;
     }
 
+    /**
+     * @return a 64-bit ID derived from the item's key, computed once per key. Only used by
+     * {@link RecyclerView} if stable IDs are enabled, see {@link
+     * FirebaseRecyclerOptions.Builder#setHasStableIds(boolean)}.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mSnapshots.getCachingParser().getStableId(getSnapshot(position));
+    }
+
+    /**
+     * Get the snapshot displayed at a position, which may lag behind the backing array while a
+     * background diff is in progress or events wait to be delivered in a batch.
+     */
+    private DataSnapshot getSnapshot(int position) {
+        if (mDiffer != null) return mDiffer.getCurrentList().get(position);
+        if (mBatchedSnapshots != null) return mBatchedSnapshots.get(position);
+        return mSnapshots.getSnapshot(position);
+    }
+
     @Override
     public void onBindViewHolder(VH holder, int position) {
-        onBindViewHolder(holder, position, getItem(position));
+        if (isPlaceholder(position)) {
+            onBindPlaceholder(holder, position);
+        } else {
+            onBindViewHolder(holder, position, getItem(position));
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(VH holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || isPlaceholder(position)) {
+            onBindViewHolder(holder, position);
+        } else {
+            onBindViewHolder(holder, position, getItem(position), payloads);
+        }
+    }
+
+    private boolean isPlaceholder(int position) {
+        return mWindowUpdater != null && !((FirebaseIndexArray<T>) mSnapshots).isLoaded(position);
+    }
+
+    /**
+     * Called instead of {@link #onBindViewHolder(RecyclerView.ViewHolder, int, Object)} for a row
+     * whose joined data isn't loaded yet, see {@link
+     * FirebaseRecyclerOptions.Builder#setJoinWindow(int)}. The row's key is {@code
+     * getRef(position).getKey()}. Does nothing by default, override it to clear or dim recycled
+     * views.
+     */
+    protected void onBindPlaceholder(VH holder, int position) {
     }
 
     /**
@@ -123,4 +337,19 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
      * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
      */
     protected abstract void onBindViewHolder(VH holder, int position, T model);
+
+    /**
+     * Called instead of {@link #onBindViewHolder(RecyclerView.ViewHolder, int, Object)} to update
+     * a row in place when only some of its fields changed, see {@link
+     * FirebaseRecyclerOptions.Builder#setChangePayloads()}. Each payload from FirebaseUI is the
+     * {@code Set<String>} of the paths of the changed fields, one per change since the row was
+     * last bound. Fully rebinds the row by default.
+     *
+     * @param model    the model object containing the data that should be used to populate the
+     *                 view.
+     * @param payloads the changed fields, never empty.
+     */
+    protected void onBindViewHolder(VH holder, int position, T model, List<Object> payloads) {
+        onBindViewHolder(holder, position, model);
+    }
 }
@@ -1,11 +1,21 @@
 package com.firebase.ui.database;
 
 import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 
+import com.firebase.ui.common.CacheConfig;
+import com.firebase.ui.common.FrameDispatcher;
+import com.firebase.ui.common.MetricsListener;
+import com.firebase.ui.common.PagingConfig;
+import com.firebase.ui.common.Preconditions;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.Query;
 
+import java.util.concurrent.Executor;
+
 import static com.firebase.ui.common.Preconditions.assertNonNull;
 import static com.firebase.ui.common.Preconditions.assertNull;
 
@@ -17,17 +27,59 @@ import static com.firebase.ui.common.Preconditions.assertNull;
 public class FirebaseRecyclerOptions<T> {
 
     private static final String ERR_SNAPSHOTS_SET = "Snapshot array already set. " +
-            "Call only one of setSnapshotArray, setQuery, or setIndexedQuery.";
+            "Call only one of setSnapshotArray, setQuery, setIndexedQuery, or setPagedQuery.";
     private static final String ERR_SNAPSHOTS_NULL = "Snapshot array cannot be null. " +
-            "Call one of setSnapshotArray, setQuery, or setIndexedQuery.";
+            "Call one of setSnapshotArray, setQuery, setIndexedQuery, or setPagedQuery.";
+    private static final String ERR_JOIN_WINDOW = "A join window requires a FirebaseIndexArray " +
+            "and cannot be combined with background diffing or batching.";
+    private static final String ERR_BACKGROUND_UPDATES = "Background updates cannot be " +
+            "combined with a paged query or a join window.";
+
+    /**
+     * Value of {@link #getJoinWindowMargin()} when every key's data is listened to.
+     */
+    public static final int NO_JOIN_WINDOW = -1;
 
     private final ObservableSnapshotArray<T> mSnapshots;
     private final LifecycleOwner mOwner;
+    private final boolean mBatchingEnabled;
+    private final Executor mDiffExecutor;
+    private final ContentComparator mContentComparator;
+    private final CacheConfig<T> mCacheConfig;
+    private final Executor mParseExecutor;
+    private final int mJoinWindowMargin;
+    private final FrameDispatcher mFrameDispatcher;
+    private final Executor mUpdateExecutor;
+    private final MetricsListener mMetricsListener;
+    private final boolean mHasStableIds;
+    private final FieldDiffer mFieldDiffer;
 
     private FirebaseRecyclerOptions(ObservableSnapshotArray<T> snapshots,
-                                    @Nullable LifecycleOwner owner) {
+                                    @Nullable LifecycleOwner owner,
+                                    boolean batchingEnabled,
+                                    @Nullable Executor diffExecutor,
+                                    @Nullable ContentComparator contentComparator,
+                                    @Nullable CacheConfig<T> cacheConfig,
+                                    @Nullable Executor parseExecutor,
+                                    int joinWindowMargin,
+                                    @Nullable FrameDispatcher frameDispatcher,
+                                    @Nullable Executor updateExecutor,
+                                    @Nullable MetricsListener metricsListener,
+                                    boolean hasStableIds,
+                                    @Nullable FieldDiffer fieldDiffer) {
         mSnapshots = snapshots;
         mOwner = owner;
+        mBatchingEnabled = batchingEnabled;
+        mDiffExecutor = diffExecutor;
+        mContentComparator = contentComparator;
+        mCacheConfig = cacheConfig;
+        mParseExecutor = parseExecutor;
+        mJoinWindowMargin = joinWindowMargin;
+        mFrameDispatcher = frameDispatcher;
+        mUpdateExecutor = updateExecutor;
+        mMetricsListener = metricsListener;
+        mHasStableIds = hasStableIds;
+        mFieldDiffer = fieldDiffer;
     }
 
     /**
@@ -46,6 +98,98 @@ public class FirebaseRecyclerOptions<T> {
         return mOwner;
     }
 
+    /**
+     * Returns true if the adapter should put the snapshot array in batching mode.
+     *
+     * @see ObservableSnapshotArray#setBatchingEnabled(boolean)
+     */
+    public boolean isBatchingEnabled() {
+        return mBatchingEnabled;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} on which list updates are diffed, or null if updates
+     * are applied directly on the main thread.
+     */
+    @Nullable
+    public Executor getDiffExecutor() {
+        return mDiffExecutor;
+    }
+
+    /**
+     * Get the {@link ContentComparator} used when diffing list updates in the background.
+     */
+    @Nullable
+    public ContentComparator getContentComparator() {
+        return mContentComparator;
+    }
+
+    /**
+     * Get the (optional) {@link CacheConfig} for the snapshot array's cache of parsed objects.
+     */
+    @Nullable
+    public CacheConfig<T> getCacheConfig() {
+        return mCacheConfig;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} on which snapshots are parsed ahead of binding.
+     */
+    @Nullable
+    public Executor getParseExecutor() {
+        return mParseExecutor;
+    }
+
+    /**
+     * Get the number of rows around the visible range whose joined data is listened to, or {@link
+     * #NO_JOIN_WINDOW}.
+     */
+    public int getJoinWindowMargin() {
+        return mJoinWindowMargin;
+    }
+
+    /**
+     * Get the (optional) {@link FrameDispatcher} that defers array mutations to the next frame.
+     */
+    @Nullable
+    public FrameDispatcher getFrameDispatcher() {
+        return mFrameDispatcher;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} on which the snapshot array applies database events.
+     */
+    @Nullable
+    public Executor getUpdateExecutor() {
+        return mUpdateExecutor;
+    }
+
+    /**
+     * Get the (optional) {@link MetricsListener} the snapshot array reports its metrics to.
+     */
+    @Nullable
+    public MetricsListener getMetricsListener() {
+        return mMetricsListener;
+    }
+
+    /**
+     * Returns true if the adapter should report stable item IDs.
+     *
+     * @see RecyclerView.Adapter#setHasStableIds(boolean)
+     */
+    public boolean hasStableIds() {
+        return mHasStableIds;
+    }
+
+    /**
+     * Get the (optional) {@link FieldDiffer} used to pass the changed fields of changed items to
+     * the adapter as payloads.
+     */
+    @Nullable
+    public FieldDiffer getFieldDiffer() {
+        return mFieldDiffer;
+    }
+
     /**
      * Builder for a {@link FirebaseRecyclerOptions}.
      *
@@ -55,6 +199,17 @@ public class FirebaseRecyclerOptions<T> {
 
         private ObservableSnapshotArray<T> mSnapshots;
         private LifecycleOwner mOwner;
+        private boolean mBatchingEnabled;
+        private Executor mDiffExecutor;
+        private ContentComparator mContentComparator;
+        private CacheConfig<T> mCacheConfig;
+        private Executor mParseExecutor;
+        private int mJoinWindowMargin = NO_JOIN_WINDOW;
+        private FrameDispatcher mFrameDispatcher;
+        private Executor mUpdateExecutor;
+        private MetricsListener mMetricsListener;
+        private boolean mHasStableIds;
+        private FieldDiffer mFieldDiffer;
 
         /**
          * Directly set the {@link ObservableSnapshotArray} to be listened to.
@@ -121,6 +276,47 @@ public class FirebaseRecyclerOptions<T> {
             return setIndexedQuery(keyQuery, dataRef, new ClassSnapshotParser<>(modelClass));
         }
 
+        /**
+         * Set a Firebase location to load one page at a time as the list scrolls, along with a
+         * {@link SnapshotParser} to parse snapshots into model objects. Use with a {@link
+         * FirebasePagingAdapter}.
+         * <p>
+         * Do not call this method after calling {@link #setSnapshotArray(ObservableSnapshotArray)}.
+         *
+         * @see FirebasePagingArray#FirebasePagingArray(Query, String, boolean, PagingConfig,
+         * SnapshotParser)
+         */
+        public Builder<T> setPagedQuery(Query query,
+                                        @Nullable String orderByChild,
+                                        boolean startAtEnd,
+                                        PagingConfig config,
+                                        SnapshotParser<T> snapshotParser) {
+            assertNull(mSnapshots, ERR_SNAPSHOTS_SET);
+
+            mSnapshots = new FirebasePagingArray<>(
+                    query, orderByChild, startAtEnd, config, snapshotParser);
+            return this;
+        }
+
+        /**
+         * Set a Firebase location to load one page at a time as the list scrolls, along with a
+         * {@link Class} to which snapshots should be parsed. Use with a {@link
+         * FirebasePagingAdapter}.
+         * <p>
+         * Do not call this method after calling {@link #setSnapshotArray(ObservableSnapshotArray)}.
+         *
+         * @see FirebasePagingArray#FirebasePagingArray(Query, String, boolean, PagingConfig,
+         * SnapshotParser)
+         */
+        public Builder<T> setPagedQuery(Query query,
+                                        @Nullable String orderByChild,
+                                        boolean startAtEnd,
+                                        PagingConfig config,
+                                        Class<T> modelClass) {
+            return setPagedQuery(query, orderByChild, startAtEnd, config,
+                    new ClassSnapshotParser<>(modelClass));
+        }
+
         /**
          * Set the (optional) {@link LifecycleOwner}. Listens will start and stop after the
          * appropriate lifecycle events.
@@ -130,13 +326,176 @@ public class FirebaseRecyclerOptions<T> {
             return this;
         }
 
+        /**
+         * Deliver child events to the adapter in batches rather than one at a time. Contiguous
+         * inserts, removals and changes are then notified as ranges, which is much cheaper when
+         * a large number of items change at once, e.g. during the initial load.
+         *
+         * @see ObservableSnapshotArray#setBatchingEnabled(boolean)
+         */
+        public Builder<T> setBatchingEnabled(boolean enabled) {
+            mBatchingEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Calls {@link #setBackgroundDiffing(Executor, ContentComparator)} with a {@link
+         * ValueContentComparator}.
+         */
+        public Builder<T> setBackgroundDiffing(@NonNull Executor executor) {
+            return setBackgroundDiffing(executor, new ValueContentComparator());
+        }
+
+        /**
+         * Instead of applying every child event on the main thread, snapshot the list each time
+         * the data changes and compute the minimal set of updates with {@link DiffUtil} on the
+         * given {@link Executor}. Items are identified by their key and compared with the given
+         * {@link ContentComparator}, so unchanged items are not rebound.
+         */
+        public Builder<T> setBackgroundDiffing(@NonNull Executor executor,
+                                               @NonNull ContentComparator comparator) {
+            mDiffExecutor = Preconditions.checkNotNull(executor);
+            mContentComparator = Preconditions.checkNotNull(comparator);
+            return this;
+        }
+
+        /**
+         * Configure the snapshot array's cache of parsed model objects, for example to bound it
+         * by weight or to keep every item of the array parsed.
+         *
+         * @see ObservableSnapshotArray#getCacheStats()
+         */
+        public Builder<T> setCacheConfig(@NonNull CacheConfig<T> config) {
+            mCacheConfig = Preconditions.checkNotNull(config);
+            return this;
+        }
+
+        /**
+         * Parse snapshots into model objects on the given {@link Executor} as they arrive and
+         * while the list scrolls, so that rows are usually bound without parsing on the main
+         * thread. The {@link SnapshotParser} must be safe to call from any thread.
+         *
+         * @see ObservableSnapshotArray#setPrefetchExecutor(Executor)
+         */
+        public Builder<T> setBackgroundParsing(@NonNull Executor executor) {
+            mParseExecutor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        /**
+         * Only listen to the joined data of the rows around the visible range of an indexed
+         * query, instead of attaching a listener for every key. Rows whose data isn't loaded are
+         * bound with {@link FirebaseRecyclerAdapter#onBindPlaceholder(RecyclerView.ViewHolder,
+         * int)}.
+         * <p>
+         * Requires {@code setIndexedQuery} or a {@link FirebaseIndexArray} snapshot array, and
+         * cannot be combined with {@link #setBackgroundDiffing(Executor)} or {@link
+         * #setBatchingEnabled(boolean)}: rows are bound from a list that lags behind the array,
+         * while whether their data is loaded is only known for the array.
+         *
+         * @param margin the number of rows before and after the visible range to load.
+         * @see FirebaseIndexArray#setWindowingEnabled(boolean)
+         */
+        public Builder<T> setJoinWindow(int margin) {
+            if (margin < 0) {
+                throw new IllegalArgumentException("Margin cannot be negative: " + margin);
+            }
+            mJoinWindowMargin = margin;
+            return this;
+        }
+
+        /**
+         * Apply database events to the snapshot array at the start of the next frame, so that a
+         * burst of events is delivered to the adapter at once and costs a single layout pass.
+         * Share the same {@link FrameDispatcher} between adapters to update them together.
+         *
+         * @see ObservableSnapshotArray#setDispatcher(FrameDispatcher)
+         */
+        public Builder<T> setFrameDispatcher(@NonNull FrameDispatcher dispatcher) {
+            mFrameDispatcher = Preconditions.checkNotNull(dispatcher);
+            return this;
+        }
+
+        /**
+         * Apply database events to the snapshot array on the given {@link Executor} instead of
+         * the main thread. The adapter reads an immutable version of the array published after
+         * each batch of events, so event processing does not compete with rendering.
+         * <p>
+         * Cannot be combined with paged queries or, for indexed queries, a join window.
+         *
+         * @see ObservableSnapshotArray#setUpdateExecutor(Executor)
+         */
+        public Builder<T> setBackgroundUpdates(@NonNull Executor executor) {
+            mUpdateExecutor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        /**
+         * Report the snapshot array's event counts, hot path timings and cache hit rate to the
+         * given {@link MetricsListener}, e.g. a {@link com.firebase.ui.common.MetricsCounter} or
+         * a {@link com.firebase.ui.common.TraceMetricsListener} to see them in systrace.
+         *
+         * @see ObservableSnapshotArray#setMetricsListener(MetricsListener)
+         */
+        public Builder<T> setMetricsListener(@NonNull MetricsListener listener) {
+            mMetricsListener = Preconditions.checkNotNull(listener);
+            return this;
+        }
+
+        /**
+         * Give each item a stable ID derived from its key, so that {@link RecyclerView} can keep
+         * a row's view and animate it when the item moves, instead of rebinding it. IDs are
+         * computed once per key and cached.
+         *
+         * @see RecyclerView.Adapter#setHasStableIds(boolean)
+         */
+        public Builder<T> setHasStableIds(boolean hasStableIds) {
+            mHasStableIds = hasStableIds;
+            return this;
+        }
+
+        /**
+         * Pass the changed fields of changed items to the adapter as payloads, using a {@link
+         * ValueFieldDiffer}.
+         *
+         * @see #setChangePayloads(FieldDiffer)
+         */
+        public Builder<T> setChangePayloads() {
+            return setChangePayloads(new ValueFieldDiffer());
+        }
+
+        /**
+         * Pass the changed fields of changed items to the adapter as payloads, found with the
+         * given {@link FieldDiffer}. Override the adapter's {@code onBindViewHolder(holder,
+         * position, model, payloads)} to only update the views showing them. Changed rows are
+         * then kept in place instead of cross-fading to a fully rebound copy.
+         * <p>
+         * With background diffing, the differ is called on the diff {@link Executor}.
+         */
+        public Builder<T> setChangePayloads(@NonNull FieldDiffer differ) {
+            mFieldDiffer = Preconditions.checkNotNull(differ);
+            return this;
+        }
+
         /**
          * Build a {@link FirebaseRecyclerOptions} from the provided arguments.
          */
         public FirebaseRecyclerOptions<T> build() {
             assertNonNull(mSnapshots, ERR_SNAPSHOTS_NULL);
+            if (mJoinWindowMargin != NO_JOIN_WINDOW
+                    && (!(mSnapshots instanceof FirebaseIndexArray) || mDiffExecutor != null
+                    || mBatchingEnabled)) {
+                throw new IllegalStateException(ERR_JOIN_WINDOW);
+            }
+            if (mUpdateExecutor != null && (mSnapshots instanceof FirebasePagingArray
+                    || mJoinWindowMargin != NO_JOIN_WINDOW)) {
+                throw new IllegalStateException(ERR_BACKGROUND_UPDATES);
+            }
 
-            return new FirebaseRecyclerOptions<>(mSnapshots, mOwner);
+            return new FirebaseRecyclerOptions<>(mSnapshots, mOwner, mBatchingEnabled,
+                    mDiffExecutor, mContentComparator, mCacheConfig, mParseExecutor,
+                    mJoinWindowMargin, mFrameDispatcher, mUpdateExecutor, mMetricsListener,
+                    mHasStableIds, mFieldDiffer);
         }
     }
 
@@ -0,0 +1,55 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.firebase.ui.common.Preconditions;
+
+/**
+ * A {@link RecyclerView.OnScrollListener} that moves the window of a {@link FirebaseIndexArray}
+ * in windowed mode along with the visible range, extended by a margin on both sides.
+ * <p>
+ * Only layout managers extending {@link LinearLayoutManager} (including {@code
+ * GridLayoutManager}) report their visible range, other layout managers are ignored.
+ *
+ * @see FirebaseIndexArray#setWindow(int, int)
+ */
+class JoinWindowUpdater extends RecyclerView.OnScrollListener {
+    private final FirebaseIndexArray<?> mSnapshots;
+    private final int mMargin;
+
+    private int mFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastVisible = RecyclerView.NO_POSITION;
+
+    public JoinWindowUpdater(@NonNull FirebaseIndexArray<?> snapshots, int margin) {
+        mSnapshots = Preconditions.checkNotNull(snapshots);
+        mMargin = margin;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) return;
+
+        LinearLayoutManager manager = (LinearLayoutManager) layoutManager;
+        int first = manager.findFirstVisibleItemPosition();
+        int last = manager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION
+                || first == mFirstVisible && last == mLastVisible) {
+            return;
+        }
+
+        mFirstVisible = first;
+        mLastVisible = last;
+        mSnapshots.setWindow(Math.max(0, first - mMargin), last + mMargin + 1);
+    }
+
+    /**
+     * Forget the last visible range, e.g. when the list is detached or its data is reset.
+     */
+    public void reset() {
+        mFirstVisible = RecyclerView.NO_POSITION;
+        mLastVisible = RecyclerView.NO_POSITION;
+    }
+}
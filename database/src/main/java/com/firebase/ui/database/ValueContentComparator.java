@@ -0,0 +1,17 @@
+package com.firebase.ui.database;
+
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * A {@link ContentComparator} that considers two {@link DataSnapshot}s to have the same content
+ * if their values, including priorities, are equal.
+ */
+public class ValueContentComparator implements ContentComparator {
+
+    @Override
+    public boolean areContentsTheSame(DataSnapshot oldSnapshot, DataSnapshot newSnapshot) {
+        Object oldValue = oldSnapshot.getValue(true);
+        Object newValue = newSnapshot.getValue(true);
+        return oldValue == null ? newValue == null : oldValue.equals(newValue);
+    }
+}
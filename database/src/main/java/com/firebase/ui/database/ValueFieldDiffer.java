@@ -0,0 +1,80 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link FieldDiffer} that compares the values of two {@link DataSnapshot}s child by child.
+ * Paths are relative to the snapshot and separated by {@code /}, e.g. a changed {@code
+ * author/name} is reported as both {@code author} and {@code author/name}. A child that was added
+ * or removed is reported without its own children. Priorities are ignored.
+ */
+public class ValueFieldDiffer implements FieldDiffer {
+
+    @NonNull
+    @Override
+    public Set<String> getChangedFields(@NonNull DataSnapshot oldSnapshot,
+                                        @NonNull DataSnapshot newSnapshot) {
+        Set<String> fields = new HashSet<>();
+        if (oldSnapshot.hasChildren() && newSnapshot.hasChildren()) {
+            diffChildren(null, oldSnapshot, newSnapshot, fields);
+        }
+        return fields;
+    }
+
+    /**
+     * Add the paths of the children that differ between two snapshots with children.
+     *
+     * @return true if any child differs.
+     */
+    private static boolean diffChildren(String path,
+                                        DataSnapshot oldSnapshot,
+                                        DataSnapshot newSnapshot,
+                                        Set<String> fields) {
+        boolean changed = false;
+        for (DataSnapshot newChild : newSnapshot.getChildren()) {
+            String key = newChild.getKey();
+            String childPath = path == null ? key : path + "/" + key;
+            if (!oldSnapshot.hasChild(key)) {
+                fields.add(childPath);
+                changed = true;
+            } else if (diff(childPath, oldSnapshot.child(key), newChild, fields)) {
+                changed = true;
+            }
+        }
+        for (DataSnapshot oldChild : oldSnapshot.getChildren()) {
+            String key = oldChild.getKey();
+            if (!newSnapshot.hasChild(key)) {
+                fields.add(path == null ? key : path + "/" + key);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Add the path of a child if it differs, along with the paths of its changed children.
+     *
+     * @return true if the child differs.
+     */
+    private static boolean diff(String path,
+                                DataSnapshot oldChild,
+                                DataSnapshot newChild,
+                                Set<String> fields) {
+        boolean changed;
+        if (oldChild.hasChildren() && newChild.hasChildren()) {
+            changed = diffChildren(path, oldChild, newChild, fields);
+        } else {
+            Object oldValue = oldChild.getValue();
+            Object newValue = newChild.getValue();
+            changed = oldValue == null ? newValue != null : !oldValue.equals(newValue);
+        }
+
+        if (changed) fields.add(path);
+        return changed;
+    }
+}
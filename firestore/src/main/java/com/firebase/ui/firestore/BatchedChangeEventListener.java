@@ -0,0 +1,13 @@
+package com.firebase.ui.firestore;
+
+import com.firebase.ui.common.BaseBatchedChangeEventListener;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+/**
+ * Listener for batched changes to a {@link FirestoreArray}.
+ *
+ * @see ObservableSnapshotArray#setBatchingEnabled(boolean)
+ */
+public interface BatchedChangeEventListener extends ChangeEventListener,
+        BaseBatchedChangeEventListener<DocumentSnapshot, FirebaseFirestoreException> {}
@@ -0,0 +1,12 @@
+package com.firebase.ui.firestore;
+
+import com.firebase.ui.common.BaseContentComparator;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/**
+ * Compares the content of two {@link DocumentSnapshot}s with the same ID.
+ *
+ * @see FirestoreRecyclerOptions.Builder#setBackgroundDiffing(java.util.concurrent.Executor,
+ * ContentComparator)
+ */
+public interface ContentComparator extends BaseContentComparator<DocumentSnapshot> {}
@@ -0,0 +1,20 @@
+package com.firebase.ui.firestore;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Map;
+
+/**
+ * A {@link ContentComparator} that considers two {@link DocumentSnapshot}s to have the same
+ * content if their data is equal. Metadata changes, such as pending writes being committed, are
+ * ignored.
+ */
+public class DataContentComparator implements ContentComparator {
+
+    @Override
+    public boolean areContentsTheSame(DocumentSnapshot oldSnapshot, DocumentSnapshot newSnapshot) {
+        Map<String, Object> oldData = oldSnapshot.getData();
+        Map<String, Object> newData = newSnapshot.getData();
+        return oldData == null ? newData == null : oldData.equals(newData);
+    }
+}
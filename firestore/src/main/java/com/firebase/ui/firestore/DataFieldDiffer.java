@@ -0,0 +1,79 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link FieldDiffer} that compares the data of two {@link DocumentSnapshot}s field by field.
+ * Paths are dot-separated field paths, e.g. a changed {@code author.name} is reported as both
+ * {@code author} and {@code author.name}. Maps are compared key by key, any other value, including
+ * arrays, as a whole. Metadata changes are ignored.
+ */
+public class DataFieldDiffer implements FieldDiffer {
+
+    @NonNull
+    @Override
+    public Set<String> getChangedFields(@NonNull DocumentSnapshot oldSnapshot,
+                                        @NonNull DocumentSnapshot newSnapshot) {
+        Set<String> fields = new HashSet<>();
+        diffMaps(null, getData(oldSnapshot), getData(newSnapshot), fields);
+        return fields;
+    }
+
+    private static Map<String, Object> getData(DocumentSnapshot snapshot) {
+        Map<String, Object> data = snapshot.getData();
+        return data == null ? Collections.<String, Object>emptyMap() : data;
+    }
+
+    /**
+     * Add the paths of the fields that differ between two maps.
+     *
+     * @return true if any field differs.
+     */
+    private static boolean diffMaps(String path,
+                                    Map<?, ?> oldMap,
+                                    Map<?, ?> newMap,
+                                    Set<String> fields) {
+        boolean changed = false;
+        for (Map.Entry<?, ?> entry : newMap.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            String fieldPath = path == null ? key : path + "." + key;
+            if (!oldMap.containsKey(entry.getKey())) {
+                fields.add(fieldPath);
+                changed = true;
+            } else if (diff(fieldPath, oldMap.get(entry.getKey()), entry.getValue(), fields)) {
+                changed = true;
+            }
+        }
+        for (Object key : oldMap.keySet()) {
+            if (!newMap.containsKey(key)) {
+                fields.add(path == null ? String.valueOf(key) : path + "." + key);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Add the path of a field if it differs, along with the paths of its changed fields.
+     *
+     * @return true if the field differs.
+     */
+    private static boolean diff(String path, Object oldValue, Object newValue, Set<String> fields) {
+        boolean changed;
+        if (oldValue instanceof Map && newValue instanceof Map) {
+            changed = diffMaps(path, (Map<?, ?>) oldValue, (Map<?, ?>) newValue, fields);
+        } else {
+            changed = oldValue == null ? newValue != null : !oldValue.equals(newValue);
+        }
+
+        if (changed) fields.add(path);
+        return changed;
+    }
+}
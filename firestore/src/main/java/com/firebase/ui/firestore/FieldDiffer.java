@@ -0,0 +1,11 @@
+package com.firebase.ui.firestore;
+
+import com.firebase.ui.common.BaseFieldDiffer;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/**
+ * Finds the changed fields of two {@link DocumentSnapshot}s with the same ID.
+ *
+ * @see FirestoreRecyclerOptions.Builder#setChangePayloads(FieldDiffer)
+ */
+public interface FieldDiffer extends BaseFieldDiffer<DocumentSnapshot> {}
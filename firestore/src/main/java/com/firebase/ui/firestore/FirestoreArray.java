@@ -3,6 +3,7 @@ package com.firebase.ui.firestore;
 import android.support.annotation.NonNull;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.TreeList;
 import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
@@ -17,6 +18,11 @@ import java.util.List;
 
 /**
  * Exposes a Firestore query as an observable list of objects.
+ * <p>
+ * While every listener receives batches, each {@link QuerySnapshot} is applied to the array in a
+ * single pass.
+ *
+ * @see #setBatchingEnabled(boolean)
  */
 public class FirestoreArray<T> extends ObservableSnapshotArray<T>
         implements EventListener<QuerySnapshot> {
@@ -24,7 +30,7 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
     private final QueryListenOptions mOptions;
     private ListenerRegistration mRegistration;
 
-    private final List<DocumentSnapshot> mSnapshots = new ArrayList<>();
+    private final List<DocumentSnapshot> mSnapshots;
 
     /**
      * Create a new FirestoreArray.
@@ -42,9 +48,25 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
      * @see #FirestoreArray(Query, SnapshotParser)
      */
     public FirestoreArray(Query query, QueryListenOptions options, SnapshotParser<T> parser) {
+        this(query, options, parser, new ArrayList<DocumentSnapshot>());
+    }
+
+    /**
+     * @param snapshots an empty list to hold the array's snapshots, e.g. a {@link TreeList} for
+     *                  large queries whose documents often move.
+     * @see #FirestoreArray(Query, QueryListenOptions, SnapshotParser)
+     */
+    public FirestoreArray(Query query,
+                          QueryListenOptions options,
+                          SnapshotParser<T> parser,
+                          @NonNull List<DocumentSnapshot> snapshots) {
         super(parser);
+        if (!snapshots.isEmpty()) {
+            throw new IllegalArgumentException("The backing list must be empty.");
+        }
         mQuery = query;
         mOptions = options;
+        mSnapshots = snapshots;
     }
 
     @NonNull
@@ -67,29 +89,110 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
     }
 
     @Override
-    public void onEvent(QuerySnapshot snapshots, FirebaseFirestoreException e) {
+    public void onEvent(final QuerySnapshot snapshots, final FirebaseFirestoreException e) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                applyEvent(snapshots, e);
+            }
+        });
+    }
+
+    private void applyEvent(QuerySnapshot snapshots, FirebaseFirestoreException e) {
         if (e != null) {
             notifyOnError(e);
             return;
         }
 
-        // Break down each document event
         List<DocumentChange> changes = snapshots.getDocumentChanges();
+        if (getMetricsListener() != null) {
+            for (DocumentChange change : changes) {
+                onEventReceived(getEventType(change));
+            }
+        }
+
+        if (isEveryListenerBatching()) {
+            applyChanges(snapshots, changes);
+        } else {
+            // Break down each document event. In batching mode, batched listeners receive the
+            // events together with the data changed event, other listeners as they are applied.
+            for (DocumentChange change : changes) {
+                switch (change.getType()) {
+                    case ADDED:
+                        onDocumentAdded(change);
+                        break;
+                    case REMOVED:
+                        onDocumentRemoved(change);
+                        break;
+                    case MODIFIED:
+                        onDocumentModified(change);
+                        break;
+                }
+            }
+        }
+
+        notifyOnDataChanged();
+    }
+
+    /**
+     * Apply all document changes in a query snapshot at once. Instead of shifting the backing list
+     * for every change, it is replaced by the snapshot's documents in a single pass, and the
+     * changes are emitted afterwards.
+     * <p>
+     * Only used while every listener receives batches: they get the events together with the
+     * data changed event, once the array is in its final state. A listener receiving events one
+     * by one would instead see an array that doesn't match the indices of each event.
+     */
+    private void applyChanges(QuerySnapshot snapshots, List<DocumentChange> changes) {
+        boolean hasStructuralChange = false;
+        for (DocumentChange change : changes) {
+            if (change.getType() != DocumentChange.Type.MODIFIED
+                    || change.getOldIndex() != change.getNewIndex()) {
+                hasStructuralChange = true;
+                break;
+            }
+        }
+
+        if (!hasStructuralChange) {
+            // Documents modified in place, no need to rebuild the list
+            for (DocumentChange change : changes) {
+                onDocumentModified(change);
+            }
+            return;
+        }
+
+        mSnapshots.clear();
+        mSnapshots.addAll(snapshots.getDocuments());
+
         for (DocumentChange change : changes) {
             switch (change.getType()) {
                 case ADDED:
-                    onDocumentAdded(change);
+                    notifyOnChildChanged(ChangeEventType.ADDED, change.getDocument(),
+                            change.getNewIndex(), -1);
                     break;
                 case REMOVED:
-                    onDocumentRemoved(change);
+                    notifyOnChildChanged(ChangeEventType.REMOVED, change.getDocument(),
+                            -1, change.getOldIndex());
                     break;
                 case MODIFIED:
-                    onDocumentModified(change);
+                    // The previous snapshot is gone with the old list
+                    notifyOnChildChanged(getEventType(change), change.getDocument(),
+                            change.getNewIndex(), change.getOldIndex());
                     break;
             }
         }
+    }
 
-        notifyOnDataChanged();
+    private static ChangeEventType getEventType(DocumentChange change) {
+        switch (change.getType()) {
+            case ADDED:
+                return ChangeEventType.ADDED;
+            case REMOVED:
+                return ChangeEventType.REMOVED;
+            default:
+                return change.getOldIndex() == change.getNewIndex()
+                        ? ChangeEventType.CHANGED : ChangeEventType.MOVED;
+        }
     }
 
     private void onDocumentAdded(DocumentChange change) {
@@ -106,8 +209,9 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
     private void onDocumentModified(DocumentChange change) {
         if (change.getOldIndex() == change.getNewIndex()) {
             // Document modified only
-            mSnapshots.set(change.getNewIndex(), change.getDocument());
-            notifyOnChildChanged(ChangeEventType.CHANGED, change.getDocument(),
+            DocumentSnapshot oldSnapshot =
+                    mSnapshots.set(change.getNewIndex(), change.getDocument());
+            notifyOnChildUpdated(oldSnapshot, change.getDocument(),
                     change.getNewIndex(), change.getOldIndex());
         } else {
             // Document moved and possibly also modified
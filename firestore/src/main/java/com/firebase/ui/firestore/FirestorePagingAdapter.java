@@ -0,0 +1,53 @@
+package com.firebase.ui.firestore;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.firebase.ui.common.PageLoader;
+
+/**
+ * RecyclerView adapter that loads a {@link FirestorePagingArray} one page at a time as the list
+ * is scrolled towards either end of the loaded documents.
+ *
+ * @param <T>  model class, for parsing {@link com.google.firebase.firestore.DocumentSnapshot}s.
+ * @param <VH> {@link RecyclerView.ViewHolder} class.
+ * @see FirestoreRecyclerOptions.Builder#setPagedQuery(com.google.firebase.firestore.Query,
+ * com.firebase.ui.common.PagingConfig, SnapshotParser)
+ */
+public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends FirestoreRecyclerAdapter<T, VH> {
+
+    private final PageLoader mPageLoader;
+
+    /**
+     * Create a new RecyclerView adapter that pages through a Firestore Query. The options must
+     * use {@code setPagedQuery} or a {@link FirestorePagingArray}.
+     */
+    public FirestorePagingAdapter(FirestoreRecyclerOptions<T> options) {
+        super(options);
+        if (!(options.getSnapshots() instanceof FirestorePagingArray)) {
+            throw new IllegalArgumentException(
+                    "FirestorePagingAdapter requires a FirestorePagingArray, see setPagedQuery.");
+        }
+        mPageLoader = new PageLoader((FirestorePagingArray<T>) options.getSnapshots());
+    }
+
+    /**
+     * @return the paging array, to load pages or check whether more are available.
+     */
+    public FirestorePagingArray<T> getPagingArray() {
+        return (FirestorePagingArray<T>) getSnapshots();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(mPageLoader);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mPageLoader);
+        mPageLoader.reset();
+    }
+}
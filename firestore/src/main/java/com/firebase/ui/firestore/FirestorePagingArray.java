@@ -0,0 +1,464 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.Pageable;
+import com.firebase.ui.common.PagingConfig;
+import com.firebase.ui.common.Preconditions;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Exposes a Firestore query as an observable list of objects, loaded one page at a time with
+ * {@link Query#startAfter(DocumentSnapshot)} cursors.
+ * <p>
+ * Only {@link PagingConfig#getMaxPages()} pages are kept in memory: once a page is loaded at one
+ * end, the page at the other end is dropped, and loaded again from its cursor if it is scrolled
+ * back to. With {@link PagingConfig#isLiveUpdates()}, the pages in the visible range listen for
+ * changes to the documents between their first and last document.
+ *
+ * @see #setVisibleRange(int, int)
+ */
+public class FirestorePagingArray<T> extends ObservableSnapshotArray<T> implements Pageable {
+    private final Query mQuery;
+    private final PagingConfig mConfig;
+
+    private final List<DocumentSnapshot> mSnapshots = new ArrayList<>();
+
+    /**
+     * Pages in memory, in order. Their documents are concatenated in {@link #mSnapshots}.
+     */
+    private final List<Page> mPages = new ArrayList<>();
+
+    /**
+     * The cursor of every page found so far, by page number: the last document of the previous
+     * page as of its last load, or null for the first page.
+     */
+    private final List<DocumentSnapshot> mCursors = new ArrayList<>();
+
+    private Page mLoadingPage;
+    private boolean mReachedEnd;
+
+    private int mFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastVisible = RecyclerView.NO_POSITION;
+
+    /**
+     * Create a new FirestorePagingArray.
+     *
+     * @param query  query to page through. Must have an order, and no limit.
+     * @param config page size, number of pages in memory and live updates.
+     * @param parser parser for DocumentSnapshots.
+     * @see ObservableSnapshotArray#ObservableSnapshotArray(SnapshotParser)
+     */
+    public FirestorePagingArray(@NonNull Query query,
+                                @NonNull PagingConfig config,
+                                SnapshotParser<T> parser) {
+        super(parser);
+        mQuery = Preconditions.checkNotNull(query);
+        mConfig = Preconditions.checkNotNull(config);
+    }
+
+    @NonNull
+    @Override
+    protected List<DocumentSnapshot> getSnapshots() {
+        return mSnapshots;
+    }
+
+    @NonNull
+    @Override
+    public PagingConfig getPagingConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Not supported, pages are loaded and trimmed on the main thread.
+     *
+     * @throws IllegalStateException if the executor is not null.
+     */
+    @Override
+    public void setUpdateExecutor(@Nullable Executor executor) {
+        if (executor != null) {
+            throw new IllegalStateException(
+                    "Background updates are not supported by paging arrays.");
+        }
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        mCursors.add(null);
+        load(new Page(0));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (Page page : mPages) {
+            page.stopListening();
+        }
+        mPages.clear();
+        mSnapshots.clear();
+        mCursors.clear();
+        mLoadingPage = null;
+        mReachedEnd = false;
+        mFirstVisible = RecyclerView.NO_POSITION;
+        mLastVisible = RecyclerView.NO_POSITION;
+    }
+
+    @Override
+    public void setVisibleRange(int first, int last) {
+        mFirstVisible = first;
+        mLastVisible = last;
+        if (!isListening()) return;
+
+        updateListeners();
+        loadIfNeeded();
+    }
+
+    @Override
+    public void loadNextPage() {
+        if (!isListening() || isLoading() || !hasNextPage()) return;
+
+        load(new Page(mPages.get(mPages.size() - 1).mNumber + 1));
+    }
+
+    @Override
+    public void loadPreviousPage() {
+        if (!isListening() || isLoading() || !hasPreviousPage()) return;
+
+        load(new Page(mPages.get(0).mNumber - 1));
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        return !mPages.isEmpty() && !mReachedEnd;
+    }
+
+    @Override
+    public boolean hasPreviousPage() {
+        return !mPages.isEmpty() && mPages.get(0).mNumber > 0;
+    }
+
+    @Override
+    public boolean isLoading() {
+        return mLoadingPage != null;
+    }
+
+    private void load(final Page page) {
+        mLoadingPage = page;
+        page.getQuery()
+                .limit(mConfig.getPageSize())
+                .get()
+                .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
+                    @Override
+                    public void onComplete(@NonNull final Task<QuerySnapshot> task) {
+                        dispatch(new Runnable() {
+                            @Override
+                            public void run() {
+                                onPageComplete(page, task);
+                            }
+                        });
+                    }
+                });
+    }
+
+    private void onPageComplete(Page page, Task<QuerySnapshot> task) {
+        // The array may have stopped listening since
+        if (mLoadingPage != page) return;
+        mLoadingPage = null;
+
+        if (task.isSuccessful()) {
+            onPageLoaded(page, task.getResult().getDocuments());
+        } else {
+            notifyOnError(toFirestoreException(task.getException()));
+        }
+    }
+
+    private void onPageLoaded(Page page, List<DocumentSnapshot> documents) {
+        boolean isNext = mPages.isEmpty() || page.mNumber > mPages.get(0).mNumber;
+        if (isNext && documents.size() < mConfig.getPageSize()) mReachedEnd = true;
+
+        // An empty page past the end isn't kept, so it is tried again when scrolling to the end
+        if (!documents.isEmpty() || !isNext || mPages.isEmpty()) {
+            page.mSize = documents.size();
+            page.mEnd = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+            boolean cursorMoved = page.mEnd != null && setCursor(page.mNumber + 1, page.mEnd);
+
+            int index;
+            if (isNext) {
+                index = mSnapshots.size();
+                mPages.add(page);
+            } else {
+                index = 0;
+                mPages.add(0, page);
+                shiftVisibleRange(documents.size());
+            }
+            for (int i = 0; i < documents.size(); i++) {
+                mSnapshots.add(index + i, documents.get(i));
+                notifyOnChildChanged(ChangeEventType.ADDED, documents.get(i), index + i, -1);
+            }
+
+            if (cursorMoved && !isNext) {
+                // Documents were added to or removed from this page since the pages after it
+                // were loaded, so they no longer start right after it. Load them again.
+                while (mPages.size() > 1) {
+                    removePage(mPages.size() - 1);
+                }
+                mReachedEnd = false;
+            }
+
+            // Make room by dropping the page furthest from the one just loaded
+            while (mPages.size() > mConfig.getMaxPages()) {
+                if (isNext) {
+                    shiftVisibleRange(-removePage(0));
+                } else {
+                    removePage(mPages.size() - 1);
+                    mReachedEnd = false;
+                }
+            }
+        }
+
+        notifyOnDataChanged();
+        updateListeners();
+        loadIfNeeded();
+    }
+
+    /**
+     * Record the cursor of a page. If the page already had a different cursor, the cursors of the
+     * pages after it are forgotten, they are found again as those pages are loaded.
+     *
+     * @return true if the cursor of the page changed.
+     */
+    private boolean setCursor(int number, DocumentSnapshot cursor) {
+        if (number == mCursors.size()) {
+            mCursors.add(cursor);
+            return false;
+        }
+
+        DocumentSnapshot old = mCursors.set(number, cursor);
+        if (old.getId().equals(cursor.getId())) return false;
+
+        mCursors.subList(number + 1, mCursors.size()).clear();
+        return true;
+    }
+
+    /**
+     * Drop a page and its documents from memory.
+     *
+     * @return the number of documents removed.
+     */
+    private int removePage(int position) {
+        Page page = mPages.remove(position);
+        page.stopListening();
+
+        int start = position == 0 ? 0 : mSnapshots.size() - page.mSize;
+        for (int i = start + page.mSize - 1; i >= start; i--) {
+            DocumentSnapshot snapshot = mSnapshots.remove(i);
+            notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, -1, i);
+        }
+        return page.mSize;
+    }
+
+    /**
+     * Keep the last reported visible range in line with the documents it points to, since pages
+     * added or removed before it move them before the next scroll event.
+     */
+    private void shiftVisibleRange(int offset) {
+        if (mFirstVisible == RecyclerView.NO_POSITION) return;
+        mFirstVisible = Math.max(0, mFirstVisible + offset);
+        mLastVisible = Math.max(0, mLastVisible + offset);
+    }
+
+    private void loadIfNeeded() {
+        if (mLastVisible == RecyclerView.NO_POSITION) return;
+
+        int distance = mConfig.getPrefetchDistance();
+        if (mLastVisible >= mSnapshots.size() - 1 - distance) {
+            loadNextPage();
+        } else if (mFirstVisible <= distance) {
+            loadPreviousPage();
+        }
+    }
+
+    /**
+     * Listen to the pages overlapping the visible range, and stop listening to the others.
+     */
+    private void updateListeners() {
+        if (!mConfig.isLiveUpdates()) return;
+
+        int start = 0;
+        for (Page page : mPages) {
+            int end = start + page.mSize;
+            boolean visible = mFirstVisible != RecyclerView.NO_POSITION
+                    && start <= mLastVisible && (end > mFirstVisible || page.mSize == 0);
+            if (visible) {
+                page.startListening();
+            } else {
+                page.stopListening();
+            }
+            start = end;
+        }
+    }
+
+    private int getOffset(Page page) {
+        int offset = 0;
+        for (Page other : mPages) {
+            if (other == page) return offset;
+            offset += other.mSize;
+        }
+        throw new IllegalStateException("Page " + page.mNumber + " is not in memory.");
+    }
+
+    private static FirebaseFirestoreException toFirestoreException(Exception e) {
+        if (e instanceof FirebaseFirestoreException) return (FirebaseFirestoreException) e;
+        return new FirebaseFirestoreException(
+                String.valueOf(e), FirebaseFirestoreException.Code.UNKNOWN);
+    }
+
+    /**
+     * A page of documents, starting after the cursor of its number.
+     */
+    private final class Page implements EventListener<QuerySnapshot> {
+        final int mNumber;
+        int mSize;
+        /** The last document of the page, null if the page is empty. */
+        DocumentSnapshot mEnd;
+
+        ListenerRegistration mRegistration;
+        /** False until the first snapshot of the current registration is applied. */
+        boolean mSynced;
+
+        Page(int number) {
+            mNumber = number;
+        }
+
+        Query getQuery() {
+            DocumentSnapshot cursor = mCursors.get(mNumber);
+            return cursor == null ? mQuery : mQuery.startAfter(cursor);
+        }
+
+        void startListening() {
+            if (mRegistration != null) return;
+            // Without a last document, only the last page can be bounded by a limit
+            if (mEnd == null && mPages.indexOf(this) != mPages.size() - 1) return;
+
+            // Bound the listen by the page's last document rather than a limit, so documents
+            // added in the page don't push others out of it.
+            Query query = mEnd == null
+                    ? getQuery().limit(mConfig.getPageSize())
+                    : getQuery().endAt(mEnd);
+            mSynced = false;
+            mRegistration = query.addSnapshotListener(this);
+        }
+
+        void stopListening() {
+            if (mRegistration == null) return;
+
+            mRegistration.remove();
+            mRegistration = null;
+        }
+
+        @Override
+        public void onEvent(final QuerySnapshot snapshots, final FirebaseFirestoreException e) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    applyEvent(snapshots, e);
+                }
+            });
+        }
+
+        private void applyEvent(QuerySnapshot snapshots, FirebaseFirestoreException e) {
+            // The listener may have been removed while this event was in flight
+            if (mRegistration == null) return;
+            if (e != null) {
+                notifyOnError(e);
+                return;
+            }
+
+            int offset = getOffset(this);
+            if (mSynced) {
+                for (DocumentChange change : snapshots.getDocumentChanges()) {
+                    applyChange(change, offset);
+                }
+            } else {
+                replaceDocuments(snapshots.getDocuments(), offset);
+                mSynced = true;
+            }
+            notifyOnDataChanged();
+        }
+
+        /**
+         * Apply the first snapshot of a listener, which describes the whole page rather than
+         * the changes since it was loaded.
+         */
+        private void replaceDocuments(List<DocumentSnapshot> documents, int offset) {
+            boolean sameDocuments = documents.size() == mSize;
+            for (int i = 0; sameDocuments && i < mSize; i++) {
+                String id = mSnapshots.get(offset + i).getId();
+                sameDocuments = documents.get(i).getId().equals(id);
+            }
+
+            if (sameDocuments) {
+                for (int i = 0; i < mSize; i++) {
+                    DocumentSnapshot document = documents.get(i);
+                    DocumentSnapshot old = mSnapshots.set(offset + i, document);
+                    if (!document.equals(old)) {
+                        notifyOnChildUpdated(old, document, offset + i, offset + i);
+                    }
+                }
+            } else {
+                for (int i = offset + mSize - 1; i >= offset; i--) {
+                    notifyOnChildChanged(ChangeEventType.REMOVED, mSnapshots.remove(i), -1, i);
+                }
+                for (int i = 0; i < documents.size(); i++) {
+                    mSnapshots.add(offset + i, documents.get(i));
+                    notifyOnChildChanged(ChangeEventType.ADDED, documents.get(i), offset + i, -1);
+                }
+                mSize = documents.size();
+            }
+        }
+
+        private void applyChange(DocumentChange change, int offset) {
+            DocumentSnapshot document = change.getDocument();
+            int newIndex = offset + change.getNewIndex();
+            int oldIndex = offset + change.getOldIndex();
+            switch (change.getType()) {
+                case ADDED:
+                    mSnapshots.add(newIndex, document);
+                    mSize++;
+                    notifyOnChildChanged(ChangeEventType.ADDED, document, newIndex, -1);
+                    break;
+                case REMOVED:
+                    mSnapshots.remove(oldIndex);
+                    mSize--;
+                    notifyOnChildChanged(ChangeEventType.REMOVED, document, -1, oldIndex);
+                    break;
+                case MODIFIED:
+                    if (oldIndex == newIndex) {
+                        DocumentSnapshot old = mSnapshots.set(newIndex, document);
+                        notifyOnChildUpdated(old, document, newIndex, oldIndex);
+                    } else {
+                        mSnapshots.remove(oldIndex);
+                        mSnapshots.add(newIndex, document);
+                        notifyOnChildChanged(ChangeEventType.MOVED, document, newIndex, oldIndex);
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -4,13 +4,22 @@ import android.arch.lifecycle.Lifecycle;
 import android.arch.lifecycle.LifecycleObserver;
 import android.arch.lifecycle.LifecycleOwner;
 import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
+import com.firebase.ui.common.BaseChildUpdateListener;
+import com.firebase.ui.common.ChangeEventBatch;
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.SnapshotDiffer;
+import com.firebase.ui.common.SnapshotPrefetcher;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * RecyclerView adapter that listens to a {@link FirestoreArray} and displays its data in real
  * time.
@@ -20,18 +29,90 @@ import com.google.firebase.firestore.FirebaseFirestoreException;
  */
 public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHolder>
         extends RecyclerView.Adapter<VH>
-        implements ChangeEventListener, LifecycleObserver {
+        implements BatchedChangeEventListener, LifecycleObserver,
+        BaseChildUpdateListener<DocumentSnapshot, FirebaseFirestoreException> {
 
     private static final String TAG = "FirestoreRecycler";
 
     private ObservableSnapshotArray<T> mSnapshots;
 
+    /**
+     * Parses rows ahead of the visible range, null if snapshots are parsed on demand.
+     */
+    private final SnapshotPrefetcher mPrefetcher;
+
+    /**
+     * Finds the changed fields passed as payloads of changed items, null if changed items are
+     * fully rebound.
+     */
+    private final FieldDiffer mFieldDiffer;
+
+    /**
+     * In batching mode, the snapshots RecyclerView was last notified of. The array changes as
+     * events arrive, but their notifications are delivered in a batch with the next data changed
+     * event, so rows are counted and bound from this copy until then. Null otherwise.
+     */
+    private List<DocumentSnapshot> mBatchedSnapshots;
+
+    /**
+     * Computes list updates in the background, null if updates are applied as they arrive.
+     */
+    private SnapshotDiffer<DocumentSnapshot> mDiffer;
+    private final ChangeEventListener mDiffListener = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(ChangeEventType type, DocumentSnapshot snapshot,
+                                   int newIndex, int oldIndex) {
+            // Updates are computed from the whole list once the data has changed
+        }
+
+        @Override
+        public void onDataChanged() {
+            mDiffer.submitList(mSnapshots.copySnapshots());
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+        }
+    };
+
     /**
      * Create a new RecyclerView adapter that listens to a Firestore Query.  See
      * {@link FirestoreRecyclerOptions} for configuration options.
      */
     public FirestoreRecyclerAdapter(FirestoreRecyclerOptions<T> options) {
         mSnapshots = options.getSnapshots();
+        if (options.isBatchingEnabled()) {
+            mSnapshots.setBatchingEnabled(true);
+        }
+        if (options.getFrameDispatcher() != null) {
+            mSnapshots.setDispatcher(options.getFrameDispatcher());
+        }
+        if (options.getUpdateExecutor() != null) {
+            mSnapshots.setUpdateExecutor(options.getUpdateExecutor());
+        }
+        if (options.getMetricsListener() != null) {
+            mSnapshots.setMetricsListener(options.getMetricsListener());
+        }
+        if (options.hasStableIds()) {
+            setHasStableIds(true);
+        }
+        if (options.getCacheConfig() != null) {
+            mSnapshots.getCachingParser().setConfig(options.getCacheConfig());
+        }
+        if (options.getParseExecutor() != null) {
+            mSnapshots.setPrefetchExecutor(options.getParseExecutor());
+            mPrefetcher = new SnapshotPrefetcher(mSnapshots);
+        } else {
+            mPrefetcher = null;
+        }
+        mFieldDiffer = options.getFieldDiffer();
+        if (options.getDiffExecutor() != null) {
+            mDiffer = new SnapshotDiffer<>(options.getDiffExecutor(),
+                    mSnapshots.getCachingParser(),
+                    options.getContentComparator(),
+                    this);
+            mDiffer.setFieldDiffer(mFieldDiffer);
+        }
 
         if (options.getOwner() != null) {
             options.getOwner().getLifecycle().addObserver(this);
@@ -41,13 +122,23 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
     @OnLifecycleEvent(Lifecycle.Event.ON_START)
     public void startListening() {
         if (!mSnapshots.isListening(this)) {
+            if (mDiffer != null) mSnapshots.addChangeEventListener(mDiffListener);
             mSnapshots.addChangeEventListener(this);
+            // No batch is delivered for an empty array, start counting from its current state
+            if (mDiffer == null && mSnapshots.isBatchingEnabled() && mBatchedSnapshots == null) {
+                mBatchedSnapshots = mSnapshots.copySnapshots();
+            }
         }
     }
 
     @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
     public void stopListening() {
         mSnapshots.removeChangeEventListener(this);
+        if (mDiffer != null) {
+            mSnapshots.removeChangeEventListener(mDiffListener);
+            mDiffer.clear();
+        }
+        mBatchedSnapshots = null;
         notifyDataSetChanged();
     }
 
@@ -61,17 +152,60 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
     }
 
     public T getItem(int position) {
+        if (mDiffer != null || mBatchedSnapshots != null) {
+            return mSnapshots.getCachingParser().parseSnapshot(getSnapshot(position));
+        }
         return mSnapshots.get(position);
     }
 
     @Override
     public int getItemCount() {
+        if (mDiffer != null) return mDiffer.getCurrentList().size();
+        if (mBatchedSnapshots != null) return mBatchedSnapshots.size();
         return mSnapshots.size();
     }
 
+    /**
+     * @return a 64-bit ID derived from the item's document ID, computed once per document. Only
+     * used by {@link RecyclerView} if stable IDs are enabled, see {@link
+     * FirestoreRecyclerOptions.Builder#setHasStableIds(boolean)}.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mSnapshots.getCachingParser().getStableId(getSnapshot(position));
+    }
+
+    /**
+     * Get the snapshot displayed at a position, which may lag behind the backing array while a
+     * background diff is in progress or events wait to be delivered in a batch.
+     */
+    private DocumentSnapshot getSnapshot(int position) {
+        if (mDiffer != null) return mDiffer.getCurrentList().get(position);
+        if (mBatchedSnapshots != null) return mBatchedSnapshots.get(position);
+        return mSnapshots.getSnapshot(position);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (mPrefetcher != null) recyclerView.addOnScrollListener(mPrefetcher);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (mPrefetcher != null) {
+            recyclerView.removeOnScrollListener(mPrefetcher);
+            mPrefetcher.reset();
+        }
+    }
+
     @Override
     public void onChildChanged(ChangeEventType type, DocumentSnapshot snapshot,
                                int newIndex, int oldIndex) {
+        if (mDiffer != null) return;
+        mBatchedSnapshots = null;
+
         switch (type) {
             case ADDED:
                 notifyItemInserted(newIndex);
@@ -90,6 +224,38 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
         }
     }
 
+    @Override
+    public void onChildUpdated(@NonNull DocumentSnapshot oldSnapshot,
+                               @NonNull DocumentSnapshot newSnapshot,
+                               int newIndex,
+                               int oldIndex) {
+        if (mDiffer != null) return;
+        mBatchedSnapshots = null;
+
+        notifyItemChanged(newIndex, getChangedFields(oldSnapshot, newSnapshot));
+    }
+
+    @Override
+    public void onChildChangeBatch(@NonNull ChangeEventBatch<DocumentSnapshot> batch) {
+        if (mDiffer != null) return;
+
+        // The array matches the batch until the next event is applied
+        mBatchedSnapshots = mSnapshots.copySnapshots();
+        batch.dispatchUpdatesTo(this, mFieldDiffer);
+    }
+
+    /**
+     * @return the changed fields of an item, or null if it should be fully rebound.
+     */
+    @Nullable
+    private Set<String> getChangedFields(DocumentSnapshot oldSnapshot,
+                                         DocumentSnapshot newSnapshot) {
+        if (mFieldDiffer == null) return null;
+
+        Set<String> fields = mFieldDiffer.getChangedFields(oldSnapshot, newSnapshot);
+        return fields.isEmpty() ? null : fields;
+    }
+
     @Override
     public void onDataChanged() {
     }
@@ -104,9 +270,33 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
         onBindViewHolder(holder, position, getItem(position));
     }
 
+    @Override
+    public void onBindViewHolder(VH holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            onBindViewHolder(holder, position, getItem(position), payloads);
+        }
+    }
+
     /**
      * @param model the model object containing the data that should be used to populate the view.
      * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
      */
     protected abstract void onBindViewHolder(VH holder, int position, T model);
+
+    /**
+     * Called instead of {@link #onBindViewHolder(RecyclerView.ViewHolder, int, Object)} to update
+     * a row in place when only some of its fields changed, see {@link
+     * FirestoreRecyclerOptions.Builder#setChangePayloads()}. Each payload from FirebaseUI is the
+     * {@code Set<String>} of the paths of the changed fields, one per change since the row was
+     * last bound. Fully rebinds the row by default.
+     *
+     * @param model    the model object containing the data that should be used to populate the
+     *                 view.
+     * @param payloads the changed fields, never empty.
+     */
+    protected void onBindViewHolder(VH holder, int position, T model, List<Object> payloads) {
+        onBindViewHolder(holder, position, model);
+    }
 }
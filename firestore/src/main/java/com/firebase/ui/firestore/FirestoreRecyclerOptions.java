@@ -1,11 +1,25 @@
 package com.firebase.ui.firestore;
 
 import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 
+import com.firebase.ui.common.CacheConfig;
+import com.firebase.ui.common.FrameDispatcher;
+import com.firebase.ui.common.MetricsListener;
+import com.firebase.ui.common.PagingConfig;
+import com.firebase.ui.common.Preconditions;
+import com.firebase.ui.common.TreeList;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryListenOptions;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import static com.firebase.ui.common.Preconditions.assertNonNull;
 import static com.firebase.ui.common.Preconditions.assertNull;
 
@@ -17,17 +31,49 @@ import static com.firebase.ui.common.Preconditions.assertNull;
 public class FirestoreRecyclerOptions<T> {
 
     private static final String ERR_SNAPSHOTS_SET = "Snapshot array already set. " +
-            "Call only one of setSnapshotArray or setQuery";
+            "Call only one of setSnapshotArray, setQuery or setPagedQuery";
     private static final String ERR_SNAPSHOTS_NULL = "Snapshot array cannot be null. " +
-            "Call one of setSnapshotArray or setQuery";
+            "Call one of setSnapshotArray, setQuery or setPagedQuery";
+    private static final String ERR_BACKGROUND_UPDATES =
+            "Background updates cannot be combined with a paged query.";
 
     private ObservableSnapshotArray<T> mSnapshots;
     private LifecycleOwner mOwner;
+    private boolean mBatchingEnabled;
+    private Executor mDiffExecutor;
+    private ContentComparator mContentComparator;
+    private CacheConfig<T> mCacheConfig;
+    private Executor mParseExecutor;
+    private FrameDispatcher mFrameDispatcher;
+    private Executor mUpdateExecutor;
+    private MetricsListener mMetricsListener;
+    private boolean mHasStableIds;
+    private FieldDiffer mFieldDiffer;
 
     private FirestoreRecyclerOptions(ObservableSnapshotArray<T> snapshots,
-                                     @Nullable LifecycleOwner owner) {
+                                     @Nullable LifecycleOwner owner,
+                                     boolean batchingEnabled,
+                                     @Nullable Executor diffExecutor,
+                                     @Nullable ContentComparator contentComparator,
+                                     @Nullable CacheConfig<T> cacheConfig,
+                                     @Nullable Executor parseExecutor,
+                                     @Nullable FrameDispatcher frameDispatcher,
+                                     @Nullable Executor updateExecutor,
+                                     @Nullable MetricsListener metricsListener,
+                                     boolean hasStableIds,
+                                     @Nullable FieldDiffer fieldDiffer) {
         mSnapshots = snapshots;
         mOwner = owner;
+        mBatchingEnabled = batchingEnabled;
+        mDiffExecutor = diffExecutor;
+        mContentComparator = contentComparator;
+        mCacheConfig = cacheConfig;
+        mParseExecutor = parseExecutor;
+        mFrameDispatcher = frameDispatcher;
+        mUpdateExecutor = updateExecutor;
+        mMetricsListener = metricsListener;
+        mHasStableIds = hasStableIds;
+        mFieldDiffer = fieldDiffer;
     }
 
     /**
@@ -45,6 +91,90 @@ public class FirestoreRecyclerOptions<T> {
         return mOwner;
     }
 
+    /**
+     * Returns true if the adapter should put the snapshot array in batching mode.
+     *
+     * @see ObservableSnapshotArray#setBatchingEnabled(boolean)
+     */
+    public boolean isBatchingEnabled() {
+        return mBatchingEnabled;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} on which list updates are diffed, or null if updates
+     * are applied directly on the main thread.
+     */
+    @Nullable
+    public Executor getDiffExecutor() {
+        return mDiffExecutor;
+    }
+
+    /**
+     * Get the {@link ContentComparator} used when diffing list updates in the background.
+     */
+    @Nullable
+    public ContentComparator getContentComparator() {
+        return mContentComparator;
+    }
+
+    /**
+     * Get the (optional) {@link CacheConfig} for the snapshot array's cache of parsed objects.
+     */
+    @Nullable
+    public CacheConfig<T> getCacheConfig() {
+        return mCacheConfig;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} on which snapshots are parsed ahead of binding.
+     */
+    @Nullable
+    public Executor getParseExecutor() {
+        return mParseExecutor;
+    }
+
+    /**
+     * Get the (optional) {@link FrameDispatcher} that defers array mutations to the next frame.
+     */
+    @Nullable
+    public FrameDispatcher getFrameDispatcher() {
+        return mFrameDispatcher;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} on which the snapshot array applies database events.
+     */
+    @Nullable
+    public Executor getUpdateExecutor() {
+        return mUpdateExecutor;
+    }
+
+    /**
+     * Get the (optional) {@link MetricsListener} the snapshot array reports its metrics to.
+     */
+    @Nullable
+    public MetricsListener getMetricsListener() {
+        return mMetricsListener;
+    }
+
+    /**
+     * Returns true if the adapter should report stable item IDs.
+     *
+     * @see RecyclerView.Adapter#setHasStableIds(boolean)
+     */
+    public boolean hasStableIds() {
+        return mHasStableIds;
+    }
+
+    /**
+     * Get the (optional) {@link FieldDiffer} used to pass the changed fields of changed items to
+     * the adapter as payloads.
+     */
+    @Nullable
+    public FieldDiffer getFieldDiffer() {
+        return mFieldDiffer;
+    }
+
     /**
      * Builder for {@link FirestoreRecyclerOptions}.
      *
@@ -54,6 +184,16 @@ public class FirestoreRecyclerOptions<T> {
 
         private ObservableSnapshotArray<T> mSnapshots;
         private LifecycleOwner mOwner;
+        private boolean mBatchingEnabled;
+        private Executor mDiffExecutor;
+        private ContentComparator mContentComparator;
+        private CacheConfig<T> mCacheConfig;
+        private Executor mParseExecutor;
+        private FrameDispatcher mFrameDispatcher;
+        private Executor mUpdateExecutor;
+        private MetricsListener mMetricsListener;
+        private boolean mHasStableIds;
+        private FieldDiffer mFieldDiffer;
 
         /**
          * Directly set the {@link ObservableSnapshotArray}.
@@ -75,9 +215,25 @@ public class FirestoreRecyclerOptions<T> {
         public Builder<T> setQuery(Query query,
                                    QueryListenOptions options,
                                    SnapshotParser<T> parser) {
+            return setQuery(query, options, parser, new ArrayList<DocumentSnapshot>());
+        }
+
+        /**
+         * Set the query to use (with options), provide a custom {@link SnapshotParser} and the
+         * list that holds the snapshots of the array, e.g. a {@link TreeList} for large queries
+         * whose documents often move.
+         * <p>
+         * Do not call this method after calling {@link #setSnapshotArray(ObservableSnapshotArray)}.
+         *
+         * @see FirestoreArray#FirestoreArray(Query, QueryListenOptions, SnapshotParser, List)
+         */
+        public Builder<T> setQuery(Query query,
+                                   QueryListenOptions options,
+                                   SnapshotParser<T> parser,
+                                   @NonNull List<DocumentSnapshot> snapshots) {
             assertNull(mSnapshots, ERR_SNAPSHOTS_SET);
 
-            mSnapshots = new FirestoreArray<>(query, options, parser);
+            mSnapshots = new FirestoreArray<>(query, options, parser, snapshots);
             return this;
         }
 
@@ -108,6 +264,35 @@ public class FirestoreRecyclerOptions<T> {
             return setQuery(query, new QueryListenOptions(), modelClass);
         }
 
+        /**
+         * Set a query to load one page at a time as the list scrolls, and provide a custom {@link
+         * SnapshotParser}. Use with a {@link FirestorePagingAdapter}.
+         * <p>
+         * Do not call this method after calling {@link #setSnapshotArray(ObservableSnapshotArray)}.
+         *
+         * @see FirestorePagingArray
+         */
+        public Builder<T> setPagedQuery(Query query,
+                                        PagingConfig config,
+                                        SnapshotParser<T> parser) {
+            assertNull(mSnapshots, ERR_SNAPSHOTS_SET);
+
+            mSnapshots = new FirestorePagingArray<>(query, config, parser);
+            return this;
+        }
+
+        /**
+         * Set a query to load one page at a time as the list scrolls, and provide a model class
+         * to which each snapshot will be converted. Use with a {@link FirestorePagingAdapter}.
+         * <p>
+         * Do not call this method after calling {@link #setSnapshotArray(ObservableSnapshotArray)}.
+         *
+         * @see FirestorePagingArray
+         */
+        public Builder<T> setPagedQuery(Query query, PagingConfig config, Class<T> modelClass) {
+            return setPagedQuery(query, config, new ClassSnapshotParser<>(modelClass));
+        }
+
         /**
          * Set a {@link LifecycleOwner} for the adapter. Listening will stop/start after the
          * appropriate lifecycle events.
@@ -117,13 +302,148 @@ public class FirestoreRecyclerOptions<T> {
             return this;
         }
 
+        /**
+         * Deliver child events to the adapter in batches rather than one at a time. Contiguous
+         * inserts, removals and changes are then notified as ranges, which is much cheaper when
+         * a large number of items change at once, e.g. during the initial load.
+         *
+         * @see ObservableSnapshotArray#setBatchingEnabled(boolean)
+         */
+        public Builder<T> setBatchingEnabled(boolean enabled) {
+            mBatchingEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Calls {@link #setBackgroundDiffing(Executor, ContentComparator)} with a {@link
+         * DataContentComparator}.
+         */
+        public Builder<T> setBackgroundDiffing(@NonNull Executor executor) {
+            return setBackgroundDiffing(executor, new DataContentComparator());
+        }
+
+        /**
+         * Instead of applying every child event on the main thread, snapshot the list each time
+         * the data changes and compute the minimal set of updates with {@link DiffUtil} on the
+         * given {@link Executor}. Items are identified by their ID and compared with the given
+         * {@link ContentComparator}, so unchanged items are not rebound.
+         */
+        public Builder<T> setBackgroundDiffing(@NonNull Executor executor,
+                                               @NonNull ContentComparator comparator) {
+            mDiffExecutor = Preconditions.checkNotNull(executor);
+            mContentComparator = Preconditions.checkNotNull(comparator);
+            return this;
+        }
+
+        /**
+         * Configure the snapshot array's cache of parsed model objects, for example to bound it
+         * by weight or to keep every item of the array parsed.
+         *
+         * @see ObservableSnapshotArray#getCacheStats()
+         */
+        public Builder<T> setCacheConfig(@NonNull CacheConfig<T> config) {
+            mCacheConfig = Preconditions.checkNotNull(config);
+            return this;
+        }
+
+        /**
+         * Parse snapshots into model objects on the given {@link Executor} as they arrive and
+         * while the list scrolls, so that rows are usually bound without parsing on the main
+         * thread. The {@link SnapshotParser} must be safe to call from any thread.
+         *
+         * @see ObservableSnapshotArray#setPrefetchExecutor(Executor)
+         */
+        public Builder<T> setBackgroundParsing(@NonNull Executor executor) {
+            mParseExecutor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        /**
+         * Apply database events to the snapshot array at the start of the next frame, so that a
+         * burst of events is delivered to the adapter at once and costs a single layout pass.
+         * Share the same {@link FrameDispatcher} between adapters to update them together.
+         *
+         * @see ObservableSnapshotArray#setDispatcher(FrameDispatcher)
+         */
+        public Builder<T> setFrameDispatcher(@NonNull FrameDispatcher dispatcher) {
+            mFrameDispatcher = Preconditions.checkNotNull(dispatcher);
+            return this;
+        }
+
+        /**
+         * Apply database events to the snapshot array on the given {@link Executor} instead of
+         * the main thread. The adapter reads an immutable version of the array published after
+         * each batch of events, so event processing does not compete with rendering.
+         * <p>
+         * Cannot be combined with paged queries.
+         *
+         * @see ObservableSnapshotArray#setUpdateExecutor(Executor)
+         */
+        public Builder<T> setBackgroundUpdates(@NonNull Executor executor) {
+            mUpdateExecutor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        /**
+         * Report the snapshot array's event counts, hot path timings and cache hit rate to the
+         * given {@link MetricsListener}, e.g. a {@link com.firebase.ui.common.MetricsCounter} or
+         * a {@link com.firebase.ui.common.TraceMetricsListener} to see them in systrace.
+         *
+         * @see ObservableSnapshotArray#setMetricsListener(MetricsListener)
+         */
+        public Builder<T> setMetricsListener(@NonNull MetricsListener listener) {
+            mMetricsListener = Preconditions.checkNotNull(listener);
+            return this;
+        }
+
+        /**
+         * Give each item a stable ID derived from its document ID, so that {@link RecyclerView}
+         * can keep a row's view and animate it when the item moves, instead of rebinding it. IDs
+         * are computed once per document and cached.
+         *
+         * @see RecyclerView.Adapter#setHasStableIds(boolean)
+         */
+        public Builder<T> setHasStableIds(boolean hasStableIds) {
+            mHasStableIds = hasStableIds;
+            return this;
+        }
+
+        /**
+         * Pass the changed fields of changed items to the adapter as payloads, using a {@link
+         * DataFieldDiffer}.
+         *
+         * @see #setChangePayloads(FieldDiffer)
+         */
+        public Builder<T> setChangePayloads() {
+            return setChangePayloads(new DataFieldDiffer());
+        }
+
+        /**
+         * Pass the changed fields of changed items to the adapter as payloads, found with the
+         * given {@link FieldDiffer}. Override the adapter's {@code onBindViewHolder(holder,
+         * position, model, payloads)} to only update the views showing them. Changed rows are
+         * then kept in place instead of cross-fading to a fully rebound copy.
+         * <p>
+         * With background diffing, the differ is called on the diff {@link Executor}.
+         */
+        public Builder<T> setChangePayloads(@NonNull FieldDiffer differ) {
+            mFieldDiffer = Preconditions.checkNotNull(differ);
+            return this;
+        }
+
         /**
          * Build a {@link FirestoreRecyclerOptions} from the provided arguments.
          */
         public FirestoreRecyclerOptions<T> build() {
             assertNonNull(mSnapshots, ERR_SNAPSHOTS_NULL);
+            if (mUpdateExecutor != null && mSnapshots instanceof FirestorePagingArray) {
+                throw new IllegalStateException(ERR_BACKGROUND_UPDATES);
+            }
 
-            return new FirestoreRecyclerOptions<>(mSnapshots, mOwner);
+            return new FirestoreRecyclerOptions<>(mSnapshots, mOwner, mBatchingEnabled,
+                    mDiffExecutor, mContentComparator, mCacheConfig, mParseExecutor,
+                    mFrameDispatcher, mUpdateExecutor, mMetricsListener, mHasStableIds,
+                    mFieldDiffer);
         }
 
     }
@@ -0,0 +1,428 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.bumptech.glide.load.data.DataFetcher.DataCallback;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares a single download between concurrent loads of the same image. Glide already merges
+ * identical requests, but loads of one image at different sizes or with different
+ * transformations each fetch it, e.g. an avatar shown in a list and in a header.
+ * <p>
+ * The first load of an image starts the download and later loads join it, as long as no byte of
+ * it has been dropped. Each load reads at its own pace. Whichever load needs bytes that haven't
+ * been read yet reads them from the source, so no extra thread is used. While a single load reads
+ * the download, it reads straight from the source. While several do, only the bytes that some of
+ * them have read and others haven't yet are kept in memory. The download is cancelled once every
+ * load sharing it has been cancelled.
+ */
+final class DownloadCoalescer {
+
+    private static final String TAG = "DownloadCoalescer";
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Map<String, SharedDownload> mDownloads = new HashMap<>();
+
+    /**
+     * Join the download of an image, or start it if there is none that can be joined.
+     *
+     * @param key      identifies the downloaded bytes, e.g. the path and version of the image.
+     * @param callback receives a stream of the whole image once the download has started.
+     * @param canceller cancels the download, only used if this call starts it.
+     * @return the handle of the load, {@link Waiter#isFirst()} tells if it must start the
+     * download.
+     */
+    @NonNull
+    Waiter join(@NonNull String key,
+                @NonNull DataCallback<? super InputStream> callback,
+                @NonNull Runnable canceller) {
+        SharedDownload download;
+        boolean first;
+        synchronized (mDownloads) {
+            download = mDownloads.get(key);
+            first = download == null;
+            if (first) {
+                download = new SharedDownload(key, canceller);
+                mDownloads.put(key, download);
+            }
+        }
+
+        Waiter waiter = new Waiter(download, callback, first);
+        if (!download.add(waiter)) {
+            // The download is over or its first bytes are gone since it was looked up
+            synchronized (mDownloads) {
+                if (mDownloads.get(key) == download) mDownloads.remove(key);
+            }
+            return join(key, callback, canceller);
+        }
+        return waiter;
+    }
+
+    private void remove(SharedDownload download) {
+        synchronized (mDownloads) {
+            if (mDownloads.get(download.mKey) == download) mDownloads.remove(download.mKey);
+        }
+    }
+
+    /**
+     * One load of a shared download.
+     */
+    final class Waiter {
+
+        private final SharedDownload mDownload;
+        private final DataCallback<? super InputStream> mCallback;
+        private final boolean mFirst;
+
+        // Guarded by the download
+        private int mPosition;
+        private boolean mDone;
+
+        Waiter(SharedDownload download, DataCallback<? super InputStream> callback, boolean first) {
+            mDownload = download;
+            mCallback = callback;
+            mFirst = first;
+        }
+
+        /**
+         * @return true if this load started the download and must feed its source to {@link
+         * #getSourceCallback()}.
+         */
+        boolean isFirst() {
+            return mFirst;
+        }
+
+        @NonNull
+        DataCallback<InputStream> getSourceCallback() {
+            return mDownload;
+        }
+
+        /**
+         * Stop this load. The download goes on while other loads share it.
+         */
+        void cancel() {
+            mDownload.release(this, true);
+        }
+
+        /**
+         * Called once this load is done with the image.
+         */
+        void release() {
+            mDownload.release(this, false);
+        }
+    }
+
+    /**
+     * The download of an image, with the bytes read from its source that some of its loads
+     * haven't read yet.
+     */
+    private final class SharedDownload implements DataCallback<InputStream> {
+
+        private final String mKey;
+        private final Runnable mCanceller;
+
+        // Guarded by this
+        private final List<Waiter> mWaiters = new ArrayList<>();
+        private InputStream mSource;
+        private IOException mError;
+        /**
+         * The bytes from position {@link #mBase} that are kept for loads behind the others, in
+         * {@link #mBuffer} from {@link #mStart}. Null while no byte is kept.
+         */
+        private byte[] mBuffer;
+        private int mStart;
+        private int mCount;
+        /** Position of the first byte kept, the bytes before it were dropped. */
+        private int mBase;
+        private boolean mReading;
+        private boolean mComplete;
+        private boolean mClosed;
+
+        SharedDownload(String key, Runnable canceller) {
+            mKey = key;
+            mCanceller = canceller;
+        }
+
+        /**
+         * @return false if the download is over, or its first bytes were dropped, and it can't be
+         * joined anymore.
+         */
+        boolean add(Waiter waiter) {
+            synchronized (this) {
+                if (mClosed || mBase > 0) return false;
+                mWaiters.add(waiter);
+                if (mSource == null) return true;
+            }
+            // Already started, catch up from the first byte
+            waiter.mCallback.onDataReady(new SharedStream(this, waiter));
+            return true;
+        }
+
+        @Override
+        public void onDataReady(InputStream source) {
+            List<Waiter> waiters;
+            synchronized (this) {
+                if (mClosed) {
+                    closeQuietly(source);
+                    return;
+                }
+                mSource = source;
+                waiters = new ArrayList<>(mWaiters);
+            }
+            for (Waiter waiter : waiters) {
+                waiter.mCallback.onDataReady(new SharedStream(this, waiter));
+            }
+        }
+
+        @Override
+        public void onLoadFailed(Exception e) {
+            List<Waiter> waiters;
+            synchronized (this) {
+                if (mClosed) return;
+                mClosed = true;
+                waiters = new ArrayList<>(mWaiters);
+                mWaiters.clear();
+            }
+            remove(this);
+            for (Waiter waiter : waiters) {
+                waiter.mCallback.onLoadFailed(e);
+            }
+        }
+
+        void release(Waiter waiter, boolean cancelled) {
+            boolean cancel;
+            synchronized (this) {
+                if (waiter.mDone) return;
+                waiter.mDone = true;
+                mWaiters.remove(waiter);
+                if (!mWaiters.isEmpty()) {
+                    // The bytes only this load hadn't read yet can go
+                    trim();
+                    return;
+                }
+                if (mClosed) return;
+
+                mClosed = true;
+                cancel = cancelled && !mComplete;
+                if (mSource != null) closeQuietly(mSource);
+                mBuffer = null;
+                notifyAll();
+            }
+            remove(this);
+            if (cancel) mCanceller.run();
+        }
+
+        /**
+         * Copy the bytes at the position of a load, reading them from the source first if needed.
+         *
+         * @return the number of bytes copied, or -1 at the end of the image.
+         */
+        int read(Waiter waiter, byte[] buffer, int offset, int length) throws IOException {
+            while (true) {
+                InputStream source;
+                boolean direct;
+                synchronized (this) {
+                    if (waiter.mDone || mClosed) throw new IOException("Download cancelled");
+                    int available = mBuffer == null ? 0 : mBase + mCount - waiter.mPosition;
+                    if (available > 0) {
+                        int count = Math.min(length, available);
+                        System.arraycopy(mBuffer, mStart + waiter.mPosition - mBase,
+                                buffer, offset, count);
+                        waiter.mPosition += count;
+                        trim();
+                        return count;
+                    }
+                    if (mComplete) return -1;
+                    if (mError != null) throw new IOException("Download failed", mError);
+
+                    if (mReading) {
+                        waitForChunk();
+                        continue;
+                    }
+                    mReading = true;
+                    source = mSource;
+                    // Nobody else needs the bytes, unless another load joins during the read
+                    direct = !isNeededByOthers(waiter, waiter.mPosition + 1);
+                }
+
+                if (direct) {
+                    int count = readDirect(waiter, source, buffer, offset, length);
+                    if (count != 0) return count;
+                } else {
+                    readChunk(source);
+                }
+            }
+        }
+
+        /**
+         * Read from the source into the buffer of a load, without keeping the bytes unless
+         * another load joined in the meantime.
+         *
+         * @return the number of bytes read, -1 at the end of the image, or 0 if nothing was read.
+         */
+        private int readDirect(Waiter waiter,
+                               InputStream source,
+                               byte[] buffer,
+                               int offset,
+                               int length) throws IOException {
+            int count = 0;
+            IOException error = null;
+            try {
+                count = source.read(buffer, offset, length);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                mReading = false;
+                notifyAll();
+                if (error != null) {
+                    mError = error;
+                    throw new IOException("Download failed", error);
+                } else if (count == -1) {
+                    mComplete = true;
+                    return -1;
+                } else if (count > 0) {
+                    // Decided from the loads registered now, which may have joined or left
+                    if (isNeededByOthers(waiter, waiter.mPosition + count)) {
+                        append(buffer, offset, count);
+                    } else {
+                        mBase += count;
+                    }
+                    waiter.mPosition += count;
+                    trim();
+                }
+                return count;
+            }
+        }
+
+        /**
+         * Read the next chunk from the source for all loads. The lock isn't held while blocking
+         * on the network, so that other loads can copy the bytes that are already there.
+         */
+        private void readChunk(InputStream source) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int count = 0;
+            IOException error = null;
+            try {
+                count = source.read(chunk);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                mReading = false;
+                if (error != null) {
+                    mError = error;
+                } else if (count == -1) {
+                    mComplete = true;
+                } else if (!mClosed) {
+                    append(chunk, 0, count);
+                }
+                notifyAll();
+            }
+        }
+
+        /**
+         * @return true if a load other than the reader hasn't read up to the position yet.
+         */
+        private boolean isNeededByOthers(Waiter reader, int position) {
+            for (Waiter waiter : mWaiters) {
+                if (waiter != reader && waiter.mPosition < position) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Drop the bytes every load has read.
+         */
+        private void trim() {
+            if (mWaiters.isEmpty()) return;
+
+            int position = Integer.MAX_VALUE;
+            for (Waiter waiter : mWaiters) {
+                position = Math.min(position, waiter.mPosition);
+            }
+            int dropped = Math.min(position - mBase, mCount);
+            if (dropped <= 0) return;
+
+            mBase += dropped;
+            mStart += dropped;
+            mCount -= dropped;
+            if (mCount == 0) {
+                // Loads that catch up read straight from the source again
+                mBuffer = null;
+                mStart = 0;
+            }
+        }
+
+        private void append(byte[] bytes, int offset, int count) {
+            if (mBuffer == null) {
+                mBuffer = new byte[Math.max(CHUNK_SIZE, count)];
+            } else if (mStart + mCount + count > mBuffer.length) {
+                // Reuse the space of dropped bytes before growing
+                byte[] buffer = mBuffer;
+                if (mCount + count > buffer.length) {
+                    buffer = new byte[Math.max(mCount + count, buffer.length * 2)];
+                }
+                System.arraycopy(mBuffer, mStart, buffer, 0, mCount);
+                mBuffer = buffer;
+                mStart = 0;
+            }
+            System.arraycopy(bytes, offset, mBuffer, mStart + mCount, count);
+            mCount += count;
+        }
+
+        private void waitForChunk() throws IOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for download", e);
+            }
+        }
+    }
+
+    /**
+     * The stream of a shared download read by one load, from the first byte.
+     */
+    private static final class SharedStream extends InputStream {
+
+        private final SharedDownload mDownload;
+        private final Waiter mWaiter;
+
+        SharedStream(SharedDownload download, Waiter waiter) {
+            mDownload = download;
+            mWaiter = waiter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read(buffer, 0, 1);
+            return count == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            return mDownload.read(mWaiter, buffer, offset, length);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close stream", e);
+        }
+    }
+}
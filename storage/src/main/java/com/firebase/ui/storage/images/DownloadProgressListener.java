@@ -0,0 +1,25 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.storage.StorageReference;
+
+/**
+ * Receives the progress of downloads made by {@link ResumableDownloads}.
+ * <p>
+ * Callbacks are made on Glide's threads for every chunk read from the network, so
+ * implementations must be thread-safe and cheap. Post to the main thread to update a view.
+ */
+public interface DownloadProgressListener {
+
+    /**
+     * Called when a chunk of an image has been downloaded.
+     *
+     * @param reference       the image or size variant being downloaded.
+     * @param bytesDownloaded the number of bytes downloaded so far, including bytes downloaded by
+     *                        earlier, interrupted attempts.
+     * @param totalBytes      the size of the image in bytes, or -1 if it is unknown.
+     */
+    void onProgress(@NonNull StorageReference reference, long bytesDownloaded, long totalBytes);
+
+}
@@ -0,0 +1,107 @@
+package com.firebase.ui.storage.images;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps the download URL of recently loaded images in Cloud Storage, so that {@link
+ * FirebaseUrlLoader} only asks Cloud Storage for it once and then downloads the image over plain
+ * HTTP.
+ * <p>
+ * A download URL stays valid until its token is revoked in the Firebase console, so URLs expire
+ * after a while and are fetched again. A URL is also forgotten when a download from it fails.
+ */
+public class DownloadUrlCache {
+
+    public static final int DEFAULT_MAX_SIZE = 500;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final LruCache<String, Entry> mUrls;
+    private final long mTtlMillis;
+    private final long mTimeoutMillis;
+
+    public DownloadUrlCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxSize       the maximum number of URLs to keep.
+     * @param ttlMillis     how long to keep a URL before fetching it again.
+     * @param timeoutMillis how long to wait for Cloud Storage before failing the load.
+     */
+    public DownloadUrlCache(int maxSize, long ttlMillis, long timeoutMillis) {
+        if (ttlMillis <= 0) throw new IllegalArgumentException("TTL must be positive.");
+        if (timeoutMillis <= 0) throw new IllegalArgumentException("Timeout must be positive.");
+
+        mUrls = new LruCache<>(maxSize);
+        mTtlMillis = ttlMillis;
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Get the download URL of an image, fetching it if it isn't cached or has expired. Blocks
+     * while the URL is fetched.
+     *
+     * @throws IOException if the URL couldn't be fetched in time, caused by the {@link
+     *                     com.google.firebase.storage.StorageException} if Cloud Storage failed.
+     */
+    @NonNull
+    @WorkerThread
+    public Uri getDownloadUrl(@NonNull StorageReference reference) throws IOException {
+        String key = reference.toString();
+        Entry entry = mUrls.get(key);
+        if (entry != null && SystemClock.elapsedRealtime() < entry.mExpiresAt) return entry.mUrl;
+
+        try {
+            Uri url = Tasks.await(
+                    reference.getDownloadUrl(), mTimeoutMillis, TimeUnit.MILLISECONDS);
+            mUrls.put(key, new Entry(url, SystemClock.elapsedRealtime() + mTtlMillis));
+            return url;
+        } catch (ExecutionException e) {
+            throw new IOException("Could not get download URL of " + reference.getPath(),
+                    e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out getting download URL of " + reference.getPath(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted getting download URL of " + reference.getPath(), e);
+        }
+    }
+
+    /**
+     * Forget the download URL of an image, e.g. after revoking its token.
+     */
+    public void invalidate(@NonNull StorageReference reference) {
+        mUrls.remove(reference.toString());
+    }
+
+    /**
+     * Forget the download URLs of all images.
+     */
+    public void clear() {
+        mUrls.evictAll();
+    }
+
+    private static final class Entry {
+
+        private final Uri mUrl;
+        private final long mExpiresAt;
+
+        Entry(Uri url, long expiresAt) {
+            mUrl = url;
+            mExpiresAt = expiresAt;
+        }
+    }
+}
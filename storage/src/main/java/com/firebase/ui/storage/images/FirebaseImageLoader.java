@@ -2,7 +2,6 @@ package com.firebase.ui.storage.images;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Log;
 
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.DataSource;
@@ -14,12 +13,12 @@ import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.storage.StorageException;
 import com.google.firebase.storage.StorageReference;
 import com.google.firebase.storage.StreamDownloadTask;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
 import java.security.MessageDigest;
 
 /**
@@ -46,20 +45,113 @@ import java.security.MessageDigest;
  *         .load(ref)
  *         .into(iv);
  * </pre>
+ *
+ * <p>
+ * To download pre-generated thumbnails instead of the original for small views, create the
+ * factory with a {@link StorageVariantResolver}, e.g. a {@link ThumbnailResolver}. To download
+ * images again when they are overwritten in place, create it with a {@link StorageMetadataCache}.
+ * To resume interrupted downloads of large images, create it with {@link ResumableDownloads}.
+ *
+ * <p>
+ * Concurrent loads of the same image, e.g. at different sizes, share a single download when
+ * their loaders are built by the same factory.
  */
 public class FirebaseImageLoader implements ModelLoader<StorageReference, InputStream> {
 
-    private static final String TAG = "FirebaseImageLoader";
+    private final StorageVariantResolver mResolver;
+    private final StorageMetadataCache mMetadataCache;
+    private final ResumableDownloads mDownloads;
+    private final DownloadCoalescer mCoalescer;
+    private final MissingVariants mMissingVariants;
 
+    public FirebaseImageLoader() {
+        this(null, null, null);
+    }
+
+    /**
+     * @param resolver      picks the size variant of each image to download, or null to always
+     *                      download the original.
+     * @param metadataCache provides the version of each image to cache it under, or null to cache
+     *                      images by path only.
+     * @param downloads     downloads images resumably, or null to download them with a {@link
+     *                      StreamDownloadTask}.
+     */
+    public FirebaseImageLoader(@Nullable StorageVariantResolver resolver,
+                               @Nullable StorageMetadataCache metadataCache,
+                               @Nullable ResumableDownloads downloads) {
+        this(resolver, metadataCache, downloads, new DownloadCoalescer(), new MissingVariants());
+    }
+
+    FirebaseImageLoader(@Nullable StorageVariantResolver resolver,
+                        @Nullable StorageMetadataCache metadataCache,
+                        @Nullable ResumableDownloads downloads,
+                        @NonNull DownloadCoalescer coalescer,
+                        @NonNull MissingVariants missingVariants) {
+        mResolver = resolver;
+        mMetadataCache = metadataCache;
+        mDownloads = downloads;
+        mCoalescer = coalescer;
+        mMissingVariants = missingVariants;
+    }
 
     /**
      * Factory to create {@link FirebaseImageLoader}.
      */
     public static class Factory implements ModelLoaderFactory<StorageReference, InputStream> {
 
+        private final StorageVariantResolver mResolver;
+        private final StorageMetadataCache mMetadataCache;
+        private final ResumableDownloads mDownloads;
+
+        /**
+         * Shared by all loaders built by this factory, so that their loads share downloads.
+         */
+        private final DownloadCoalescer mCoalescer = new DownloadCoalescer();
+        private final MissingVariants mMissingVariants = new MissingVariants();
+
+        public Factory() {
+            this(null, null, null);
+        }
+
+        /**
+         * @param resolver picks the size variant of each image to download, or null to always
+         *                 download the original.
+         */
+        public Factory(@Nullable StorageVariantResolver resolver) {
+            this(resolver, null);
+        }
+
+        /**
+         * @param resolver      picks the size variant of each image to download, or null to
+         *                      always download the original.
+         * @param metadataCache provides the version of each image to cache it under, or null to
+         *                      cache images by path only.
+         */
+        public Factory(@Nullable StorageVariantResolver resolver,
+                       @Nullable StorageMetadataCache metadataCache) {
+            this(resolver, metadataCache, null);
+        }
+
+        /**
+         * @param resolver      picks the size variant of each image to download, or null to
+         *                      always download the original.
+         * @param metadataCache provides the version of each image to cache it under, or null to
+         *                      cache images by path only.
+         * @param downloads     downloads images resumably, or null to download them with a
+         *                      {@link StreamDownloadTask}.
+         */
+        public Factory(@Nullable StorageVariantResolver resolver,
+                       @Nullable StorageMetadataCache metadataCache,
+                       @Nullable ResumableDownloads downloads) {
+            mResolver = resolver;
+            mMetadataCache = metadataCache;
+            mDownloads = downloads;
+        }
+
         @Override
         public ModelLoader<StorageReference, InputStream> build(MultiModelLoaderFactory factory) {
-            return new FirebaseImageLoader();
+            return new FirebaseImageLoader(
+                    mResolver, mMetadataCache, mDownloads, mCoalescer, mMissingVariants);
         }
 
         @Override
@@ -71,12 +163,24 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
     @Nullable
     @Override
     public LoadData<InputStream> buildLoadData(StorageReference reference,
-                                               int height,
                                                int width,
+                                               int height,
                                                Options options) {
-        return new LoadData<>(
-                new FirebaseStorageKey(reference),
-                new FirebaseStorageFetcher(reference));
+        StorageReference variant = reference;
+        if (mResolver != null) variant = mResolver.resolve(reference, width, height);
+        // Load the original under its own key while the variant is known to be missing
+        if (mMissingVariants.contains(variant)) variant = reference;
+
+        // Variants are cached under their own path. Load data is built on Glide's disk cache
+        // thread, so the version is only looked up, its metadata is fetched in the background.
+        String version = getVersion(variant);
+        FirebaseStorageKey key = new FirebaseStorageKey(variant, version);
+        return new LoadData<>(key, new FirebaseStorageFetcher(key, variant, reference, version));
+    }
+
+    @Nullable
+    private String getVersion(StorageReference reference) {
+        return mMetadataCache == null ? null : mMetadataCache.getVersion(reference);
     }
 
     @Override
@@ -84,69 +188,221 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
         return true;
     }
 
-    private static class FirebaseStorageKey implements Key {
+    /**
+     * @return true if the error means the object doesn't exist.
+     */
+    static boolean isNotFound(Throwable e) {
+        return e instanceof StorageException && ((StorageException) e).getErrorCode()
+                == StorageException.ERROR_OBJECT_NOT_FOUND;
+    }
+
+    /**
+     * Identifies an image in Glide's caches by its path and version, shared with {@link
+     * FirebaseUrlLoader}.
+     */
+    static class FirebaseStorageKey implements Key {
 
-        private StorageReference mRef;
+        private volatile String mPath;
+        private volatile String mVersion;
 
-        public FirebaseStorageKey(StorageReference ref) {
-            mRef = ref;
+        /**
+         * @param version the version of the image, or null if it is unknown.
+         */
+        public FirebaseStorageKey(StorageReference ref, @Nullable String version) {
+            mPath = ref.getPath();
+            mVersion = version;
+        }
+
+        /**
+         * Turn the key of a missing variant into the key of its original, once the load fell back
+         * to the original. Glide derives the disk cache keys it writes to from the load's key after
+         * the data is fetched, so the original is cached under its own key rather than the
+         * variant's, and the variant is loaded once it exists.
+         */
+        void fallBack(StorageReference original, @Nullable String version) {
+            mPath = original.getPath();
+            mVersion = version;
         }
 
         @Override
         public void updateDiskCacheKey(MessageDigest digest) {
-            digest.update(mRef.getPath().getBytes(Charset.defaultCharset()));
+            digest.update(mPath.getBytes(CHARSET));
+            if (mVersion != null) {
+                // Keys without a version must hash as they did before versions existed
+                digest.update(("#" + mVersion).getBytes(CHARSET));
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            FirebaseStorageKey key = (FirebaseStorageKey) o;
+            return mPath.equals(key.mPath)
+                    && (mVersion == null ? key.mVersion == null : mVersion.equals(key.mVersion));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mPath.hashCode();
+            result = 31 * result + (mVersion == null ? 0 : mVersion.hashCode());
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "FirebaseStorageKey{" +
+                    "path='" + mPath + '\'' +
+                    ", version='" + mVersion + '\'' +
+                    '}';
         }
     }
 
-    private static class FirebaseStorageFetcher implements DataFetcher<InputStream> {
+    private class FirebaseStorageFetcher implements DataFetcher<InputStream> {
+
+        private final FirebaseStorageKey mKey;
+        private final StorageReference mRef;
+        private final StorageReference mOriginalRef;
+        private final String mVersion;
+        private volatile DownloadCoalescer.Waiter mWaiter;
+        private volatile boolean mCancelled;
 
-        private StorageReference mRef;
+        // The download, if this fetcher started it
         private StreamDownloadTask mStreamTask;
-        private InputStream mInputStream;
+        private volatile ResumableDownloads.DownloadStream mDownload;
+        private volatile boolean mSourceCancelled;
 
-        public FirebaseStorageFetcher(StorageReference ref) {
+        /**
+         * @param key         the key of the load, turned into the original's if it falls back.
+         * @param ref         the image or size variant to download.
+         * @param originalRef the image to download if the variant doesn't exist.
+         * @param version     the version of the image or variant, if known.
+         */
+        public FirebaseStorageFetcher(FirebaseStorageKey key,
+                                      StorageReference ref,
+                                      StorageReference originalRef,
+                                      @Nullable String version) {
+            mKey = key;
             mRef = ref;
+            mOriginalRef = originalRef;
+            mVersion = version;
         }
 
         @Override
-        public void loadData(Priority priority,
-                             final DataCallback<? super InputStream> callback) {
-            mStreamTask = mRef.getStream();
+        public void loadData(Priority priority, final DataCallback<? super InputStream> callback) {
+            DataCallback<InputStream> keyedCallback = new DataCallback<InputStream>() {
+                @Override
+                public void onDataReady(InputStream data) {
+                    // Loads joined to a download that fell back fall back with it
+                    if (!mRef.equals(mOriginalRef) && mMissingVariants.contains(mRef)) {
+                        mKey.fallBack(mOriginalRef, getVersion(mOriginalRef));
+                    }
+                    callback.onDataReady(data);
+                }
+
+                @Override
+                public void onLoadFailed(Exception e) {
+                    callback.onLoadFailed(e);
+                }
+            };
+            mWaiter = mCoalescer.join(getDownloadKey(), keyedCallback, new Runnable() {
+                @Override
+                public void run() {
+                    cancelSource();
+                }
+            });
+            if (mCancelled) mWaiter.cancel();
+            // Another fetcher is downloading the image already, or nobody needs it anymore. If
+            // this fetcher was cancelled but others joined, the download must still start.
+            if (!mWaiter.isFirst() || mSourceCancelled) return;
+
+            if (mDownloads != null) {
+                loadResumable(mWaiter.getSourceCallback());
+            } else {
+                load(mRef, mWaiter.getSourceCallback());
+            }
+        }
+
+        private String getDownloadKey() {
+            String key = mRef.getBucket() + mRef.getPath();
+            return mVersion == null ? key : key + "#" + mVersion;
+        }
+
+        /**
+         * Download on the calling thread, one of Glide's source threads. Glide reads the stream
+         * as it arrives.
+         */
+        private void loadResumable(DataCallback<InputStream> callback) {
+            try {
+                try {
+                    mDownload = mDownloads.open(mRef, mVersion);
+                } catch (IOException e) {
+                    if (mSourceCancelled || !isNotFound(e.getCause())
+                            || mRef.equals(mOriginalRef)) {
+                        throw e;
+                    }
+                    // The variant wasn't generated (yet), fall back to the original
+                    mMissingVariants.add(mRef);
+                    mDownload = mDownloads.open(mOriginalRef, getVersion(mOriginalRef));
+                }
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+                return;
+            }
+
+            if (mSourceCancelled) mDownload.cancel();
+            callback.onDataReady(mDownload);
+        }
+
+        private void load(final StorageReference ref, final DataCallback<InputStream> callback) {
+            mStreamTask = ref.getStream();
             mStreamTask
                     .addOnSuccessListener(new OnSuccessListener<StreamDownloadTask.TaskSnapshot>() {
                         @Override
                         public void onSuccess(StreamDownloadTask.TaskSnapshot snapshot) {
-                            mInputStream = snapshot.getStream();
-                            callback.onDataReady(mInputStream);
+                            callback.onDataReady(snapshot.getStream());
                         }
                     })
                     .addOnFailureListener(new OnFailureListener() {
                         @Override
                         public void onFailure(@NonNull Exception e) {
-                            callback.onLoadFailed(e);
+                            if (!mSourceCancelled && isNotFound(e) && !ref.equals(mOriginalRef)) {
+                                // The variant wasn't generated (yet), fall back to the original
+                                mMissingVariants.add(ref);
+                                load(mOriginalRef, callback);
+                            } else {
+                                callback.onLoadFailed(e);
+                            }
                         }
                     });
         }
 
         @Override
         public void cleanup() {
-            // Close stream if possible
-            if (mInputStream != null) {
-                try {
-                    mInputStream.close();
-                    mInputStream = null;
-                } catch (IOException e) {
-                    Log.w(TAG, "Could not close stream", e);
-                }
-            }
+            // The stream is closed once every fetcher sharing it is done
+            if (mWaiter != null) mWaiter.release();
         }
 
         @Override
         public void cancel() {
+            mCancelled = true;
+
+            // The download is only cancelled if no other fetcher shares it
+            if (mWaiter != null) mWaiter.cancel();
+        }
+
+        /**
+         * Called when every fetcher sharing the download this fetcher started was cancelled.
+         */
+        private void cancelSource() {
+            mSourceCancelled = true;
+
             // Cancel task if possible
             if (mStreamTask != null && mStreamTask.isInProgress()) {
                 mStreamTask.cancel();
             }
+            if (mDownload != null) mDownload.cancel();
         }
 
         @Override
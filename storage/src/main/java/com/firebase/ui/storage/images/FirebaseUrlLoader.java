@@ -0,0 +1,237 @@
+package com.firebase.ui.storage.images;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ModelLoader implementation to download images from FirebaseStorage with Glide through their
+ * download URL, instead of starting a Storage task for each image like {@link
+ * FirebaseImageLoader}. Download URLs are cached in a {@link DownloadUrlCache} and the images are
+ * downloaded by the loader Glide has registered for {@link GlideUrl}, which reuses connections.
+ * <p>
+ * Register this class in your AppGlideModule instead of {@link FirebaseImageLoader}:
+ * <pre>
+ *         {@literal @}Override
+ *         public void registerComponents(Context context, Registry registry) {
+ *             registry.append(StorageReference.class, InputStream.class,
+ *                     new FirebaseUrlLoader.Factory());
+ *         }
+ * </pre>
+ * <p>
+ * Glide's default {@link GlideUrl} loader uses {@link java.net.HttpURLConnection}, which keeps
+ * connections alive between requests. To multiplex requests over HTTP/2, also register Glide's
+ * OkHttp integration. Images are cached under the same keys as with {@link FirebaseImageLoader}.
+ */
+public class FirebaseUrlLoader implements ModelLoader<StorageReference, InputStream> {
+
+    private final ModelLoader<GlideUrl, InputStream> mUrlLoader;
+    private final StorageVariantResolver mResolver;
+    private final DownloadUrlCache mUrlCache;
+    private final MissingVariants mMissingVariants;
+
+    /**
+     * @param urlLoader downloads images from their URL.
+     * @param resolver  picks the size variant of each image to download, or null to always
+     *                  download the original.
+     * @param urlCache  provides the download URL of each image.
+     */
+    public FirebaseUrlLoader(@NonNull ModelLoader<GlideUrl, InputStream> urlLoader,
+                             @Nullable StorageVariantResolver resolver,
+                             @NonNull DownloadUrlCache urlCache) {
+        this(urlLoader, resolver, urlCache, new MissingVariants());
+    }
+
+    FirebaseUrlLoader(@NonNull ModelLoader<GlideUrl, InputStream> urlLoader,
+                      @Nullable StorageVariantResolver resolver,
+                      @NonNull DownloadUrlCache urlCache,
+                      @NonNull MissingVariants missingVariants) {
+        mUrlLoader = urlLoader;
+        mResolver = resolver;
+        mUrlCache = urlCache;
+        mMissingVariants = missingVariants;
+    }
+
+    /**
+     * Factory to create {@link FirebaseUrlLoader}.
+     */
+    public static class Factory implements ModelLoaderFactory<StorageReference, InputStream> {
+
+        private final StorageVariantResolver mResolver;
+        private final DownloadUrlCache mUrlCache;
+        private final MissingVariants mMissingVariants = new MissingVariants();
+
+        public Factory() {
+            this(null);
+        }
+
+        /**
+         * @param resolver picks the size variant of each image to download, or null to always
+         *                 download the original.
+         */
+        public Factory(@Nullable StorageVariantResolver resolver) {
+            this(resolver, new DownloadUrlCache());
+        }
+
+        /**
+         * @param resolver picks the size variant of each image to download, or null to always
+         *                 download the original.
+         * @param urlCache provides the download URL of each image.
+         */
+        public Factory(@Nullable StorageVariantResolver resolver,
+                       @NonNull DownloadUrlCache urlCache) {
+            mResolver = resolver;
+            mUrlCache = urlCache;
+        }
+
+        @Override
+        public ModelLoader<StorageReference, InputStream> build(MultiModelLoaderFactory factory) {
+            return new FirebaseUrlLoader(factory.build(GlideUrl.class, InputStream.class),
+                    mResolver, mUrlCache, mMissingVariants);
+        }
+
+        @Override
+        public void teardown() {
+            // No-op
+        }
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(StorageReference reference,
+                                               int width,
+                                               int height,
+                                               Options options) {
+        StorageReference variant = reference;
+        if (mResolver != null) variant = mResolver.resolve(reference, width, height);
+        // Load the original under its own key while the variant is known to be missing
+        if (mMissingVariants.contains(variant)) variant = reference;
+
+        // Load data is also built to look up Glide's disk cache, so the URL is only resolved
+        // once the image needs to be downloaded.
+        FirebaseImageLoader.FirebaseStorageKey key =
+                new FirebaseImageLoader.FirebaseStorageKey(variant, null);
+        return new LoadData<>(
+                key, new DownloadUrlFetcher(key, variant, reference, width, height, options));
+    }
+
+    @Override
+    public boolean handles(StorageReference reference) {
+        return true;
+    }
+
+    private class DownloadUrlFetcher implements DataFetcher<InputStream> {
+
+        private final FirebaseImageLoader.FirebaseStorageKey mKey;
+        private final StorageReference mRef;
+        private final StorageReference mOriginalRef;
+        private final int mWidth;
+        private final int mHeight;
+        private final Options mOptions;
+        private volatile DataFetcher<InputStream> mFetcher;
+        private volatile boolean mCancelled;
+
+        /**
+         * @param key         the key of the load, turned into the original's if it falls back.
+         * @param ref         the image or size variant to download.
+         * @param originalRef the image to download if the variant doesn't exist.
+         */
+        public DownloadUrlFetcher(FirebaseImageLoader.FirebaseStorageKey key,
+                                  StorageReference ref,
+                                  StorageReference originalRef,
+                                  int width,
+                                  int height,
+                                  Options options) {
+            mKey = key;
+            mRef = ref;
+            mOriginalRef = originalRef;
+            mWidth = width;
+            mHeight = height;
+            mOptions = options;
+        }
+
+        @Override
+        public void loadData(Priority priority, final DataCallback<? super InputStream> callback) {
+            StorageReference ref;
+            Uri url;
+            try {
+                try {
+                    url = mUrlCache.getDownloadUrl(mRef);
+                    ref = mRef;
+                } catch (IOException e) {
+                    if (mCancelled || !FirebaseImageLoader.isNotFound(e.getCause())
+                            || mRef.equals(mOriginalRef)) {
+                        throw e;
+                    }
+                    // The variant wasn't generated (yet), fall back to the original
+                    mMissingVariants.add(mRef);
+                    url = mUrlCache.getDownloadUrl(mOriginalRef);
+                    ref = mOriginalRef;
+                    mKey.fallBack(mOriginalRef, null);
+                }
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+                return;
+            }
+
+            GlideUrl glideUrl = new GlideUrl(url.toString());
+            LoadData<InputStream> loadData =
+                    mUrlLoader.buildLoadData(glideUrl, mWidth, mHeight, mOptions);
+            if (loadData == null) {
+                callback.onLoadFailed(new IOException("No loader for " + ref.getPath()));
+                return;
+            }
+
+            final StorageReference downloadedRef = ref;
+            mFetcher = loadData.fetcher;
+            if (mCancelled) mFetcher.cancel();
+            mFetcher.loadData(priority, new DataCallback<InputStream>() {
+                @Override
+                public void onDataReady(InputStream data) {
+                    callback.onDataReady(data);
+                }
+
+                @Override
+                public void onLoadFailed(Exception e) {
+                    // The URL may have been revoked, fetch it again next time
+                    mUrlCache.invalidate(downloadedRef);
+                    callback.onLoadFailed(e);
+                }
+            });
+        }
+
+        @Override
+        public void cleanup() {
+            if (mFetcher != null) mFetcher.cleanup();
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+            if (mFetcher != null) mFetcher.cancel();
+        }
+
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.REMOTE;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.firebase.ui.storage.images;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.v4.util.LruCache;
+
+import com.google.firebase.storage.StorageReference;
+
+/**
+ * Remembers the size variants recently found missing in Cloud Storage, so that their images are
+ * loaded and cached as the original instead of trying the variant on every load. A variant is
+ * tried again after a while, in case it was generated in the meantime.
+ */
+final class MissingVariants {
+
+    private static final int MAX_SIZE = 500;
+
+    /** When each variant was last found missing, in elapsed realtime. */
+    private final LruCache<String, Long> mMissing = new LruCache<>(MAX_SIZE);
+    private final long mRetryMillis;
+
+    MissingVariants() {
+        this(StorageMetadataCache.DEFAULT_RETRY_MILLIS);
+    }
+
+    MissingVariants(long retryMillis) {
+        mRetryMillis = retryMillis;
+    }
+
+    void add(@NonNull StorageReference variant) {
+        mMissing.put(variant.toString(), SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return true if the variant was found missing recently enough not to be tried again yet.
+     */
+    boolean contains(@NonNull StorageReference variant) {
+        String key = variant.toString();
+        Long missingAt = mMissing.get(key);
+        if (missingAt == null) return false;
+
+        if (SystemClock.elapsedRealtime() - missingAt >= mRetryMillis) {
+            mMissing.remove(key);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,426 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.bumptech.glide.util.Util;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Downloads images through their download URL with HTTP range requests, so that a download that
+ * is cancelled or fails half way resumes where it stopped the next time the image is loaded,
+ * instead of starting over. Bytes are handed to Glide as they arrive and saved to a partial file
+ * in a directory of the app's cache. The file is deleted once the download completes, i.e. once
+ * all bytes of the image have been received.
+ * <p>
+ * A partial download is only resumed if the object didn't change in the meantime, otherwise it
+ * starts over. Partial files of images that are never loaded again stay until {@link #clear()}
+ * is called.
+ *
+ * @see FirebaseImageLoader.Factory#Factory(StorageVariantResolver, StorageMetadataCache,
+ * ResumableDownloads)
+ */
+public class ResumableDownloads {
+
+    private static final String TAG = "ResumableDownloads";
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private static final String ETAG_SUFFIX = ".etag";
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    /**
+     * Most bytes read on close to complete a download, e.g. trailing bytes the decoder didn't
+     * need, instead of keeping a partial file that is never resumed.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final int mTimeoutMillis;
+    private final DownloadProgressListener mListener;
+    private final DownloadUrlCache mUrlCache;
+
+    /**
+     * Names of the partial files being written to, so that concurrent downloads of the same image
+     * don't corrupt them.
+     */
+    private final Set<String> mActiveFiles = new HashSet<>();
+
+    /**
+     * @param directory the directory to keep partial downloads in, e.g. a subdirectory of {@code
+     *                  Context#getCacheDir()}.
+     */
+    public ResumableDownloads(@NonNull File directory) {
+        this(directory, DEFAULT_TIMEOUT_MILLIS, null);
+    }
+
+    /**
+     * @param directory     the directory to keep partial downloads in, e.g. a subdirectory of
+     *                      {@code Context#getCacheDir()}.
+     * @param timeoutMillis the connect and read timeout of downloads.
+     * @param listener      a listener to report the progress of downloads to, if any.
+     */
+    public ResumableDownloads(@NonNull File directory,
+                              int timeoutMillis,
+                              @Nullable DownloadProgressListener listener) {
+        this(directory, timeoutMillis, listener, new DownloadUrlCache());
+    }
+
+    /**
+     * @param directory     the directory to keep partial downloads in, e.g. a subdirectory of
+     *                      {@code Context#getCacheDir()}.
+     * @param timeoutMillis the connect and read timeout of downloads.
+     * @param listener      a listener to report the progress of downloads to, if any.
+     * @param urlCache      provides the download URL of each image, e.g. shared with a {@link
+     *                      FirebaseUrlLoader.Factory}.
+     */
+    public ResumableDownloads(@NonNull File directory,
+                              int timeoutMillis,
+                              @Nullable DownloadProgressListener listener,
+                              @NonNull DownloadUrlCache urlCache) {
+        if (timeoutMillis <= 0) throw new IllegalArgumentException("Timeout must be positive.");
+
+        mDirectory = directory;
+        mTimeoutMillis = timeoutMillis;
+        mListener = listener;
+        mUrlCache = urlCache;
+    }
+
+    /**
+     * Delete all partial downloads that aren't in progress.
+     */
+    public void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+
+        synchronized (mActiveFiles) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(ETAG_SUFFIX)) {
+                    name = name.substring(0, name.length() - ETAG_SUFFIX.length());
+                }
+                if (!mActiveFiles.contains(name)) delete(file);
+            }
+        }
+    }
+
+    /**
+     * Start or resume downloading an image. Blocks until the server responds.
+     *
+     * @param version the version of the image if it is known, see {@link StorageMetadataCache}.
+     * @return a stream of the whole image, starting with the bytes of any earlier attempt.
+     */
+    @NonNull
+    @WorkerThread
+    DownloadStream open(@NonNull StorageReference reference, @Nullable String version)
+            throws IOException {
+        String name = getFileName(reference, version);
+        File data = new File(mDirectory, name);
+        File etag = new File(mDirectory, name + ETAG_SUFFIX);
+        // Another fetcher already writes to the file, download without saving
+        boolean persist = acquire(name);
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(mUrlCache.getDownloadUrl(reference).toString());
+            long offset = persist && data.exists() ? data.length() : 0;
+            String tag = offset > 0 ? read(etag) : null;
+            if (tag == null) offset = 0;
+
+            connection = connect(url, offset, tag);
+            int status = connection.getResponseCode();
+            if (status == HTTP_RANGE_NOT_SATISFIABLE) {
+                // The partial file is longer than the object, start over
+                connection.disconnect();
+                connection = connect(url, 0, null);
+                status = connection.getResponseCode();
+            }
+            if (status == HttpURLConnection.HTTP_OK) {
+                // A new download, or the object changed since the partial file was written
+                offset = 0;
+            } else if (status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Unexpected response " + status + " for "
+                        + reference.getPath());
+            }
+
+            InputStream network = connection.getInputStream();
+            InputStream cached = offset > 0 ? new FileInputStream(data) : null;
+            OutputStream output = null;
+            if (persist) {
+                if (offset == 0) write(etag, connection.getHeaderField("ETag"));
+                output = new FileOutputStream(data, offset > 0);
+            }
+
+            long length = parseLength(connection.getHeaderField("Content-Length"));
+            long total = length == -1 ? -1 : offset + length;
+            return new DownloadStream(reference, name, connection, network, cached, offset, total,
+                    output);
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) connection.disconnect();
+            if (persist) release(name, false);
+            // The URL may have been revoked, fetch it again next time
+            mUrlCache.invalidate(reference);
+            throw e;
+        }
+    }
+
+    private HttpURLConnection connect(URL url, long offset, String tag) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(mTimeoutMillis);
+        connection.setReadTimeout(mTimeoutMillis);
+        connection.setUseCaches(false);
+        if (offset > 0) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            // Get the whole object instead if it changed since the partial file was written
+            connection.setRequestProperty("If-Range", tag);
+        }
+        return connection;
+    }
+
+    private boolean acquire(String name) {
+        synchronized (mActiveFiles) {
+            if (!mActiveFiles.add(name)) return false;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Could not create " + mDirectory);
+            release(name, false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param complete true if the download completed and its partial file can be deleted.
+     */
+    private void release(String name, boolean complete) {
+        synchronized (mActiveFiles) {
+            if (complete) {
+                delete(new File(mDirectory, name));
+                delete(new File(mDirectory, name + ETAG_SUFFIX));
+            }
+            mActiveFiles.remove(name);
+        }
+    }
+
+    private static String getFileName(StorageReference reference, @Nullable String version) {
+        String id = reference.getBucket() + reference.getPath();
+        if (version != null) id += "#" + version;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Util.sha256BytesToHex(digest.digest(id.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long parseLength(@Nullable String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Nullable
+    private static String read(File file) {
+        if (!file.exists()) return null;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            return reader.readLine();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (reader != null) closeQuietly(reader);
+        }
+    }
+
+    private static void write(File file, @Nullable String value) throws IOException {
+        if (value == null) {
+            // Without a tag the download can't be validated, so it won't be resumed
+            delete(file);
+            return;
+        }
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(value);
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) Log.w(TAG, "Could not delete " + file);
+    }
+
+    /**
+     * A stream of an image that replays the partial file of earlier attempts, then reads the rest
+     * from the network and appends it to the partial file.
+     */
+    final class DownloadStream extends InputStream {
+
+        private final StorageReference mReference;
+        private final String mName;
+        private final HttpURLConnection mConnection;
+        private final InputStream mNetwork;
+        private final long mTotalBytes;
+
+        private InputStream mCached;
+        private long mCachedBytes;
+        private final boolean mPersisting;
+        private OutputStream mOutput;
+        private long mBytesDownloaded;
+        private boolean mComplete;
+        private boolean mClosed;
+        private volatile boolean mCancelled;
+
+        /**
+         * @param cached the partial file of earlier attempts, null if the download starts over.
+         * @param output the partial file to append to, null if the download isn't saved.
+         */
+        DownloadStream(StorageReference reference,
+                       String name,
+                       HttpURLConnection connection,
+                       InputStream network,
+                       @Nullable InputStream cached,
+                       long cachedBytes,
+                       long totalBytes,
+                       @Nullable OutputStream output) {
+            mReference = reference;
+            mName = name;
+            mConnection = connection;
+            mNetwork = network;
+            mTotalBytes = totalBytes;
+            mCached = cached;
+            mCachedBytes = cachedBytes;
+            mPersisting = output != null;
+            mOutput = output;
+            mBytesDownloaded = cachedBytes;
+        }
+
+        /**
+         * Stop the download, the next read fails. Bytes read so far stay in the partial file.
+         */
+        void cancel() {
+            mCancelled = true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read(buffer, 0, 1);
+            return count == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            if (mCancelled) throw new IOException("Download cancelled");
+            if (length == 0) return 0;
+
+            if (mCached != null) {
+                int count = mCached.read(buffer, offset, (int) Math.min(length, mCachedBytes));
+                if (count > 0) {
+                    mCachedBytes -= count;
+                    if (mCachedBytes == 0) closeCached();
+                    return count;
+                }
+                closeCached();
+            }
+
+            int count = mNetwork.read(buffer, offset, length);
+            if (count == -1) {
+                mComplete = true;
+                return -1;
+            }
+
+            if (mOutput != null) {
+                try {
+                    mOutput.write(buffer, offset, count);
+                } catch (IOException e) {
+                    // The partial file is incomplete, keep downloading without it
+                    Log.w(TAG, "Could not save partial download", e);
+                    closeQuietly(mOutput);
+                    mOutput = null;
+                    delete(new File(mDirectory, mName));
+                }
+            }
+            mBytesDownloaded += count;
+            // Decoders may not read until the end of the stream once they have the whole image
+            if (mBytesDownloaded == mTotalBytes) mComplete = true;
+            if (mListener != null) {
+                mListener.onProgress(mReference, mBytesDownloaded, mTotalBytes);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) return;
+            mClosed = true;
+
+            if (!mComplete && !mCancelled && mOutput != null && mTotalBytes != -1
+                    && mTotalBytes - mBytesDownloaded <= MAX_DRAIN_BYTES) {
+                drain();
+            }
+            closeCached();
+            closeQuietly(mNetwork);
+            mConnection.disconnect();
+            if (mOutput != null) closeQuietly(mOutput);
+            if (mPersisting) release(mName, mComplete);
+        }
+
+        /**
+         * Read the rest of the download so that it completes, keeping the partial file if it
+         * fails.
+         */
+        private void drain() {
+            byte[] buffer = new byte[8192];
+            try {
+                while (!mComplete && read(buffer, 0, buffer.length) != -1) {
+                    // Discard, the bytes are saved to the partial file
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not complete download of " + mReference.getPath(), e);
+            }
+        }
+
+        private void closeCached() {
+            if (mCached != null) {
+                closeQuietly(mCached);
+                mCached = null;
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
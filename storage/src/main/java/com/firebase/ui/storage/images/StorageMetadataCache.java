@@ -0,0 +1,163 @@
+package com.firebase.ui.storage.images;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the version of recently loaded images in Cloud Storage, so that {@link
+ * FirebaseImageLoader} can cache each version of an image separately. An image that is
+ * overwritten in place is then downloaded again instead of being served stale from Glide's disk
+ * cache.
+ * <p>
+ * The version of an image is made of its generation, MD5 hash and update time, and is fetched
+ * with a metadata request in the background the first time the image is loaded in a process.
+ * Until the request completes, the image is loaded with its last known version, or by path only
+ * if there is none. Failed requests are not retried for a while, so that missing images and
+ * offline loads don't make a request each time.
+ * <p>
+ * When created with a {@link Context}, versions are also saved to disk, so that images cached
+ * under their version are found again after a restart while offline. A version is kept until
+ * it's evicted or {@link #invalidate(StorageReference)} is called, e.g. after uploading a new
+ * version.
+ */
+public class StorageMetadataCache {
+
+    private static final String TAG = "StorageMetadataCache";
+    private static final String PREFS_NAME = "com.firebase.ui.storage.images.StorageMetadataCache";
+
+    public static final int DEFAULT_MAX_SIZE = 500;
+    public static final long DEFAULT_RETRY_MILLIS = 60 * 1000;
+
+    /** Versions fetched by this process. */
+    private final LruCache<String, String> mVersions;
+    /** When the last metadata request of each image failed, in elapsed realtime. */
+    private final LruCache<String, Long> mFailures;
+    /** Images whose metadata is being fetched, guarded by itself. */
+    private final Set<String> mRequests = new HashSet<>();
+
+    private final SharedPreferences mPrefs;
+    private final long mRetryMillis;
+
+    /**
+     * Create a cache that keeps versions in memory only.
+     */
+    public StorageMetadataCache() {
+        this(null, DEFAULT_MAX_SIZE, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * Create a cache that also saves versions to disk.
+     */
+    public StorageMetadataCache(@NonNull Context context) {
+        this(context, DEFAULT_MAX_SIZE, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * @param context     used to save versions to disk, or null to keep them in memory only.
+     * @param maxSize     the maximum number of versions to keep in memory.
+     * @param retryMillis how long to wait after a failed metadata request before fetching the
+     *                    metadata of the image again, e.g. while offline.
+     */
+    public StorageMetadataCache(@Nullable Context context, int maxSize, long retryMillis) {
+        if (retryMillis < 0) {
+            throw new IllegalArgumentException("Retry delay must not be negative.");
+        }
+
+        mPrefs = context == null ? null : context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mVersions = new LruCache<String, String>(maxSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, String path, String old, String version) {
+                if (evicted && mPrefs != null) mPrefs.edit().remove(path).apply();
+            }
+        };
+        mFailures = new LruCache<>(maxSize);
+        mRetryMillis = retryMillis;
+    }
+
+    /**
+     * Get the version of an image without blocking. If it wasn't fetched by this process yet, its
+     * metadata is fetched in the background for the next loads.
+     *
+     * @return the version of the image, its last known version if it is being fetched, or null if
+     * it is unknown.
+     */
+    @Nullable
+    @AnyThread
+    public String getVersion(@NonNull StorageReference reference) {
+        String path = reference.getPath();
+        String version = mVersions.get(path);
+        if (version != null) return version;
+
+        Long failedAt = mFailures.get(path);
+        if (failedAt == null || SystemClock.elapsedRealtime() - failedAt >= mRetryMillis) {
+            fetch(reference);
+        }
+        return mPrefs == null ? null : mPrefs.getString(path, null);
+    }
+
+    /**
+     * Forget the version of an image, so that its metadata is fetched again the next time it is
+     * loaded.
+     */
+    public void invalidate(@NonNull StorageReference reference) {
+        String path = reference.getPath();
+        mVersions.remove(path);
+        mFailures.remove(path);
+        if (mPrefs != null) mPrefs.edit().remove(path).apply();
+    }
+
+    /**
+     * Forget the versions of all images.
+     */
+    public void clear() {
+        mVersions.evictAll();
+        mFailures.evictAll();
+        if (mPrefs != null) mPrefs.edit().clear().apply();
+    }
+
+    private void fetch(StorageReference reference) {
+        final String path = reference.getPath();
+        synchronized (mRequests) {
+            if (!mRequests.add(path)) return;
+        }
+
+        reference.getMetadata().addOnCompleteListener(new OnCompleteListener<StorageMetadata>() {
+            @Override
+            public void onComplete(@NonNull Task<StorageMetadata> task) {
+                synchronized (mRequests) {
+                    mRequests.remove(path);
+                }
+
+                if (task.isSuccessful()) {
+                    String version = getVersion(task.getResult());
+                    mFailures.remove(path);
+                    mVersions.put(path, version);
+                    if (mPrefs != null) mPrefs.edit().putString(path, version).apply();
+                } else {
+                    Log.w(TAG, "Could not get metadata of " + path, task.getException());
+                    mFailures.put(path, SystemClock.elapsedRealtime());
+                }
+            }
+        });
+    }
+
+    private static String getVersion(StorageMetadata metadata) {
+        return metadata.getGeneration() + ":" + metadata.getMd5Hash() + ":"
+                + metadata.getUpdatedTimeMillis();
+    }
+}
@@ -0,0 +1,29 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.storage.StorageReference;
+
+/**
+ * Picks the pre-generated size variant of an image in Cloud Storage to download for a target
+ * size, e.g. a thumbnail created by the Resize Images extension, so that small views don't
+ * download the full-resolution original.
+ * <p>
+ * Called by {@link FirebaseImageLoader} on Glide's threads for every load, so implementations
+ * must be thread-safe and must not make network requests.
+ *
+ * @see ThumbnailResolver
+ */
+public interface StorageVariantResolver {
+
+    /**
+     * @param reference the image requested by the app.
+     * @param width     the target width in pixels, or {@code Target.SIZE_ORIGINAL}.
+     * @param height    the target height in pixels, or {@code Target.SIZE_ORIGINAL}.
+     * @return the reference of the variant to download, or {@code reference} itself for the
+     * original. If the variant turns out not to exist, the original is downloaded instead.
+     */
+    @NonNull
+    StorageReference resolve(@NonNull StorageReference reference, int width, int height);
+
+}
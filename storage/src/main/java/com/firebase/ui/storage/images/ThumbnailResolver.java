@@ -0,0 +1,74 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.firebase.storage.StorageReference;
+
+import java.util.Arrays;
+
+/**
+ * A {@link StorageVariantResolver} for thumbnails named after their original and the box they
+ * were resized to fit in, like the ones the Resize Images extension creates: {@code
+ * photos/cat.jpg} resized to fit 200 by 200 pixels is {@code photos/cat_200x200.jpg}, or {@code
+ * photos/thumbnails/cat_200x200.jpg} if thumbnails are kept in a subdirectory.
+ * <p>
+ * The smallest thumbnail whose box covers the target size is picked. Targets larger than every
+ * thumbnail, or of unknown size, get the original. Since thumbnails keep the aspect ratio of the
+ * original, views that crop their image may want larger boxes than their own size.
+ */
+public class ThumbnailResolver implements StorageVariantResolver {
+
+    private final String mDirectory;
+    private final int[] mSizes;
+
+    /**
+     * @param sizes the sides of the square boxes thumbnails were resized to fit in, in pixels.
+     */
+    public ThumbnailResolver(@NonNull int... sizes) {
+        this(null, sizes);
+    }
+
+    /**
+     * @param directory the subdirectory of an image's directory its thumbnails are kept in, or
+     *                  null if they are next to the image.
+     * @param sizes     the sides of the square boxes thumbnails were resized to fit in, in pixels.
+     */
+    public ThumbnailResolver(@Nullable String directory, @NonNull int... sizes) {
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("At least one thumbnail size is required.");
+        }
+        for (int size : sizes) {
+            if (size <= 0) throw new IllegalArgumentException("Invalid thumbnail size: " + size);
+        }
+
+        mDirectory = directory;
+        mSizes = sizes.clone();
+        Arrays.sort(mSizes);
+    }
+
+    @NonNull
+    @Override
+    public StorageReference resolve(@NonNull StorageReference reference, int width, int height) {
+        // Target.SIZE_ORIGINAL is negative
+        if (width <= 0 || height <= 0) return reference;
+
+        int target = Math.max(width, height);
+        for (int size : mSizes) {
+            if (size >= target) return getThumbnail(reference, size);
+        }
+        return reference;
+    }
+
+    private StorageReference getThumbnail(StorageReference reference, int size) {
+        String name = reference.getName();
+        int extension = name.lastIndexOf('.');
+        String base = extension > 0 ? name.substring(0, extension) : name;
+        String suffix = extension > 0 ? name.substring(extension) : "";
+        String thumbnail = base + "_" + size + "x" + size + suffix;
+
+        StorageReference parent = reference.getParent();
+        if (parent == null) parent = reference.getRoot();
+        return parent.child(mDirectory == null ? thumbnail : mDirectory + "/" + thumbnail);
+    }
+}
@@ -0,0 +1,276 @@
+package com.firebase.ui.storage.images;
+
+import com.bumptech.glide.load.data.DataFetcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Shares a source whose reads block until the test feeds them a chunk, so that loads can join or
+ * leave while a read is in progress. Blocking reads run on a background thread.
+ */
+public class DownloadCoalescerTest {
+
+    private static final String KEY = "bucket/photos/cat.jpg";
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final BlockingSource mSource = new BlockingSource();
+    private int mCancelCount;
+
+    private final Runnable mCanceller = new Runnable() {
+        @Override
+        public void run() {
+            mCancelCount++;
+        }
+    };
+
+    private DownloadCoalescer mCoalescer;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mCoalescer = new DownloadCoalescer();
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testJoinMidRead() throws Exception {
+        StreamCollector first = new StreamCollector();
+        DownloadCoalescer.Waiter firstWaiter = mCoalescer.join(KEY, first, mCanceller);
+        assertTrue(firstWaiter.isFirst());
+        firstWaiter.getSourceCallback().onDataReady(mSource);
+        Future<byte[]> firstRead = readInBackground(first.getStream());
+        mSource.awaitRead();
+
+        // Joins while the first load reads straight from the source
+        StreamCollector second = new StreamCollector();
+        assertFalse(mCoalescer.join(KEY, second, mCanceller).isFirst());
+        mSource.feed(1, 2, 3);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, firstRead.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // The bytes were kept for the load that joined
+        assertArrayEquals(new byte[]{1, 2, 3}, read(second.getStream()));
+
+        mSource.end();
+        assertEquals(-1, first.getStream().read());
+        assertEquals(-1, second.getStream().read());
+    }
+
+    @Test
+    public void testCancelMidRead() throws Exception {
+        StreamCollector first = new StreamCollector();
+        DownloadCoalescer.Waiter firstWaiter = mCoalescer.join(KEY, first, mCanceller);
+        StreamCollector second = new StreamCollector();
+        DownloadCoalescer.Waiter secondWaiter = mCoalescer.join(KEY, second, mCanceller);
+        firstWaiter.getSourceCallback().onDataReady(mSource);
+        Future<byte[]> firstRead = readInBackground(first.getStream());
+        mSource.awaitRead();
+
+        // Leaves while the first load reads for both
+        secondWaiter.cancel();
+        mSource.feed(1, 2, 3);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, firstRead.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, mCancelCount);
+        assertFalse(mSource.mClosed);
+        // Nobody needed the bytes, so they are gone and the download can't be joined anymore
+        assertTrue(mCoalescer.join(KEY, new StreamCollector(), mCanceller).isFirst());
+
+        firstWaiter.cancel();
+        assertEquals(1, mCancelCount);
+        assertTrue(mSource.mClosed);
+    }
+
+    @Test
+    public void testSlowReaderBehindFastOne() throws Exception {
+        StreamCollector fast = new StreamCollector();
+        DownloadCoalescer.Waiter fastWaiter = mCoalescer.join(KEY, fast, mCanceller);
+        StreamCollector slow = new StreamCollector();
+        mCoalescer.join(KEY, slow, mCanceller);
+        fastWaiter.getSourceCallback().onDataReady(mSource);
+
+        mSource.feed(1, 2, 3);
+        assertArrayEquals(new byte[]{1, 2, 3}, read(fast.getStream()));
+        mSource.feed(4, 5);
+        assertArrayEquals(new byte[]{4, 5}, read(fast.getStream()));
+
+        // Everything the fast load read is kept for the slow one
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, read(slow.getStream()));
+
+        mSource.end();
+        assertEquals(-1, slow.getStream().read());
+        assertEquals(-1, fast.getStream().read());
+        assertEquals(0, mCancelCount);
+    }
+
+    @Test
+    public void testSourceFailureReachesAllLoads() {
+        StreamCollector first = new StreamCollector();
+        DownloadCoalescer.Waiter firstWaiter = mCoalescer.join(KEY, first, mCanceller);
+        StreamCollector second = new StreamCollector();
+        mCoalescer.join(KEY, second, mCanceller);
+
+        Exception error = new IOException("Not found");
+        firstWaiter.getSourceCallback().onLoadFailed(error);
+
+        assertSame(error, first.mError);
+        assertSame(error, second.mError);
+        // The failed download isn't joined
+        assertTrue(mCoalescer.join(KEY, new StreamCollector(), mCanceller).isFirst());
+    }
+
+    @Test
+    public void testReadFailureReachesAllLoads() throws Exception {
+        StreamCollector first = new StreamCollector();
+        DownloadCoalescer.Waiter firstWaiter = mCoalescer.join(KEY, first, mCanceller);
+        StreamCollector second = new StreamCollector();
+        mCoalescer.join(KEY, second, mCanceller);
+        firstWaiter.getSourceCallback().onDataReady(mSource);
+
+        IOException error = new IOException("Connection reset");
+        mSource.fail(error);
+
+        assertReadFails(first.getStream(), error);
+        assertReadFails(second.getStream(), error);
+    }
+
+    private Future<byte[]> readInBackground(final InputStream stream) {
+        return mExecutor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return read(stream);
+            }
+        });
+    }
+
+    /**
+     * @return the bytes returned by a single read of the stream.
+     */
+    private static byte[] read(InputStream stream) throws IOException {
+        byte[] buffer = new byte[16];
+        int count = stream.read(buffer);
+        assertTrue(count > 0);
+        return Arrays.copyOf(buffer, count);
+    }
+
+    private static void assertReadFails(InputStream stream, IOException error) {
+        try {
+            stream.read(new byte[16]);
+            fail("Read should fail");
+        } catch (IOException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    private static final class StreamCollector implements DataFetcher.DataCallback<InputStream> {
+        private final List<InputStream> mStreams = new ArrayList<>();
+        private Exception mError;
+
+        @Override
+        public void onDataReady(InputStream data) {
+            mStreams.add(data);
+        }
+
+        @Override
+        public void onLoadFailed(Exception e) {
+            mError = e;
+        }
+
+        InputStream getStream() {
+            assertEquals(1, mStreams.size());
+            return mStreams.get(0);
+        }
+    }
+
+    /**
+     * A source whose reads block until a chunk, the end or an error is fed to them.
+     */
+    private static final class BlockingSource extends InputStream {
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<Object> mChunks = new LinkedBlockingQueue<>();
+        private final Semaphore mReads = new Semaphore(0);
+        private volatile boolean mClosed;
+
+        void feed(int... bytes) {
+            byte[] chunk = new byte[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                chunk[i] = (byte) bytes[i];
+            }
+            mChunks.add(chunk);
+        }
+
+        void end() {
+            mChunks.add(END);
+        }
+
+        void fail(IOException e) {
+            mChunks.add(e);
+        }
+
+        /**
+         * Wait until a read of the source started.
+         */
+        void awaitRead() throws InterruptedException {
+            assertTrue(mReads.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read(buffer, 0, 1);
+            return count == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            mReads.release();
+            Object chunk;
+            try {
+                chunk = mChunks.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (chunk == null) throw new IOException("Nothing fed to the source");
+            if (chunk instanceof IOException) throw (IOException) chunk;
+
+            byte[] bytes = (byte[]) chunk;
+            if (bytes == END) return -1;
+            assertTrue(bytes.length <= length);
+            System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+            return bytes.length;
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+}
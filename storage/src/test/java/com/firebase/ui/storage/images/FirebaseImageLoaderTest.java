@@ -0,0 +1,156 @@
+package com.firebase.ui.storage.images;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader.LoadData;
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks which key and reference a load of an image with a size variant uses. References are
+ * mocks, so nothing is downloaded from Cloud Storage.
+ */
+public class FirebaseImageLoaderTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final StorageReference mOriginal = ref("photos/cat.jpg");
+    private final StorageReference mVariant = ref("photos/cat_200x200.jpg");
+    private final List<int[]> mSizes = new ArrayList<>();
+
+    private final StorageVariantResolver mResolver = new StorageVariantResolver() {
+        @Override
+        public StorageReference resolve(StorageReference reference, int width, int height) {
+            mSizes.add(new int[]{width, height});
+            return mVariant;
+        }
+    };
+
+    private MissingVariants mMissingVariants;
+    private DownloadCoalescer mCoalescer;
+    private FirebaseImageLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mMissingVariants = new MissingVariants();
+        mCoalescer = new DownloadCoalescer();
+        mLoader = new FirebaseImageLoader(mResolver, null, null, mCoalescer, mMissingVariants);
+    }
+
+    @Test
+    public void testResolverGetsWidthThenHeight() {
+        mLoader.buildLoadData(mOriginal, 100, 200, new Options());
+
+        assertEquals(1, mSizes.size());
+        assertArrayEquals(new int[]{100, 200}, mSizes.get(0));
+    }
+
+    @Test
+    public void testVariantIsCachedUnderItsPath() {
+        LoadData<InputStream> loadData = mLoader.buildLoadData(mOriginal, 100, 200, new Options());
+
+        assertEquals(key(mVariant), loadData.sourceKey);
+        assertNotEquals(key(mOriginal), loadData.sourceKey);
+    }
+
+    @Test
+    public void testMissingVariantLoadsOriginal() {
+        mMissingVariants.add(mVariant);
+
+        LoadData<InputStream> loadData = mLoader.buildLoadData(mOriginal, 100, 200, new Options());
+
+        assertEquals(key(mOriginal), loadData.sourceKey);
+        assertArrayEquals(diskKey(key(mOriginal)), diskKey(loadData.sourceKey));
+    }
+
+    @Test
+    public void testFallBackTakesOriginalKey() {
+        FirebaseImageLoader.FirebaseStorageKey key =
+                new FirebaseImageLoader.FirebaseStorageKey(mVariant, null);
+
+        key.fallBack(mOriginal, null);
+
+        assertEquals(key(mOriginal), key);
+        assertEquals(key(mOriginal).hashCode(), key.hashCode());
+        assertArrayEquals(diskKey(key(mOriginal)), diskKey(key));
+    }
+
+    @Test
+    public void testJoinedLoadFallsBackWithDownload() {
+        // Another load started downloading the variant
+        DownloadCoalescer.Waiter first = mCoalescer.join(
+                BUCKET + mVariant.getPath(), new StreamCollector(), NO_OP);
+        LoadData<InputStream> loadData = mLoader.buildLoadData(mOriginal, 100, 200, new Options());
+        StreamCollector collector = new StreamCollector();
+        loadData.fetcher.loadData(Priority.NORMAL, collector);
+        assertEquals(key(mVariant), loadData.sourceKey);
+
+        // The variant was missing, so the other load downloads the original
+        mMissingVariants.add(mVariant);
+        first.getSourceCallback().onDataReady(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertEquals(1, collector.mStreams.size());
+        assertEquals(key(mOriginal), loadData.sourceKey);
+
+        loadData.fetcher.cleanup();
+        first.release();
+    }
+
+    private static StorageReference ref(String path) {
+        StorageReference ref = mock(StorageReference.class);
+        when(ref.getBucket()).thenReturn(BUCKET);
+        when(ref.getPath()).thenReturn(path);
+        return ref;
+    }
+
+    private static Key key(StorageReference ref) {
+        return new FirebaseImageLoader.FirebaseStorageKey(ref, null);
+    }
+
+    private static byte[] diskKey(Key key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            key.updateDiskCacheKey(digest);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class StreamCollector implements DataFetcher.DataCallback<InputStream> {
+        private final List<InputStream> mStreams = new ArrayList<>();
+
+        @Override
+        public void onDataReady(InputStream data) {
+            mStreams.add(data);
+        }
+
+        @Override
+        public void onLoadFailed(Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.firebase.ui.storage.images;
+
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The clock doesn't move in unit tests, so expiry is checked with retry delays of zero.
+ */
+public class MissingVariantsTest {
+
+    private final StorageReference mVariant = mock(StorageReference.class);
+
+    @Test
+    public void testUnknownVariantIsNotMissing() {
+        assertFalse(new MissingVariants().contains(mVariant));
+    }
+
+    @Test
+    public void testAddedVariantIsMissing() {
+        MissingVariants missing = new MissingVariants();
+        missing.add(mVariant);
+
+        assertTrue(missing.contains(mVariant));
+        assertFalse(missing.contains(mock(StorageReference.class)));
+    }
+
+    @Test
+    public void testVariantIsRetriedOnceExpired() {
+        MissingVariants missing = new MissingVariants(0);
+        missing.add(mVariant);
+
+        assertFalse(missing.contains(mVariant));
+    }
+}
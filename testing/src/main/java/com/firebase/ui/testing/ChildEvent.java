@@ -0,0 +1,31 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * A child event as delivered to a {@link com.google.firebase.database.ChildEventListener}.
+ */
+public final class ChildEvent {
+    private final ChangeEventType mType;
+    private final DataSnapshot mSnapshot;
+    private final String mPreviousChildKey;
+
+    public ChildEvent(ChangeEventType type, DataSnapshot snapshot, String previousChildKey) {
+        mType = type;
+        mSnapshot = snapshot;
+        mPreviousChildKey = previousChildKey;
+    }
+
+    public ChangeEventType getType() {
+        return mType;
+    }
+
+    public DataSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    public String getPreviousChildKey() {
+        return mPreviousChildKey;
+    }
+}
@@ -0,0 +1,95 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.TreeList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates streams of child events for an ordered query, keeping track of the order of the
+ * children so that every event's previous child key is consistent with the events before it.
+ */
+public final class ChildEventGenerator {
+
+    private final Random mRandom;
+    private final TreeList<String> mKeys = new TreeList<>();
+    private int mNextKey;
+
+    public ChildEventGenerator(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * @return the keys of the children in their current order.
+     */
+    public List<String> getKeys() {
+        return mKeys.snapshot();
+    }
+
+    /**
+     * @return events adding {@code count} children after the existing ones, as in the initial
+     * load of a query.
+     */
+    public List<ChildEvent> load(int count) {
+        List<ChildEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(add(mKeys.size()));
+        }
+        return events;
+    }
+
+    /**
+     * @return {@code count} events cycling through additions, changes, removals and moves at
+     * random positions, as in a busy leaderboard.
+     */
+    public List<ChildEvent> churn(int count) {
+        List<ChildEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (mKeys.isEmpty()) {
+                events.add(add(0));
+                continue;
+            }
+
+            switch (i % 4) {
+                case 0:
+                    events.add(add(mRandom.nextInt(mKeys.size() + 1)));
+                    break;
+                case 1:
+                    String key = mKeys.get(mRandom.nextInt(mKeys.size()));
+                    events.add(new ChildEvent(ChangeEventType.CHANGED,
+                            DatabaseSnapshots.snapshot(key),
+                            null));
+                    break;
+                case 2:
+                    key = mKeys.remove(mRandom.nextInt(mKeys.size()));
+                    events.add(new ChildEvent(ChangeEventType.REMOVED,
+                            DatabaseSnapshots.snapshot(key),
+                            null));
+                    break;
+                default:
+                    key = mKeys.remove(mRandom.nextInt(mKeys.size()));
+                    int index = mRandom.nextInt(mKeys.size() + 1);
+                    mKeys.add(index, key);
+                    events.add(new ChildEvent(ChangeEventType.MOVED,
+                            DatabaseSnapshots.snapshot(key),
+                            getPreviousKey(index)));
+                    break;
+            }
+        }
+        return events;
+    }
+
+    private ChildEvent add(int index) {
+        String key = DatabaseSnapshots.key(mNextKey++);
+        mKeys.add(index, key);
+        return new ChildEvent(ChangeEventType.ADDED,
+                DatabaseSnapshots.snapshot(key),
+                getPreviousKey(index));
+    }
+
+    private String getPreviousKey(int index) {
+        return index == 0 ? null : mKeys.get(index - 1);
+    }
+}
@@ -0,0 +1,67 @@
+package com.firebase.ui.testing;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the child events of a real query, with their timing, so that they can be replayed
+ * offline through a {@link FakeDatabaseQuery}. Attach it to the query like any other listener.
+ */
+public class DatabaseEventRecorder implements ChildEventListener {
+
+    private final List<ChildEvent> mEvents = new ArrayList<>();
+    private final List<Long> mTimes = new ArrayList<>();
+    private long mStartTime = -1;
+
+    @Override
+    public void onChildAdded(DataSnapshot snapshot, String previousChildKey) {
+        record(new ChildEvent(ChangeEventType.ADDED, snapshot, previousChildKey));
+    }
+
+    @Override
+    public void onChildChanged(DataSnapshot snapshot, String previousChildKey) {
+        record(new ChildEvent(ChangeEventType.CHANGED, snapshot, previousChildKey));
+    }
+
+    @Override
+    public void onChildRemoved(DataSnapshot snapshot) {
+        record(new ChildEvent(ChangeEventType.REMOVED, snapshot, null));
+    }
+
+    @Override
+    public void onChildMoved(DataSnapshot snapshot, String previousChildKey) {
+        record(new ChildEvent(ChangeEventType.MOVED, snapshot, previousChildKey));
+    }
+
+    @Override
+    public void onCancelled(DatabaseError error) {
+        // Nothing more will be recorded
+    }
+
+    /**
+     * @return the events recorded so far, timed from the first one.
+     */
+    @NonNull
+    public EventStream<ChildEvent> getStream() {
+        long[] times = new long[mTimes.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = mTimes.get(i);
+        }
+        return new EventStream<>(mEvents, times);
+    }
+
+    private void record(ChildEvent event) {
+        long now = SystemClock.uptimeMillis();
+        if (mStartTime == -1) mStartTime = now;
+        mEvents.add(event);
+        mTimes.add(now - mStartTime);
+    }
+}
@@ -0,0 +1,120 @@
+package com.firebase.ui.testing;
+
+import android.support.annotation.Nullable;
+
+import com.firebase.ui.database.SnapshotParser;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Synthetic Realtime Database snapshots, backed by Mockito mocks that answer without recording
+ * their invocations.
+ * <p>
+ * Snapshots returned by {@link #snapshot(String)} and {@link #data(String)} are cached by key, so
+ * that generating a long stream of events, or the same stream repeatedly, does not create new
+ * mocks for them.
+ */
+public final class DatabaseSnapshots {
+
+    private static final Map<String, DataSnapshot> SNAPSHOTS = new HashMap<>();
+    private static final Map<String, DataSnapshot> DATA_SNAPSHOTS = new HashMap<>();
+
+    /**
+     * Parses a snapshot into an {@link Item}.
+     */
+    public static final SnapshotParser<Item> PARSER = new SnapshotParser<Item>() {
+        @Override
+        public Item parseSnapshot(DataSnapshot snapshot) {
+            return new Item(snapshot.getKey(), (Long) snapshot.getValue());
+        }
+    };
+
+    private DatabaseSnapshots() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * @return the key of the n-th generated child, keys sort in the order they were generated.
+     */
+    public static String key(int n) {
+        return String.format(Locale.US, "child%08d", n);
+    }
+
+    /**
+     * @return a snapshot of the child with the given key, whose value is a score derived from the
+     * key.
+     */
+    public static DataSnapshot snapshot(String key) {
+        return getOrCreate(SNAPSHOTS, key);
+    }
+
+    /**
+     * @return a snapshot of the data joined to the given key, distinct from {@link
+     * #snapshot(String)}.
+     */
+    public static DataSnapshot data(String key) {
+        return getOrCreate(DATA_SNAPSHOTS, key);
+    }
+
+    /**
+     * @return a new snapshot of the child with the given key and value, or of a missing child if
+     * the value is null.
+     */
+    public static DataSnapshot create(final String key, @Nullable final Object value) {
+        return mock(DataSnapshot.class,
+                withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        String method = invocation.getMethod().getName();
+                        if (method.equals("getKey")) {
+                            return key;
+                        } else if (method.equals("getValue")) {
+                            return value;
+                        } else if (method.equals("exists")) {
+                            return value != null;
+                        }
+                        return RETURNS_DEFAULTS.answer(invocation);
+                    }
+                }));
+    }
+
+    /**
+     * Deliver a child event to a listener, as the database would.
+     */
+    public static void deliver(ChildEventListener listener, ChildEvent event) {
+        switch (event.getType()) {
+            case ADDED:
+                listener.onChildAdded(event.getSnapshot(), event.getPreviousChildKey());
+                break;
+            case CHANGED:
+                listener.onChildChanged(event.getSnapshot(), event.getPreviousChildKey());
+                break;
+            case REMOVED:
+                listener.onChildRemoved(event.getSnapshot());
+                break;
+            case MOVED:
+                listener.onChildMoved(event.getSnapshot(), event.getPreviousChildKey());
+                break;
+        }
+    }
+
+    private static DataSnapshot getOrCreate(Map<String, DataSnapshot> snapshots, String key) {
+        DataSnapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            snapshot = create(key, (long) key.hashCode());
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,94 @@
+package com.firebase.ui.testing;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+/**
+ * Delivers the events of an {@link EventStream} to an {@link EventSink} at the times of the
+ * stream, on the thread of a {@link Handler}.
+ * <p>
+ * If the thread falls behind, every event that is due is delivered at once, as the SDKs do after a
+ * stall, so the stream always ends on time.
+ *
+ * @param <E> the event class.
+ */
+public final class EventReplayer<E> {
+
+    private final EventStream<E> mStream;
+    private final EventSink<E> mSink;
+
+    private final Runnable mDeliverDueEvents = new Runnable() {
+        @Override
+        public void run() {
+            deliverDueEvents();
+        }
+    };
+
+    private Handler mHandler;
+    private long mStartTime;
+    private int mNextEvent;
+    private boolean mStopped;
+
+    public EventReplayer(@NonNull EventStream<E> stream, @NonNull EventSink<E> sink) {
+        mStream = stream;
+        mSink = sink;
+    }
+
+    /**
+     * Start delivering events on the handler's thread, the first one as soon as possible.
+     *
+     * @throws IllegalStateException if the replay already started.
+     */
+    public void start(@NonNull Handler handler) {
+        if (mHandler != null) throw new IllegalStateException("Already started.");
+        mHandler = handler;
+        mStartTime = SystemClock.uptimeMillis();
+        scheduleNext();
+    }
+
+    /**
+     * Stop delivering events. Events already delivered stay delivered.
+     */
+    public void stop() {
+        if (mHandler != null) mHandler.removeCallbacks(mDeliverDueEvents);
+        mStopped = true;
+    }
+
+    /**
+     * Deliver every remaining event right away on the calling thread, ignoring their times.
+     */
+    public void replayAll() {
+        if (mHandler != null) mHandler.removeCallbacks(mDeliverDueEvents);
+        while (mNextEvent < mStream.size()) {
+            mSink.emit(mStream.getEvent(mNextEvent++));
+        }
+    }
+
+    /**
+     * @return true if every event has been delivered, or the replay was stopped.
+     */
+    public boolean isDone() {
+        return mStopped || mNextEvent >= mStream.size();
+    }
+
+    /**
+     * @return the number of events delivered so far.
+     */
+    public int getDeliveredCount() {
+        return mNextEvent;
+    }
+
+    private void deliverDueEvents() {
+        long elapsed = SystemClock.uptimeMillis() - mStartTime;
+        while (!isDone() && mStream.getTimeMillis(mNextEvent) <= elapsed) {
+            mSink.emit(mStream.getEvent(mNextEvent++));
+        }
+        scheduleNext();
+    }
+
+    private void scheduleNext() {
+        if (isDone()) return;
+        mHandler.postAtTime(mDeliverDueEvents, mStartTime + mStream.getTimeMillis(mNextEvent));
+    }
+}
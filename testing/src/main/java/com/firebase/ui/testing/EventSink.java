@@ -0,0 +1,11 @@
+package com.firebase.ui.testing;
+
+/**
+ * Receives the events of an {@link EventStream}, e.g. a fake query that delivers them to its
+ * listeners.
+ *
+ * @param <E> the event class.
+ */
+public interface EventSink<E> {
+    void emit(E event);
+}
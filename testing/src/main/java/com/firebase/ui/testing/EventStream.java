@@ -0,0 +1,116 @@
+package com.firebase.ui.testing;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A timed sequence of events, either recorded from a real query or generated, that an {@link
+ * EventReplayer} delivers to an {@link EventSink}.
+ * <p>
+ * Each event has a time in milliseconds relative to the start of the stream. Times never
+ * decrease.
+ *
+ * @param <E> the event class.
+ */
+public final class EventStream<E> {
+
+    private final List<E> mEvents;
+    private final long[] mTimes;
+
+    /**
+     * @param events the events, in order.
+     * @param times  the time of each event in milliseconds from the start of the stream.
+     */
+    public EventStream(@NonNull List<E> events, @NonNull long[] times) {
+        if (events.size() != times.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + events.size() + " times, got " + times.length);
+        }
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] < 0 || i > 0 && times[i] < times[i - 1]) {
+                throw new IllegalArgumentException("Times must be positive and nondecreasing.");
+            }
+        }
+        mEvents = Collections.unmodifiableList(new ArrayList<>(events));
+        mTimes = times.clone();
+    }
+
+    /**
+     * @return a stream delivering the events at a steady rate, starting immediately.
+     */
+    @NonNull
+    public static <E> EventStream<E> atRate(@NonNull List<E> events, double eventsPerSecond) {
+        if (eventsPerSecond <= 0) {
+            throw new IllegalArgumentException("The rate must be positive.");
+        }
+        long[] times = new long[events.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = (long) (i * 1000 / eventsPerSecond);
+        }
+        return new EventStream<>(events, times);
+    }
+
+    /**
+     * @return a stream delivering the events {@code burstSize} at a time, one burst every {@code
+     * intervalMillis}, starting immediately. Bursty streams are typical of a client coming back
+     * online or of a server-side batch write.
+     */
+    @NonNull
+    public static <E> EventStream<E> inBursts(@NonNull List<E> events,
+                                              int burstSize,
+                                              long intervalMillis) {
+        if (burstSize <= 0 || intervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid burst size or interval.");
+        }
+        long[] times = new long[events.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i / burstSize * intervalMillis;
+        }
+        return new EventStream<>(events, times);
+    }
+
+    /**
+     * @return the same events, played {@code factor} times faster.
+     */
+    @NonNull
+    public EventStream<E> speedUp(double factor) {
+        if (factor <= 0) throw new IllegalArgumentException("The factor must be positive.");
+        long[] times = new long[mTimes.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = (long) (mTimes[i] / factor);
+        }
+        return new EventStream<>(mEvents, times);
+    }
+
+    public int size() {
+        return mEvents.size();
+    }
+
+    @NonNull
+    public E getEvent(int index) {
+        return mEvents.get(index);
+    }
+
+    /**
+     * @return the time of the event at the given index, in milliseconds from the start of the
+     * stream.
+     */
+    public long getTimeMillis(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * @return the duration of the stream, that is the time of its last event.
+     */
+    public long getDurationMillis() {
+        return mTimes.length == 0 ? 0 : mTimes[mTimes.length - 1];
+    }
+
+    @NonNull
+    public List<E> getEvents() {
+        return mEvents;
+    }
+}
@@ -0,0 +1,220 @@
+package com.firebase.ui.testing;
+
+import android.support.annotation.NonNull;
+
+import com.firebase.ui.common.KeyIndexedList;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * An in-memory stand-in for an ordered Realtime Database query. It keeps the query's children and
+ * delivers the events emitted to it to the listeners attached to {@link #getQuery()}, as the
+ * database would:
+ * <ul>
+ * <li>A {@link ChildEventListener} first receives an added event for each existing child, then
+ * every emitted child event.</li>
+ * <li>A {@link ValueEventListener} first receives a value event, then one after every emitted
+ * event or list of events.</li>
+ * </ul>
+ * Events are delivered synchronously on the calling thread, which should be the main thread.
+ * Methods of the query that return a narrower query, such as {@code orderByChild} or {@code
+ * limitToFirst}, return the same query.
+ */
+public class FakeDatabaseQuery implements EventSink<ChildEvent> {
+
+    private final List<ChildEventListener> mChildListeners = new CopyOnWriteArrayList<>();
+    private final List<ValueEventListener> mValueListeners = new CopyOnWriteArrayList<>();
+
+    private final KeyIndexedList<DataSnapshot> mChildren = new KeyIndexedList<DataSnapshot>() {
+        @NonNull
+        @Override
+        public String getKey(DataSnapshot snapshot) {
+            return snapshot.getKey();
+        }
+    };
+
+    private final Query mQuery;
+    private final DataSnapshot mValue;
+
+    public FakeDatabaseQuery() {
+        mQuery = mock(Query.class, withSettings().stubOnly().defaultAnswer(new QueryAnswer()));
+        mValue = mock(DataSnapshot.class,
+                withSettings().stubOnly().defaultAnswer(new ValueAnswer()));
+    }
+
+    /**
+     * @return the query to hand to the code under test.
+     */
+    @NonNull
+    public Query getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * @return the children of the query, in order.
+     */
+    @NonNull
+    public List<DataSnapshot> getChildren() {
+        return new ArrayList<>(mChildren);
+    }
+
+    /**
+     * @return the number of listeners attached to the query.
+     */
+    public int getListenerCount() {
+        return mChildListeners.size() + mValueListeners.size();
+    }
+
+    /**
+     * Apply a child event to the query and deliver it, followed by a value event.
+     *
+     * @throws IllegalArgumentException if the event does not apply to the current children, e.g.
+     *                                  it adds an existing child or removes a missing one.
+     */
+    @Override
+    public void emit(@NonNull ChildEvent event) {
+        emitChildEvent(event);
+        emitValue();
+    }
+
+    /**
+     * Apply a list of child events to the query and deliver them, followed by a single value
+     * event, as for a server update touching several children.
+     */
+    public void emitAll(@NonNull List<ChildEvent> events) {
+        for (ChildEvent event : events) {
+            emitChildEvent(event);
+        }
+        emitValue();
+    }
+
+    /**
+     * Cancel the query: deliver the error to every listener and detach them all.
+     */
+    public void fail(@NonNull DatabaseError error) {
+        for (ChildEventListener listener : mChildListeners) {
+            listener.onCancelled(error);
+        }
+        for (ValueEventListener listener : mValueListeners) {
+            listener.onCancelled(error);
+        }
+        mChildListeners.clear();
+        mValueListeners.clear();
+    }
+
+    private void emitChildEvent(ChildEvent event) {
+        DataSnapshot snapshot = event.getSnapshot();
+        String key = snapshot.getKey();
+        switch (event.getType()) {
+            case ADDED:
+                mChildren.add(getIndexAfter(event.getPreviousChildKey()), snapshot);
+                break;
+            case CHANGED:
+                mChildren.set(getIndex(key), snapshot);
+                break;
+            case REMOVED:
+                mChildren.remove(getIndex(key));
+                break;
+            case MOVED:
+                mChildren.remove(getIndex(key));
+                mChildren.add(getIndexAfter(event.getPreviousChildKey()), snapshot);
+                break;
+        }
+
+        for (ChildEventListener listener : mChildListeners) {
+            DatabaseSnapshots.deliver(listener, event);
+        }
+    }
+
+    private void emitValue() {
+        for (ValueEventListener listener : mValueListeners) {
+            listener.onDataChange(mValue);
+        }
+    }
+
+    private int getIndex(String key) {
+        int index = mChildren.indexOfKey(key);
+        if (index == -1) throw new IllegalArgumentException("Child not found: " + key);
+        return index;
+    }
+
+    private int getIndexAfter(String previousChildKey) {
+        return previousChildKey == null ? 0 : getIndex(previousChildKey) + 1;
+    }
+
+    private void addChildListener(ChildEventListener listener) {
+        mChildListeners.add(listener);
+        String previousChildKey = null;
+        for (DataSnapshot child : getChildren()) {
+            listener.onChildAdded(child, previousChildKey);
+            previousChildKey = child.getKey();
+        }
+    }
+
+    private void addValueListener(ValueEventListener listener) {
+        mValueListeners.add(listener);
+        listener.onDataChange(mValue);
+    }
+
+    /**
+     * Registers the listeners attached to the query.
+     */
+    private final class QueryAnswer implements Answer<Object> {
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            Object argument = invocation.getArguments().length == 0
+                    ? null : invocation.getArguments()[0];
+
+            if (method.equals("addChildEventListener")) {
+                addChildListener((ChildEventListener) argument);
+                return argument;
+            } else if (method.equals("addValueEventListener")) {
+                addValueListener((ValueEventListener) argument);
+                return argument;
+            } else if (method.equals("addListenerForSingleValueEvent")) {
+                ((ValueEventListener) argument).onDataChange(mValue);
+                return null;
+            } else if (method.equals("removeEventListener")) {
+                mChildListeners.remove(argument);
+                mValueListeners.remove(argument);
+                return null;
+            } else if (invocation.getMethod().getReturnType() == Query.class) {
+                return mQuery;
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+
+    /**
+     * Answers for the value of the whole query, which reflects its current children.
+     */
+    private final class ValueAnswer implements Answer<Object> {
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            if (method.equals("exists") || method.equals("hasChildren")) {
+                return !mChildren.isEmpty();
+            } else if (method.equals("getChildrenCount")) {
+                return (long) mChildren.size();
+            } else if (method.equals("getChildren")) {
+                return getChildren();
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.firebase.ui.testing;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * An in-memory stand-in for a Realtime Database location whose children are listened to one by
+ * one, such as the data location of a {@code FirebaseIndexArray}. It keeps the value of each child
+ * and delivers the snapshots emitted to it to the {@link ValueEventListener}s attached to the
+ * matching child of {@link #getReference()}.
+ * <p>
+ * A listener first receives the child's current value, a snapshot without value if the child is
+ * missing, unless the reference is {@linkplain #setDeferred(boolean) deferred}. Events are
+ * delivered synchronously on the calling thread, which should be the main thread.
+ */
+public class FakeDatabaseReference implements EventSink<DataSnapshot> {
+
+    private final DatabaseReference mReference;
+    private final Map<String, DatabaseReference> mChildReferences = new HashMap<>();
+    private final Map<String, List<ValueEventListener>> mListeners = new HashMap<>();
+    private final Map<String, DataSnapshot> mValues = new HashMap<>();
+
+    private boolean mDeferred;
+
+    public FakeDatabaseReference() {
+        mReference = mock(DatabaseReference.class,
+                withSettings().stubOnly().defaultAnswer(new ReferenceAnswer()));
+    }
+
+    /**
+     * @return the reference to hand to the code under test.
+     */
+    @NonNull
+    public DatabaseReference getReference() {
+        return mReference;
+    }
+
+    /**
+     * While deferred, listeners attached to a child receive nothing until a snapshot of the child
+     * is emitted, as if its data was still loading.
+     */
+    public void setDeferred(boolean deferred) {
+        mDeferred = deferred;
+    }
+
+    /**
+     * @return the number of listeners attached to the children of the reference.
+     */
+    public int getListenerCount() {
+        int count = 0;
+        for (List<ValueEventListener> listeners : mListeners.values()) {
+            count += listeners.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of listeners attached to the child with the given key.
+     */
+    public int getListenerCount(@NonNull String key) {
+        List<ValueEventListener> listeners = mListeners.get(key);
+        return listeners == null ? 0 : listeners.size();
+    }
+
+    /**
+     * Set the value of the child with the snapshot's key, or remove the child if the snapshot has
+     * no value, and deliver the snapshot to the child's listeners.
+     */
+    @Override
+    public void emit(@NonNull DataSnapshot snapshot) {
+        String key = snapshot.getKey();
+        mValues.put(key, snapshot);
+
+        List<ValueEventListener> listeners = mListeners.get(key);
+        if (listeners == null) return;
+        for (ValueEventListener listener : new ArrayList<>(listeners)) {
+            listener.onDataChange(snapshot);
+        }
+    }
+
+    /**
+     * Remove the child with the given key, and notify its listeners.
+     */
+    public void remove(@NonNull String key) {
+        emit(DatabaseSnapshots.create(key, null));
+    }
+
+    private DataSnapshot getValue(String key) {
+        DataSnapshot value = mValues.get(key);
+        if (value == null) {
+            value = DatabaseSnapshots.create(key, null);
+            mValues.put(key, value);
+        }
+        return value;
+    }
+
+    private DatabaseReference getChildReference(final String key) {
+        DatabaseReference child = mChildReferences.get(key);
+        if (child == null) {
+            child = mock(DatabaseReference.class,
+                    withSettings().stubOnly().defaultAnswer(new ChildAnswer(key)));
+            mChildReferences.put(key, child);
+        }
+        return child;
+    }
+
+    /**
+     * Answers for the parent reference, whose children are cached so that they can be used as
+     * keys like real references.
+     */
+    private final class ReferenceAnswer implements Answer<Object> {
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            if (method.equals("child")) {
+                return getChildReference((String) invocation.getArguments()[0]);
+            } else if (method.equals("getRef")) {
+                return mReference;
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+
+    /**
+     * Registers the listeners attached to a child.
+     */
+    private final class ChildAnswer implements Answer<Object> {
+        private final String mKey;
+
+        public ChildAnswer(String key) {
+            mKey = key;
+        }
+
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            if (method.equals("getKey")) {
+                return mKey;
+            } else if (method.equals("getRef")) {
+                return invocation.getMock();
+            } else if (method.equals("getParent")) {
+                return mReference;
+            } else if (method.equals("addValueEventListener")) {
+                ValueEventListener listener = (ValueEventListener) invocation.getArguments()[0];
+                List<ValueEventListener> listeners = mListeners.get(mKey);
+                if (listeners == null) {
+                    listeners = new ArrayList<>();
+                    mListeners.put(mKey, listeners);
+                }
+                listeners.add(listener);
+                if (!mDeferred) listener.onDataChange(getValue(mKey));
+                return listener;
+            } else if (method.equals("addListenerForSingleValueEvent")) {
+                ((ValueEventListener) invocation.getArguments()[0])
+                        .onDataChange(getValue(mKey));
+                return null;
+            } else if (method.equals("removeEventListener")) {
+                List<ValueEventListener> listeners = mListeners.get(mKey);
+                if (listeners != null) {
+                    listeners.remove(invocation.getArguments()[0]);
+                    if (listeners.isEmpty()) mListeners.remove(mKey);
+                }
+                return null;
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+}
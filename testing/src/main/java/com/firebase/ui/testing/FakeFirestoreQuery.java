@@ -0,0 +1,133 @@
+package com.firebase.ui.testing;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * An in-memory stand-in for a Firestore query. It keeps the documents of the last snapshot
+ * emitted to it and delivers every snapshot to the listeners attached to {@link #getQuery()}.
+ * <p>
+ * A listener attached while the query has documents first receives a snapshot adding all of them,
+ * as Firestore does. Events are delivered synchronously on the calling thread, which should be
+ * the main thread. Methods of the query that return a narrower query, such as {@code orderBy} or
+ * {@code limit}, return the same query.
+ */
+public class FakeFirestoreQuery implements EventSink<QuerySnapshot> {
+
+    private final List<EventListener<QuerySnapshot>> mListeners = new CopyOnWriteArrayList<>();
+    private final Query mQuery;
+
+    private List<DocumentSnapshot> mDocuments = Collections.emptyList();
+
+    public FakeFirestoreQuery() {
+        mQuery = mock(Query.class, withSettings().stubOnly().defaultAnswer(new QueryAnswer()));
+    }
+
+    /**
+     * @return the query to hand to the code under test.
+     */
+    @NonNull
+    public Query getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * @return the documents of the query, as of the last emitted snapshot.
+     */
+    @NonNull
+    public List<DocumentSnapshot> getDocuments() {
+        return Collections.unmodifiableList(mDocuments);
+    }
+
+    /**
+     * @return the number of listeners attached to the query.
+     */
+    public int getListenerCount() {
+        return mListeners.size();
+    }
+
+    /**
+     * Deliver a snapshot to every listener. Its changes must lead from the previous snapshot's
+     * documents to its own.
+     */
+    @Override
+    public void emit(@NonNull QuerySnapshot snapshot) {
+        mDocuments = snapshot.getDocuments();
+        for (EventListener<QuerySnapshot> listener : mListeners) {
+            listener.onEvent(snapshot, null);
+        }
+    }
+
+    /**
+     * Cancel the query: deliver the error to every listener and detach them all.
+     */
+    public void fail(@NonNull FirebaseFirestoreException e) {
+        for (EventListener<QuerySnapshot> listener : mListeners) {
+            listener.onEvent(null, e);
+        }
+        mListeners.clear();
+    }
+
+    private ListenerRegistration addListener(final EventListener<QuerySnapshot> listener) {
+        mListeners.add(listener);
+
+        if (!mDocuments.isEmpty()) {
+            List<DocumentChange> changes = new ArrayList<>(mDocuments.size());
+            for (int i = 0; i < mDocuments.size(); i++) {
+                changes.add(FirestoreSnapshots.change(
+                        DocumentChange.Type.ADDED, mDocuments.get(i), -1, i));
+            }
+            listener.onEvent(FirestoreSnapshots.querySnapshot(mDocuments, changes), null);
+        }
+
+        return mock(ListenerRegistration.class,
+                withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        if (invocation.getMethod().getName().equals("remove")) {
+                            mListeners.remove(listener);
+                            return null;
+                        }
+                        return RETURNS_DEFAULTS.answer(invocation);
+                    }
+                }));
+    }
+
+    /**
+     * Registers the listeners attached to the query, whichever {@code addSnapshotListener}
+     * overload is used. The listener is always the last argument.
+     */
+    private final class QueryAnswer implements Answer<Object> {
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            Object[] arguments = invocation.getArguments();
+            if (invocation.getMethod().getName().equals("addSnapshotListener")) {
+                return addListener(
+                        (EventListener<QuerySnapshot>) arguments[arguments.length - 1]);
+            } else if (invocation.getMethod().getReturnType() == Query.class) {
+                return mQuery;
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+}
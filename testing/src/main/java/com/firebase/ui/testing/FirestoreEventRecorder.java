@@ -0,0 +1,44 @@
+package com.firebase.ui.testing;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the snapshots of a real query, with their timing, so that they can be replayed offline
+ * through a {@link FakeFirestoreQuery}. Attach it to the query like any other listener.
+ */
+public class FirestoreEventRecorder implements EventListener<QuerySnapshot> {
+
+    private final List<QuerySnapshot> mSnapshots = new ArrayList<>();
+    private final List<Long> mTimes = new ArrayList<>();
+    private long mStartTime = -1;
+
+    @Override
+    public void onEvent(QuerySnapshot snapshot, FirebaseFirestoreException e) {
+        if (e != null) return; // Nothing more will be recorded
+
+        long now = SystemClock.uptimeMillis();
+        if (mStartTime == -1) mStartTime = now;
+        mSnapshots.add(snapshot);
+        mTimes.add(now - mStartTime);
+    }
+
+    /**
+     * @return the snapshots recorded so far, timed from the first one.
+     */
+    @NonNull
+    public EventStream<QuerySnapshot> getStream() {
+        long[] times = new long[mTimes.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = mTimes.get(i);
+        }
+        return new EventStream<>(mSnapshots, times);
+    }
+}
@@ -0,0 +1,135 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.firestore.SnapshotParser;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Synthetic Firestore documents, document changes and query snapshots, backed by Mockito mocks
+ * that answer without recording their invocations.
+ * <p>
+ * Documents returned by {@link #document(String)} are cached by ID, so that generating a long
+ * stream of snapshots, or the same stream repeatedly, does not create new mocks for them.
+ */
+public final class FirestoreSnapshots {
+
+    private static final Map<String, DocumentSnapshot> DOCUMENTS = new HashMap<>();
+
+    /**
+     * Parses a document into an {@link Item}.
+     */
+    public static final SnapshotParser<Item> PARSER = new SnapshotParser<Item>() {
+        @Override
+        public Item parseSnapshot(DocumentSnapshot snapshot) {
+            return new Item(snapshot.getId(), snapshot.getLong("score"));
+        }
+    };
+
+    private FirestoreSnapshots() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * @return the ID of the n-th generated document, IDs sort in the order they were generated.
+     */
+    public static String id(int n) {
+        return String.format(Locale.US, "doc%08d", n);
+    }
+
+    /**
+     * @return the document with the given ID, whose score is derived from the ID.
+     */
+    public static DocumentSnapshot document(String id) {
+        DocumentSnapshot document = DOCUMENTS.get(id);
+        if (document == null) {
+            document = create(id, (long) id.hashCode());
+            DOCUMENTS.put(id, document);
+        }
+        return document;
+    }
+
+    /**
+     * @return a new document with the given ID and score.
+     */
+    public static DocumentSnapshot create(final String id, final Long score) {
+        return mock(DocumentSnapshot.class,
+                withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        String method = invocation.getMethod().getName();
+                        if (method.equals("getId")) {
+                            return id;
+                        } else if (method.equals("getLong")) {
+                            return score;
+                        } else if (method.equals("exists")) {
+                            return true;
+                        }
+                        return RETURNS_DEFAULTS.answer(invocation);
+                    }
+                }));
+    }
+
+    /**
+     * @return a change of the given document, with the given old and new indices.
+     */
+    public static DocumentChange change(final DocumentChange.Type type,
+                                        final DocumentSnapshot document,
+                                        final int oldIndex,
+                                        final int newIndex) {
+        return mock(DocumentChange.class,
+                withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        String method = invocation.getMethod().getName();
+                        if (method.equals("getType")) {
+                            return type;
+                        } else if (method.equals("getDocument")) {
+                            return document;
+                        } else if (method.equals("getOldIndex")) {
+                            return oldIndex;
+                        } else if (method.equals("getNewIndex")) {
+                            return newIndex;
+                        }
+                        return RETURNS_DEFAULTS.answer(invocation);
+                    }
+                }));
+    }
+
+    /**
+     * @return a query snapshot of the given documents, reached from the previous snapshot through
+     * the given changes. The list of documents must not be modified afterwards.
+     */
+    public static QuerySnapshot querySnapshot(final List<DocumentSnapshot> documents,
+                                              final List<DocumentChange> changes) {
+        return mock(QuerySnapshot.class,
+                withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        String method = invocation.getMethod().getName();
+                        if (method.equals("getDocuments")) {
+                            return documents;
+                        } else if (method.equals("getDocumentChanges")) {
+                            return changes;
+                        } else if (method.equals("size")) {
+                            return documents.size();
+                        } else if (method.equals("isEmpty")) {
+                            return documents.isEmpty();
+                        }
+                        return RETURNS_DEFAULTS.answer(invocation);
+                    }
+                }));
+    }
+}
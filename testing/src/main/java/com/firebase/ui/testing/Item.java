@@ -0,0 +1,22 @@
+package com.firebase.ui.testing;
+
+/**
+ * The model parsed from a synthetic snapshot: a leaderboard entry.
+ */
+public class Item {
+    private final String mKey;
+    private final Long mScore;
+
+    public Item(String key, Long score) {
+        mKey = key;
+        mScore = score;
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+    public Long getScore() {
+        return mScore;
+    }
+}
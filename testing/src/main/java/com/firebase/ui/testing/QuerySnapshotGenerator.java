@@ -0,0 +1,94 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.TreeList;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates streams of query snapshots for a Firestore query, keeping track of the documents in
+ * the query so that every snapshot's changes and documents are consistent with the snapshots
+ * before it.
+ * <p>
+ * The documents of each snapshot are an immutable version of a {@link TreeList}, so generating a
+ * long stream of snapshots of a large query doesn't copy the query for each of them.
+ */
+public final class QuerySnapshotGenerator {
+
+    private final Random mRandom;
+    private final TreeList<DocumentSnapshot> mDocuments = new TreeList<>();
+    private int mNextId;
+
+    public QuerySnapshotGenerator(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * @return snapshots adding {@code count} documents after the existing ones, {@code
+     * pageSize} documents at a time.
+     */
+    public List<QuerySnapshot> load(int count, int pageSize) {
+        List<QuerySnapshot> snapshots = new ArrayList<>(count / pageSize + 1);
+        for (int start = 0; start < count; start += pageSize) {
+            int end = Math.min(count, start + pageSize);
+            List<DocumentChange> changes = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                changes.add(add(mDocuments.size()));
+            }
+            snapshots.add(FirestoreSnapshots.querySnapshot(mDocuments.snapshot(), changes));
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return {@code count} snapshots of one change each, cycling through additions,
+     * modifications in place, removals and moves at random positions, as in a busy leaderboard.
+     */
+    public List<QuerySnapshot> churn(int count) {
+        List<QuerySnapshot> snapshots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DocumentChange change;
+            if (mDocuments.isEmpty()) {
+                change = add(0);
+            } else {
+                switch (i % 4) {
+                    case 0:
+                        change = add(mRandom.nextInt(mDocuments.size() + 1));
+                        break;
+                    case 1:
+                        int index = mRandom.nextInt(mDocuments.size());
+                        change = FirestoreSnapshots.change(DocumentChange.Type.MODIFIED,
+                                mDocuments.get(index), index, index);
+                        break;
+                    case 2:
+                        index = mRandom.nextInt(mDocuments.size());
+                        change = FirestoreSnapshots.change(DocumentChange.Type.REMOVED,
+                                mDocuments.remove(index), index, -1);
+                        break;
+                    default:
+                        int oldIndex = mRandom.nextInt(mDocuments.size());
+                        DocumentSnapshot document = mDocuments.remove(oldIndex);
+                        int newIndex = mRandom.nextInt(mDocuments.size() + 1);
+                        mDocuments.add(newIndex, document);
+                        change = FirestoreSnapshots.change(DocumentChange.Type.MODIFIED,
+                                document, oldIndex, newIndex);
+                        break;
+                }
+            }
+            snapshots.add(FirestoreSnapshots.querySnapshot(
+                    mDocuments.snapshot(), Collections.singletonList(change)));
+        }
+        return snapshots;
+    }
+
+    private DocumentChange add(int index) {
+        DocumentSnapshot document = FirestoreSnapshots.document(FirestoreSnapshots.id(mNextId++));
+        mDocuments.add(index, document);
+        return FirestoreSnapshots.change(DocumentChange.Type.ADDED, document, -1, index);
+    }
+}
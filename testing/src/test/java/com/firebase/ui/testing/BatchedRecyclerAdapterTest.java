@@ -0,0 +1,113 @@
+package com.firebase.ui.testing;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.database.FirebaseArray;
+import com.firebase.ui.database.FirebaseRecyclerAdapter;
+import com.firebase.ui.database.FirebaseRecyclerOptions;
+import com.google.firebase.database.DataSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a recycler adapter in batching mode only reports the rows RecyclerView has been
+ * notified of, while events applied to its array wait for the next data changed event.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BatchedRecyclerAdapterTest {
+
+    private static final int INITIAL_SIZE = 10;
+
+    private FirebaseArray<Item> mArray;
+    private FirebaseRecyclerAdapter<Item, RecyclerView.ViewHolder> mAdapter;
+
+    @Before
+    public void setUp() {
+        mArray = new FirebaseArray<>(new FakeDatabaseQuery().getQuery(), DatabaseSnapshots.PARSER);
+        FirebaseRecyclerOptions<Item> options = new FirebaseRecyclerOptions.Builder<Item>()
+                .setSnapshotArray(mArray)
+                .setBatchingEnabled(true)
+                .build();
+        mAdapter = new FirebaseRecyclerAdapter<Item, RecyclerView.ViewHolder>(options) {
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected void onBindViewHolder(RecyclerView.ViewHolder holder,
+                                            int position,
+                                            Item model) {
+            }
+        };
+        mAdapter.startListening();
+    }
+
+    @After
+    public void tearDown() {
+        mAdapter.stopListening();
+    }
+
+    @Test
+    public void testItemCountWaitsForInitialLoad() {
+        deliverInitialLoad();
+
+        assertEquals(INITIAL_SIZE, mArray.size());
+        assertEquals(0, mAdapter.getItemCount());
+
+        mArray.onDataChange(null);
+        assertEquals(INITIAL_SIZE, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void testItemCountWaitsForBatch() {
+        load();
+
+        DataSnapshot added = DatabaseSnapshots.snapshot(DatabaseSnapshots.key(INITIAL_SIZE));
+        DatabaseSnapshots.deliver(mArray, new ChildEvent(ChangeEventType.ADDED, added, null));
+
+        assertEquals(INITIAL_SIZE + 1, mArray.size());
+        assertEquals(INITIAL_SIZE, mAdapter.getItemCount());
+
+        mArray.onDataChange(null);
+        assertEquals(INITIAL_SIZE + 1, mAdapter.getItemCount());
+        assertEquals(added.getKey(), mAdapter.getItem(0).getKey());
+    }
+
+    @Test
+    public void testRemovedRowIsBoundUntilBatch() {
+        load();
+
+        int last = INITIAL_SIZE - 1;
+        DataSnapshot removed = mArray.getSnapshot(last);
+        DatabaseSnapshots.deliver(mArray, new ChildEvent(ChangeEventType.REMOVED, removed, null));
+
+        assertEquals(INITIAL_SIZE - 1, mArray.size());
+        assertEquals(INITIAL_SIZE, mAdapter.getItemCount());
+        assertEquals(removed.getKey(), mAdapter.getItem(last).getKey());
+
+        mArray.onDataChange(null);
+        assertEquals(INITIAL_SIZE - 1, mAdapter.getItemCount());
+    }
+
+    private void load() {
+        deliverInitialLoad();
+        mArray.onDataChange(null);
+    }
+
+    private void deliverInitialLoad() {
+        for (ChildEvent event : new ChildEventGenerator(42).load(INITIAL_SIZE)) {
+            DatabaseSnapshots.deliver(mArray, event);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.firebase.ui.testing;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class EventReplayerTest {
+
+    private static final List<String> EVENTS = Arrays.asList("a", "b", "c", "d", "e");
+
+    private final List<String> mReceived = new ArrayList<>();
+    private final EventSink<String> mSink = new EventSink<String>() {
+        @Override
+        public void emit(String event) {
+            mReceived.add(event);
+        }
+    };
+
+    private Handler mHandler;
+
+    @Before
+    public void setUp() {
+        Robolectric.getForegroundThreadScheduler().pause();
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    @Test
+    public void testEventsAreDeliveredAtTheirRate() {
+        EventReplayer<String> replayer =
+                new EventReplayer<>(EventStream.atRate(EVENTS, 10), mSink);
+        replayer.start(mHandler);
+
+        advanceBy(0);
+        assertEquals(Arrays.asList("a"), mReceived);
+
+        advanceBy(250);
+        assertEquals(Arrays.asList("a", "b", "c"), mReceived);
+
+        advanceBy(200);
+        assertEquals(EVENTS, mReceived);
+        assertTrue(replayer.isDone());
+    }
+
+    @Test
+    public void testBurstsAreDeliveredTogether() {
+        EventReplayer<String> replayer =
+                new EventReplayer<>(EventStream.inBursts(EVENTS, 2, 1000), mSink);
+        replayer.start(mHandler);
+
+        advanceBy(0);
+        assertEquals(Arrays.asList("a", "b"), mReceived);
+
+        advanceBy(1000);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), mReceived);
+        assertEquals(4, replayer.getDeliveredCount());
+    }
+
+    @Test
+    public void testStopDeliversNothingMore() {
+        EventReplayer<String> replayer =
+                new EventReplayer<>(EventStream.atRate(EVENTS, 10), mSink);
+        replayer.start(mHandler);
+        advanceBy(150);
+
+        replayer.stop();
+        advanceBy(1000);
+
+        assertEquals(Arrays.asList("a", "b"), mReceived);
+        assertTrue(replayer.isDone());
+    }
+
+    @Test
+    public void testReplayAllIgnoresTimes() {
+        EventReplayer<String> replayer = new EventReplayer<>(
+                EventStream.atRate(EVENTS, 1).speedUp(0.5), mSink);
+        assertFalse(replayer.isDone());
+
+        replayer.replayAll();
+
+        assertEquals(EVENTS, mReceived);
+        assertTrue(replayer.isDone());
+    }
+
+    private static void advanceBy(long millis) {
+        Robolectric.getForegroundThreadScheduler().advanceBy(millis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,126 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.database.ChangeEventListener;
+import com.firebase.ui.database.FirebaseArray;
+import com.firebase.ui.database.FirebaseIndexArray;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FakeDatabaseQueryTest {
+
+    private static final ChangeEventListener NOOP_LISTENER = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DataSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+        }
+
+        @Override
+        public void onDataChanged() {
+        }
+
+        @Override
+        public void onError(DatabaseError e) {
+        }
+    };
+
+    private FakeDatabaseQuery mQuery;
+    private ChildEventGenerator mGenerator;
+
+    @Before
+    public void setUp() {
+        mQuery = new FakeDatabaseQuery();
+        mGenerator = new ChildEventGenerator(42);
+    }
+
+    @Test
+    public void testArrayFollowsEmittedEvents() {
+        FirebaseArray<Item> array = newArray();
+        array.addChangeEventListener(NOOP_LISTENER);
+
+        mQuery.emitAll(mGenerator.load(100));
+        for (ChildEvent event : mGenerator.churn(500)) {
+            mQuery.emit(event);
+        }
+
+        assertEquals(mGenerator.getKeys(), getKeys(array));
+        assertEquals(mGenerator.getKeys(), getSnapshotKeys(mQuery.getChildren()));
+    }
+
+    @Test
+    public void testLateListenerReceivesExistingChildren() {
+        mQuery.emitAll(mGenerator.load(50));
+        mQuery.emit(mGenerator.churn(1).get(0));
+
+        FirebaseArray<Item> array = newArray();
+        array.addChangeEventListener(NOOP_LISTENER);
+
+        assertEquals(mGenerator.getKeys(), getKeys(array));
+    }
+
+    @Test
+    public void testListenersAreRemoved() {
+        FirebaseArray<Item> array = newArray();
+        array.addChangeEventListener(NOOP_LISTENER);
+        assertEquals(2, mQuery.getListenerCount());
+
+        array.removeChangeEventListener(NOOP_LISTENER);
+        assertEquals(0, mQuery.getListenerCount());
+    }
+
+    @Test
+    public void testIndexArrayJoinsKeysAndData() {
+        FakeDatabaseReference data = new FakeDatabaseReference();
+        List<ChildEvent> load = mGenerator.load(20);
+        for (ChildEvent event : load) {
+            String key = event.getSnapshot().getKey();
+            data.emit(DatabaseSnapshots.data(key));
+        }
+
+        FirebaseIndexArray<Item> array = new FirebaseIndexArray<>(
+                mQuery.getQuery(), data.getReference(), DatabaseSnapshots.PARSER);
+        array.addChangeEventListener(NOOP_LISTENER);
+        mQuery.emitAll(load);
+
+        assertEquals(mGenerator.getKeys(), getKeys(array));
+        assertEquals(20, data.getListenerCount());
+
+        String removed = load.get(0).getSnapshot().getKey();
+        data.remove(removed);
+        assertEquals(19, array.size());
+
+        array.removeChangeEventListener(NOOP_LISTENER);
+        assertEquals(0, data.getListenerCount());
+        assertEquals(0, mQuery.getListenerCount());
+    }
+
+    private FirebaseArray<Item> newArray() {
+        return new FirebaseArray<>(mQuery.getQuery(), DatabaseSnapshots.PARSER);
+    }
+
+    private static List<String> getKeys(List<Item> items) {
+        List<String> keys = new ArrayList<>(items.size());
+        for (Item item : items) {
+            keys.add(item.getKey());
+        }
+        return keys;
+    }
+
+    private static List<String> getSnapshotKeys(List<DataSnapshot> snapshots) {
+        List<String> keys = new ArrayList<>(snapshots.size());
+        for (DataSnapshot snapshot : snapshots) {
+            keys.add(snapshot.getKey());
+        }
+        return keys;
+    }
+}
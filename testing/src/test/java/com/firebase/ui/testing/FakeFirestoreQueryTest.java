@@ -0,0 +1,104 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.firestore.ChangeEventListener;
+import com.firebase.ui.firestore.FirestoreArray;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FakeFirestoreQueryTest {
+
+    private static final ChangeEventListener NOOP_LISTENER = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+        }
+
+        @Override
+        public void onDataChanged() {
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+        }
+    };
+
+    private FakeFirestoreQuery mQuery;
+    private QuerySnapshotGenerator mGenerator;
+
+    @Before
+    public void setUp() {
+        mQuery = new FakeFirestoreQuery();
+        mGenerator = new QuerySnapshotGenerator(42);
+    }
+
+    @Test
+    public void testArrayFollowsEmittedSnapshots() {
+        FirestoreArray<Item> array = newArray();
+        array.addChangeEventListener(NOOP_LISTENER);
+
+        for (QuerySnapshot snapshot : mGenerator.load(100, 10)) {
+            mQuery.emit(snapshot);
+        }
+        for (QuerySnapshot snapshot : mGenerator.churn(500)) {
+            mQuery.emit(snapshot);
+        }
+
+        assertEquals(getIds(mQuery.getDocuments()), getKeys(array));
+        assertEquals(100, array.size());
+    }
+
+    @Test
+    public void testLateListenerReceivesExistingDocuments() {
+        for (QuerySnapshot snapshot : mGenerator.load(50, 50)) {
+            mQuery.emit(snapshot);
+        }
+        mQuery.emit(mGenerator.churn(1).get(0));
+
+        FirestoreArray<Item> array = newArray();
+        array.addChangeEventListener(NOOP_LISTENER);
+
+        assertEquals(getIds(mQuery.getDocuments()), getKeys(array));
+    }
+
+    @Test
+    public void testListenersAreRemoved() {
+        FirestoreArray<Item> array = newArray();
+        array.addChangeEventListener(NOOP_LISTENER);
+        assertEquals(1, mQuery.getListenerCount());
+
+        array.removeChangeEventListener(NOOP_LISTENER);
+        assertEquals(0, mQuery.getListenerCount());
+    }
+
+    private FirestoreArray<Item> newArray() {
+        return new FirestoreArray<>(mQuery.getQuery(), FirestoreSnapshots.PARSER);
+    }
+
+    private static List<String> getKeys(List<Item> items) {
+        List<String> keys = new ArrayList<>(items.size());
+        for (Item item : items) {
+            keys.add(item.getKey());
+        }
+        return keys;
+    }
+
+    private static List<String> getIds(List<DocumentSnapshot> documents) {
+        List<String> ids = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+}
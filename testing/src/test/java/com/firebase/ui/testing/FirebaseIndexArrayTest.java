@@ -0,0 +1,136 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.database.ChangeEventListener;
+import com.firebase.ui.database.FirebaseIndexArray;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how a {@link FirebaseIndexArray} tracks keys whose data is still loading. The data
+ * reference is deferred, so a key stays pending until its data is emitted.
+ */
+public class FirebaseIndexArrayTest {
+
+    private static final String KEY_A = DatabaseSnapshots.key(0);
+    private static final String KEY_B = DatabaseSnapshots.key(1);
+
+    private final List<ChangeEventType> mEvents = new ArrayList<>();
+    private int mDataChangedCount;
+
+    private final ChangeEventListener mListener = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DataSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mEvents.add(type);
+        }
+
+        @Override
+        public void onDataChanged() {
+            mDataChangedCount++;
+        }
+
+        @Override
+        public void onError(DatabaseError e) {
+        }
+    };
+
+    private FakeDatabaseQuery mKeys;
+    private FakeDatabaseReference mData;
+    private FirebaseIndexArray<Item> mArray;
+
+    @Before
+    public void setUp() {
+        mKeys = new FakeDatabaseQuery();
+        mData = new FakeDatabaseReference();
+        mData.setDeferred(true);
+        mArray = new FirebaseIndexArray<>(
+                mKeys.getQuery(), mData.getReference(), DatabaseSnapshots.PARSER);
+    }
+
+    @After
+    public void tearDown() {
+        mArray.removeChangeEventListener(mListener);
+    }
+
+    @Test
+    public void testMissingDataEmitsNoRow() {
+        mArray.addChangeEventListener(mListener);
+        mKeys.emit(added(KEY_A, null));
+        assertEquals(0, mDataChangedCount);
+
+        mData.remove(KEY_A);
+
+        assertEquals(0, mArray.size());
+        assertTrue(mEvents.isEmpty());
+        // The key is loaded, even without data
+        assertEquals(1, mDataChangedCount);
+    }
+
+    @Test
+    public void testRemovingPendingKeyUnblocksDataChanged() {
+        mArray.addChangeEventListener(mListener);
+        mKeys.emitAll(Arrays.asList(added(KEY_A, null), added(KEY_B, KEY_A)));
+        mData.emit(DatabaseSnapshots.data(KEY_A));
+
+        // Still waiting for the data of B
+        assertEquals(Arrays.asList(ChangeEventType.ADDED), mEvents);
+        assertEquals(0, mDataChangedCount);
+
+        mKeys.emit(new ChildEvent(
+                ChangeEventType.REMOVED, DatabaseSnapshots.snapshot(KEY_B), null));
+
+        assertEquals(1, mDataChangedCount);
+        assertEquals(0, mData.getListenerCount(KEY_B));
+
+        // Late data of the removed key is ignored
+        mData.emit(DatabaseSnapshots.data(KEY_B));
+        assertEquals(1, mArray.size());
+        assertEquals(1, mDataChangedCount);
+    }
+
+    @Test
+    public void testDetachedKeyReattachesInWindow() {
+        mArray.setWindowingEnabled(true);
+        mArray.setWindow(0, 1);
+        mArray.addChangeEventListener(mListener);
+        mKeys.emitAll(Arrays.asList(added(KEY_A, null), added(KEY_B, KEY_A)));
+        mData.emit(DatabaseSnapshots.data(KEY_A));
+        assertEquals(1, mData.getListenerCount(KEY_A));
+        assertEquals(0, mData.getListenerCount(KEY_B));
+        assertTrue(mArray.isLoaded(0));
+
+        // A leaves the window and is detached
+        mArray.setWindow(1, 2);
+        assertEquals(0, mData.getListenerCount(KEY_A));
+        assertEquals(1, mData.getListenerCount(KEY_B));
+        assertFalse(mArray.isLoaded(0));
+
+        // A comes back and waits for its data again
+        mArray.setWindow(0, 1);
+        assertEquals(1, mData.getListenerCount(KEY_A));
+        assertFalse(mArray.isLoaded(0));
+
+        mData.emit(DatabaseSnapshots.data(KEY_A));
+        assertTrue(mArray.isLoaded(0));
+        assertEquals(KEY_A, mArray.get(0).getKey());
+    }
+
+    private static ChildEvent added(String key, String previousKey) {
+        return new ChildEvent(ChangeEventType.ADDED, DatabaseSnapshots.snapshot(key), previousKey);
+    }
+}
@@ -0,0 +1,205 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEvent;
+import com.firebase.ui.common.ChangeEventBatch;
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.firestore.BatchedChangeEventListener;
+import com.firebase.ui.firestore.ChangeEventListener;
+import com.firebase.ui.firestore.FirestoreArray;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Feeds query snapshots with several changes to a {@link FirestoreArray} in batching mode, and
+ * checks the final order of the array and the events its listeners receive.
+ */
+public class FirestoreArrayBatchingTest {
+
+    private FakeFirestoreQuery mQuery;
+    private FirestoreArray<Item> mArray;
+    private BatchRecorder mBatched;
+
+    @Before
+    public void setUp() {
+        mQuery = new FakeFirestoreQuery();
+        mArray = new FirestoreArray<>(mQuery.getQuery(), FirestoreSnapshots.PARSER);
+        mArray.setBatchingEnabled(true);
+        mBatched = new BatchRecorder();
+        mArray.addChangeEventListener(mBatched);
+
+        // [0, 1, 2, 3, 4]
+        List<DocumentChange> changes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            changes.add(FirestoreSnapshots.change(
+                    DocumentChange.Type.ADDED, document(i), -1, i));
+        }
+        mQuery.emit(FirestoreSnapshots.querySnapshot(documents(0, 1, 2, 3, 4), changes));
+        mBatched.mBatches.clear();
+        mBatched.mDataChangedCount = 0;
+    }
+
+    @After
+    public void tearDown() {
+        mArray.removeAllListeners();
+    }
+
+    @Test
+    public void testMultiChangeSnapshotIsAppliedInOrder() {
+        emitStructuralChanges();
+
+        assertEquals(ids(5, 4, 0, 2, 3), getKeys());
+        assertEquals(1, mBatched.mBatches.size());
+        assertEquals(1, mBatched.mDataChangedCount);
+
+        List<ChangeEvent<DocumentSnapshot>> events = mBatched.mBatches.get(0).getEvents();
+        assertEquals(3, events.size());
+        assertEvent(events.get(0), ChangeEventType.REMOVED, document(1), -1, 1);
+        assertEvent(events.get(1), ChangeEventType.ADDED, document(5), 0, -1);
+        assertEvent(events.get(2), ChangeEventType.MOVED, document(4), 1, 4);
+    }
+
+    @Test
+    public void testInPlaceModificationKeepsOldSnapshot() {
+        DocumentSnapshot modified = FirestoreSnapshots.create(FirestoreSnapshots.id(2), 42L);
+        mQuery.emit(FirestoreSnapshots.querySnapshot(
+                Arrays.asList(document(0), document(1), modified, document(3), document(4)),
+                Arrays.asList(FirestoreSnapshots.change(
+                        DocumentChange.Type.MODIFIED, modified, 2, 2))));
+
+        assertEquals(ids(0, 1, 2, 3, 4), getKeys());
+        assertEquals(Long.valueOf(42), mArray.get(2).getScore());
+
+        List<ChangeEvent<DocumentSnapshot>> events = mBatched.mBatches.get(0).getEvents();
+        assertEquals(1, events.size());
+        assertEvent(events.get(0), ChangeEventType.CHANGED, modified, 2, 2);
+        assertSame(document(2), events.get(0).getOldSnapshot());
+    }
+
+    @Test
+    public void testUnbatchedListenerSeesEachChangeApplied() {
+        final List<String> observed = new ArrayList<>();
+        ChangeEventListener listener = new ChangeEventListener() {
+            @Override
+            public void onChildChanged(ChangeEventType type,
+                                       DocumentSnapshot snapshot,
+                                       int newIndex,
+                                       int oldIndex) {
+                // The array must match the indices of the event while it is delivered
+                if (type == ChangeEventType.REMOVED) {
+                    observed.add(type + " " + mArray.size());
+                } else {
+                    observed.add(type + " " + mArray.getSnapshot(newIndex).getId());
+                }
+            }
+
+            @Override
+            public void onDataChanged() {
+            }
+
+            @Override
+            public void onError(FirebaseFirestoreException e) {
+            }
+        };
+        mArray.addChangeEventListener(listener);
+
+        emitStructuralChanges();
+
+        assertEquals(ids(5, 4, 0, 2, 3), getKeys());
+        assertEquals(Arrays.asList(
+                ChangeEventType.REMOVED + " 4",
+                ChangeEventType.ADDED + " " + FirestoreSnapshots.id(5),
+                ChangeEventType.MOVED + " " + FirestoreSnapshots.id(4)), observed);
+
+        // The batched listener still receives the changes as one batch
+        assertEquals(1, mBatched.mBatches.size());
+        assertEquals(3, mBatched.mBatches.get(0).getEvents().size());
+    }
+
+    /**
+     * Remove 1, insert 5 first and move 4 second: [0, 1, 2, 3, 4] to [5, 4, 0, 2, 3].
+     */
+    private void emitStructuralChanges() {
+        mQuery.emit(FirestoreSnapshots.querySnapshot(documents(5, 4, 0, 2, 3), Arrays.asList(
+                FirestoreSnapshots.change(DocumentChange.Type.REMOVED, document(1), 1, -1),
+                FirestoreSnapshots.change(DocumentChange.Type.ADDED, document(5), -1, 0),
+                FirestoreSnapshots.change(DocumentChange.Type.MODIFIED, document(4), 4, 1))));
+    }
+
+    private List<String> getKeys() {
+        List<String> keys = new ArrayList<>(mArray.size());
+        for (Item item : mArray) {
+            keys.add(item.getKey());
+        }
+        return keys;
+    }
+
+    private static void assertEvent(ChangeEvent<DocumentSnapshot> event,
+                                    ChangeEventType type,
+                                    DocumentSnapshot snapshot,
+                                    int newIndex,
+                                    int oldIndex) {
+        assertEquals(type, event.getType());
+        assertSame(snapshot, event.getSnapshot());
+        assertEquals(newIndex, event.getNewIndex());
+        assertEquals(oldIndex, event.getOldIndex());
+    }
+
+    private static DocumentSnapshot document(int n) {
+        return FirestoreSnapshots.document(FirestoreSnapshots.id(n));
+    }
+
+    private static List<DocumentSnapshot> documents(int... ns) {
+        List<DocumentSnapshot> documents = new ArrayList<>(ns.length);
+        for (int n : ns) {
+            documents.add(document(n));
+        }
+        return documents;
+    }
+
+    private static List<String> ids(int... ns) {
+        List<String> ids = new ArrayList<>(ns.length);
+        for (int n : ns) {
+            ids.add(FirestoreSnapshots.id(n));
+        }
+        return ids;
+    }
+
+    private static final class BatchRecorder implements BatchedChangeEventListener {
+        final List<ChangeEventBatch<DocumentSnapshot>> mBatches = new ArrayList<>();
+        int mDataChangedCount;
+
+        @Override
+        public void onChildChangeBatch(ChangeEventBatch<DocumentSnapshot> batch) {
+            mBatches.add(batch);
+        }
+
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            throw new AssertionError("Batched listener received a single event");
+        }
+
+        @Override
+        public void onDataChanged() {
+            mDataChangedCount++;
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+        }
+    }
+}
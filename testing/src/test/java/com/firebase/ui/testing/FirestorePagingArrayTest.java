@@ -0,0 +1,187 @@
+package com.firebase.ui.testing;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.PagingConfig;
+import com.firebase.ui.firestore.ChangeEventListener;
+import com.firebase.ui.firestore.FirestorePagingArray;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Pages through an in-memory collection ordered by document ID, whose queries complete
+ * synchronously, and checks that pages dropped from memory are loaded again from up-to-date
+ * cursors.
+ */
+public class FirestorePagingArrayTest {
+
+    private static final int PAGE_SIZE = 5;
+    private static final int COLLECTION_SIZE = 30;
+
+    private static final ChangeEventListener NOOP_LISTENER = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(ChangeEventType type,
+                                   DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+        }
+
+        @Override
+        public void onDataChanged() {
+        }
+
+        @Override
+        public void onError(FirebaseFirestoreException e) {
+        }
+    };
+
+    private final List<String> mCollection = new ArrayList<>();
+    private FirestorePagingArray<Item> mArray;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < COLLECTION_SIZE; i++) {
+            mCollection.add(FirestoreSnapshots.id(i));
+        }
+
+        PagingConfig config = new PagingConfig.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setMaxPages(2)
+                .build();
+        mArray = new FirestorePagingArray<>(query(null, 0), config, FirestoreSnapshots.PARSER);
+        mArray.addChangeEventListener(NOOP_LISTENER);
+
+        // Scroll down to pages 2 and 3, dropping pages 0 and 1
+        mArray.loadNextPage();
+        mArray.loadNextPage();
+        mArray.loadNextPage();
+        assertEquals(mCollection.subList(10, 20), getKeys());
+    }
+
+    @After
+    public void tearDown() {
+        mArray.removeChangeEventListener(NOOP_LISTENER);
+    }
+
+    @Test
+    public void testDroppedPageIsReloaded() {
+        mArray.loadPreviousPage();
+
+        assertEquals(mCollection.subList(5, 15), getKeys());
+    }
+
+    @Test
+    public void testPagesAfterReloadedPageFollowItsNewEnd() {
+        // Documents inserted in page 1 while it isn't in memory push its last two out of it
+        mCollection.add(6, FirestoreSnapshots.id(5) + "a");
+        mCollection.add(7, FirestoreSnapshots.id(5) + "b");
+
+        mArray.loadPreviousPage();
+        assertEquals(mCollection.subList(5, 10), getKeys());
+        assertTrue(mArray.hasNextPage());
+
+        mArray.loadNextPage();
+        assertEquals(mCollection.subList(5, 15), getKeys());
+    }
+
+    @Test
+    public void testPagesAfterReloadedPageFollowItsNewEndAfterRemovals() {
+        // Documents removed from page 1 while it isn't in memory pull two of page 2 into it
+        mCollection.remove(FirestoreSnapshots.id(6));
+        mCollection.remove(FirestoreSnapshots.id(7));
+
+        mArray.loadPreviousPage();
+        assertEquals(mCollection.subList(5, 10), getKeys());
+
+        mArray.loadNextPage();
+        assertEquals(mCollection.subList(5, 15), getKeys());
+    }
+
+    private List<String> getKeys() {
+        List<String> keys = new ArrayList<>(mArray.size());
+        for (Item item : mArray) {
+            keys.add(item.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * @return a query of the documents of the collection after the given ID, or all of them if
+     * it is null, limited to the given number of documents unless it is 0.
+     */
+    private Query query(final String after, final long limit) {
+        return mock(Query.class, withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                String method = invocation.getMethod().getName();
+                Object[] arguments = invocation.getArguments();
+                if (method.equals("startAfter") && arguments[0] instanceof DocumentSnapshot) {
+                    return query(((DocumentSnapshot) arguments[0]).getId(), limit);
+                } else if (method.equals("limit")) {
+                    return query(after, (Long) arguments[0]);
+                } else if (method.equals("get")) {
+                    return result(getDocuments(after, limit));
+                }
+                return RETURNS_DEFAULTS.answer(invocation);
+            }
+        }));
+    }
+
+    private List<DocumentSnapshot> getDocuments(String after, long limit) {
+        List<DocumentSnapshot> documents = new ArrayList<>();
+        for (String id : mCollection) {
+            if (limit > 0 && documents.size() == limit) break;
+            if (after == null || id.compareTo(after) > 0) {
+                documents.add(FirestoreSnapshots.document(id));
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * @return a successful task that notifies its listeners as soon as they are added.
+     */
+    @SuppressWarnings("unchecked")
+    private static Task<QuerySnapshot> result(List<DocumentSnapshot> documents) {
+        final QuerySnapshot snapshot = FirestoreSnapshots.querySnapshot(
+                documents, Collections.<DocumentChange>emptyList());
+        return mock(Task.class, withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                String method = invocation.getMethod().getName();
+                Task<QuerySnapshot> task = (Task<QuerySnapshot>) invocation.getMock();
+                if (method.equals("addOnCompleteListener")) {
+                    Object[] arguments = invocation.getArguments();
+                    ((OnCompleteListener<QuerySnapshot>) arguments[arguments.length - 1])
+                            .onComplete(task);
+                    return task;
+                } else if (method.equals("isSuccessful") || method.equals("isComplete")) {
+                    return true;
+                } else if (method.equals("getResult")) {
+                    return snapshot;
+                }
+                return RETURNS_DEFAULTS.answer(invocation);
+            }
+        }));
+    }
+}